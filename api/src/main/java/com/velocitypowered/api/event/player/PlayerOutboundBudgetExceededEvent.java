@@ -0,0 +1,57 @@
+/*
+ * Copyright (C) 2024 Velocity Contributors
+ *
+ * The Velocity API is licensed under the terms of the MIT License. For more details,
+ * reference the LICENSE file in the api top-level directory.
+ */
+
+package com.velocitypowered.api.event.player;
+
+import com.google.common.base.Preconditions;
+import com.velocitypowered.api.proxy.Player;
+
+/**
+ * Fired when the data waiting to be sent to a {@link Player} and to their current server goes
+ * over the soft limit of the outbound memory budget, usually because the player's connection
+ * can't keep up. Plugins may send less to the player in the meantime. The player is disconnected
+ * if they stay over the limit for too long. Velocity will not wait on the result of this event.
+ */
+public final class PlayerOutboundBudgetExceededEvent {
+  private final Player player;
+  private final long pendingBytes;
+  private final long softLimit;
+
+  /**
+   * Creates a new instance.
+   *
+   * @param player the {@link Player} over the budget
+   * @param pendingBytes the number of bytes waiting to be sent
+   * @param softLimit the soft limit of the budget, in bytes
+   */
+  public PlayerOutboundBudgetExceededEvent(Player player, long pendingBytes, long softLimit) {
+    this.player = Preconditions.checkNotNull(player);
+    this.pendingBytes = pendingBytes;
+    this.softLimit = softLimit;
+  }
+
+  public Player getPlayer() {
+    return player;
+  }
+
+  public long getPendingBytes() {
+    return pendingBytes;
+  }
+
+  public long getSoftLimit() {
+    return softLimit;
+  }
+
+  @Override
+  public String toString() {
+    return "PlayerOutboundBudgetExceededEvent{"
+      + "player=" + player
+      + ", pendingBytes=" + pendingBytes
+      + ", softLimit=" + softLimit
+      + '}';
+  }
+}
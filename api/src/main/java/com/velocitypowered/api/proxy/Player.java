@@ -15,6 +15,7 @@ import com.velocitypowered.api.proxy.messages.ChannelIdentifier;
 import com.velocitypowered.api.proxy.messages.ChannelMessageSink;
 import com.velocitypowered.api.proxy.messages.ChannelMessageSource;
 import com.velocitypowered.api.proxy.messages.PluginMessageEncoder;
+import com.velocitypowered.api.proxy.player.PingStatistics;
 import com.velocitypowered.api.proxy.player.PlayerSettings;
 import com.velocitypowered.api.proxy.player.ResourcePackInfo;
 import com.velocitypowered.api.proxy.player.TabList;
@@ -118,12 +119,20 @@ public interface Player extends
   Optional<ModInfo> getModInfo();
 
   /**
-   * Gets the player's estimated ping in milliseconds.
+   * Gets the player's estimated ping in milliseconds. This is the smoothed ping, see
+   * {@link PingStatistics#getSmoothed()}.
    *
    * @return the player's ping or -1 if ping information is currently unknown
    */
   long getPing();
 
+  /**
+   * Returns statistics about the player's ping.
+   *
+   * @return the player's ping statistics
+   */
+  PingStatistics getPingStatistics();
+
   /**
    * Returns the player's connection status.
    *
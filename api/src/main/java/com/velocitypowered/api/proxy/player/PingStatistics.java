@@ -0,0 +1,52 @@
+/*
+ * Copyright (C) 2024 Velocity Contributors
+ *
+ * The Velocity API is licensed under the terms of the MIT License. For more details,
+ * reference the LICENSE file in the api top-level directory.
+ */
+
+package com.velocitypowered.api.proxy.player;
+
+/**
+ * Statistics about the round-trip time between the proxy and a player, measured using the keep
+ * alive packets sent by the backend server. All times are in milliseconds, and are {@code -1}
+ * until the first keep alive has been answered.
+ */
+public interface PingStatistics {
+
+  /**
+   * Returns the most recently measured ping.
+   *
+   * @return the last ping
+   */
+  long getLast();
+
+  /**
+   * Returns the smoothed ping, an exponentially weighted moving average of the measured pings
+   * that is not thrown off by a single slow answer.
+   *
+   * @return the smoothed ping
+   */
+  long getSmoothed();
+
+  /**
+   * Returns the jitter, the smoothed mean deviation of the measured pings from the smoothed ping.
+   *
+   * @return the jitter
+   */
+  long getJitter();
+
+  /**
+   * Returns the lowest ping measured since the player connected.
+   *
+   * @return the lowest ping
+   */
+  long getMinimum();
+
+  /**
+   * Returns the number of pings measured since the player connected.
+   *
+   * @return the number of samples
+   */
+  long getSamples();
+}
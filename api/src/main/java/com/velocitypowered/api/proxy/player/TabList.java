@@ -13,6 +13,7 @@ import com.velocitypowered.api.util.GameProfile;
 import java.util.Collection;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.function.Consumer;
 import net.kyori.adventure.text.Component;
 import org.checkerframework.checker.nullness.qual.Nullable;
 
@@ -104,6 +105,17 @@ public interface TabList {
    */
   void clearAll();
 
+  /**
+   * Applies several changes to this tab list at once. Entries added, removed or modified by
+   * {@code changes} on the calling thread are merged and sent to the player in as few packets as
+   * possible once {@code changes} returns, instead of one packet per change.
+   *
+   * @param changes the changes to apply to this tab list
+   */
+  default void batch(Consumer<TabList> changes) {
+    changes.accept(this);
+  }
+
   /**
    * Builds a tab list entry.
    *
@@ -50,4 +50,27 @@ public interface RegisteredServer extends ChannelMessageSink, Audience {
    * @since 3.2.0
    */
   CompletableFuture<ServerPing> ping(PingOptions pingOptions);
+
+  /**
+   * Hints that the specified player is about to be sent to this server, so that a connection to
+   * the server can be opened in advance. Connecting the player shortly afterwards will then not
+   * have to wait for the connection to be established. Does nothing by default.
+   *
+   * @param player the player that will be sent to this server
+   * @since 3.4.0
+   */
+  default void prepareConnection(Player player) {
+  }
+
+  /**
+   * Returns the health of this server. Servers that are known to be down are skipped when
+   * choosing a server for a player and when passing pings through. Servers that aren't checked
+   * by the proxy return {@link ServerHealth#UNKNOWN} by default.
+   *
+   * @return the health of this server
+   * @since 3.4.0
+   */
+  default ServerHealth getHealth() {
+    return ServerHealth.UNKNOWN;
+  }
 }
@@ -0,0 +1,101 @@
+/*
+ * Copyright (C) 2024 Velocity Contributors
+ *
+ * The Velocity API is licensed under the terms of the MIT License. For more details,
+ * reference the LICENSE file in the api top-level directory.
+ */
+
+package com.velocitypowered.api.proxy.server;
+
+/**
+ * The health of a {@link RegisteredServer}, as determined by the health checks of the proxy and
+ * by the outcome of connections to it. The health of a server acts as a circuit breaker: once a
+ * server has failed too many times in a row, the proxy stops sending players to it until it
+ * responds again.
+ *
+ * @since 3.4.0
+ * @see RegisteredServer#getHealth()
+ */
+public interface ServerHealth {
+
+  /**
+   * The health of a server that isn't checked, which is always considered available.
+   *
+   * @since 3.4.0
+   */
+  ServerHealth UNKNOWN = new ServerHealth() {
+    @Override
+    public State getState() {
+      return State.CLOSED;
+    }
+
+    @Override
+    public long getProbeLatency() {
+      return -1;
+    }
+
+    @Override
+    public int getConsecutiveFailures() {
+      return 0;
+    }
+
+    @Override
+    public String toString() {
+      return "ServerHealth.UNKNOWN";
+    }
+  };
+
+  /**
+   * The state of the circuit breaker of a server.
+   *
+   * @since 3.4.0
+   */
+  enum State {
+    /**
+     * The server is healthy, players are sent to it as usual.
+     */
+    CLOSED,
+    /**
+     * The server failed too many times in a row. Players are not sent to it and it is skipped
+     * by ping passthrough.
+     */
+    OPEN,
+    /**
+     * The server responded again after having failed. Players are sent to it, and the breaker
+     * closes once it has proven to be healthy again.
+     */
+    HALF_OPEN
+  }
+
+  /**
+   * Returns the state of the circuit breaker of the server.
+   *
+   * @return the state of the server
+   */
+  State getState();
+
+  /**
+   * Returns whether the proxy currently sends players to the server, that is whether the circuit
+   * breaker isn't {@link State#OPEN open}.
+   *
+   * @return whether the server is available
+   */
+  default boolean isAvailable() {
+    return getState() != State.OPEN;
+  }
+
+  /**
+   * Returns the round-trip time of the last successful health check of the server.
+   *
+   * @return the latency in milliseconds, or -1 if the server has not been checked successfully
+   */
+  long getProbeLatency();
+
+  /**
+   * Returns the number of health checks and connections to the server that failed since the last
+   * one that succeeded.
+   *
+   * @return the number of consecutive failures
+   */
+  int getConsecutiveFailures();
+}
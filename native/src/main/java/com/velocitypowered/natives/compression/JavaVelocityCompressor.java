@@ -23,13 +23,14 @@ import static com.velocitypowered.natives.compression.CompressorUtils.ZLIB_BUFFE
 
 import com.velocitypowered.natives.util.BufferPreference;
 import io.netty.buffer.ByteBuf;
-import java.nio.ByteBuffer;
 import java.util.zip.DataFormatException;
 import java.util.zip.Deflater;
 import java.util.zip.Inflater;
 
 /**
- * Implements deflate compression by wrapping {@link Deflater} and {@link Inflater}.
+ * Implements deflate compression by wrapping {@link Deflater} and {@link Inflater}. Buffers are
+ * handed to zlib through their backing array or their cached NIO view, so that compressing a
+ * packet doesn't allocate.
  */
 public class JavaVelocityCompressor implements VelocityCompressor {
 
@@ -54,18 +55,27 @@ public class JavaVelocityCompressor implements VelocityCompressor {
     checkArgument(destination.nioBufferCount() == 1, "destination has multiple backing buffers");
 
     final int origIdx = source.readerIndex();
-    inflater.setInput(source.nioBuffer());
+    final int readable = source.readableBytes();
+    if (source.hasArray()) {
+      inflater.setInput(source.array(), source.arrayOffset() + origIdx, readable);
+    } else {
+      inflater.setInput(source.internalNioBuffer(origIdx, readable));
+    }
 
     try {
-      final int readable = source.readableBytes();
       while (!inflater.finished() && inflater.getBytesRead() < readable) {
         if (!destination.isWritable()) {
           destination.ensureWritable(ZLIB_BUFFER_SIZE);
         }
 
-        ByteBuffer destNioBuf = destination.nioBuffer(destination.writerIndex(),
-            destination.writableBytes());
-        int produced = inflater.inflate(destNioBuf);
+        int produced;
+        if (destination.hasArray()) {
+          produced = inflater.inflate(destination.array(),
+              destination.arrayOffset() + destination.writerIndex(), destination.writableBytes());
+        } else {
+          produced = inflater.inflate(destination.internalNioBuffer(destination.writerIndex(),
+              destination.writableBytes()));
+        }
         destination.writerIndex(destination.writerIndex() + produced);
       }
 
@@ -88,22 +98,35 @@ public class JavaVelocityCompressor implements VelocityCompressor {
     checkArgument(destination.nioBufferCount() == 1, "destination has multiple backing buffers");
 
     final int origIdx = source.readerIndex();
-    deflater.setInput(source.nioBuffer());
+    if (source.hasArray()) {
+      deflater.setInput(source.array(), source.arrayOffset() + origIdx, source.readableBytes());
+    } else {
+      deflater.setInput(source.internalNioBuffer(origIdx, source.readableBytes()));
+    }
     deflater.finish();
 
-    while (!deflater.finished()) {
-      if (!destination.isWritable()) {
-        destination.ensureWritable(ZLIB_BUFFER_SIZE);
+    try {
+      while (!deflater.finished()) {
+        if (!destination.isWritable()) {
+          destination.ensureWritable(ZLIB_BUFFER_SIZE);
+        }
+
+        int produced;
+        if (destination.hasArray()) {
+          produced = deflater.deflate(destination.array(),
+              destination.arrayOffset() + destination.writerIndex(), destination.writableBytes());
+        } else {
+          produced = deflater.deflate(destination.internalNioBuffer(destination.writerIndex(),
+              destination.writableBytes()));
+        }
+        destination.writerIndex(destination.writerIndex() + produced);
       }
 
-      ByteBuffer destNioBuf = destination.nioBuffer(destination.writerIndex(),
-          destination.writableBytes());
-      int produced = deflater.deflate(destNioBuf);
-      destination.writerIndex(destination.writerIndex() + produced);
+      source.readerIndex(origIdx + deflater.getTotalIn());
+    } finally {
+      // The deflater may be shared with other connections, never leave a stream half-written
+      deflater.reset();
     }
-
-    source.readerIndex(origIdx + deflater.getTotalIn());
-    deflater.reset();
   }
 
   @Override
@@ -20,6 +20,7 @@ package com.velocitypowered.natives.compression;
 import com.google.common.base.Preconditions;
 import com.velocitypowered.natives.util.BufferPreference;
 import io.netty.buffer.ByteBuf;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.zip.DataFormatException;
 
 /**
@@ -29,6 +30,8 @@ public class LibdeflateVelocityCompressor implements VelocityCompressor {
 
   public static final VelocityCompressorFactory FACTORY = LibdeflateVelocityCompressor::new;
 
+  private static final AtomicInteger LIVE_CONTEXTS = new AtomicInteger();
+
   private final long inflateCtx;
   private final long deflateCtx;
   private boolean disposed = false;
@@ -41,6 +44,17 @@ public class LibdeflateVelocityCompressor implements VelocityCompressor {
 
     this.inflateCtx = NativeZlibInflate.init();
     this.deflateCtx = NativeZlibDeflate.init(correctedLevel);
+    LIVE_CONTEXTS.incrementAndGet();
+  }
+
+  /**
+   * Returns the number of compressors whose native inflate and deflate contexts have not been
+   * freed yet.
+   *
+   * @return the number of live native compressors
+   */
+  public static int getLiveContexts() {
+    return LIVE_CONTEXTS.get();
   }
 
   @Override
@@ -92,6 +106,7 @@ public class LibdeflateVelocityCompressor implements VelocityCompressor {
     if (!disposed) {
       NativeZlibInflate.free(inflateCtx);
       NativeZlibDeflate.free(deflateCtx);
+      LIVE_CONTEXTS.decrementAndGet();
     }
     disposed = true;
   }
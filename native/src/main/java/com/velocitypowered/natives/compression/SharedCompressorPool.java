@@ -0,0 +1,159 @@
+/*
+ * Copyright (C) 2024 Velocity Contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.velocitypowered.natives.compression;
+
+import com.google.common.base.Preconditions;
+import com.velocitypowered.natives.util.BufferPreference;
+import io.netty.buffer.ByteBuf;
+import io.netty.util.concurrent.EventExecutor;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.DataFormatException;
+
+/**
+ * Hands out compressors that are shared by all the connections of an event loop.
+ *
+ * <p>Compressing or decompressing a packet is a single call that leaves no state behind, and a
+ * connection only ever uses its compressor from its own event loop, so every connection of an
+ * event loop can use the same underlying compressor instead of allocating a native context of its
+ * own. The compressors handed out must be closed once the connection is done with them; the
+ * underlying compressor is freed when the last connection of its event loop closes it.</p>
+ */
+public final class SharedCompressorPool {
+
+  private final VelocityCompressorFactory factory;
+  private final Map<Key, Shared> contexts = new ConcurrentHashMap<>();
+  private final AtomicInteger handles = new AtomicInteger();
+  private final LongAdder created = new LongAdder();
+
+  public SharedCompressorPool(VelocityCompressorFactory factory) {
+    this.factory = Preconditions.checkNotNull(factory, "factory");
+  }
+
+  /**
+   * Returns a compressor for a connection of the specified event loop. The compressor may only be
+   * used, and closed, from that event loop.
+   *
+   * @param executor the event loop of the connection
+   * @param level the compression level
+   * @return a compressor to be closed once the connection no longer needs it
+   */
+  public VelocityCompressor acquire(EventExecutor executor, int level) {
+    Preconditions.checkState(executor.inEventLoop(), "Not in the event loop");
+    Shared shared = contexts.computeIfAbsent(new Key(executor, level), key -> {
+      created.increment();
+      return new Shared(key, factory.create(level));
+    });
+    shared.references++;
+    handles.incrementAndGet();
+    return new Handle(shared);
+  }
+
+  /**
+   * Returns the number of compressors currently allocated, at most one per event loop and level.
+   *
+   * @return the number of underlying compressors
+   */
+  public int getSharedCompressors() {
+    return contexts.size();
+  }
+
+  /**
+   * Returns the number of compressors handed out that have not been closed yet.
+   *
+   * @return the number of open compressors
+   */
+  public int getOpenCompressors() {
+    return handles.get();
+  }
+
+  /**
+   * Returns the number of underlying compressors that have been allocated so far.
+   *
+   * @return the number of compressors allocated
+   */
+  public long getCreatedCompressors() {
+    return created.sum();
+  }
+
+  private void release(Shared shared) {
+    handles.decrementAndGet();
+    if (--shared.references == 0) {
+      contexts.remove(shared.key, shared);
+      shared.compressor.close();
+    }
+  }
+
+  private record Key(EventExecutor executor, int level) {
+  }
+
+  private static final class Shared {
+
+    private final Key key;
+    private final VelocityCompressor compressor;
+    // Only accessed from the event loop of the key
+    private int references;
+
+    private Shared(Key key, VelocityCompressor compressor) {
+      this.key = key;
+      this.compressor = compressor;
+    }
+  }
+
+  private final class Handle implements VelocityCompressor {
+
+    private final Shared shared;
+    private boolean closed;
+
+    private Handle(Shared shared) {
+      this.shared = shared;
+    }
+
+    @Override
+    public void inflate(ByteBuf source, ByteBuf destination, int uncompressedSize)
+        throws DataFormatException {
+      ensureNotClosed();
+      shared.compressor.inflate(source, destination, uncompressedSize);
+    }
+
+    @Override
+    public void deflate(ByteBuf source, ByteBuf destination) throws DataFormatException {
+      ensureNotClosed();
+      shared.compressor.deflate(source, destination);
+    }
+
+    private void ensureNotClosed() {
+      Preconditions.checkState(!closed, "Object already disposed");
+    }
+
+    @Override
+    public void close() {
+      if (!closed) {
+        closed = true;
+        release(shared);
+      }
+    }
+
+    @Override
+    public BufferPreference preferredBufferType() {
+      return shared.compressor.preferredBufferType();
+    }
+  }
+}
@@ -17,7 +17,9 @@
 
 package com.velocitypowered.natives.util;
 
+import com.google.common.collect.ImmutableMap;
 import java.util.List;
+import java.util.Map;
 import java.util.function.BooleanSupplier;
 import java.util.function.Supplier;
 import org.checkerframework.checker.nullness.qual.Nullable;
@@ -25,14 +27,46 @@ import org.checkerframework.checker.nullness.qual.Nullable;
 /**
  * A loader for native code.
  *
+ * <p>The first variant that can be loaded is used, unless a benchmark is provided: the variant is
+ * then measured against the last variant, the pure Java fallback, and the fastest of the two is
+ * used. The benchmark can be skipped by setting {@code velocity.natives-benchmark} to
+ * {@code false}.</p>
+ *
  * @param <T> the interface of the instance to load
  */
 public final class NativeCodeLoader<T> implements Supplier<T> {
 
+  private static final boolean BENCHMARK =
+      Boolean.parseBoolean(System.getProperty("velocity.natives-benchmark", "true"));
+
   private final Variant<T> selected;
+  private final Map<String, Double> throughput;
 
   NativeCodeLoader(List<Variant<T>> variants) {
-    this.selected = getVariant(variants);
+    this(variants, null);
+  }
+
+  NativeCodeLoader(List<Variant<T>> variants, @Nullable Benchmark<T> benchmark) {
+    // Extract every library that may be loaded at once, they are then tried in order
+    for (Variant<T> variant : variants) {
+      variant.prepare();
+    }
+
+    Variant<T> first = getVariant(variants);
+    Variant<T> fallback = variants.get(variants.size() - 1);
+    if (benchmark == null || !BENCHMARK || first == fallback) {
+      this.selected = first;
+      this.throughput = ImmutableMap.of();
+      return;
+    }
+
+    // The other variants are builds of the same library for other systems, so only the fallback
+    // is worth measuring against
+    double firstThroughput = measure(first, benchmark);
+    double fallbackThroughput = fallback.get() == null ? 0 : measure(fallback, benchmark);
+    this.selected = fallbackThroughput > firstThroughput ? fallback : first;
+    this.throughput = ImmutableMap.of(first.name, firstThroughput,
+        fallback.name, fallbackThroughput);
   }
 
   @Override
@@ -51,10 +85,39 @@ public final class NativeCodeLoader<T> implements Supplier<T> {
     throw new IllegalArgumentException("Can't find any suitable variants");
   }
 
+  private static <T> double measure(Variant<T> variant, Benchmark<T> benchmark) {
+    try {
+      return benchmark.measure(variant.constructed);
+    } catch (Exception e) {
+      return 0;
+    }
+  }
+
   public String getLoadedVariant() {
     return selected.name;
   }
 
+  /**
+   * Returns the throughput measured for each variant at startup, in MiB per second. Empty if no
+   * benchmark was run.
+   *
+   * @return the measured throughput of each variant
+   */
+  public Map<String, Double> getMeasuredThroughput() {
+    return throughput;
+  }
+
+  /**
+   * Measures the throughput of a variant.
+   *
+   * @param <T> the interface of the instance to measure
+   */
+  @FunctionalInterface
+  interface Benchmark<T> {
+
+    double measure(T instance) throws Exception;
+  }
+
   static class Variant<T> {
 
     private Status status;
@@ -75,6 +138,12 @@ public final class NativeCodeLoader<T> implements Supplier<T> {
       this.object = object;
     }
 
+    void prepare() {
+      if (status == Status.POSSIBLY_AVAILABLE && setup instanceof NativeLibrary library) {
+        library.extract();
+      }
+    }
+
     public @Nullable T get() {
       if (status == Status.NOT_AVAILABLE || status == Status.SETUP_FAILURE) {
         return null;
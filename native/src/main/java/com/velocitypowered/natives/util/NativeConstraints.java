@@ -19,7 +19,16 @@ package com.velocitypowered.natives.util;
 
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.Unpooled;
+import java.io.File;
+import java.io.IOException;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
 import java.util.function.BooleanSupplier;
 
 /**
@@ -32,6 +41,12 @@ public class NativeConstraints {
   private static final boolean CAN_GET_MEMORYADDRESS;
   private static final boolean IS_LINUX;
   private static final boolean IS_MUSL_LIBC;
+  private static final boolean HAS_OPENSSL_3;
+  private static final boolean HAS_OPENSSL_1_1;
+
+  private static final List<String> LIBRARY_DIRECTORIES = List.of("/lib", "/lib64", "/usr/lib",
+      "/usr/lib64", "/usr/local/lib", "/lib/x86_64-linux-gnu", "/usr/lib/x86_64-linux-gnu",
+      "/lib/aarch64-linux-gnu", "/usr/lib/aarch64-linux-gnu");
 
   static {
     ByteBuf test = Unpooled.directBuffer();
@@ -47,26 +62,76 @@ public class NativeConstraints {
 
     IS_LINUX = System.getProperty("os.name", "").equalsIgnoreCase("Linux");
 
-    // Determine if we're using musl libc by invoking `ldd --version`.
     if (IS_LINUX) {
-      boolean isMusl;
-      try {
-        Process process = new ProcessBuilder("ldd", "--version")
-            .redirectErrorStream(true)
-            .start();
-        process.waitFor();
-        try (var reader = process.getInputStream()) {
-          byte[] outputRaw = reader.readAllBytes();
-          String output = new String(outputRaw, StandardCharsets.UTF_8);
-          isMusl = output.contains("musl");
-        }
-      } catch (Exception e) {
-        isMusl = false;
-      }
-      IS_MUSL_LIBC = isMusl;
+      IS_MUSL_LIBC = detectMusl();
+
+      // Skip the OpenSSL builds whose libcrypto isn't installed. If no libcrypto can be found at
+      // all, it lives somewhere unusual and every build is tried.
+      Set<String> versions = libcryptoVersions();
+      HAS_OPENSSL_3 = versions.isEmpty() || versions.stream().anyMatch(v -> v.startsWith("3"));
+      HAS_OPENSSL_1_1 = versions.isEmpty() || versions.stream().anyMatch(v -> v.startsWith("1.1"));
     } else {
       IS_MUSL_LIBC = false;
+      HAS_OPENSSL_3 = true;
+      HAS_OPENSSL_1_1 = true;
+    }
+  }
+
+  private static boolean detectMusl() {
+    // The dynamic loader gives the libc away without having to start a process
+    if (!listLibraries("/lib", "ld-musl-*").isEmpty()) {
+      return true;
+    }
+    if (!listLibraries("/lib", "ld-linux-*").isEmpty()
+        || !listLibraries("/lib64", "ld-linux-*").isEmpty()) {
+      return false;
+    }
+
+    // Determine if we're using musl libc by invoking `ldd --version`.
+    try {
+      Process process = new ProcessBuilder("ldd", "--version")
+          .redirectErrorStream(true)
+          .start();
+      process.waitFor();
+      try (var reader = process.getInputStream()) {
+        byte[] outputRaw = reader.readAllBytes();
+        String output = new String(outputRaw, StandardCharsets.UTF_8);
+        return output.contains("musl");
+      }
+    } catch (Exception e) {
+      return false;
+    }
+  }
+
+  private static Set<String> libcryptoVersions() {
+    List<String> directories = new ArrayList<>(LIBRARY_DIRECTORIES);
+    String libraryPath = System.getenv("LD_LIBRARY_PATH");
+    if (libraryPath != null) {
+      directories.addAll(List.of(libraryPath.split(File.pathSeparator)));
+    }
+
+    Set<String> versions = new HashSet<>();
+    for (String directory : directories) {
+      for (String library : listLibraries(directory, "libcrypto.so.*")) {
+        versions.add(library.substring("libcrypto.so.".length()));
+      }
     }
+    return versions;
+  }
+
+  private static List<String> listLibraries(String directory, String glob) {
+    List<String> libraries = new ArrayList<>();
+    if (directory.isEmpty()) {
+      return libraries;
+    }
+    try (DirectoryStream<Path> stream = Files.newDirectoryStream(Path.of(directory), glob)) {
+      for (Path library : stream) {
+        libraries.add(library.getFileName().toString());
+      }
+    } catch (IOException | RuntimeException e) {
+      // Missing or unreadable, nothing to find there
+    }
+    return libraries;
   }
 
   static final BooleanSupplier NATIVE_BASE = () -> NATIVES_ENABLED && CAN_GET_MEMORYADDRESS;
@@ -83,6 +148,24 @@ public class NativeConstraints {
   static final BooleanSupplier LINUX_AARCH64_MUSL = () -> NATIVE_BASE.getAsBoolean()
       && IS_LINUX && IS_AARCH64 && IS_MUSL_LIBC;
 
+  static final BooleanSupplier LINUX_X86_64_OPENSSL_3 = () -> LINUX_X86_64.getAsBoolean()
+      && HAS_OPENSSL_3;
+
+  static final BooleanSupplier LINUX_X86_64_OPENSSL_1_1 = () -> LINUX_X86_64.getAsBoolean()
+      && HAS_OPENSSL_1_1;
+
+  static final BooleanSupplier LINUX_X86_64_MUSL_OPENSSL_3 = () -> LINUX_X86_64_MUSL.getAsBoolean()
+      && HAS_OPENSSL_3;
+
+  static final BooleanSupplier LINUX_AARCH64_OPENSSL_3 = () -> LINUX_AARCH64.getAsBoolean()
+      && HAS_OPENSSL_3;
+
+  static final BooleanSupplier LINUX_AARCH64_OPENSSL_1_1 = () -> LINUX_AARCH64.getAsBoolean()
+      && HAS_OPENSSL_1_1;
+
+  static final BooleanSupplier LINUX_AARCH64_MUSL_OPENSSL_3 = () ->
+      LINUX_AARCH64_MUSL.getAsBoolean() && HAS_OPENSSL_3;
+
   static final BooleanSupplier MACOS_AARCH64 = () -> NATIVE_BASE.getAsBoolean()
       && System.getProperty("os.name", "").equalsIgnoreCase("Mac OS X")
       && IS_AARCH64;
@@ -0,0 +1,278 @@
+/*
+ * Copyright (C) 2024 Velocity Contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.velocitypowered.natives.util;
+
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hashing;
+import com.velocitypowered.natives.NativeSetupException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileAttribute;
+import java.nio.file.attribute.PosixFileAttributes;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.nio.file.attribute.UserPrincipal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/**
+ * A native library bundled in the jar, extracted to a persistent cache directory before being
+ * loaded.
+ *
+ * <p>Libraries are stored under a name derived from the hash of their contents, so a library
+ * extracted by a previous run is loaded as is, and a new build never loads a stale library. The
+ * cache directory is {@code velocity.natives-dir} if set (or the older
+ * {@code velocity.natives-tmpdir}), then a per-user directory in the temporary directory, then a
+ * {@code natives} directory in the working directory. A directory is skipped if it can't be
+ * written to or if it is mounted {@code noexec}.</p>
+ *
+ * <p>As a library is loaded into the proxy, a directory is only used if it is owned by the current
+ * user and can't be written to by anyone else, so that no other user can replace a library
+ * between the time it is checked and the time it is loaded. Missing directories are created with
+ * {@code rwx------} permissions. If no directory can be used, the library is extracted to a new
+ * private temporary file instead. Libraries left behind by other builds are removed from the
+ * cache directory.</p>
+ */
+final class NativeLibrary implements Runnable {
+
+  private static final List<Path> DIRECTORIES = cacheDirectories();
+  private static final Set<PosixFilePermission> PRIVATE =
+      PosixFilePermissions.fromString("rwx------");
+  private static final Pattern HASHED_NAME = Pattern.compile("[0-9a-f]{16}-(.+)");
+  // Another process may be about to load a library it has just extracted
+  private static final long STALE_AGE_MILLIS = TimeUnit.MINUTES.toMillis(1);
+
+  private final String resource;
+  private @Nullable CompletableFuture<Extracted> extracted;
+
+  NativeLibrary(String resource) {
+    this.resource = resource;
+  }
+
+  private static List<Path> cacheDirectories() {
+    List<Path> directories = new ArrayList<>();
+    String configured = System.getProperty("velocity.natives-dir",
+        System.getProperty("velocity.natives-tmpdir"));
+    if (configured != null) {
+      directories.add(Path.of(configured));
+    }
+    directories.add(Path.of(System.getProperty("java.io.tmpdir"),
+        "velocity-natives-" + System.getProperty("user.name", "unknown")));
+    directories.add(Path.of("natives").toAbsolutePath());
+    return directories;
+  }
+
+  /**
+   * Starts extracting the library in the background, if it hasn't been already.
+   *
+   * @return the extracted library
+   */
+  synchronized CompletableFuture<Extracted> extract() {
+    if (extracted == null) {
+      extracted = CompletableFuture.supplyAsync(this::extractNow);
+    }
+    return extracted;
+  }
+
+  @Override
+  public void run() {
+    Extracted library;
+    try {
+      library = extract().join();
+    } catch (CompletionException e) {
+      if (e.getCause() instanceof RuntimeException cause) {
+        throw cause;
+      }
+      throw e;
+    }
+
+    // Checked right before loading: only the current user can replace the file from now on
+    try {
+      if (!isExtracted(library.file(), library.hash())) {
+        throw new IOException("the extracted file was modified");
+      }
+    } catch (IOException e) {
+      throw new NativeSetupException("Refusing to load native " + library.file(), e);
+    }
+    try {
+      System.load(library.file().toString());
+    } catch (UnsatisfiedLinkError e) {
+      throw new NativeSetupException("Unable to load native " + library.file(), e);
+    }
+  }
+
+  private Extracted extractNow() {
+    byte[] contents;
+    try (InputStream nativeLib = Natives.class.getResourceAsStream(resource)) {
+      if (nativeLib == null) {
+        throw new IllegalStateException("Native library " + resource + " not found.");
+      }
+      contents = nativeLib.readAllBytes();
+    } catch (IOException e) {
+      throw new NativeSetupException("Unable to read native " + resource, e);
+    }
+
+    HashCode hash = Hashing.sha256().hashBytes(contents);
+    String baseName = resource.substring(resource.lastIndexOf('/') + 1);
+    String name = hash.toString().substring(0, 16) + "-" + baseName;
+    IOException failure = null;
+    for (Path directory : DIRECTORIES) {
+      try {
+        preparePrivateDirectory(directory);
+        Path file = directory.resolve(name);
+        if (!isExtracted(file, hash)) {
+          write(directory, file, contents);
+        }
+        // Files can't be executed from a noexec mount, and can't be loaded from it either
+        if (Files.isExecutable(file)) {
+          removeStale(directory, name, baseName);
+          return new Extracted(file, hash);
+        }
+      } catch (IOException | UnsupportedOperationException e) {
+        failure = e instanceof IOException io ? io : new IOException(e);
+      }
+    }
+
+    // None of the cache directories can be used safely, so fall back to a file of our own
+    try {
+      Path file = Files.createTempFile("velocity-native-", "-" + baseName, privateAttribute());
+      file.toFile().deleteOnExit();
+      Files.write(file, contents);
+      return new Extracted(file, hash);
+    } catch (IOException | UnsupportedOperationException e) {
+      NativeSetupException exception = new NativeSetupException("Unable to copy natives", e);
+      if (failure != null) {
+        exception.addSuppressed(failure);
+      }
+      throw exception;
+    }
+  }
+
+  private static void preparePrivateDirectory(Path directory) throws IOException {
+    if (!isPosix(directory)) {
+      Files.createDirectories(directory);
+      return;
+    }
+    Path parent = directory.toAbsolutePath().getParent();
+    if (parent != null) {
+      Files.createDirectories(parent);
+    }
+    try {
+      Files.createDirectory(directory, PosixFilePermissions.asFileAttribute(PRIVATE));
+    } catch (FileAlreadyExistsException ignored) {
+      // Checked below, it may have been created by someone else
+    }
+    PosixFileAttributes attributes = Files.readAttributes(directory, PosixFileAttributes.class,
+        LinkOption.NOFOLLOW_LINKS);
+    if (!attributes.isDirectory() || !isPrivate(directory, attributes)) {
+      throw new IOException(directory + " is not a private directory of the current user");
+    }
+  }
+
+  private static boolean isExtracted(Path file, HashCode hash) throws IOException {
+    if (!Files.isRegularFile(file, LinkOption.NOFOLLOW_LINKS)) {
+      return false;
+    }
+    if (isPosix(file) && !isPrivate(file, Files.readAttributes(file, PosixFileAttributes.class,
+        LinkOption.NOFOLLOW_LINKS))) {
+      return false;
+    }
+    // Compare the contents rather than trusting the name
+    return Hashing.sha256().hashBytes(Files.readAllBytes(file)).equals(hash);
+  }
+
+  private static boolean isPrivate(Path path, PosixFileAttributes attributes) throws IOException {
+    UserPrincipal currentUser = path.getFileSystem().getUserPrincipalLookupService()
+        .lookupPrincipalByName(System.getProperty("user.name"));
+    Set<PosixFilePermission> permissions = attributes.permissions();
+    return attributes.owner().equals(currentUser)
+        && !permissions.contains(PosixFilePermission.GROUP_WRITE)
+        && !permissions.contains(PosixFilePermission.OTHERS_WRITE);
+  }
+
+  private static boolean isPosix(Path path) {
+    return path.getFileSystem().supportedFileAttributeViews().contains("posix");
+  }
+
+  private static FileAttribute<?>[] privateAttribute() {
+    if (!isPosix(Path.of(System.getProperty("java.io.tmpdir")))) {
+      return new FileAttribute<?>[0];
+    }
+    return new FileAttribute<?>[] { PosixFilePermissions.asFileAttribute(PRIVATE) };
+  }
+
+  private static void write(Path directory, Path file, byte[] contents) throws IOException {
+    Path tempFile = Files.createTempFile(directory, "native-", ".tmp");
+    try {
+      Files.write(tempFile, contents);
+      if (isPosix(tempFile)) {
+        Files.setPosixFilePermissions(tempFile, PRIVATE);
+      }
+      try {
+        Files.move(tempFile, file, StandardCopyOption.ATOMIC_MOVE,
+            StandardCopyOption.REPLACE_EXISTING);
+      } catch (AtomicMoveNotSupportedException e) {
+        Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING);
+      }
+    } finally {
+      Files.deleteIfExists(tempFile);
+    }
+  }
+
+  private static void removeStale(Path directory, String name, String baseName) {
+    long cutoff = System.currentTimeMillis() - STALE_AGE_MILLIS;
+    try (DirectoryStream<Path> entries = Files.newDirectoryStream(directory)) {
+      for (Path entry : entries) {
+        String entryName = entry.getFileName().toString();
+        Matcher matcher = HASHED_NAME.matcher(entryName);
+        boolean stale = !entryName.equals(name)
+            && ((matcher.matches() && matcher.group(1).equals(baseName))
+            || (entryName.startsWith("native-") && entryName.endsWith(".tmp")));
+        if (stale && Files.getLastModifiedTime(entry, LinkOption.NOFOLLOW_LINKS).toMillis()
+            < cutoff) {
+          Files.deleteIfExists(entry);
+        }
+      }
+    } catch (IOException ignored) {
+      // Only a cleanup, the library itself is usable
+    }
+  }
+
+  /**
+   * A library extracted to a file.
+   *
+   * @param file the extracted file
+   * @param hash the hash of the bundled library
+   */
+  record Extracted(Path file, HashCode hash) {
+  }
+}
@@ -0,0 +1,132 @@
+/*
+ * Copyright (C) 2024 Velocity Contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.velocitypowered.natives.util;
+
+import com.velocitypowered.natives.Native;
+import com.velocitypowered.natives.compression.VelocityCompressor;
+import com.velocitypowered.natives.compression.VelocityCompressorFactory;
+import com.velocitypowered.natives.encryption.VelocityCipher;
+import com.velocitypowered.natives.encryption.VelocityCipherFactory;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.Deflater;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Measures the throughput of a variant, so that the fastest of the native and the Java variants
+ * can be picked at startup. Each measurement runs for {@code velocity.natives-benchmark-millis}
+ * milliseconds, half of which are spent warming up.
+ */
+final class VariantBenchmarks {
+
+  private static final int PAYLOAD_SIZE = 1 << 16;
+  private static final long DURATION_NANOS =
+      TimeUnit.MILLISECONDS.toNanos(Long.getLong("velocity.natives-benchmark-millis", 40));
+
+  private VariantBenchmarks() {
+    throw new AssertionError();
+  }
+
+  /**
+   * Measures how fast a compressor deflates and inflates back a packet that compresses about as
+   * well as chunk data.
+   *
+   * @param factory the compressor factory
+   * @return the throughput, in MiB of uncompressed data per second
+   * @throws Exception if the compressor failed
+   */
+  static double compressor(VelocityCompressorFactory factory) throws Exception {
+    byte[] payload = new byte[PAYLOAD_SIZE];
+    Random random = new Random(1);
+    for (int i = 0; i < payload.length; i++) {
+      payload[i] = (byte) random.nextInt(16);
+    }
+
+    try (VelocityCompressor compressor = factory.create(Deflater.DEFAULT_COMPRESSION)) {
+      ByteBuf source = buffer(compressor, PAYLOAD_SIZE).writeBytes(payload);
+      ByteBuf compressed = buffer(compressor, PAYLOAD_SIZE);
+      ByteBuf decompressed = buffer(compressor, PAYLOAD_SIZE);
+      try {
+        return measure(() -> {
+          source.readerIndex(0);
+          compressed.clear();
+          decompressed.clear();
+          compressor.deflate(source, compressed);
+          compressor.inflate(compressed, decompressed, PAYLOAD_SIZE);
+        });
+      } finally {
+        source.release();
+        compressed.release();
+        decompressed.release();
+      }
+    }
+  }
+
+  /**
+   * Measures how fast a cipher encrypts a packet.
+   *
+   * @param factory the cipher factory
+   * @return the throughput, in MiB per second
+   * @throws Exception if the cipher failed
+   */
+  static double cipher(VelocityCipherFactory factory) throws Exception {
+    byte[] key = new byte[16];
+    new Random(1).nextBytes(key);
+
+    try (VelocityCipher cipher = factory.forEncryption(new SecretKeySpec(key, "AES"))) {
+      ByteBuf data = buffer(cipher, PAYLOAD_SIZE).writeZero(PAYLOAD_SIZE);
+      try {
+        return measure(() -> cipher.process(data));
+      } finally {
+        data.release();
+      }
+    }
+  }
+
+  private static ByteBuf buffer(Native nativeStuff, int capacity) {
+    return switch (nativeStuff.preferredBufferType()) {
+      case DIRECT_PREFERRED, DIRECT_REQUIRED -> Unpooled.directBuffer(capacity);
+      case HEAP_PREFERRED, HEAP_REQUIRED -> Unpooled.buffer(capacity);
+    };
+  }
+
+  private static double measure(Operation operation) throws Exception {
+    long warmupEnd = System.nanoTime() + DURATION_NANOS / 2;
+    while (System.nanoTime() < warmupEnd) {
+      operation.run();
+    }
+
+    long start = System.nanoTime();
+    long runs = 0;
+    long elapsed;
+    do {
+      operation.run();
+      runs++;
+      elapsed = System.nanoTime() - start;
+    } while (elapsed < DURATION_NANOS / 2);
+    return (double) runs * PAYLOAD_SIZE / (1 << 20) / (elapsed / 1e9);
+  }
+
+  @FunctionalInterface
+  private interface Operation {
+
+    void run() throws Exception;
+  }
+}
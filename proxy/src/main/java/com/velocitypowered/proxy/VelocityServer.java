@@ -38,6 +38,8 @@ import com.velocitypowered.api.proxy.server.ServerInfo;
 import com.velocitypowered.api.util.Favicon;
 import com.velocitypowered.api.util.GameProfile;
 import com.velocitypowered.api.util.ProxyVersion;
+import com.velocitypowered.natives.compression.SharedCompressorPool;
+import com.velocitypowered.natives.util.Natives;
 import com.velocitypowered.proxy.command.VelocityCommandManager;
 import com.velocitypowered.proxy.command.builtin.CallbackCommand;
 import com.velocitypowered.proxy.command.builtin.GlistCommand;
@@ -46,13 +48,17 @@ import com.velocitypowered.proxy.command.builtin.ServerCommand;
 import com.velocitypowered.proxy.command.builtin.ShutdownCommand;
 import com.velocitypowered.proxy.command.builtin.VelocityCommand;
 import com.velocitypowered.proxy.config.VelocityConfiguration;
+import com.velocitypowered.proxy.connection.backend.BackendConnectionPool;
 import com.velocitypowered.proxy.connection.client.ConnectedPlayer;
 import com.velocitypowered.proxy.connection.player.resourcepack.VelocityResourcePackInfo;
 import com.velocitypowered.proxy.connection.util.ServerListPingHandler;
 import com.velocitypowered.proxy.console.VelocityConsole;
+import com.velocitypowered.proxy.crypto.CryptoWorkerPool;
 import com.velocitypowered.proxy.crypto.EncryptionUtils;
 import com.velocitypowered.proxy.event.VelocityEventManager;
 import com.velocitypowered.proxy.network.ConnectionManager;
+import com.velocitypowered.proxy.network.OutboundMemoryMonitor;
+import com.velocitypowered.proxy.network.SessionServerClient;
 import com.velocitypowered.proxy.plugin.VelocityPluginManager;
 import com.velocitypowered.proxy.plugin.loader.VelocityPluginContainer;
 import com.velocitypowered.proxy.plugin.loader.VelocityPluginDescription;
@@ -61,13 +67,14 @@ import com.velocitypowered.proxy.protocol.ProtocolUtils;
 import com.velocitypowered.proxy.protocol.util.FaviconSerializer;
 import com.velocitypowered.proxy.protocol.util.GameProfileSerializer;
 import com.velocitypowered.proxy.scheduler.VelocityScheduler;
+import com.velocitypowered.proxy.server.HealthChecker;
+import com.velocitypowered.proxy.server.ServerBalancer;
 import com.velocitypowered.proxy.server.ServerMap;
 import com.velocitypowered.proxy.util.AddressUtil;
 import com.velocitypowered.proxy.util.ClosestLocaleMatcher;
 import com.velocitypowered.proxy.util.ResourceUtils;
 import com.velocitypowered.proxy.util.VelocityChannelRegistrar;
-import com.velocitypowered.proxy.util.ratelimit.Ratelimiter;
-import com.velocitypowered.proxy.util.ratelimit.Ratelimiters;
+import com.velocitypowered.proxy.util.ratelimit.ConnectionRatelimiter;
 import com.velocitypowered.proxy.uuidrewrite.UuidRewriteHooks;
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 import io.netty.bootstrap.Bootstrap;
@@ -163,11 +170,20 @@ public class VelocityServer implements ProxyServer, ForwardingAudience {
   private final Map<UUID, ConnectedPlayer> connectionsByUuid = new ConcurrentHashMap<>();
   private final Map<String, ConnectedPlayer> connectionsByName = new ConcurrentHashMap<>();
   private final VelocityConsole console;
-  private @MonotonicNonNull Ratelimiter ipAttemptLimiter;
+  private @MonotonicNonNull ConnectionRatelimiter connectionRatelimiter;
+  private @MonotonicNonNull SessionServerClient sessionServer;
+  private @Nullable SessionServerClient proxiedSessionServer;
   private final VelocityEventManager eventManager;
   private final VelocityScheduler scheduler;
   private final VelocityChannelRegistrar channelRegistrar = new VelocityChannelRegistrar();
   private final ServerListPingHandler serverListPingHandler;
+  private final CryptoWorkerPool cryptoWorkers = CryptoWorkerPool.create();
+  private final BackendConnectionPool backendConnectionPool = new BackendConnectionPool(this);
+  private final ServerBalancer serverBalancer = new ServerBalancer(this);
+  private final HealthChecker healthChecker = new HealthChecker(this);
+  private final OutboundMemoryMonitor outboundMemoryMonitor = new OutboundMemoryMonitor(this);
+  private final SharedCompressorPool compressorPool =
+      new SharedCompressorPool(Natives.compress.get());
 
   VelocityServer(final ProxyOptions options) {
     pluginManager = new VelocityPluginManager(this);
@@ -185,6 +201,30 @@ public class VelocityServer implements ProxyServer, ForwardingAudience {
     return serverKeyPair;
   }
 
+  public CryptoWorkerPool getCryptoWorkers() {
+    return cryptoWorkers;
+  }
+
+  public SharedCompressorPool getCompressorPool() {
+    return compressorPool;
+  }
+
+  public BackendConnectionPool getBackendConnectionPool() {
+    return backendConnectionPool;
+  }
+
+  public ServerBalancer getServerBalancer() {
+    return serverBalancer;
+  }
+
+  public HealthChecker getHealthChecker() {
+    return healthChecker;
+  }
+
+  public OutboundMemoryMonitor getOutboundMemoryMonitor() {
+    return outboundMemoryMonitor;
+  }
+
   @Override
   public VelocityConfiguration getConfiguration() {
     return this.configuration;
@@ -295,7 +335,12 @@ public class VelocityServer implements ProxyServer, ForwardingAudience {
       }
     }
 
-    ipAttemptLimiter = Ratelimiters.createWithMilliseconds(configuration.getLoginRatelimit());
+    connectionRatelimiter = new ConnectionRatelimiter(configuration.getRateLimits());
+    sessionServer = updateSessionServer(null, cm.getHttpClient());
+    proxiedSessionServer = updateSessionServer(null, cm.getProxiedHttpClient());
+    serverBalancer.reload();
+    healthChecker.reload();
+    outboundMemoryMonitor.reload();
     loadPlugins();
 
     // Go ahead and fire the proxy initialization event. We block since plugins should have a chance
@@ -548,8 +593,14 @@ public class VelocityServer implements ProxyServer, ForwardingAudience {
     }
 
     commandManager.setAnnounceProxyCommands(newConfiguration.isAnnounceProxyCommands());
-    ipAttemptLimiter = Ratelimiters.createWithMilliseconds(newConfiguration.getLoginRatelimit());
+    connectionRatelimiter = new ConnectionRatelimiter(newConfiguration.getRateLimits());
     this.configuration = newConfiguration;
+    sessionServer = updateSessionServer(sessionServer, cm.getHttpClient());
+    proxiedSessionServer = updateSessionServer(proxiedSessionServer, cm.getProxiedHttpClient());
+    backendConnectionPool.reload();
+    serverBalancer.reload();
+    healthChecker.reload();
+    outboundMemoryMonitor.reload();
     eventManager.fireAndForget(new ProxyReloadEvent());
     return true;
   }
@@ -657,18 +708,48 @@ public class VelocityServer implements ProxyServer, ForwardingAudience {
     this.cm.closeEndpoints(false);
   }
 
-  public HttpClient createHttpClient() {
-    return cm.createHttpClient();
+  public HttpClient getHttpClient() {
+    return cm.getHttpClient();
+  }
+
+  // [fallen's fork] mojang auth proxy
+  @Nullable
+  public HttpClient getProxiedHttpClient() {
+    return cm.getProxiedHttpClient();
+  }
+
+  public ConnectionManager getConnectionManager() {
+    return cm;
+  }
+
+  public SessionServerClient getSessionServer() {
+    return sessionServer;
   }
 
   // [fallen's fork] mojang auth proxy
   @Nullable
-  public HttpClient createProxiedHttpClient() {
-    return cm.createProxiedHttpClient();
+  public SessionServerClient getProxiedSessionServer() {
+    return proxiedSessionServer;
+  }
+
+  private @Nullable SessionServerClient updateSessionServer(@Nullable SessionServerClient current,
+      @Nullable HttpClient client) {
+    if (client == null) {
+      return null;
+    }
+    if (current != null && current.getClient() == client) {
+      // Keep the cached responses and statistics if the client didn't change
+      return current;
+    }
+    return new SessionServerClient(client, getUserAgent());
+  }
+
+  private String getUserAgent() {
+    return getVersion().getName() + "/" + getVersion().getVersion();
   }
 
-  public Ratelimiter getIpAttemptLimiter() {
-    return ipAttemptLimiter;
+  public ConnectionRatelimiter getConnectionRatelimiter() {
+    return connectionRatelimiter;
   }
 
   /**
@@ -797,6 +878,7 @@ public class VelocityServer implements ProxyServer, ForwardingAudience {
   @Override
   public void unregisterServer(ServerInfo server) {
     servers.unregister(server);
+    backendConnectionPool.remove(server);
   }
 
   @Override
@@ -266,7 +266,7 @@ public final class VelocityCommand {
     }
   }
 
-  private record Dump(ProxyServer server) implements Command<CommandSource> {
+  private record Dump(VelocityServer server) implements Command<CommandSource> {
     private static final Logger logger = LogManager.getLogger(Dump.class);
 
 
@@ -298,6 +298,7 @@ public final class VelocityCommand {
       dump.add("platform", InformationUtils.collectEnvironmentInfo());
       dump.add("config", proxyConfig);
       dump.add("plugins", InformationUtils.collectPluginInfo(server));
+      dump.add("statistics", InformationUtils.collectStatistics(server));
 
       final Path dumpPath = Path.of("velocity-dump-"
           + new SimpleDateFormat("yyyy-MM-dd-HH-mm-ss").format(new Date())
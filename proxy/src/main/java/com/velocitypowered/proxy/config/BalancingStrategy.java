@@ -0,0 +1,45 @@
+/*
+ * Copyright (C) 2024 Velocity Contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.velocitypowered.proxy.config;
+
+/**
+ * Strategies to choose the server to send a player to from the try list or forced hosts.
+ */
+public enum BalancingStrategy {
+  /**
+   * Tries the servers in the configured order.
+   */
+  FIRST,
+  /**
+   * Chooses the server with the fewest players, counting players still connecting to it.
+   */
+  LEAST_PLAYERS,
+  /**
+   * Picks two servers at random and chooses the one with fewer players.
+   */
+  POWER_OF_TWO,
+  /**
+   * Chooses the server with the fewest players relative to its configured weight.
+   */
+  WEIGHTED,
+  /**
+   * Picks two servers at random and chooses the one with the lowest latency, as measured by
+   * periodic pings, weighted by its number of players.
+   */
+  LOWEST_LATENCY
+}
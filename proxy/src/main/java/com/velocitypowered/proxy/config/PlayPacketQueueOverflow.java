@@ -0,0 +1,33 @@
+/*
+ * Copyright (C) 2024 Velocity Contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.velocitypowered.proxy.config;
+
+/**
+ * What to do when the PLAY packets held back while a player is in the CONFIG state exceed their
+ * limits.
+ */
+public enum PlayPacketQueueOverflow {
+  /**
+   * Drops the oldest packets that are safe to drop until the queue fits again.
+   */
+  DROP_OLDEST,
+  /**
+   * Disconnects the player.
+   */
+  DISCONNECT
+}
@@ -31,6 +31,7 @@ import com.velocitypowered.proxy.config.migration.ForwardingMigration;
 import com.velocitypowered.proxy.config.migration.KeyAuthenticationMigration;
 import com.velocitypowered.proxy.config.migration.MotdMigration;
 import com.velocitypowered.proxy.config.migration.TransferIntegrationMigration;
+import com.velocitypowered.proxy.network.ConnectionManager;
 import com.velocitypowered.proxy.util.AddressUtil;
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 import java.io.IOException;
@@ -46,6 +47,7 @@ import java.util.Locale;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Random;
+import java.util.concurrent.TimeUnit;
 import net.kyori.adventure.text.minimessage.MiniMessage;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -90,6 +92,18 @@ public class VelocityConfiguration implements ProxyConfig {
   @Expose
   private final UuidRewrite uuidRewrite;
 
+  @Expose
+  private final Flush flush;
+  @Expose
+  private final RateLimits rateLimits;
+  @Expose
+  private final ConnectionPool connectionPool;
+  @Expose
+  private final Balancer balancer;
+  @Expose
+  private final HealthCheck healthCheck;
+  @Expose
+  private final OutboundMemory outboundMemory;
   @Expose
   private final Query query;
   private final Metrics metrics;
@@ -103,12 +117,20 @@ public class VelocityConfiguration implements ProxyConfig {
   private VelocityConfiguration(Servers servers, ForcedHosts forcedHosts, Advanced advanced,
       AuthProxy authProxy,  // [fallen's fork] mojang auth proxy
       UuidRewrite uuidRewrite,  // [fallen's fork] player uuid rewrite
-      Query query, Metrics metrics) {
+      Flush flush, RateLimits rateLimits, ConnectionPool connectionPool, Balancer balancer,
+      HealthCheck healthCheck, OutboundMemory outboundMemory, Query query,
+      Metrics metrics) {
     this.servers = servers;
     this.forcedHosts = forcedHosts;
     this.advanced = advanced;
     this.authProxy = authProxy;  // [fallen's fork] mojang auth proxy
     this.uuidRewrite = uuidRewrite;  // [fallen's fork] player uuid rewrite
+    this.flush = flush;
+    this.rateLimits = rateLimits;
+    this.connectionPool = connectionPool;
+    this.balancer = balancer;
+    this.healthCheck = healthCheck;
+    this.outboundMemory = outboundMemory;
     this.query = query;
     this.metrics = metrics;
   }
@@ -121,7 +143,9 @@ public class VelocityConfiguration implements ProxyConfig {
       Advanced advanced,
       AuthProxy authProxy,  // [fallen's fork] mojang auth proxy
       UuidRewrite uuidRewrite,  // [fallen's fork] player uuid rewrite
-      Query query, Metrics metrics, boolean forceKeyAuthentication) {
+      Flush flush, RateLimits rateLimits, ConnectionPool connectionPool, Balancer balancer,
+      HealthCheck healthCheck, OutboundMemory outboundMemory, Query query,
+      Metrics metrics, boolean forceKeyAuthentication) {
     this.bind = bind;
     this.motd = motd;
     this.showMaxPlayers = showMaxPlayers;
@@ -138,6 +162,12 @@ public class VelocityConfiguration implements ProxyConfig {
     this.advanced = advanced;
     this.authProxy = authProxy;  // [fallen's fork] mojang auth proxy
     this.uuidRewrite = uuidRewrite;  // [fallen's fork] player uuid rewrite
+    this.flush = flush;
+    this.rateLimits = rateLimits;
+    this.connectionPool = connectionPool;
+    this.balancer = balancer;
+    this.healthCheck = healthCheck;
+    this.outboundMemory = outboundMemory;
     this.query = query;
     this.metrics = metrics;
     this.forceKeyAuthentication = forceKeyAuthentication;
@@ -242,11 +272,46 @@ public class VelocityConfiguration implements ProxyConfig {
           + "throughput and increase CPU usage!");
     }
 
+    if (advanced.tryRaceSize < 0) {
+      logger.error("Invalid try-race-size {}", advanced.tryRaceSize);
+      valid = false;
+    }
+
+    if (advanced.configQueueMaxPackets <= 0 || advanced.configQueueMaxBytes <= 0) {
+      logger.error("Invalid config-queue-max-packets {} or config-queue-max-bytes {}",
+          advanced.configQueueMaxPackets, advanced.configQueueMaxBytes);
+      valid = false;
+    }
+
     if (advanced.loginRatelimit < 0) {
       logger.error("Invalid login ratelimit {}ms", advanced.loginRatelimit);
       valid = false;
     }
 
+    if (!flush.validate()) {
+      valid = false;
+    }
+
+    if (!rateLimits.validate()) {
+      valid = false;
+    }
+
+    if (!connectionPool.validate(advanced.getReadTimeout())) {
+      valid = false;
+    }
+
+    if (!balancer.validate()) {
+      valid = false;
+    }
+
+    if (!healthCheck.validate()) {
+      valid = false;
+    }
+
+    if (!outboundMemory.validate()) {
+      valid = false;
+    }
+
     loadFavicon();
 
     return valid;
@@ -343,6 +408,10 @@ public class VelocityConfiguration implements ProxyConfig {
     return advanced.getCompressionLevel();
   }
 
+  public boolean isAdaptiveCompression() {
+    return advanced.isAdaptiveCompression();
+  }
+
   @Override
   public int getLoginRatelimit() {
     return advanced.getLoginRatelimit();
@@ -420,6 +489,22 @@ public class VelocityConfiguration implements ProxyConfig {
     return this.advanced.isAcceptTransfers();
   }
 
+  public int getTryRaceSize() {
+    return this.advanced.getTryRaceSize();
+  }
+
+  public int getConfigQueueMaxPackets() {
+    return this.advanced.getConfigQueueMaxPackets();
+  }
+
+  public int getConfigQueueMaxBytes() {
+    return this.advanced.getConfigQueueMaxBytes();
+  }
+
+  public PlayPacketQueueOverflow getConfigQueueOverflow() {
+    return this.advanced.getConfigQueueOverflow();
+  }
+
   // [fallen's fork] mojang auth proxy starts
   public boolean isAuthProxyEnabled() {
     return authProxy.isEnabled();
@@ -456,6 +541,50 @@ public class VelocityConfiguration implements ProxyConfig {
   }
   // [fallen's fork] player uuid rewrite ends
 
+  /**
+   * Returns the flush settings to use when forwarding packets from the specified server.
+   *
+   * @param serverName the name of the backend server
+   * @return the flush settings for the server
+   */
+  public FlushSettings getFlushSettings(String serverName) {
+    return flush.getSettings(serverName);
+  }
+
+  /**
+   * Returns the connection pool settings to use for the specified server.
+   *
+   * @param serverName the name of the backend server
+   * @return the connection pool settings for the server
+   */
+  public ConnectionPoolSettings getConnectionPoolSettings(String serverName) {
+    return connectionPool.getSettings(serverName);
+  }
+
+  public BalancingStrategy getBalancingStrategy() {
+    return balancer.strategy;
+  }
+
+  public int getBalancerPingInterval() {
+    return balancer.pingInterval;
+  }
+
+  public int getServerWeight(String serverName) {
+    return balancer.weights.getOrDefault(serverName, 1);
+  }
+
+  public HealthCheck getHealthCheck() {
+    return healthCheck;
+  }
+
+  public OutboundMemory getOutboundMemory() {
+    return outboundMemory;
+  }
+
+  public RateLimits getRateLimits() {
+    return rateLimits;
+  }
+
   public boolean isForceKeyAuthentication() {
     return forceKeyAuthentication;
   }
@@ -473,6 +602,12 @@ public class VelocityConfiguration implements ProxyConfig {
         .add("servers", servers)
         .add("forcedHosts", forcedHosts)
         .add("advanced", advanced)
+        .add("flush", flush)
+        .add("rateLimits", rateLimits)
+        .add("connectionPool", connectionPool)
+        .add("balancer", balancer)
+        .add("healthCheck", healthCheck)
+        .add("outboundMemory", outboundMemory)
         .add("query", query)
         .add("favicon", favicon)
         .add("enablePlayerAddressLogging", enablePlayerAddressLogging)
@@ -551,6 +686,12 @@ public class VelocityConfiguration implements ProxyConfig {
       final CommentedConfig advancedConfig = config.get("advanced");
       final CommentedConfig autoProxy = config.get("auth-proxy");  // [fallen's fork] mojang auth proxy
       final CommentedConfig uuidRewrite = config.get("uuid-rewrite");  // [fallen's fork] player uuid rewrite
+      final CommentedConfig flushConfig = config.get("flush");
+      final CommentedConfig rateLimitConfig = config.get("rate-limit");
+      final CommentedConfig connectionPoolConfig = config.get("connection-pool");
+      final CommentedConfig balancerConfig = config.get("balancer");
+      final CommentedConfig healthCheckConfig = config.get("health-check");
+      final CommentedConfig outboundMemoryConfig = config.get("outbound-memory");
       final CommentedConfig queryConfig = config.get("query");
       final CommentedConfig metricsConfig = config.get("metrics");
       final PlayerInfoForwarding forwardingMode = config.getEnumOrElse(
@@ -577,6 +718,8 @@ public class VelocityConfiguration implements ProxyConfig {
         throw new RuntimeException("The forwarding-secret file must not be empty.");
       }
 
+      final Advanced advanced = new Advanced(advancedConfig);
+
       return new VelocityConfiguration(
               bind,
               motd,
@@ -591,9 +734,15 @@ public class VelocityConfiguration implements ProxyConfig {
               enablePlayerAddressLogging,
               new Servers(serversConfig),
               new ForcedHosts(forcedHostsConfig),
-              new Advanced(advancedConfig),
+              advanced,
               new AuthProxy(autoProxy),  // [fallen's fork] mojang auth proxy
               new UuidRewrite(uuidRewrite),  // [fallen's fork] player uuid rewrite
+              new Flush(flushConfig),
+              new RateLimits(rateLimitConfig, advanced.getLoginRatelimit()),
+              new ConnectionPool(connectionPoolConfig),
+              new Balancer(balancerConfig),
+              new HealthCheck(healthCheckConfig),
+              new OutboundMemory(outboundMemoryConfig),
               new Query(queryConfig),
               new Metrics(metricsConfig),
               forceKeyAuthentication
@@ -750,6 +899,8 @@ public class VelocityConfiguration implements ProxyConfig {
     @Expose
     private int compressionLevel = -1;
     @Expose
+    private boolean adaptiveCompression = false;
+    @Expose
     private int loginRatelimit = 3000;
     @Expose
     private int connectionTimeout = 5000;
@@ -773,6 +924,14 @@ public class VelocityConfiguration implements ProxyConfig {
     private boolean logPlayerConnections = true;
     @Expose
     private boolean acceptTransfers = false;
+    @Expose
+    private int tryRaceSize = 0;
+    @Expose
+    private int configQueueMaxPackets = 1024;
+    @Expose
+    private int configQueueMaxBytes = 1 << 20;
+    @Expose
+    private PlayPacketQueueOverflow configQueueOverflow = PlayPacketQueueOverflow.DROP_OLDEST;
 
     private Advanced() {
     }
@@ -781,6 +940,7 @@ public class VelocityConfiguration implements ProxyConfig {
       if (config != null) {
         this.compressionThreshold = config.getIntOrElse("compression-threshold", 256);
         this.compressionLevel = config.getIntOrElse("compression-level", -1);
+        this.adaptiveCompression = config.getOrElse("adaptive-compression", false);
         this.loginRatelimit = config.getIntOrElse("login-ratelimit", 3000);
         this.connectionTimeout = config.getIntOrElse("connection-timeout", 5000);
         this.readTimeout = config.getIntOrElse("read-timeout", 30000);
@@ -798,6 +958,11 @@ public class VelocityConfiguration implements ProxyConfig {
         this.logCommandExecutions = config.getOrElse("log-command-executions", false);
         this.logPlayerConnections = config.getOrElse("log-player-connections", true);
         this.acceptTransfers = config.getOrElse("accepts-transfers", false);
+        this.tryRaceSize = config.getIntOrElse("try-race-size", 0);
+        this.configQueueMaxPackets = config.getIntOrElse("config-queue-max-packets", 1024);
+        this.configQueueMaxBytes = config.getIntOrElse("config-queue-max-bytes", 1 << 20);
+        this.configQueueOverflow = config.getEnumOrElse("config-queue-overflow",
+            PlayPacketQueueOverflow.DROP_OLDEST);
       }
     }
 
@@ -809,6 +974,10 @@ public class VelocityConfiguration implements ProxyConfig {
       return compressionLevel;
     }
 
+    public boolean isAdaptiveCompression() {
+      return adaptiveCompression;
+    }
+
     public int getLoginRatelimit() {
       return loginRatelimit;
     }
@@ -861,11 +1030,28 @@ public class VelocityConfiguration implements ProxyConfig {
       return this.acceptTransfers;
     }
 
+    public int getTryRaceSize() {
+      return tryRaceSize;
+    }
+
+    public int getConfigQueueMaxPackets() {
+      return configQueueMaxPackets;
+    }
+
+    public int getConfigQueueMaxBytes() {
+      return configQueueMaxBytes;
+    }
+
+    public PlayPacketQueueOverflow getConfigQueueOverflow() {
+      return configQueueOverflow;
+    }
+
     @Override
     public String toString() {
       return "Advanced{"
           + "compressionThreshold=" + compressionThreshold
           + ", compressionLevel=" + compressionLevel
+          + ", adaptiveCompression=" + adaptiveCompression
           + ", loginRatelimit=" + loginRatelimit
           + ", connectionTimeout=" + connectionTimeout
           + ", readTimeout=" + readTimeout
@@ -878,6 +1064,10 @@ public class VelocityConfiguration implements ProxyConfig {
           + ", logCommandExecutions=" + logCommandExecutions
           + ", logPlayerConnections=" + logPlayerConnections
           + ", acceptTransfers=" + acceptTransfers
+          + ", tryRaceSize=" + tryRaceSize
+          + ", configQueueMaxPackets=" + configQueueMaxPackets
+          + ", configQueueMaxBytes=" + configQueueMaxBytes
+          + ", configQueueOverflow=" + configQueueOverflow
           + '}';
     }
   }
@@ -957,6 +1147,633 @@ public class VelocityConfiguration implements ProxyConfig {
     }
   }
 
+  private static class Flush {
+
+    @Expose
+    private FlushSettings defaults = new FlushSettings();
+    @Expose
+    private Map<String, FlushSettings> servers = ImmutableMap.of();
+
+    private Flush(CommentedConfig config) {
+      if (config != null) {
+        if (config.contains("max-packets")
+            && System.getProperty("velocity.max-packets-per-flush") != null) {
+          logger.warn("The velocity.max-packets-per-flush system property is overridden by "
+              + "max-packets in the flush settings of velocity.toml");
+        }
+        this.defaults = new FlushSettings(config, defaults);
+        final CommentedConfig serversConfig = config.get("servers");
+        if (serversConfig != null) {
+          Map<String, FlushSettings> servers = new HashMap<>();
+          for (UnmodifiableConfig.Entry entry : serversConfig.entrySet()) {
+            if (!(entry.getValue() instanceof UnmodifiableConfig)) {
+              throw new IllegalArgumentException(
+                  "Flush settings for server " + entry.getKey() + " are not a table!");
+            }
+            servers.put(entry.getKey().replace("\"", ""),
+                new FlushSettings(entry.getValue(), defaults));
+          }
+          this.servers = ImmutableMap.copyOf(servers);
+        }
+      }
+    }
+
+    private FlushSettings getSettings(String serverName) {
+      return servers.getOrDefault(serverName, defaults);
+    }
+
+    private boolean validate() {
+      boolean valid = defaults.validate("default");
+      for (Map.Entry<String, FlushSettings> entry : servers.entrySet()) {
+        valid &= entry.getValue().validate(entry.getKey());
+      }
+      return valid;
+    }
+
+    @Override
+    public String toString() {
+      return "Flush{"
+          + "defaults=" + defaults
+          + ", servers=" + servers
+          + '}';
+    }
+  }
+
+  /**
+   * Controls when packets forwarded from a backend server are flushed to the player.
+   */
+  public static class FlushSettings {
+
+    @Expose
+    private int maxPackets = Integer.getInteger("velocity.max-packets-per-flush", 8192);
+    @Expose
+    private int maxPendingBytes = 65536;
+    @Expose
+    private int maxDelay = 0;
+    @Expose
+    private boolean flushLatencySensitive = true;
+
+    private FlushSettings() {
+    }
+
+    private FlushSettings(UnmodifiableConfig config, FlushSettings defaults) {
+      this.maxPackets = config.getIntOrElse("max-packets", defaults.maxPackets);
+      this.maxPendingBytes = config.getIntOrElse("max-pending-bytes", defaults.maxPendingBytes);
+      this.maxDelay = config.getIntOrElse("max-delay", defaults.maxDelay);
+      this.flushLatencySensitive = config.getOrElse("flush-latency-sensitive",
+          defaults.flushLatencySensitive);
+    }
+
+    private boolean validate(String name) {
+      boolean valid = true;
+      if (maxPackets <= 0) {
+        logger.error("Invalid max-packets {} in {} flush settings", maxPackets, name);
+        valid = false;
+      }
+      if (maxPendingBytes <= 0) {
+        logger.error("Invalid max-pending-bytes {} in {} flush settings", maxPendingBytes, name);
+        valid = false;
+      }
+      if (maxDelay < 0) {
+        logger.error("Invalid max-delay {}us in {} flush settings", maxDelay, name);
+        valid = false;
+      }
+      return valid;
+    }
+
+    public int getMaxPackets() {
+      return maxPackets;
+    }
+
+    public int getMaxPendingBytes() {
+      return maxPendingBytes;
+    }
+
+    public long getMaxDelayNanos() {
+      return TimeUnit.MICROSECONDS.toNanos(maxDelay);
+    }
+
+    public boolean isFlushLatencySensitive() {
+      return flushLatencySensitive;
+    }
+
+    @Override
+    public String toString() {
+      return "FlushSettings{"
+          + "maxPackets=" + maxPackets
+          + ", maxPendingBytes=" + maxPendingBytes
+          + ", maxDelay=" + maxDelay
+          + ", flushLatencySensitive=" + flushLatencySensitive
+          + '}';
+    }
+  }
+
+  private static class Balancer {
+
+    @Expose
+    private BalancingStrategy strategy = BalancingStrategy.FIRST;
+    @Expose
+    private int pingInterval = 10;
+    @Expose
+    private Map<String, Integer> weights = ImmutableMap.of();
+
+    private Balancer(CommentedConfig config) {
+      if (config != null) {
+        this.strategy = config.getEnumOrElse("strategy", BalancingStrategy.FIRST);
+        this.pingInterval = config.getIntOrElse("ping-interval", pingInterval);
+        final CommentedConfig weightsConfig = config.get("weights");
+        if (weightsConfig != null) {
+          Map<String, Integer> weights = new HashMap<>();
+          for (UnmodifiableConfig.Entry entry : weightsConfig.entrySet()) {
+            if (!(entry.getValue() instanceof Number)) {
+              throw new IllegalArgumentException(
+                  "Weight of server " + entry.getKey() + " is not a number!");
+            }
+            weights.put(entry.getKey().replace("\"", ""),
+                entry.<Number>getValue().intValue());
+          }
+          this.weights = ImmutableMap.copyOf(weights);
+        }
+      }
+    }
+
+    private boolean validate() {
+      boolean valid = true;
+      if (pingInterval <= 0) {
+        logger.error("Invalid balancer ping-interval {}s", pingInterval);
+        valid = false;
+      }
+      for (Map.Entry<String, Integer> entry : weights.entrySet()) {
+        if (entry.getValue() <= 0) {
+          logger.error("Invalid weight {} for server {}", entry.getValue(), entry.getKey());
+          valid = false;
+        }
+      }
+      return valid;
+    }
+
+    @Override
+    public String toString() {
+      return "Balancer{"
+          + "strategy=" + strategy
+          + ", pingInterval=" + pingInterval
+          + ", weights=" + weights
+          + '}';
+    }
+  }
+
+  private static class ConnectionPool {
+
+    @Expose
+    private ConnectionPoolSettings defaults = new ConnectionPoolSettings();
+    @Expose
+    private Map<String, ConnectionPoolSettings> servers = ImmutableMap.of();
+
+    private ConnectionPool(CommentedConfig config) {
+      if (config != null) {
+        this.defaults = new ConnectionPoolSettings(config, defaults);
+        final CommentedConfig serversConfig = config.get("servers");
+        if (serversConfig != null) {
+          Map<String, ConnectionPoolSettings> servers = new HashMap<>();
+          for (UnmodifiableConfig.Entry entry : serversConfig.entrySet()) {
+            if (!(entry.getValue() instanceof UnmodifiableConfig)) {
+              throw new IllegalArgumentException(
+                  "Connection pool settings for server " + entry.getKey() + " are not a table!");
+            }
+            servers.put(entry.getKey().replace("\"", ""),
+                new ConnectionPoolSettings(entry.getValue(), defaults));
+          }
+          this.servers = ImmutableMap.copyOf(servers);
+        }
+      }
+    }
+
+    private ConnectionPoolSettings getSettings(String serverName) {
+      return servers.getOrDefault(serverName, defaults);
+    }
+
+    private boolean validate(int readTimeout) {
+      boolean valid = defaults.validate("default", readTimeout);
+      for (Map.Entry<String, ConnectionPoolSettings> entry : servers.entrySet()) {
+        valid &= entry.getValue().validate(entry.getKey(), readTimeout);
+      }
+      return valid;
+    }
+
+    @Override
+    public String toString() {
+      return "ConnectionPool{"
+          + "defaults=" + defaults
+          + ", servers=" + servers
+          + '}';
+    }
+  }
+
+  /**
+   * Controls how many idle connections to a backend server are kept open in advance.
+   */
+  public static class ConnectionPoolSettings {
+
+    @Expose
+    private int size = 0;
+    @Expose
+    private int maxIdle = 10000;
+
+    private ConnectionPoolSettings() {
+    }
+
+    private ConnectionPoolSettings(UnmodifiableConfig config, ConnectionPoolSettings defaults) {
+      this.size = config.getIntOrElse("size", defaults.size);
+      this.maxIdle = config.getIntOrElse("max-idle", defaults.maxIdle);
+    }
+
+    private boolean validate(String name, int readTimeout) {
+      boolean valid = true;
+      if (size < 0) {
+        logger.error("Invalid size {} in {} connection pool settings", size, name);
+        valid = false;
+      }
+      if (maxIdle <= 0) {
+        logger.error("Invalid max-idle {}ms in {} connection pool settings", maxIdle, name);
+        valid = false;
+      } else if (readTimeout > 0 && maxIdle >= readTimeout) {
+        // Idle connections would be closed by the read timeout before being replaced
+        logger.error("The max-idle {}ms in {} connection pool settings must be shorter than the "
+            + "read-timeout {}ms", maxIdle, name, readTimeout);
+        valid = false;
+      }
+      return valid;
+    }
+
+    public int getSize() {
+      return size;
+    }
+
+    public int getMaxIdle() {
+      return maxIdle;
+    }
+
+    @Override
+    public String toString() {
+      return "ConnectionPoolSettings{"
+          + "size=" + size
+          + ", maxIdle=" + maxIdle
+          + '}';
+    }
+  }
+
+  /**
+   * The settings of the backend server health checks.
+   */
+  public static class HealthCheck {
+
+    @Expose
+    private boolean enabled = false;
+    @Expose
+    private int interval = 10000;
+    @Expose
+    private int jitter = 2000;
+    @Expose
+    private int timeout = 3000;
+    @Expose
+    private int failureThreshold = 3;
+    @Expose
+    private int successThreshold = 2;
+
+    private HealthCheck(CommentedConfig config) {
+      if (config != null) {
+        this.enabled = config.getOrElse("enabled", enabled);
+        this.interval = config.getIntOrElse("interval", interval);
+        this.jitter = config.getIntOrElse("jitter", jitter);
+        this.timeout = config.getIntOrElse("timeout", timeout);
+        this.failureThreshold = config.getIntOrElse("failure-threshold", failureThreshold);
+        this.successThreshold = config.getIntOrElse("success-threshold", successThreshold);
+      }
+    }
+
+    private boolean validate() {
+      boolean valid = true;
+      if (interval <= 0) {
+        logger.error("Invalid health check interval {}ms", interval);
+        valid = false;
+      }
+      if (jitter < 0) {
+        logger.error("Invalid health check jitter {}ms", jitter);
+        valid = false;
+      } else if (interval > 0 && jitter >= interval) {
+        logger.error("The health check jitter {}ms must be shorter than the interval {}ms",
+            jitter, interval);
+        valid = false;
+      }
+      if (timeout <= 0) {
+        logger.error("Invalid health check timeout {}ms", timeout);
+        valid = false;
+      }
+      if (failureThreshold <= 0) {
+        logger.error("Invalid health check failure-threshold {}", failureThreshold);
+        valid = false;
+      }
+      if (successThreshold <= 0) {
+        logger.error("Invalid health check success-threshold {}", successThreshold);
+        valid = false;
+      }
+      return valid;
+    }
+
+    public boolean isEnabled() {
+      return enabled;
+    }
+
+    public int getInterval() {
+      return interval;
+    }
+
+    public int getJitter() {
+      return jitter;
+    }
+
+    public int getTimeout() {
+      return timeout;
+    }
+
+    public int getFailureThreshold() {
+      return failureThreshold;
+    }
+
+    public int getSuccessThreshold() {
+      return successThreshold;
+    }
+
+    @Override
+    public String toString() {
+      return "HealthCheck{"
+          + "enabled=" + enabled
+          + ", interval=" + interval
+          + ", jitter=" + jitter
+          + ", timeout=" + timeout
+          + ", failureThreshold=" + failureThreshold
+          + ", successThreshold=" + successThreshold
+          + '}';
+    }
+  }
+
+  /**
+   * The budget of the bytes waiting to be sent to each player, including those read from their
+   * current server and held back until they catch up. Reads from the server are paused once the
+   * player is over the write buffer high water mark, so the limits are derived from it: a player
+   * that merely can't keep up with their server stays close to it.
+   */
+  public static class OutboundMemory {
+
+    private static final int HIGH_WATER_MARK = ConnectionManager.SERVER_WRITE_MARK.high();
+
+    @Expose
+    private boolean enabled = false;
+    @Expose
+    private int softLimit = HIGH_WATER_MARK + HIGH_WATER_MARK / 2;
+    @Expose
+    private int hardLimit = 4 * HIGH_WATER_MARK;
+    @Expose
+    private int gracePeriod = 10000;
+    @Expose
+    private int checkInterval = 1000;
+
+    private OutboundMemory(CommentedConfig config) {
+      if (config != null) {
+        this.enabled = config.getOrElse("enabled", enabled);
+        this.softLimit = config.getIntOrElse("soft-limit", softLimit);
+        this.hardLimit = config.getIntOrElse("hard-limit", hardLimit);
+        this.gracePeriod = config.getIntOrElse("grace-period", gracePeriod);
+        this.checkInterval = config.getIntOrElse("check-interval", checkInterval);
+      }
+    }
+
+    private boolean validate() {
+      boolean valid = true;
+      if (softLimit <= 0) {
+        logger.error("Invalid outbound memory soft-limit {}", softLimit);
+        valid = false;
+      } else if (softLimit <= HIGH_WATER_MARK) {
+        logger.warn("The outbound memory soft-limit {} is not above the write buffer high water "
+            + "mark of {} bytes, players on slow connections will go over it", softLimit,
+            HIGH_WATER_MARK);
+      }
+      if (hardLimit < softLimit) {
+        logger.error("The outbound memory hard-limit {} is lower than the soft-limit {}",
+            hardLimit, softLimit);
+        valid = false;
+      }
+      if (gracePeriod < 0) {
+        logger.error("Invalid outbound memory grace-period {}ms", gracePeriod);
+        valid = false;
+      }
+      if (checkInterval <= 0) {
+        logger.error("Invalid outbound memory check-interval {}ms", checkInterval);
+        valid = false;
+      }
+      return valid;
+    }
+
+    public boolean isEnabled() {
+      return enabled;
+    }
+
+    public int getSoftLimit() {
+      return softLimit;
+    }
+
+    public int getHardLimit() {
+      return hardLimit;
+    }
+
+    public int getGracePeriod() {
+      return gracePeriod;
+    }
+
+    public int getCheckInterval() {
+      return checkInterval;
+    }
+
+    @Override
+    public String toString() {
+      return "OutboundMemory{"
+          + "enabled=" + enabled
+          + ", softLimit=" + softLimit
+          + ", hardLimit=" + hardLimit
+          + ", gracePeriod=" + gracePeriod
+          + ", checkInterval=" + checkInterval
+          + '}';
+    }
+  }
+
+  /**
+   * The budgets of the connection rate limiter.
+   */
+  public static class RateLimits {
+
+    @Expose
+    private int ipv4Prefix = 24;
+    @Expose
+    private int ipv6Prefix = 64;
+    // Only the login limit is enforced unless configured otherwise, as networks sharing an
+    // address (NAT, DDoS protection services without the PROXY protocol) would otherwise be cut off
+    @Expose
+    private RateLimitSettings connection = RateLimitSettings.DISABLED;
+    @Expose
+    private RateLimitSettings status = RateLimitSettings.DISABLED;
+    @Expose
+    private RateLimitSettings login;
+    @Expose
+    private RateLimitSettings query = RateLimitSettings.DISABLED;
+
+    private RateLimits(CommentedConfig config, int loginRatelimit) {
+      // Unless configured otherwise, a single address may log in once every login-ratelimit ms
+      this.login = new RateLimitSettings(loginRatelimit > 0 ? 1000.0 / loginRatelimit : 0, 1,
+          0, 1);
+      if (config != null) {
+        this.ipv4Prefix = config.getIntOrElse("ipv4-prefix", ipv4Prefix);
+        this.ipv6Prefix = config.getIntOrElse("ipv6-prefix", ipv6Prefix);
+        this.connection = RateLimitSettings.read(config, "connection", connection);
+        this.status = RateLimitSettings.read(config, "status", status);
+        this.login = RateLimitSettings.read(config, "login", login);
+        this.query = RateLimitSettings.read(config, "query", query);
+      }
+    }
+
+    private boolean validate() {
+      boolean valid = true;
+      if (ipv4Prefix < 0 || ipv4Prefix > 32) {
+        logger.error("Invalid ipv4-prefix {} in rate limits", ipv4Prefix);
+        valid = false;
+      }
+      if (ipv6Prefix < 0 || ipv6Prefix > 128) {
+        logger.error("Invalid ipv6-prefix {} in rate limits", ipv6Prefix);
+        valid = false;
+      }
+      valid &= connection.validate("connection");
+      valid &= status.validate("status");
+      valid &= login.validate("login");
+      valid &= query.validate("query");
+      return valid;
+    }
+
+    public int getIpv4Prefix() {
+      return ipv4Prefix;
+    }
+
+    public int getIpv6Prefix() {
+      return ipv6Prefix;
+    }
+
+    public RateLimitSettings getConnection() {
+      return connection;
+    }
+
+    public RateLimitSettings getStatus() {
+      return status;
+    }
+
+    public RateLimitSettings getLogin() {
+      return login;
+    }
+
+    public RateLimitSettings getQuery() {
+      return query;
+    }
+
+    @Override
+    public String toString() {
+      return "RateLimits{"
+          + "ipv4Prefix=" + ipv4Prefix
+          + ", ipv6Prefix=" + ipv6Prefix
+          + ", connection=" + connection
+          + ", status=" + status
+          + ", login=" + login
+          + ", query=" + query
+          + '}';
+    }
+  }
+
+  /**
+   * The budget of a single kind of traffic, both per address and per network.
+   */
+  public static class RateLimitSettings {
+
+    private static final RateLimitSettings DISABLED = new RateLimitSettings(0, 1, 0, 1);
+
+    @Expose
+    private double rate;
+    @Expose
+    private int burst;
+    @Expose
+    private double prefixRate;
+    @Expose
+    private int prefixBurst;
+
+    private RateLimitSettings(double rate, int burst, double prefixRate, int prefixBurst) {
+      this.rate = rate;
+      this.burst = burst;
+      this.prefixRate = prefixRate;
+      this.prefixBurst = prefixBurst;
+    }
+
+    private static RateLimitSettings read(UnmodifiableConfig config, String name,
+        RateLimitSettings defaults) {
+      Object value = config.get(name);
+      if (value == null) {
+        return defaults;
+      }
+      if (!(value instanceof UnmodifiableConfig)) {
+        throw new IllegalArgumentException("Rate limit " + name + " is not a table!");
+      }
+      UnmodifiableConfig table = (UnmodifiableConfig) value;
+      return new RateLimitSettings(
+          table.<Number>getOrElse("rate", defaults.rate).doubleValue(),
+          table.getIntOrElse("burst", defaults.burst),
+          table.<Number>getOrElse("prefix-rate", defaults.prefixRate).doubleValue(),
+          table.getIntOrElse("prefix-burst", defaults.prefixBurst));
+    }
+
+    private boolean validate(String name) {
+      boolean valid = true;
+      if (rate < 0 || prefixRate < 0) {
+        logger.error("Invalid rate in {} rate limit, rates must not be negative", name);
+        valid = false;
+      }
+      if (burst <= 0 || prefixBurst <= 0) {
+        logger.error("Invalid burst in {} rate limit, bursts must be positive", name);
+        valid = false;
+      }
+      return valid;
+    }
+
+    public double getRate() {
+      return rate;
+    }
+
+    public int getBurst() {
+      return burst;
+    }
+
+    public double getPrefixRate() {
+      return prefixRate;
+    }
+
+    public int getPrefixBurst() {
+      return prefixBurst;
+    }
+
+    @Override
+    public String toString() {
+      return "RateLimitSettings{"
+          + "rate=" + rate
+          + ", burst=" + burst
+          + ", prefixRate=" + prefixRate
+          + ", prefixBurst=" + prefixBurst
+          + '}';
+    }
+  }
+
   private static class Query {
 
     @Expose
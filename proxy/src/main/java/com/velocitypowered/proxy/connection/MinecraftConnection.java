@@ -21,10 +21,12 @@ import static com.velocitypowered.proxy.network.Connections.CIPHER_DECODER;
 import static com.velocitypowered.proxy.network.Connections.CIPHER_ENCODER;
 import static com.velocitypowered.proxy.network.Connections.COMPRESSION_DECODER;
 import static com.velocitypowered.proxy.network.Connections.COMPRESSION_ENCODER;
+import static com.velocitypowered.proxy.network.Connections.FLOW_HANDLER;
 import static com.velocitypowered.proxy.network.Connections.FRAME_DECODER;
 import static com.velocitypowered.proxy.network.Connections.FRAME_ENCODER;
 import static com.velocitypowered.proxy.network.Connections.MINECRAFT_DECODER;
 import static com.velocitypowered.proxy.network.Connections.MINECRAFT_ENCODER;
+import static com.velocitypowered.proxy.network.Connections.WRITE_COALESCER;
 
 import com.google.common.base.Preconditions;
 import com.velocitypowered.api.network.ProtocolVersion;
@@ -33,6 +35,8 @@ import com.velocitypowered.natives.encryption.VelocityCipher;
 import com.velocitypowered.natives.encryption.VelocityCipherFactory;
 import com.velocitypowered.natives.util.Natives;
 import com.velocitypowered.proxy.VelocityServer;
+import com.velocitypowered.proxy.config.PlayPacketQueueOverflow;
+import com.velocitypowered.proxy.config.VelocityConfiguration;
 import com.velocitypowered.proxy.connection.client.HandshakeSessionHandler;
 import com.velocitypowered.proxy.connection.client.InitialLoginSessionHandler;
 import com.velocitypowered.proxy.connection.client.StatusSessionHandler;
@@ -40,13 +44,20 @@ import com.velocitypowered.proxy.network.Connections;
 import com.velocitypowered.proxy.protocol.MinecraftPacket;
 import com.velocitypowered.proxy.protocol.StateRegistry;
 import com.velocitypowered.proxy.protocol.VelocityConnectionEvent;
+import com.velocitypowered.proxy.protocol.netty.AdaptiveCompression;
+import com.velocitypowered.proxy.protocol.netty.AutoReadHolderHandler;
+import com.velocitypowered.proxy.protocol.netty.ConnectionBuffers;
 import com.velocitypowered.proxy.protocol.netty.MinecraftCipherDecoder;
 import com.velocitypowered.proxy.protocol.netty.MinecraftCipherEncoder;
 import com.velocitypowered.proxy.protocol.netty.MinecraftCompressDecoder;
 import com.velocitypowered.proxy.protocol.netty.MinecraftCompressorAndLengthEncoder;
 import com.velocitypowered.proxy.protocol.netty.MinecraftDecoder;
 import com.velocitypowered.proxy.protocol.netty.MinecraftEncoder;
+import com.velocitypowered.proxy.protocol.netty.MinecraftFusedInboundDecoder;
+import com.velocitypowered.proxy.protocol.netty.MinecraftFusedOutboundEncoder;
 import com.velocitypowered.proxy.protocol.netty.MinecraftVarintLengthEncoder;
+import com.velocitypowered.proxy.protocol.netty.MinecraftWriteCoalescer;
+import com.velocitypowered.proxy.protocol.netty.PlayPacketQueue;
 import com.velocitypowered.proxy.protocol.netty.PlayPacketQueueInboundHandler;
 import com.velocitypowered.proxy.protocol.netty.PlayPacketQueueOutboundHandler;
 import com.velocitypowered.proxy.protocol.packet.SetCompressionPacket;
@@ -58,6 +69,7 @@ import io.netty.channel.ChannelFutureListener;
 import io.netty.channel.ChannelHandler;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelOutboundBuffer;
 import io.netty.channel.EventLoop;
 import io.netty.handler.codec.haproxy.HAProxyMessage;
 import io.netty.handler.timeout.ReadTimeoutException;
@@ -397,16 +409,71 @@ public class MinecraftConnection extends ChannelInboundHandlerAdapter {
    * Adds the play packet queue handler.
    */
   public void addPlayPacketQueueHandler() {
+    final VelocityConfiguration configuration = server.getConfiguration();
+    final int maxPackets = configuration.getConfigQueueMaxPackets();
+    final int maxBytes = configuration.getConfigQueueMaxBytes();
+    final boolean dropOldest =
+        configuration.getConfigQueueOverflow() == PlayPacketQueueOverflow.DROP_OLDEST;
     if (this.channel.pipeline().get(Connections.PLAY_PACKET_QUEUE_OUTBOUND) == null) {
       this.channel.pipeline().addAfter(Connections.MINECRAFT_ENCODER, Connections.PLAY_PACKET_QUEUE_OUTBOUND,
-           new PlayPacketQueueOutboundHandler(this.protocolVersion, channel.pipeline().get(MinecraftEncoder.class).getDirection()));
+           new PlayPacketQueueOutboundHandler(this.protocolVersion, channel.pipeline().get(MinecraftEncoder.class).getDirection(),
+               maxPackets, maxBytes, dropOldest));
     }
     if (this.channel.pipeline().get(Connections.PLAY_PACKET_QUEUE_INBOUND) == null) {
       this.channel.pipeline().addAfter(Connections.MINECRAFT_DECODER, Connections.PLAY_PACKET_QUEUE_INBOUND,
-           new PlayPacketQueueInboundHandler(this.protocolVersion, channel.pipeline().get(MinecraftDecoder.class).getDirection()));
+           new PlayPacketQueueInboundHandler(this.protocolVersion, channel.pipeline().get(MinecraftDecoder.class).getDirection(),
+               maxPackets, maxBytes, dropOldest));
     }
   }
 
+  /**
+   * Returns the queue of the PLAY packets held back from being sent while the connection is in the
+   * CONFIG state.
+   *
+   * @return the queue, or {@code null} if the connection is not in the CONFIG state
+   */
+  public @Nullable PlayPacketQueue getOutboundPlayPacketQueue() {
+    final ChannelHandler handler =
+        this.channel.pipeline().get(Connections.PLAY_PACKET_QUEUE_OUTBOUND);
+    return handler instanceof PlayPacketQueueOutboundHandler queueHandler
+        ? queueHandler.getQueue() : null;
+  }
+
+  /**
+   * Returns the number of bytes waiting to be sent on this connection: the bytes in the Netty
+   * outbound buffer, the packets packed by the write coalescer and the PLAY packets held back in
+   * the CONFIG state. May be called from any thread, in which case the result is an estimate.
+   *
+   * @return the number of pending outbound bytes
+   */
+  public long getPendingOutboundBytes() {
+    long bytes = 0;
+    final ChannelOutboundBuffer buffer = this.channel.unsafe().outboundBuffer();
+    if (buffer != null) {
+      bytes += buffer.totalPendingWriteBytes();
+    }
+    final ChannelHandler coalescer = this.channel.pipeline().get(WRITE_COALESCER);
+    if (coalescer instanceof MinecraftWriteCoalescer writeCoalescer) {
+      bytes += writeCoalescer.getPendingBytes();
+    }
+    final PlayPacketQueue queue = getOutboundPlayPacketQueue();
+    if (queue != null) {
+      bytes += queue.getBytes();
+    }
+    return bytes;
+  }
+
+  /**
+   * Returns the number of bytes read from this connection but held back while reading is paused,
+   * for instance because the player the data is for can't keep up. May be called from any thread.
+   *
+   * @return the number of held inbound bytes
+   */
+  public long getHeldInboundBytes() {
+    final ChannelHandler flow = this.channel.pipeline().get(FLOW_HANDLER);
+    return flow instanceof AutoReadHolderHandler holder ? holder.getQueuedBytes() : 0;
+  }
+
   public ProtocolVersion getProtocolVersion() {
     return protocolVersion;
   }
@@ -517,37 +584,79 @@ public class MinecraftConnection extends ChannelInboundHandlerAdapter {
     ensureOpen();
     ensureInEventLoop();
 
+    final MinecraftWriteCoalescer coalescer =
+        (MinecraftWriteCoalescer) channel.pipeline().get(WRITE_COALESCER);
+    if (coalescer != null) {
+      coalescer.setThreshold(threshold);
+    }
+
+    final MinecraftFusedInboundDecoder fused =
+        channel.pipeline().get(MinecraftFusedInboundDecoder.class);
+    final MinecraftFusedOutboundEncoder fusedEncoder =
+        channel.pipeline().get(MinecraftFusedOutboundEncoder.class);
     if (threshold == -1) {
       final ChannelHandler removedDecoder = channel.pipeline().remove(COMPRESSION_DECODER);
       final ChannelHandler removedEncoder = channel.pipeline().remove(COMPRESSION_ENCODER);
+      if (fused != null) {
+        fused.setCompression(-1, null);
+      }
 
       if (removedDecoder != null && removedEncoder != null) {
-        channel.pipeline().addBefore(MINECRAFT_DECODER, FRAME_ENCODER,
-            MinecraftVarintLengthEncoder.INSTANCE);
+        if (fusedEncoder != null) {
+          fusedEncoder.setCompression(null);
+        } else {
+          channel.pipeline().addBefore(MINECRAFT_DECODER, FRAME_ENCODER,
+              MinecraftVarintLengthEncoder.INSTANCE);
+        }
         channel.pipeline().fireUserEventTriggered(VelocityConnectionEvent.COMPRESSION_DISABLED);
       }
     } else {
-      MinecraftCompressDecoder decoder = (MinecraftCompressDecoder) channel.pipeline()
-          .get(COMPRESSION_DECODER);
-      MinecraftCompressorAndLengthEncoder encoder =
-          (MinecraftCompressorAndLengthEncoder) channel.pipeline().get(COMPRESSION_ENCODER);
+      ChannelHandler decoder = channel.pipeline().get(COMPRESSION_DECODER);
+      ChannelHandler encoder = channel.pipeline().get(COMPRESSION_ENCODER);
       if (decoder != null && encoder != null) {
-        decoder.setThreshold(threshold);
-        encoder.setThreshold(threshold);
+        if (fused != null) {
+          fused.setThreshold(threshold);
+        } else {
+          ((MinecraftCompressDecoder) decoder).setThreshold(threshold);
+        }
+        if (fusedEncoder != null) {
+          fusedEncoder.getCompression().setThreshold(threshold);
+        } else {
+          ((MinecraftCompressorAndLengthEncoder) encoder).setThreshold(threshold);
+        }
       } else {
         int level = server.getConfiguration().getCompressionLevel();
-        VelocityCompressor compressor = Natives.compress.get().create(level);
-
-        encoder = new MinecraftCompressorAndLengthEncoder(threshold, compressor);
-        decoder = new MinecraftCompressDecoder(threshold, compressor);
+        // Compressors are shared by every connection of the event loop, closing the encoder and
+        // the decoder only releases this connection's reference
+        VelocityCompressor compressor =
+            server.getCompressorPool().acquire(channel.eventLoop(), level);
+
+        AdaptiveCompression adaptive = server.getConfiguration().isAdaptiveCompression()
+            ? new AdaptiveCompression(server.getCompressorPool(), channel.eventLoop(), level)
+            : null;
+
+        encoder = new MinecraftCompressorAndLengthEncoder(threshold, compressor, adaptive);
+        if (fusedEncoder != null) {
+          fusedEncoder.setCompression((MinecraftCompressorAndLengthEncoder) encoder);
+          encoder = MinecraftFusedOutboundEncoder.PLACEHOLDER;
+        } else {
+          channel.pipeline().remove(FRAME_ENCODER);
+        }
+        if (fused != null) {
+          fused.setCompression(threshold, compressor);
+          decoder = MinecraftFusedInboundDecoder.PLACEHOLDER;
+        } else {
+          decoder = new MinecraftCompressDecoder(threshold, compressor);
+        }
 
-        channel.pipeline().remove(FRAME_ENCODER);
         channel.pipeline().addBefore(MINECRAFT_DECODER, COMPRESSION_DECODER, decoder);
-        channel.pipeline().addBefore(MINECRAFT_ENCODER, COMPRESSION_ENCODER, encoder);
+        channel.pipeline().addBefore(coalescer != null ? WRITE_COALESCER : MINECRAFT_ENCODER,
+            COMPRESSION_ENCODER, encoder);
 
         channel.pipeline().fireUserEventTriggered(VelocityConnectionEvent.COMPRESSION_ENABLED);
       }
     }
+    ConnectionBuffers.negotiate(channel);
   }
 
   /**
@@ -565,10 +674,35 @@ public class MinecraftConnection extends ChannelInboundHandlerAdapter {
     VelocityCipherFactory factory = Natives.cipher.get();
     VelocityCipher decryptionCipher = factory.forDecryption(key);
     VelocityCipher encryptionCipher = factory.forEncryption(key);
-    channel.pipeline()
-        .addBefore(FRAME_DECODER, CIPHER_DECODER, new MinecraftCipherDecoder(decryptionCipher));
-    channel.pipeline()
-        .addBefore(FRAME_ENCODER, CIPHER_ENCODER, new MinecraftCipherEncoder(encryptionCipher));
+    // Packets packed so far were written before encryption was enabled
+    final MinecraftWriteCoalescer coalescer =
+        (MinecraftWriteCoalescer) channel.pipeline().get(WRITE_COALESCER);
+    if (coalescer != null) {
+      coalescer.writePending();
+    }
+    final MinecraftFusedInboundDecoder fused =
+        channel.pipeline().get(MinecraftFusedInboundDecoder.class);
+    if (fused != null) {
+      fused.enableEncryption(decryptionCipher);
+      // The bytes are decrypted by the fused decoder, handlers placed after the cipher decoder
+      // must come after it
+      channel.pipeline()
+          .addAfter(FRAME_DECODER, CIPHER_DECODER, MinecraftFusedInboundDecoder.PLACEHOLDER);
+    } else {
+      channel.pipeline()
+          .addBefore(FRAME_DECODER, CIPHER_DECODER, new MinecraftCipherDecoder(decryptionCipher));
+    }
+    final MinecraftFusedOutboundEncoder fusedEncoder =
+        channel.pipeline().get(MinecraftFusedOutboundEncoder.class);
+    if (fusedEncoder != null) {
+      fusedEncoder.enableEncryption(encryptionCipher);
+      channel.pipeline()
+          .addBefore(FRAME_ENCODER, CIPHER_ENCODER, MinecraftFusedOutboundEncoder.PLACEHOLDER);
+    } else {
+      channel.pipeline()
+          .addBefore(FRAME_ENCODER, CIPHER_ENCODER, new MinecraftCipherEncoder(encryptionCipher));
+    }
+    ConnectionBuffers.negotiate(channel);
 
     channel.pipeline().fireUserEventTriggered(VelocityConnectionEvent.ENCRYPTION_ENABLED);
   }
@@ -0,0 +1,216 @@
+/*
+ * Copyright (C) 2024 Velocity Contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.velocitypowered.proxy.connection.backend;
+
+import com.google.gson.JsonObject;
+import com.velocitypowered.api.network.ProtocolVersion;
+import com.velocitypowered.proxy.config.VelocityConfiguration.FlushSettings;
+import com.velocitypowered.proxy.connection.MinecraftConnection;
+import com.velocitypowered.proxy.protocol.MinecraftPacket;
+import com.velocitypowered.proxy.protocol.ProtocolUtils;
+import com.velocitypowered.proxy.protocol.packet.KeepAlivePacket;
+import com.velocitypowered.proxy.protocol.packet.chat.SystemChatPacket;
+import com.velocitypowered.proxy.protocol.packet.chat.legacy.LegacyChatPacket;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelOutboundBuffer;
+import io.netty.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/**
+ * Decides when packets forwarded from a backend server should be flushed to the player. A flush
+ * is issued when a latency-sensitive packet (keep alives and chat messages) is forwarded, when too
+ * many packets or bytes are pending, or when a read from the backend completes and the configured
+ * delay has elapsed. Any flush cancels the pending deferred flush.
+ *
+ * <p>This class is confined to the event loop of the player's connection.</p>
+ */
+public final class AdaptiveFlushPolicy {
+
+  private static final LongAdder PACKETS = new LongAdder();
+  private static final LongAdder FLUSHES = new LongAdder();
+  private static final LongAdder EMPTY_FLUSHES = new LongAdder();
+  private static final LongAdder LATENCY_FLUSHES = new LongAdder();
+  private static final LongAdder THRESHOLD_FLUSHES = new LongAdder();
+  private static final LongAdder READ_FLUSHES = new LongAdder();
+  private static final LongAdder DEFERRED_FLUSHES = new LongAdder();
+
+  private final MinecraftConnection connection;
+  private final FlushSettings settings;
+  private final long maxDelayNanos;
+  private final int playerChatId;
+  private int packetsSinceFlush;
+  private long lastFlush;
+  private @Nullable ScheduledFuture<?> deferredFlush;
+
+  AdaptiveFlushPolicy(MinecraftConnection connection, FlushSettings settings) {
+    this.connection = connection;
+    this.settings = settings;
+    this.maxDelayNanos = settings.getMaxDelayNanos();
+    this.playerChatId = playerChatId(connection.getProtocolVersion());
+    this.lastFlush = System.nanoTime();
+  }
+
+  /**
+   * Called after a packet has been written to the player's connection.
+   *
+   * @param packet the packet
+   */
+  void written(MinecraftPacket packet) {
+    countWrite(isLatencySensitive(packet));
+  }
+
+  /**
+   * Called after a packet forwarded as raw bytes has been written to the player's connection.
+   *
+   * @param packetId the ID of the packet, see {@link #packetId(ByteBuf)}
+   */
+  void written(int packetId) {
+    countWrite(packetId == playerChatId);
+  }
+
+  private void countWrite(boolean latencySensitive) {
+    PACKETS.increment();
+    packetsSinceFlush++;
+    if (settings.isFlushLatencySensitive() && latencySensitive) {
+      flush(LATENCY_FLUSHES);
+    } else if (packetsSinceFlush >= settings.getMaxPackets()
+        || pendingBytes() >= settings.getMaxPendingBytes()) {
+      flush(THRESHOLD_FLUSHES);
+    }
+  }
+
+  /**
+   * Called once a read from the backend server has been completed.
+   */
+  void readCompleted() {
+    if (maxDelayNanos == 0 || !connection.getChannel().isWritable()) {
+      // Either coalescing is disabled, or the player is already backed up, in which case there
+      // is nothing to gain by holding on to the data any longer.
+      flush(READ_FLUSHES);
+      return;
+    }
+    if (packetsSinceFlush == 0 || deferredFlush != null) {
+      return;
+    }
+
+    long elapsed = System.nanoTime() - lastFlush;
+    if (elapsed >= maxDelayNanos) {
+      flush(READ_FLUSHES);
+    } else {
+      deferredFlush = connection.eventLoop().schedule(() -> {
+        deferredFlush = null;
+        flush(DEFERRED_FLUSHES);
+      }, maxDelayNanos - elapsed, TimeUnit.NANOSECONDS);
+    }
+  }
+
+  /**
+   * Cancels any pending deferred flush. Whatever was written so far is flushed immediately.
+   */
+  void release() {
+    if (deferredFlush != null) {
+      flush(DEFERRED_FLUSHES);
+    }
+  }
+
+  private void flush(LongAdder reason) {
+    if (deferredFlush != null) {
+      // Everything it was waiting for is flushed now
+      deferredFlush.cancel(false);
+      deferredFlush = null;
+    }
+    if (packetsSinceFlush == 0) {
+      EMPTY_FLUSHES.increment();
+    }
+    reason.increment();
+    FLUSHES.increment();
+    connection.flush();
+    packetsSinceFlush = 0;
+    lastFlush = System.nanoTime();
+  }
+
+  private long pendingBytes() {
+    Channel channel = connection.getChannel();
+    ChannelOutboundBuffer buffer = channel.unsafe().outboundBuffer();
+    return buffer == null ? 0 : buffer.totalPendingWriteBytes();
+  }
+
+  private static boolean isLatencySensitive(MinecraftPacket packet) {
+    return packet instanceof KeepAlivePacket
+        || packet instanceof SystemChatPacket
+        || packet instanceof LegacyChatPacket;
+  }
+
+  /**
+   * Reads the ID of a packet forwarded as raw bytes. This must be done before the packet is
+   * written, as it may be released once it has been.
+   *
+   * @param buf the packet, starting with its ID
+   * @return the ID of the packet
+   */
+  static int packetId(ByteBuf buf) {
+    return ProtocolUtils.readVarInt(buf.duplicate());
+  }
+
+  private static int playerChatId(ProtocolVersion version) {
+    // Chat messages sent by players are forwarded without being decoded since 1.19, so they
+    // can only be told apart by their ID
+    if (version.noLessThan(ProtocolVersion.MINECRAFT_1_21_2)) {
+      return 0x3B;
+    } else if (version.noLessThan(ProtocolVersion.MINECRAFT_1_20_5)) {
+      return 0x39;
+    } else if (version.noLessThan(ProtocolVersion.MINECRAFT_1_20_2)) {
+      return 0x37;
+    } else if (version.noLessThan(ProtocolVersion.MINECRAFT_1_19_4)) {
+      return 0x35;
+    } else if (version.noLessThan(ProtocolVersion.MINECRAFT_1_19_3)) {
+      return 0x31;
+    } else if (version.noLessThan(ProtocolVersion.MINECRAFT_1_19_1)) {
+      return 0x33;
+    } else if (version.noLessThan(ProtocolVersion.MINECRAFT_1_19)) {
+      return 0x30;
+    }
+    // Older versions send them as LegacyChatPacket
+    return -1;
+  }
+
+  /**
+   * Collects the flush counters of all connections for {@code /velocity dump}. Every flush that
+   * has data pending results in at least one write system call, so {@code flushes} minus
+   * {@code emptyFlushes} is a lower bound for the number of write calls issued.
+   *
+   * @return the flush counters
+   */
+  public static JsonObject collectStatistics() {
+    JsonObject reasons = new JsonObject();
+    reasons.addProperty("latencySensitive", LATENCY_FLUSHES.sum());
+    reasons.addProperty("threshold", THRESHOLD_FLUSHES.sum());
+    reasons.addProperty("readCompleted", READ_FLUSHES.sum());
+    reasons.addProperty("deferred", DEFERRED_FLUSHES.sum());
+
+    JsonObject statistics = new JsonObject();
+    statistics.addProperty("packets", PACKETS.sum());
+    statistics.addProperty("flushes", FLUSHES.sum());
+    statistics.addProperty("emptyFlushes", EMPTY_FLUSHES.sum());
+    statistics.add("reasons", reasons);
+    return statistics;
+  }
+}
@@ -0,0 +1,365 @@
+/*
+ * Copyright (C) 2024 Velocity Contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.velocitypowered.proxy.connection.backend;
+
+import com.google.gson.JsonObject;
+import com.velocitypowered.api.proxy.server.ServerInfo;
+import com.velocitypowered.proxy.VelocityServer;
+import com.velocitypowered.proxy.config.VelocityConfiguration.ConnectionPoolSettings;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.EventLoop;
+import io.netty.util.ReferenceCountUtil;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/**
+ * Keeps TCP connections to backend servers open in advance, so that connecting a player to a
+ * server doesn't have to wait for the TCP handshake.
+ *
+ * <p>Idle connections are kept per server and per event loop, and every pool is only touched from
+ * its own event loop, so no locking is needed. A pool is only filled once a player on that event
+ * loop has connected to the server. Idle connections are closed as soon as they are closed by the
+ * server or receive anything, and are replaced after a while so that the server doesn't time
+ * them out. The pools of a server are closed once it is unregistered, or once its pool is
+ * disabled.</p>
+ */
+public final class BackendConnectionPool {
+
+  private static final String IDLE_HANDLER = "pool-idle-handler";
+
+  private final VelocityServer server;
+  private final Map<Key, Pool> pools = new ConcurrentHashMap<>();
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+  private final LongAdder opened = new LongAdder();
+  private final LongAdder failed = new LongAdder();
+  private final LongAdder expired = new LongAdder();
+  private final LongAdder discarded = new LongAdder();
+  private final LongAdder raced = new LongAdder();
+
+  public BackendConnectionPool(VelocityServer server) {
+    this.server = server;
+  }
+
+  /**
+   * Takes an idle connection to the server, if there is one, and starts replacing it. Must be
+   * called on {@code eventLoop}.
+   *
+   * @param info the server to connect to
+   * @param eventLoop the event loop the connection will be used on
+   * @return an established connection with the backend pipeline installed, or {@code null}
+   */
+  public @Nullable Channel poll(ServerInfo info, EventLoop eventLoop) {
+    if (!eventLoop.inEventLoop()) {
+      return null;
+    }
+
+    ConnectionPoolSettings settings = getSettings(info);
+    Pool pool = settings.getSize() > 0
+        ? pools.computeIfAbsent(new Key(info, eventLoop), Pool::new)
+        : pools.get(new Key(info, eventLoop));
+    if (pool == null) {
+      misses.increment();
+      return null;
+    }
+
+    Channel channel;
+    while ((channel = pool.idle.pollFirst()) != null && !channel.isActive()) {
+      discarded.increment();
+    }
+    if (channel != null) {
+      channel.pipeline().remove(IDLE_HANDLER);
+      hits.increment();
+    } else {
+      misses.increment();
+    }
+    pool.fill(settings.getSize(), settings);
+    return channel;
+  }
+
+  /**
+   * Opens a connection to the server ahead of time, even if the pool is disabled for it, so that
+   * a player about to be transferred there can use it.
+   *
+   * @param info the server to connect to
+   * @param eventLoop the event loop of the player
+   */
+  public void prepare(ServerInfo info, EventLoop eventLoop) {
+    eventLoop.execute(() -> {
+      ConnectionPoolSettings settings = getSettings(info);
+      pools.computeIfAbsent(new Key(info, eventLoop), Pool::new)
+          .fill(Math.max(1, settings.getSize()), settings);
+    });
+  }
+
+  /**
+   * Connects to all the servers at once. The first connection to be established is added to the
+   * pool, so that {@link #poll(ServerInfo, EventLoop)} returns it, and the others are closed. If
+   * the player ends up going elsewhere, the connection must be given back with
+   * {@link #discard(ServerInfo, EventLoop, Channel)}. Must be called on {@code eventLoop}.
+   *
+   * @param candidates the servers to connect to
+   * @param eventLoop the event loop of the player
+   * @return a future completed with the server that accepted the connection first, or
+   *     {@code null} if none did
+   */
+  public CompletableFuture<@Nullable Raced> race(List<ServerInfo> candidates,
+      EventLoop eventLoop) {
+    CompletableFuture<@Nullable Raced> winner = new CompletableFuture<>();
+    List<Channel> attempts = new ArrayList<>(candidates.size());
+    int[] remaining = {candidates.size()};
+    for (int i = 0; i < candidates.size(); i++) {
+      final int index = i;
+      final ServerInfo info = candidates.get(i);
+      raced.increment();
+      ChannelFuture attempt = server.createBootstrap(eventLoop)
+          .handler(server.getBackendChannelInitializer())
+          .connect(info.getAddress());
+      attempts.add(attempt.channel());
+      attempt.addListener((ChannelFutureListener) future -> {
+        remaining[0]--;
+        if (future.isSuccess()) {
+          if (winner.complete(new Raced(index, future.channel()))) {
+            ConnectionPoolSettings settings = getSettings(info);
+            pools.computeIfAbsent(new Key(info, eventLoop), Pool::new)
+                .add(future.channel(), settings.getMaxIdle());
+            for (Channel other : attempts) {
+              if (other != future.channel()) {
+                // Also cancels connection attempts still in progress
+                other.close();
+              }
+            }
+          } else {
+            future.channel().close();
+          }
+        } else if (remaining[0] == 0) {
+          winner.complete(null);
+        }
+      });
+    }
+    return winner;
+  }
+
+  /**
+   * Closes a connection added to the pool by {@link #race(List, EventLoop)}, unless it has been
+   * taken from the pool already. Must be called on {@code eventLoop}.
+   *
+   * @param info the server the connection is to
+   * @param eventLoop the event loop of the player
+   * @param channel the connection
+   */
+  public void discard(ServerInfo info, EventLoop eventLoop, Channel channel) {
+    Pool pool = pools.get(new Key(info, eventLoop));
+    if (pool != null && pool.idle.remove(channel)) {
+      discarded.increment();
+      channel.close();
+    }
+  }
+
+  /**
+   * Closes the pools of the servers that are no longer registered, or whose pool has been
+   * disabled. Called whenever the configuration is reloaded.
+   */
+  public void reload() {
+    for (Map.Entry<Key, Pool> entry : pools.entrySet()) {
+      ServerInfo info = entry.getKey().info();
+      boolean registered = server.getServer(info.getName())
+          .filter(registeredServer -> registeredServer.getServerInfo().equals(info))
+          .isPresent();
+      if (!registered || getSettings(info).getSize() == 0) {
+        remove(entry.getKey(), entry.getValue());
+      }
+    }
+  }
+
+  /**
+   * Closes the pools of a server that has been unregistered.
+   *
+   * @param info the unregistered server
+   */
+  public void remove(ServerInfo info) {
+    for (Map.Entry<Key, Pool> entry : pools.entrySet()) {
+      if (entry.getKey().info().equals(info)) {
+        remove(entry.getKey(), entry.getValue());
+      }
+    }
+  }
+
+  private void remove(Key key, Pool pool) {
+    if (pools.remove(key, pool)) {
+      pool.eventLoop.execute(pool::close);
+    }
+  }
+
+  private ConnectionPoolSettings getSettings(ServerInfo info) {
+    return server.getConfiguration().getConnectionPoolSettings(info.getName());
+  }
+
+  /**
+   * Collects the counters of the pool for {@code /velocity dump}.
+   *
+   * @return the pool counters
+   */
+  public JsonObject collectStatistics() {
+    JsonObject statistics = new JsonObject();
+    statistics.addProperty("hits", hits.sum());
+    statistics.addProperty("misses", misses.sum());
+    statistics.addProperty("opened", opened.sum());
+    statistics.addProperty("failed", failed.sum());
+    statistics.addProperty("expired", expired.sum());
+    statistics.addProperty("discarded", discarded.sum());
+    statistics.addProperty("raced", raced.sum());
+    return statistics;
+  }
+
+  private record Key(ServerInfo info, EventLoop eventLoop) {
+  }
+
+  /**
+   * The connection that won a {@link #race(List, EventLoop)}.
+   *
+   * @param index the index of the server it is to
+   * @param channel the connection, waiting in the pool
+   */
+  public record Raced(int index, Channel channel) {
+  }
+
+  private final class Pool {
+
+    private final ServerInfo info;
+    private final EventLoop eventLoop;
+    private final Key key;
+    private final ArrayDeque<Channel> idle = new ArrayDeque<>();
+    private int opening;
+    private boolean closed;
+
+    private Pool(Key key) {
+      this.key = key;
+      this.info = key.info();
+      this.eventLoop = key.eventLoop();
+    }
+
+    private boolean isActive() {
+      return !closed && pools.get(key) == this;
+    }
+
+    private void fill(int size, ConnectionPoolSettings settings) {
+      if (!isActive()) {
+        return;
+      }
+      while (idle.size() + opening < size) {
+        open(settings.getMaxIdle());
+      }
+    }
+
+    private void open(long maxIdleMillis) {
+      opening++;
+      opened.increment();
+      server.createBootstrap(eventLoop)
+          .handler(server.getBackendChannelInitializer())
+          .connect(info.getAddress())
+          .addListener((ChannelFutureListener) future -> {
+            opening--;
+            if (!future.isSuccess()) {
+              // Don't retry, the pool is only refilled once it is used again
+              failed.increment();
+              return;
+            }
+            if (!isActive()) {
+              future.channel().close();
+              return;
+            }
+            add(future.channel(), maxIdleMillis);
+          });
+    }
+
+    private void add(Channel channel, long maxIdleMillis) {
+      channel.pipeline().addLast(IDLE_HANDLER, new IdleHandler(this));
+      idle.addLast(channel);
+      eventLoop.schedule(() -> expire(channel), maxIdleMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private void expire(Channel channel) {
+      if (!idle.remove(channel)) {
+        // Already taken or discarded
+        return;
+      }
+      expired.increment();
+      channel.close();
+      // Only refilled while the server is still registered and its pool enabled
+      ConnectionPoolSettings settings = getSettings(info);
+      fill(settings.getSize(), settings);
+    }
+
+    private void close() {
+      closed = true;
+      Channel channel;
+      while ((channel = idle.pollFirst()) != null) {
+        channel.close();
+      }
+    }
+
+    private void discard(Channel channel) {
+      if (idle.remove(channel)) {
+        discarded.increment();
+      }
+    }
+  }
+
+  /**
+   * Guards an idle connection: backend servers never send anything before the handshake, so any
+   * data or error means the connection can't be used anymore.
+   */
+  private static final class IdleHandler extends ChannelInboundHandlerAdapter {
+
+    private final Pool pool;
+
+    private IdleHandler(Pool pool) {
+      this.pool = pool;
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) {
+      pool.discard(ctx.channel());
+    }
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) {
+      ReferenceCountUtil.release(msg);
+      pool.discard(ctx.channel());
+      ctx.close();
+    }
+
+    @Override
+    public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+      pool.discard(ctx.channel());
+      ctx.close();
+    }
+  }
+}
@@ -92,16 +92,14 @@ public class BackendPlaySessionHandler implements MinecraftSessionHandler {
   private static final Logger logger = LogManager.getLogger(BackendPlaySessionHandler.class);
   private static final boolean BACKPRESSURE_LOG =
       Boolean.getBoolean("velocity.log-server-backpressure");
-  private static final int MAXIMUM_PACKETS_TO_FLUSH =
-      Integer.getInteger("velocity.max-packets-per-flush", 8192);
 
   private final VelocityServer server;
   private final VelocityServerConnection serverConn;
   private final ClientPlaySessionHandler playerSessionHandler;
   private final MinecraftConnection playerConnection;
   private final BungeeCordMessageResponder bungeecordMessageResponder;
+  private final AdaptiveFlushPolicy flushPolicy;
   private boolean exceptionTriggered = false;
-  private int packetsFlushed;
 
   BackendPlaySessionHandler(VelocityServer server, VelocityServerConnection serverConn) {
     this.server = server;
@@ -117,6 +115,8 @@ public class BackendPlaySessionHandler implements MinecraftSessionHandler {
 
     this.bungeecordMessageResponder = new BungeeCordMessageResponder(server,
         serverConn.getPlayer());
+    this.flushPolicy = new AdaptiveFlushPolicy(playerConnection, server.getConfiguration()
+        .getFlushSettings(serverConn.getServerInfo().getName()));
   }
 
   @Override
@@ -160,7 +160,7 @@ public class BackendPlaySessionHandler implements MinecraftSessionHandler {
 
   @Override
   public boolean handle(KeepAlivePacket packet) {
-    serverConn.getPendingPings().put(packet.getRandomId(), System.nanoTime());
+    serverConn.getPendingPings().add(packet.getRandomId(), System.nanoTime());
     return false; // forwards on
   }
 
@@ -474,25 +474,19 @@ public class BackendPlaySessionHandler implements MinecraftSessionHandler {
       ((PluginMessagePacket) packet).retain();
     }
     playerConnection.delayedWrite(packet);
-    if (++packetsFlushed >= MAXIMUM_PACKETS_TO_FLUSH) {
-      playerConnection.flush();
-      packetsFlushed = 0;
-    }
+    flushPolicy.written(packet);
   }
 
   @Override
   public void handleUnknown(ByteBuf buf) {
+    int packetId = AdaptiveFlushPolicy.packetId(buf);
     playerConnection.delayedWrite(buf.retain());
-    if (++packetsFlushed >= MAXIMUM_PACKETS_TO_FLUSH) {
-      playerConnection.flush();
-      packetsFlushed = 0;
-    }
+    flushPolicy.written(packetId);
   }
 
   @Override
   public void readCompleted() {
-    playerConnection.flush();
-    packetsFlushed = 0;
+    flushPolicy.readCompleted();
   }
 
   @Override
@@ -506,8 +500,14 @@ public class BackendPlaySessionHandler implements MinecraftSessionHandler {
     return server;
   }
 
+  @Override
+  public void deactivated() {
+    flushPolicy.release();
+  }
+
   @Override
   public void disconnected() {
+    flushPolicy.release();
     serverConn.getServer().removePlayer(serverConn.getPlayer());
     if (!serverConn.isGracefulDisconnect() && !exceptionTriggered) {
       if (server.getConfiguration().isFailoverOnUnexpectedServerDisconnect()) {
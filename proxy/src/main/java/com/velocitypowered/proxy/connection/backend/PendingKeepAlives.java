@@ -0,0 +1,133 @@
+/*
+ * Copyright (C) 2024 Velocity Contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.velocitypowered.proxy.connection.backend;
+
+import com.google.gson.JsonObject;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Tracks the keep alive packets a backend server has sent to a player that the player has not
+ * answered yet, along with the time they were sent. The IDs are kept in a ring buffer of
+ * primitives that starts small and grows as needed, so that the answers of a lagging client are
+ * still forwarded. Only past {@value #MAX_CAPACITY} unanswered keep alives, far more than any
+ * server waits for, is the oldest one forgotten.
+ *
+ * <p>This class is confined to the event loop of the player's connection.</p>
+ */
+public final class PendingKeepAlives {
+
+  /**
+   * Returned by {@link #remove(long)} when the keep alive is not pending.
+   */
+  public static final long NOT_FOUND = Long.MIN_VALUE;
+
+  private static final int INITIAL_CAPACITY = 8;
+  private static final int MAX_CAPACITY = 1024;
+  private static final LongAdder SENT = new LongAdder();
+  private static final LongAdder ANSWERED = new LongAdder();
+  private static final LongAdder UNKNOWN = new LongAdder();
+  private static final LongAdder EVICTED = new LongAdder();
+
+  private long[] ids = new long[INITIAL_CAPACITY];
+  private long[] sentAt = new long[INITIAL_CAPACITY];
+  private int head;
+  private int size;
+
+  /**
+   * Records that a keep alive was sent.
+   *
+   * @param id the ID of the keep alive
+   * @param sentAt the {@link System#nanoTime()} at which it was sent
+   */
+  public void add(long id, long sentAt) {
+    SENT.increment();
+    if (size == ids.length) {
+      if (size < MAX_CAPACITY) {
+        grow();
+      } else {
+        EVICTED.increment();
+        head = (head + 1) % ids.length;
+        size--;
+      }
+    }
+    int index = (head + size) % ids.length;
+    this.ids[index] = id;
+    this.sentAt[index] = sentAt;
+    size++;
+  }
+
+  private void grow() {
+    long[] grownIds = new long[ids.length * 2];
+    long[] grownSentAt = new long[ids.length * 2];
+    for (int i = 0; i < size; i++) {
+      int index = (head + i) % ids.length;
+      grownIds[i] = ids[index];
+      grownSentAt[i] = sentAt[index];
+    }
+    ids = grownIds;
+    sentAt = grownSentAt;
+    head = 0;
+  }
+
+  /**
+   * Removes a pending keep alive.
+   *
+   * @param id the ID of the keep alive
+   * @return the {@link System#nanoTime()} at which it was sent, or {@link #NOT_FOUND}
+   */
+  public long remove(long id) {
+    for (int i = 0; i < size; i++) {
+      int index = (head + i) % ids.length;
+      if (ids[index] != id) {
+        continue;
+      }
+
+      long result = sentAt[index];
+      // Shift the later entries down to keep the buffer contiguous
+      for (int j = i; j < size - 1; j++) {
+        int to = (head + j) % ids.length;
+        int from = (to + 1) % ids.length;
+        ids[to] = ids[from];
+        sentAt[to] = sentAt[from];
+      }
+      size--;
+      ANSWERED.increment();
+      return result;
+    }
+    UNKNOWN.increment();
+    return NOT_FOUND;
+  }
+
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Collects the keep alive counters of all connections for {@code /velocity dump}.
+   *
+   * @return the keep alive counters
+   */
+  public static JsonObject collectStatistics() {
+    JsonObject statistics = new JsonObject();
+    statistics.addProperty("sent", SENT.sum());
+    statistics.addProperty("answered", ANSWERED.sum());
+    statistics.addProperty("unknown", UNKNOWN.sum());
+    statistics.addProperty("evicted", EVICTED.sum());
+    return statistics;
+  }
+}
@@ -48,9 +48,10 @@ import com.velocitypowered.proxy.protocol.util.ByteBufDataOutput;
 import com.velocitypowered.proxy.server.VelocityRegisteredServer;
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
 import io.netty.channel.ChannelFutureListener;
-import java.util.HashMap;
-import java.util.Map;
+import io.netty.channel.EventLoop;
+import java.net.ConnectException;
 import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
 import org.checkerframework.checker.nullness.qual.Nullable;
@@ -69,7 +70,7 @@ public class VelocityServerConnection implements MinecraftConnectionAssociation,
   private boolean hasCompletedJoin = false;
   private boolean gracefulDisconnect = false;
   private BackendConnectionPhase connectionPhase = BackendConnectionPhases.UNKNOWN;
-  private final Map<Long, Long> pendingPings = new HashMap<>();
+  private final PendingKeepAlives pendingPings = new PendingKeepAlives();
 
   /**
    * Initializes a new server connection.
@@ -98,29 +99,31 @@ public class VelocityServerConnection implements MinecraftConnectionAssociation,
     CompletableFuture<Impl> result = new CompletableFuture<>();
     // Note: we use the event loop for the connection the player is on. This reduces context
     // switches.
-    server.createBootstrap(proxyPlayer.getConnection().eventLoop())
+    final EventLoop eventLoop = proxyPlayer.getConnection().eventLoop();
+    if (!registeredServer.getHealth().isAvailable()) {
+      // Don't make the player wait for the connection to time out
+      result.completeExceptionally(new ConnectException(
+          "Server " + registeredServer.getServerInfo().getName() + " is down"));
+      return result;
+    }
+    registeredServer.connectionStarted();
+    result.whenComplete((ignored, throwable) -> registeredServer.connectionFinished());
+    final Channel pooled = server.getBackendConnectionPool()
+        .poll(registeredServer.getServerInfo(), eventLoop);
+    if (pooled != null) {
+      onConnected(pooled, result);
+      return result;
+    }
+
+    server.createBootstrap(eventLoop)
         .handler(server.getBackendChannelInitializer())
         .connect(registeredServer.getServerInfo().getAddress())
         .addListener((ChannelFutureListener) future -> {
           if (future.isSuccess()) {
-            connection = new MinecraftConnection(future.channel(), server);
-            connection.setAssociation(VelocityServerConnection.this);
-            future.channel().pipeline().addLast(HANDLER, connection);
-
-            // Kick off the connection process
-            if (!connection.setActiveSessionHandler(StateRegistry.HANDSHAKE)) {
-              MinecraftSessionHandler handler =
-                  new LoginSessionHandler(server, VelocityServerConnection.this, result);
-              connection.setActiveSessionHandler(StateRegistry.HANDSHAKE, handler);
-              connection.addSessionHandler(StateRegistry.LOGIN, handler);
-            }
-
-            // Set the connection phase, which may, for future forge (or whatever), be
-            // determined
-            // at this point already
-            connectionPhase = connection.getType().getInitialBackendPhase();
-            startHandshake();
+            registeredServer.getHealth().recordSuccess(server.getConfiguration().getHealthCheck());
+            onConnected(future.channel(), result);
           } else {
+            registeredServer.getHealth().recordFailure(server.getConfiguration().getHealthCheck());
             // Complete the result immediately. ConnectedPlayer will reset the in-flight
             // connection.
             result.completeExceptionally(future.cause());
@@ -129,6 +132,26 @@ public class VelocityServerConnection implements MinecraftConnectionAssociation,
     return result;
   }
 
+  private void onConnected(Channel channel, CompletableFuture<Impl> result) {
+    connection = new MinecraftConnection(channel, server);
+    connection.setAssociation(VelocityServerConnection.this);
+    channel.pipeline().addLast(HANDLER, connection);
+
+    // Kick off the connection process
+    if (!connection.setActiveSessionHandler(StateRegistry.HANDSHAKE)) {
+      MinecraftSessionHandler handler =
+          new LoginSessionHandler(server, VelocityServerConnection.this, result);
+      connection.setActiveSessionHandler(StateRegistry.HANDSHAKE, handler);
+      connection.addSessionHandler(StateRegistry.LOGIN, handler);
+    }
+
+    // Set the connection phase, which may, for future forge (or whatever), be
+    // determined
+    // at this point already
+    connectionPhase = connection.getType().getInitialBackendPhase();
+    startHandshake();
+  }
+
   String getPlayerRemoteAddressAsString() {
     final String addr = proxyPlayer.getRemoteAddress().getAddress().getHostAddress();
     int ipv6ScopeIdx = addr.indexOf('%');
@@ -320,7 +343,7 @@ public class VelocityServerConnection implements MinecraftConnectionAssociation,
     return gracefulDisconnect;
   }
 
-  public Map<Long, Long> getPendingPings() {
+  public PendingKeepAlives getPendingPings() {
     return pendingPings;
   }
 
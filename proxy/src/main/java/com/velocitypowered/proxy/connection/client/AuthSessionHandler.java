@@ -49,6 +49,7 @@ import java.util.Objects;
 import java.util.Optional;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
 import net.kyori.adventure.text.Component;
 import net.kyori.adventure.text.format.NamedTextColor;
 import org.apache.logging.log4j.LogManager;
@@ -253,12 +254,21 @@ public class AuthSessionHandler implements MinecraftSessionHandler {
   }
 
   private CompletableFuture<Void> connectToInitialServer(ConnectedPlayer player) {
-    Optional<RegisteredServer> initialFromConfig = player.getNextServerToTry();
+    return CompletableFuture.supplyAsync(() -> player.raceNextServerToTry(null),
+            mcConnection.eventLoop())
+        .thenCompose(Function.identity())
+        .thenCompose(initialFromConfig -> fireChooseInitialServer(player, initialFromConfig));
+  }
+
+  private CompletableFuture<Void> fireChooseInitialServer(ConnectedPlayer player,
+      Optional<RegisteredServer> initialFromConfig) {
     PlayerChooseInitialServerEvent event =
         new PlayerChooseInitialServerEvent(player, initialFromConfig.orElse(null));
 
     return server.getEventManager().fire(event).thenRunAsync(() -> {
       Optional<RegisteredServer> toTry = event.getInitialServer();
+      // Close the connection to the server found by racing if a plugin chose another one
+      player.releaseRacedConnection(toTry.orElse(null));
       if (toTry.isEmpty()) {
         player.disconnect0(
             Component.translatable("velocity.error.no-available-servers", NamedTextColor.RED),
@@ -51,9 +51,11 @@ import com.velocitypowered.api.proxy.crypto.IdentifiedKey;
 import com.velocitypowered.api.proxy.crypto.KeyIdentifiable;
 import com.velocitypowered.api.proxy.messages.ChannelIdentifier;
 import com.velocitypowered.api.proxy.messages.PluginMessageEncoder;
+import com.velocitypowered.api.proxy.player.PingStatistics;
 import com.velocitypowered.api.proxy.player.PlayerSettings;
 import com.velocitypowered.api.proxy.player.ResourcePackInfo;
 import com.velocitypowered.api.proxy.server.RegisteredServer;
+import com.velocitypowered.api.proxy.server.ServerInfo;
 import com.velocitypowered.api.util.GameProfile;
 import com.velocitypowered.api.util.ModInfo;
 import com.velocitypowered.api.util.ServerLink;
@@ -62,6 +64,7 @@ import com.velocitypowered.proxy.VelocityServer;
 import com.velocitypowered.proxy.adventure.VelocityBossBarImplementation;
 import com.velocitypowered.proxy.connection.MinecraftConnection;
 import com.velocitypowered.proxy.connection.MinecraftConnectionAssociation;
+import com.velocitypowered.proxy.connection.backend.PendingKeepAlives;
 import com.velocitypowered.proxy.connection.backend.VelocityServerConnection;
 import com.velocitypowered.proxy.connection.player.bundle.BundleDelimiterHandler;
 import com.velocitypowered.proxy.connection.player.resourcepack.VelocityResourcePackInfo;
@@ -102,7 +105,9 @@ import com.velocitypowered.proxy.util.DurationUtils;
 import com.velocitypowered.proxy.util.TranslatableMapper;
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
 import java.net.InetSocketAddress;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
@@ -162,7 +167,9 @@ public class ConnectedPlayer implements MinecraftConnectionAssociation, Player,
   private GameProfile profile;
   private PermissionFunction permissionFunction;
   private int tryIndex = 0;
-  private long ping = -1;
+  private @Nullable RegisteredServer racedServer;
+  private @Nullable Channel racedChannel;
+  private final VelocityPingStatistics pingStatistics = new VelocityPingStatistics();
   private final boolean onlineMode;
   private @Nullable VelocityServerConnection connectedServer;
   private @Nullable VelocityServerConnection connectionInFlight;
@@ -176,6 +183,7 @@ public class ConnectedPlayer implements MinecraftConnectionAssociation, Player,
   private ClientConnectionPhase connectionPhase;
   private final CompletableFuture<Void> teardownFuture = new CompletableFuture<>();
   private @MonotonicNonNull List<String> serversToTry = null;
+  private final Set<String> balancedServersTried = new HashSet<>();
   private final ResourcePackHandler resourcePackHandler;
   private final BundleDelimiterHandler bundleHandler = new BundleDelimiterHandler(this);
 
@@ -310,11 +318,12 @@ public class ConnectedPlayer implements MinecraftConnectionAssociation, Player,
 
   @Override
   public long getPing() {
-    return this.ping;
+    return pingStatistics.getSmoothed();
   }
 
-  void setPing(long ping) {
-    this.ping = ping;
+  @Override
+  public PingStatistics getPingStatistics() {
+    return pingStatistics;
   }
 
   @Override
@@ -756,21 +765,33 @@ public class ConnectedPlayer implements MinecraftConnectionAssociation, Player,
     }
 
     boolean kickedFromCurrent = connectedServer == null || connectedServer.getServer().equals(rs);
-    ServerKickResult result;
     if (kickedFromCurrent) {
-      Optional<RegisteredServer> next = getNextServerToTry(rs);
-      result =
-          next.map(RedirectPlayer::create).orElseGet(() -> DisconnectPlayer.create(friendlyReason));
+      CompletableFuture<Optional<RegisteredServer>> next = raceNextServerToTry(rs);
+      if (next.isDone()) {
+        handleKickToNextServer(rs, kickReason, friendlyReason, next.join());
+      } else {
+        next.thenAcceptAsync(
+            nextServer -> handleKickToNextServer(rs, kickReason, friendlyReason, nextServer),
+            connection.eventLoop());
+      }
     } else {
       // If we were kicked by going to another server, the connection should not be in flight
       if (connectionInFlight != null && connectionInFlight.getServer().equals(rs)) {
         resetInFlightConnection();
       }
-      result = Notify.create(friendlyReason);
+      KickedFromServerEvent originalEvent = new KickedFromServerEvent(this, rs, kickReason,
+          true, Notify.create(friendlyReason));
+      handleKickEvent(originalEvent, friendlyReason, false);
     }
+  }
+
+  private void handleKickToNextServer(RegisteredServer rs, @Nullable Component kickReason,
+                                      Component friendlyReason, Optional<RegisteredServer> next) {
+    ServerKickResult result =
+        next.map(RedirectPlayer::create).orElseGet(() -> DisconnectPlayer.create(friendlyReason));
     KickedFromServerEvent originalEvent = new KickedFromServerEvent(this, rs, kickReason,
-        !kickedFromCurrent, result);
-    handleKickEvent(originalEvent, friendlyReason, kickedFromCurrent);
+        false, result);
+    handleKickEvent(originalEvent, friendlyReason, true);
   }
 
   private void handleKickEvent(KickedFromServerEvent originalEvent, Component friendlyReason,
@@ -778,6 +799,8 @@ public class ConnectedPlayer implements MinecraftConnectionAssociation, Player,
     server.getEventManager().fire(originalEvent).thenAcceptAsync(event -> {
       // There can't be any connection in flight now.
       connectionInFlight = null;
+      releaseRacedConnection(event.getResult() instanceof RedirectPlayer redirect
+          ? redirect.getServer() : null);
 
       // Make sure we clear the current connected server as the connection is invalid.
       VelocityServerConnection previousConnection = connectedServer;
@@ -886,6 +909,10 @@ public class ConnectedPlayer implements MinecraftConnectionAssociation, Player,
       }
     }
 
+    if (!server.getServerBalancer().isOrdered()) {
+      return selectServerToTry(current);
+    }
+
     for (int i = tryIndex; i < serversToTry.size(); i++) {
       String toTryName = serversToTry.get(i);
       if ((connectedServer != null && hasSameName(connectedServer.getServer(), toTryName))
@@ -893,13 +920,116 @@ public class ConnectedPlayer implements MinecraftConnectionAssociation, Player,
           || (current != null && hasSameName(current, toTryName))) {
         continue;
       }
+      Optional<RegisteredServer> toTry = server.getServer(toTryName);
+      if (toTry.isPresent() && !toTry.get().getHealth().isAvailable()) {
+        continue;
+      }
 
       tryIndex = i;
-      return server.getServer(toTryName);
+      return toTry;
     }
     return Optional.empty();
   }
 
+  /**
+   * Lets the configured balancer choose among the servers to try that haven't been tried yet since
+   * the player last connected to a server.
+   */
+  private Optional<RegisteredServer> selectServerToTry(@Nullable RegisteredServer current) {
+    List<VelocityRegisteredServer> candidates = new ArrayList<>(serversToTry.size());
+    for (String toTryName : serversToTry) {
+      if (balancedServersTried.contains(toTryName.toLowerCase(Locale.ROOT))
+          || (connectedServer != null && hasSameName(connectedServer.getServer(), toTryName))
+          || (connectionInFlight != null && hasSameName(connectionInFlight.getServer(), toTryName))
+          || (current != null && hasSameName(current, toTryName))) {
+        continue;
+      }
+      server.getServer(toTryName)
+          .filter(candidate -> candidate.getHealth().isAvailable())
+          .ifPresent(candidate -> candidates.add((VelocityRegisteredServer) candidate));
+    }
+
+    VelocityRegisteredServer selected = server.getServerBalancer().select(candidates);
+    if (selected == null) {
+      return Optional.empty();
+    }
+    balancedServersTried.add(selected.getServerInfo().getName().toLowerCase(Locale.ROOT));
+    return Optional.of(selected);
+  }
+
+  /**
+   * Finds the next server to attempt to log into, like {@link #getNextServerToTry()}. If
+   * {@code try-race-size} is enabled, the next few servers are connected to at once, and the first
+   * one to accept the connection is chosen; the established connection is then used when the
+   * player connects to it. Must be called on the event loop of the player.
+   *
+   * @param current the "current" server that the player is on, useful as an override
+   * @return a future completed with the next server to try
+   */
+  public CompletableFuture<Optional<RegisteredServer>> raceNextServerToTry(
+      @Nullable RegisteredServer current) {
+    Optional<RegisteredServer> next = getNextServerToTry(current);
+    int raceSize = server.getConfiguration().getTryRaceSize();
+    if (raceSize <= 1 || next.isEmpty() || !connection.eventLoop().inEventLoop()
+        || !server.getServerBalancer().isOrdered()) {
+      return CompletableFuture.completedFuture(next);
+    }
+
+    List<RegisteredServer> candidates = new ArrayList<>(raceSize);
+    List<Integer> candidateIndexes = new ArrayList<>(raceSize);
+    for (int i = tryIndex; i < serversToTry.size() && candidates.size() < raceSize; i++) {
+      String toTryName = serversToTry.get(i);
+      if ((connectedServer != null && hasSameName(connectedServer.getServer(), toTryName))
+          || (connectionInFlight != null && hasSameName(connectionInFlight.getServer(), toTryName))
+          || (current != null && hasSameName(current, toTryName))) {
+        continue;
+      }
+      Optional<RegisteredServer> candidate = server.getServer(toTryName);
+      if (candidate.isPresent() && candidate.get().getHealth().isAvailable()) {
+        candidates.add(candidate.get());
+        candidateIndexes.add(i);
+      }
+    }
+    if (candidates.size() <= 1) {
+      return CompletableFuture.completedFuture(next);
+    }
+
+    List<ServerInfo> infos = new ArrayList<>(candidates.size());
+    for (RegisteredServer candidate : candidates) {
+      infos.add(candidate.getServerInfo());
+    }
+    return server.getBackendConnectionPool().race(infos, connection.eventLoop())
+        .thenApply(winner -> {
+          if (winner == null) {
+            // None of them is reachable, let the first one fail as usual
+            return next;
+          }
+          tryIndex = candidateIndexes.get(winner.index());
+          releaseRacedConnection(null);
+          racedServer = candidates.get(winner.index());
+          racedChannel = winner.channel();
+          return Optional.of(racedServer);
+        });
+  }
+
+  /**
+   * Gives back the connection established by {@link #raceNextServerToTry(RegisteredServer)} once
+   * plugins have chosen where to send the player, unless they kept the raced server. Must be
+   * called on the event loop of the player.
+   *
+   * @param chosen the server the player is sent to, or {@code null} if they are not sent anywhere
+   */
+  void releaseRacedConnection(@Nullable RegisteredServer chosen) {
+    RegisteredServer raced = racedServer;
+    Channel channel = racedChannel;
+    racedServer = null;
+    racedChannel = null;
+    if (raced != null && channel != null && !raced.equals(chosen)) {
+      server.getBackendConnectionPool().discard(raced.getServerInfo(), connection.eventLoop(),
+          channel);
+    }
+  }
+
   private static boolean hasSameName(RegisteredServer server, String name) {
     return server.getServerInfo().getName().equalsIgnoreCase(name);
   }
@@ -912,6 +1042,7 @@ public class ConnectedPlayer implements MinecraftConnectionAssociation, Player,
   public void setConnectedServer(@Nullable VelocityServerConnection serverConnection) {
     this.connectedServer = serverConnection;
     this.tryIndex = 0; // reset since we got connected to a server
+    this.balancedServersTried.clear();
 
     if (serverConnection == connectionInFlight) {
       connectionInFlight = null;
@@ -1281,11 +1412,11 @@ public class ConnectedPlayer implements MinecraftConnectionAssociation, Player,
 
   private boolean sendKeepAliveToBackend(final @Nullable VelocityServerConnection serverConnection, final @NotNull KeepAlivePacket packet) {
     if (serverConnection != null) {
-      final Long sentTime = serverConnection.getPendingPings().remove(packet.getRandomId());
-      if (sentTime != null) {
+      final long sentTime = serverConnection.getPendingPings().remove(packet.getRandomId());
+      if (sentTime != PendingKeepAlives.NOT_FOUND) {
         final MinecraftConnection smc = serverConnection.getConnection();
         if (smc != null) {
-          setPing(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - sentTime));
+          pingStatistics.record(System.nanoTime() - sentTime);
           smc.write(packet);
           return true;
         }
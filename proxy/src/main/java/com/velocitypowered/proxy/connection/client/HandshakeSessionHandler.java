@@ -33,14 +33,15 @@ import com.velocitypowered.proxy.connection.forge.legacy.LegacyForgeConstants;
 import com.velocitypowered.proxy.connection.forge.modern.ModernForgeConnectionType;
 import com.velocitypowered.proxy.connection.forge.modern.ModernForgeConstants;
 import com.velocitypowered.proxy.connection.util.VelocityInboundConnection;
+import com.velocitypowered.proxy.network.ServerChannelInitializer;
 import com.velocitypowered.proxy.protocol.MinecraftPacket;
 import com.velocitypowered.proxy.protocol.StateRegistry;
 import com.velocitypowered.proxy.protocol.packet.HandshakePacket;
 import com.velocitypowered.proxy.protocol.packet.LegacyDisconnect;
 import com.velocitypowered.proxy.protocol.packet.LegacyHandshakePacket;
 import com.velocitypowered.proxy.protocol.packet.LegacyPingPacket;
+import com.velocitypowered.proxy.util.ratelimit.ConnectionRatelimiter.Rule;
 import io.netty.buffer.ByteBuf;
-import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.util.Optional;
 import net.kyori.adventure.text.Component;
@@ -68,6 +69,10 @@ public class HandshakeSessionHandler implements MinecraftSessionHandler {
 
   @Override
   public boolean handle(LegacyPingPacket packet) {
+    if (!attemptProxiedConnection() || !attempt(Rule.STATUS)) {
+      connection.close(true);
+      return true;
+    }
     connection.setProtocolVersion(ProtocolVersion.LEGACY);
     final StatusSessionHandler handler =
         new StatusSessionHandler(server, new LegacyInboundConnection(connection, packet));
@@ -87,6 +92,10 @@ public class HandshakeSessionHandler implements MinecraftSessionHandler {
 
   @Override
   public boolean handle(final HandshakePacket handshake) {
+    if (!attemptProxiedConnection()) {
+      connection.close(true);
+      return true;
+    }
     final StateRegistry nextState = getStateForProtocol(handshake.getNextStatus());
     if (nextState == null) {
       LOGGER.error("{} provided invalid protocol {}", this, handshake.getNextStatus());
@@ -103,9 +112,18 @@ public class HandshakeSessionHandler implements MinecraftSessionHandler {
       connection.setAssociation(ic);
 
       switch (nextState) {
-        case STATUS -> connection.setActiveSessionHandler(StateRegistry.STATUS,
+        case STATUS -> {
+          if (!attempt(Rule.STATUS)) {
+            connection.close(true);
+            return true;
+          }
+          connection.setActiveSessionHandler(StateRegistry.STATUS,
               new StatusSessionHandler(server, ic));
-        case LOGIN -> this.handleLogin(handshake, ic);
+        }
+        case LOGIN -> {
+          ServerChannelInitializer.addLoginHandlers(connection.getChannel());
+          this.handleLogin(handshake, ic);
+        }
         default ->
           // If you get this, it's a bug in Velocity.
           throw new AssertionError("getStateForProtocol provided invalid state!");
@@ -115,6 +133,19 @@ public class HandshakeSessionHandler implements MinecraftSessionHandler {
     return true;
   }
 
+  private boolean attemptProxiedConnection() {
+    // Behind a proxy speaking the PROXY protocol, the connection limit can't be applied when the
+    // connection is accepted, only once the PROXY header has told us the address of the player
+    return !server.getConfiguration().isProxyProtocol() || attempt(Rule.CONNECTION);
+  }
+
+  private boolean attempt(Rule rule) {
+    if (!(connection.getRemoteAddress() instanceof InetSocketAddress remoteAddress)) {
+      return true;
+    }
+    return server.getConnectionRatelimiter().attempt(rule, remoteAddress.getAddress());
+  }
+
   private static @Nullable StateRegistry getStateForProtocol(int status) {
     return switch (status) {
       case StateRegistry.STATUS_ID -> StateRegistry.STATUS;
@@ -134,8 +165,7 @@ public class HandshakeSessionHandler implements MinecraftSessionHandler {
       return;
     }
 
-    final InetAddress address = ((InetSocketAddress) connection.getRemoteAddress()).getAddress();
-    if (!server.getIpAttemptLimiter().attempt(address)) {
+    if (!attempt(Rule.LOGIN)) {
       // Bump connection into correct protocol state so that we can send the disconnect packet.
       connection.setState(StateRegistry.LOGIN);
       ic.disconnectQuietly(Component.translatable("velocity.error.logging-in-too-fast"));
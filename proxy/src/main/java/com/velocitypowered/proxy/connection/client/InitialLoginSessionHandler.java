@@ -34,6 +34,7 @@ import com.velocitypowered.proxy.VelocityServer;
 import com.velocitypowered.proxy.connection.MinecraftConnection;
 import com.velocitypowered.proxy.connection.MinecraftSessionHandler;
 import com.velocitypowered.proxy.crypto.IdentifiedKeyImpl;
+import com.velocitypowered.proxy.network.SessionServerClient;
 import com.velocitypowered.proxy.protocol.StateRegistry;
 import com.velocitypowered.proxy.protocol.netty.MinecraftDecoder;
 import com.velocitypowered.proxy.protocol.packet.EncryptionRequestPacket;
@@ -44,21 +45,23 @@ import com.velocitypowered.proxy.util.VelocityProperties;
 import io.netty.buffer.ByteBuf;
 import java.net.InetSocketAddress;
 import java.net.URI;
-import java.net.http.HttpClient;
-import java.net.http.HttpRequest;
-import java.net.http.HttpResponse;
 import java.security.GeneralSecurityException;
 import java.security.KeyPair;
 import java.security.MessageDigest;
 import java.util.Arrays;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeoutException;
 import java.util.function.BiConsumer;
 import net.kyori.adventure.text.Component;
 import net.kyori.adventure.text.format.NamedTextColor;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
+import org.checkerframework.checker.nullness.qual.Nullable;
 
 /**
  * Handles authenticating the player to Mojang's servers.
@@ -78,6 +81,7 @@ public class InitialLoginSessionHandler implements MinecraftSessionHandler {
   private byte[] verify = EMPTY_BYTE_ARRAY;
   private LoginState currentState = LoginState.LOGIN_PACKET_EXPECTED;
   private final boolean forceKeyAuthentication;
+  private @Nullable CompletableFuture<?> pendingCrypto;
 
   InitialLoginSessionHandler(VelocityServer server, MinecraftConnection mcConnection,
                              LoginInboundConnection inbound) {
@@ -100,24 +104,41 @@ public class InitialLoginSessionHandler implements MinecraftSessionHandler {
         return true;
       }
 
-      boolean isKeyValid;
-      if (playerKey.getKeyRevision() == IdentifiedKey.Revision.LINKED_V2
-          && playerKey instanceof final IdentifiedKeyImpl keyImpl) {
-        isKeyValid = keyImpl.internalAddHolder(packet.getHolderUuid());
-      } else {
-        isKeyValid = playerKey.isSignatureValid();
-      }
-
-      if (!isKeyValid) {
-        inbound.disconnect(Component.translatable("multiplayer.disconnect.invalid_public_key"));
-        return true;
-      }
+      // Verifying the key signature is expensive, so it is done on the crypto workers.
+      CompletableFuture<Boolean> keyValidation = server.getCryptoWorkers().submit(() -> {
+        if (playerKey.getKeyRevision() == IdentifiedKey.Revision.LINKED_V2
+            && playerKey instanceof final IdentifiedKeyImpl keyImpl) {
+          return keyImpl.internalAddHolder(packet.getHolderUuid());
+        } else {
+          return playerKey.isSignatureValid();
+        }
+      }, mcConnection.eventLoop());
+      this.pendingCrypto = keyValidation;
+      keyValidation.whenCompleteAsync((isKeyValid, throwable) -> {
+        if (mcConnection.isClosed()) {
+          // The player was disconnected
+          return;
+        }
+        if (throwable != null) {
+          handleCryptoFailure(throwable);
+        } else if (!isKeyValid) {
+          inbound.disconnect(Component.translatable("multiplayer.disconnect.invalid_public_key"));
+        } else {
+          firePreLogin(packet, playerKey);
+        }
+      }, mcConnection.eventLoop());
+      return true;
     } else if (mcConnection.getProtocolVersion().noLessThan(ProtocolVersion.MINECRAFT_1_19)
         && forceKeyAuthentication
         && mcConnection.getProtocolVersion().lessThan(ProtocolVersion.MINECRAFT_1_19_3)) {
       inbound.disconnect(Component.translatable("multiplayer.disconnect.missing_public_key"));
       return true;
     }
+    firePreLogin(packet, null);
+    return true;
+  }
+
+  private void firePreLogin(ServerLoginPacket packet, @Nullable IdentifiedKey playerKey) {
     inbound.setPlayerKey(playerKey);
     this.login = packet;
 
@@ -161,8 +182,6 @@ public class InitialLoginSessionHandler implements MinecraftSessionHandler {
       logger.error("Exception in pre-login stage", ex);
       return null;
     });
-
-    return true;
   }
 
   @Override
@@ -184,131 +203,147 @@ public class InitialLoginSessionHandler implements MinecraftSessionHandler {
       throw new IllegalStateException("No EncryptionRequest packet sent yet.");
     }
 
-    try {
-      KeyPair serverKeyPair = server.getServerKeyPair();
-      if (inbound.getIdentifiedKey() != null) {
-        IdentifiedKey playerKey = inbound.getIdentifiedKey();
-        if (!playerKey.verifyDataSignature(packet.getVerifyToken(), verify,
+    // The RSA operations are expensive, so they are done on the crypto workers.
+    final KeyPair serverKeyPair = server.getServerKeyPair();
+    final IdentifiedKey playerKey = inbound.getIdentifiedKey();
+    final byte[] expectedVerify = this.verify;
+    CompletableFuture<LoginSecret> decryption = server.getCryptoWorkers().submit(() -> {
+      if (playerKey != null) {
+        if (!playerKey.verifyDataSignature(packet.getVerifyToken(), expectedVerify,
             Longs.toByteArray(packet.getSalt()))) {
           throw new IllegalStateException("Invalid client public signature.");
         }
       } else {
         byte[] decryptedVerifyToken = decryptRsa(serverKeyPair, packet.getVerifyToken());
-        if (!MessageDigest.isEqual(verify, decryptedVerifyToken)) {
+        if (!MessageDigest.isEqual(expectedVerify, decryptedVerifyToken)) {
           throw new IllegalStateException("Unable to successfully decrypt the verification token.");
         }
       }
 
       byte[] decryptedSharedSecret = decryptRsa(serverKeyPair, packet.getSharedSecret());
-      String serverId = generateServerId(decryptedSharedSecret, serverKeyPair.getPublic());
-
-      String playerIp = ((InetSocketAddress) mcConnection.getRemoteAddress()).getHostString();
-      String url = String.format(MOJANG_HASJOINED_URL,
-          urlFormParameterEscaper().escape(login.getUsername()), serverId);
-
-      if (server.getConfiguration().shouldPreventClientProxyConnections()) {
-        url += "&ip=" + urlFormParameterEscaper().escape(playerIp);
+      return new LoginSecret(decryptedSharedSecret,
+          generateServerId(decryptedSharedSecret, serverKeyPair.getPublic()));
+    }, mcConnection.eventLoop());
+    this.pendingCrypto = decryption;
+    decryption.whenCompleteAsync((secret, throwable) -> {
+      if (mcConnection.isClosed()) {
+        // The player was disconnected
+        return;
+      }
+      if (throwable != null) {
+        handleCryptoFailure(throwable);
+      } else {
+        authenticate(login, secret.sharedSecret(), secret.serverId());
       }
+    }, mcConnection.eventLoop());
+    return true;
+  }
 
-      final HttpRequest httpRequest = HttpRequest.newBuilder()
-              .setHeader("User-Agent",
-                      server.getVersion().getName() + "/" + server.getVersion().getVersion())
-              .uri(URI.create(url))
-              .build();
-      final HttpClient httpClient = server.createHttpClient();
-
-      // [fallen's fork] mojang auth proxy: make the request progress reuseable
-      @SuppressWarnings("unchecked") final BiConsumer<HttpClient, Boolean>[] requester = new BiConsumer[1];
-      requester[0] = (client, retryable) ->
-        client.sendAsync(httpRequest, HttpResponse.BodyHandlers.ofString())
-          .whenCompleteAsync((response, throwable) -> {
-            if (mcConnection.isClosed()) {
-              // The player disconnected after we authenticated them.
-              return;
-            }
+  private void authenticate(ServerLoginPacket login, byte[] decryptedSharedSecret,
+      String serverId) {
+    String playerIp = ((InetSocketAddress) mcConnection.getRemoteAddress()).getHostString();
+    String url = String.format(MOJANG_HASJOINED_URL,
+        urlFormParameterEscaper().escape(login.getUsername()), serverId);
 
-            if (throwable != null) {
-              // [fallen's fork] mojang auth proxy: fail-able with proxy mode
-              if (retryable) {
-                logger.error("Unable to authenticate player (proxied), try without", throwable);
-                requester[0].accept(httpClient, false);
-                return;
-              }
+    if (server.getConfiguration().shouldPreventClientProxyConnections()) {
+      url += "&ip=" + urlFormParameterEscaper().escape(playerIp);
+    }
 
-              logger.error("Unable to authenticate player", throwable);
-              inbound.disconnect(Component.translatable("multiplayer.disconnect.authservers_down"));
-              return;
-            }
+    final URI uri = URI.create(url);
+    final SessionServerClient sessionServer = server.getSessionServer();
+
+    // [fallen's fork] mojang auth proxy: make the request progress reuseable
+    @SuppressWarnings("unchecked") final BiConsumer<SessionServerClient, Boolean>[] requester = new BiConsumer[1];
+    requester[0] = (client, retryable) ->
+      client.hasJoined(uri)
+        .whenCompleteAsync((response, throwable) -> {
+          if (mcConnection.isClosed()) {
+            // The player disconnected after we authenticated them.
+            return;
+          }
 
-            // Go ahead and enable encryption. Once the client sends EncryptionResponse, encryption
-            // is enabled.
-            try {
-              mcConnection.enableEncryption(decryptedSharedSecret);
-            } catch (GeneralSecurityException e) {
-              logger.error("Unable to enable encryption for connection", e);
-              // At this point, the connection is encrypted, but something's wrong on our side and
-              // we can't do anything about it.
-              mcConnection.close(true);
+          if (throwable != null) {
+            // [fallen's fork] mojang auth proxy: fail-able with proxy mode
+            if (retryable) {
+              logger.error("Unable to authenticate player (proxied), try without", throwable);
+              requester[0].accept(sessionServer, false);
               return;
             }
 
-            if (response.statusCode() == 200) {
-              final GameProfile profile = GENERAL_GSON.fromJson(response.body(),
-                  GameProfile.class);
-              // Not so fast, now we verify the public key for 1.19.1+
-              if (inbound.getIdentifiedKey() != null
-                  && inbound.getIdentifiedKey().getKeyRevision() == IdentifiedKey.Revision.LINKED_V2
-                  && inbound.getIdentifiedKey() instanceof final IdentifiedKeyImpl key) {
-                if (!key.internalAddHolder(profile.getId())) {
-                  inbound.disconnect(
-                      Component.translatable("multiplayer.disconnect.invalid_public_key"));
-                }
-              }
-              // All went well, initialize the session.
-              mcConnection.setActiveSessionHandler(StateRegistry.LOGIN,
-                  new AuthSessionHandler(server, inbound, profile, true));
-            } else if (response.statusCode() == 204) {
-              // Apparently an offline-mode user logged onto this online-mode proxy.
-              inbound.disconnect(
-                  Component.translatable("velocity.error.online-mode-only", NamedTextColor.RED));
-            } else if (retryable) {
-              // [fallen's fork] mojang auth proxy: fail-able with proxy mode
-              logger.error("Error authenticating with proxy, http status code {}, try without", response.statusCode());
-              requester[0].accept(httpClient, false);
-            } else {
-              // Something else went wrong
-              logger.error(
-                  "Got an unexpected error code {} whilst contacting Mojang to log in {} ({})",
-                  response.statusCode(), login.getUsername(), playerIp);
-              inbound.disconnect(Component.translatable("multiplayer.disconnect.authservers_down"));
-            }
-          }, mcConnection.eventLoop())
-          .thenRun(() -> {
-            if (httpClient instanceof final AutoCloseable closeable) {
-              try {
-                closeable.close();
-              } catch (Exception e) {
-                // In Java 21, the HttpClient does not throw any Exception
-                // when trying to clean its resources, so this should not happen
-                logger.error("An unknown error occurred while trying to close an HttpClient", e);
+            logger.error("Unable to authenticate player", throwable);
+            inbound.disconnect(Component.translatable("multiplayer.disconnect.authservers_down"));
+            return;
+          }
+
+          // Go ahead and enable encryption. Once the client sends EncryptionResponse, encryption
+          // is enabled.
+          try {
+            mcConnection.enableEncryption(decryptedSharedSecret);
+          } catch (GeneralSecurityException e) {
+            logger.error("Unable to enable encryption for connection", e);
+            // At this point, the connection is encrypted, but something's wrong on our side and
+            // we can't do anything about it.
+            mcConnection.close(true);
+            return;
+          }
+
+          if (response.statusCode() == 200) {
+            final GameProfile profile = GENERAL_GSON.fromJson(response.body(),
+                GameProfile.class);
+            // Not so fast, now we verify the public key for 1.19.1+
+            if (inbound.getIdentifiedKey() != null
+                && inbound.getIdentifiedKey().getKeyRevision() == IdentifiedKey.Revision.LINKED_V2
+                && inbound.getIdentifiedKey() instanceof final IdentifiedKeyImpl key) {
+              if (!key.internalAddHolder(profile.getId())) {
+                inbound.disconnect(
+                    Component.translatable("multiplayer.disconnect.invalid_public_key"));
               }
             }
-          });
-
-      // [fallen's fork] mojang auth proxy starts
-      final HttpClient proxiedHttpClient = server.createProxiedHttpClient();
-      if (proxiedHttpClient != null) {
-        requester[0].accept(proxiedHttpClient, true);
-      } else {
-        requester[0].accept(httpClient, false);
-      }
-      // [fallen's fork] mojang auth proxy ends
+            // All went well, initialize the session.
+            mcConnection.setActiveSessionHandler(StateRegistry.LOGIN,
+                new AuthSessionHandler(server, inbound, profile, true));
+          } else if (response.statusCode() == 204) {
+            // Apparently an offline-mode user logged onto this online-mode proxy.
+            inbound.disconnect(
+                Component.translatable("velocity.error.online-mode-only", NamedTextColor.RED));
+          } else if (retryable) {
+            // [fallen's fork] mojang auth proxy: fail-able with proxy mode
+            logger.error("Error authenticating with proxy, http status code {}, try without", response.statusCode());
+            requester[0].accept(sessionServer, false);
+          } else {
+            // Something else went wrong
+            logger.error(
+                "Got an unexpected error code {} whilst contacting Mojang to log in {} ({})",
+                response.statusCode(), login.getUsername(), playerIp);
+            inbound.disconnect(Component.translatable("multiplayer.disconnect.authservers_down"));
+          }
+        }, mcConnection.eventLoop());
+
+    // [fallen's fork] mojang auth proxy starts
+    final SessionServerClient proxiedSessionServer = server.getProxiedSessionServer();
+    if (proxiedSessionServer != null) {
+      requester[0].accept(proxiedSessionServer, true);
+    } else {
+      requester[0].accept(sessionServer, false);
+    }
+    // [fallen's fork] mojang auth proxy ends
+  }
 
-    } catch (GeneralSecurityException e) {
-      logger.error("Unable to enable encryption", e);
+  private void handleCryptoFailure(Throwable throwable) {
+    Throwable cause = throwable instanceof CompletionException ? throwable.getCause() : throwable;
+    if (cause instanceof GeneralSecurityException) {
+      logger.error("Unable to enable encryption", cause);
+      mcConnection.close(true);
+    } else if (cause instanceof TimeoutException) {
+      // Too many players are logging in at once for the crypto workers to keep up
+      inbound.disconnect(Component.translatable("velocity.error.login-busy"));
+    } else if (cause instanceof RejectedExecutionException) {
+      // The proxy is shutting down
       mcConnection.close(true);
+    } else {
+      // Handle it as if it had been thrown by the packet handler
+      mcConnection.getChannel().pipeline().fireExceptionCaught(cause);
     }
-    return true;
   }
 
   private EncryptionRequestPacket generateEncryptionRequest() {
@@ -328,6 +363,9 @@ public class InitialLoginSessionHandler implements MinecraftSessionHandler {
 
   @Override
   public void disconnected() {
+    if (this.pendingCrypto != null) {
+      this.pendingCrypto.cancel(false);
+    }
     this.inbound.cleanup();
   }
 
@@ -342,6 +380,9 @@ public class InitialLoginSessionHandler implements MinecraftSessionHandler {
     }
   }
 
+  private record LoginSecret(byte[] sharedSecret, String serverId) {
+  }
+
   private enum LoginState {
     LOGIN_PACKET_EXPECTED,
     LOGIN_PACKET_RECEIVED,
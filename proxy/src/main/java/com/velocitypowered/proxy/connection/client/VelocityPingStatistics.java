@@ -0,0 +1,98 @@
+/*
+ * Copyright (C) 2024 Velocity Contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.velocitypowered.proxy.connection.client;
+
+import com.velocitypowered.api.proxy.player.PingStatistics;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Estimates a player's round-trip time the same way TCP does (RFC 6298): the smoothed ping is an
+ * exponentially weighted moving average with a gain of 1/8, and the jitter is the smoothed mean
+ * deviation with a gain of 1/4.
+ *
+ * <p>Samples are only recorded on the event loop of the player's connection, but the statistics
+ * may be read from any thread.</p>
+ */
+final class VelocityPingStatistics implements PingStatistics {
+
+  private static final double SMOOTHED_GAIN = 1.0 / 8;
+  private static final double JITTER_GAIN = 1.0 / 4;
+
+  private volatile long last = -1;
+  private volatile double smoothed = -1;
+  private volatile double jitter = -1;
+  private volatile long minimum = -1;
+  private volatile long samples;
+
+  /**
+   * Records a measured round-trip time.
+   *
+   * @param nanos the round-trip time in nanoseconds
+   */
+  void record(long nanos) {
+    double millis = nanos / (double) TimeUnit.MILLISECONDS.toNanos(1);
+    if (samples == 0) {
+      smoothed = millis;
+      jitter = millis / 2;
+    } else {
+      jitter = (1 - JITTER_GAIN) * jitter + JITTER_GAIN * Math.abs(smoothed - millis);
+      smoothed = (1 - SMOOTHED_GAIN) * smoothed + SMOOTHED_GAIN * millis;
+    }
+    last = TimeUnit.NANOSECONDS.toMillis(nanos);
+    if (minimum == -1 || last < minimum) {
+      minimum = last;
+    }
+    samples++;
+  }
+
+  @Override
+  public long getLast() {
+    return last;
+  }
+
+  @Override
+  public long getSmoothed() {
+    return Math.round(smoothed);
+  }
+
+  @Override
+  public long getJitter() {
+    return Math.round(jitter);
+  }
+
+  @Override
+  public long getMinimum() {
+    return minimum;
+  }
+
+  @Override
+  public long getSamples() {
+    return samples;
+  }
+
+  @Override
+  public String toString() {
+    return "VelocityPingStatistics{"
+        + "last=" + last
+        + ", smoothed=" + smoothed
+        + ", jitter=" + jitter
+        + ", minimum=" + minimum
+        + ", samples=" + samples
+        + '}';
+  }
+}
@@ -68,7 +68,7 @@ public class ServerListPingHandler {
     List<CompletableFuture<ServerPing>> pings = new ArrayList<>();
     for (String s : servers) {
       Optional<RegisteredServer> rs = server.getServer(s);
-      if (rs.isEmpty()) {
+      if (rs.isEmpty() || !rs.get().getHealth().isAvailable()) {
         continue;
       }
       VelocityRegisteredServer vrs = (VelocityRegisteredServer) rs.get();
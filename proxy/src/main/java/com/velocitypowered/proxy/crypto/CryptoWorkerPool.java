@@ -0,0 +1,192 @@
+/*
+ * Copyright (C) 2024 Velocity Contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.velocitypowered.proxy.crypto;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.gson.JsonObject;
+import io.netty.util.concurrent.EventExecutor;
+import io.netty.util.concurrent.ScheduledFuture;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A bounded pool of threads that runs the expensive cryptographic operations of the login
+ * process, such as RSA decryption and signature verification, so that they don't stall the event
+ * loops that also forward gameplay traffic.
+ *
+ * <p>When the pool is saturated, tasks are not rejected, which delays the login instead. They
+ * wait in a bounded queue and are handed to the pool as workers free up. Once that queue is full
+ * too, submitting them is retried on the event loop of the connection after a short delay. A task
+ * that has not completed after a timeout fails, so that a player isn't left waiting forever.</p>
+ */
+public final class CryptoWorkerPool {
+
+  private static final long RETRY_DELAY_MILLIS = 50;
+
+  private final ThreadPoolExecutor executor;
+  private final int maxWaiting;
+  private final long timeoutMillis;
+  private final Queue<Runnable> waiting = new ConcurrentLinkedQueue<>();
+  private final AtomicInteger waitingCount = new AtomicInteger();
+  private final LongAdder submitted = new LongAdder();
+  private final LongAdder completed = new LongAdder();
+  private final LongAdder waited = new LongAdder();
+  private final LongAdder deferred = new LongAdder();
+  private final LongAdder timedOut = new LongAdder();
+
+  /**
+   * Creates a new pool.
+   *
+   * @param threads the maximum number of worker threads
+   * @param queueSize the maximum number of tasks waiting for a worker
+   * @param maxWaiting the maximum number of tasks waiting for room in the queue of the pool
+   * @param timeoutMillis how long a task may take, waiting included, before it fails
+   */
+  public CryptoWorkerPool(int threads, int queueSize, int maxWaiting, long timeoutMillis) {
+    this.executor = new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS,
+        new ArrayBlockingQueue<>(queueSize),
+        new ThreadFactoryBuilder()
+            .setNameFormat("Velocity Crypto Worker #%d")
+            .setDaemon(true)
+            .build());
+    this.executor.allowCoreThreadTimeOut(true);
+    this.maxWaiting = maxWaiting;
+    this.timeoutMillis = timeoutMillis;
+  }
+
+  /**
+   * Creates a pool with one thread per available processor. The defaults can be overridden with
+   * the {@code velocity.crypto-worker-threads}, {@code velocity.crypto-worker-queue},
+   * {@code velocity.crypto-worker-waiting} and {@code velocity.crypto-worker-timeout} system
+   * properties.
+   *
+   * @return the new pool
+   */
+  public static CryptoWorkerPool create() {
+    int threads = Integer.getInteger("velocity.crypto-worker-threads",
+        Runtime.getRuntime().availableProcessors());
+    int queueSize = Integer.getInteger("velocity.crypto-worker-queue", 256);
+    int maxWaiting = Integer.getInteger("velocity.crypto-worker-waiting", 4096);
+    int timeoutMillis = Integer.getInteger("velocity.crypto-worker-timeout", 20000);
+    return new CryptoWorkerPool(Math.max(1, threads), Math.max(1, queueSize),
+        Math.max(0, maxWaiting), Math.max(1, timeoutMillis));
+  }
+
+  /**
+   * Runs a task on the pool. If the pool is saturated, the task waits until a worker is free. The
+   * returned future is completed with a {@link TimeoutException} if the task hasn't completed in
+   * time, or with a {@link RejectedExecutionException} if the pool has been shut down.
+   *
+   * @param task the task to run
+   * @param retryExecutor the executor to time the task out and retry submitting it on, usually
+   *                      the event loop of the connection
+   * @param <T> the result type
+   * @return a future completed with the result of the task
+   */
+  public <T> CompletableFuture<T> submit(Callable<T> task, EventExecutor retryExecutor) {
+    CompletableFuture<T> future = new CompletableFuture<>();
+    ScheduledFuture<?> timeout = retryExecutor.schedule(() -> {
+      if (future.completeExceptionally(new TimeoutException(
+          "Timed out waiting for a crypto worker after " + timeoutMillis + "ms"))) {
+        timedOut.increment();
+      }
+    }, timeoutMillis, TimeUnit.MILLISECONDS);
+    future.whenComplete((result, throwable) -> timeout.cancel(false));
+    submit(task, future, retryExecutor);
+    return future;
+  }
+
+  private <T> void submit(Callable<T> task, CompletableFuture<T> future,
+      EventExecutor retryExecutor) {
+    if (future.isDone()) {
+      // Timed out or cancelled while waiting for a worker
+      return;
+    }
+
+    try {
+      executor.execute(() -> {
+        try {
+          if (!future.isDone()) {
+            future.complete(task.call());
+          }
+        } catch (Exception e) {
+          future.completeExceptionally(e);
+        } finally {
+          completed.increment();
+          // This task made room in the queue of the pool
+          drain();
+        }
+      });
+      submitted.increment();
+    } catch (RejectedExecutionException e) {
+      if (executor.isShutdown()) {
+        future.completeExceptionally(e);
+        return;
+      }
+      if (waitingCount.incrementAndGet() <= maxWaiting) {
+        waited.increment();
+        waiting.add(() -> submit(task, future, retryExecutor));
+        // The workers may have caught up before the task was added
+        if (executor.getQueue().remainingCapacity() > 0) {
+          drain();
+        }
+        return;
+      }
+      waitingCount.decrementAndGet();
+      deferred.increment();
+      retryExecutor.schedule(() -> submit(task, future, retryExecutor),
+          RETRY_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+    }
+  }
+
+  private void drain() {
+    Runnable next = waiting.poll();
+    if (next != null) {
+      waitingCount.decrementAndGet();
+      next.run();
+    }
+  }
+
+  /**
+   * Collects the counters of the pool for {@code /velocity dump}.
+   *
+   * @return the pool counters
+   */
+  public JsonObject collectStatistics() {
+    JsonObject statistics = new JsonObject();
+    statistics.addProperty("threads", executor.getMaximumPoolSize());
+    statistics.addProperty("activeThreads", executor.getActiveCount());
+    statistics.addProperty("queued", executor.getQueue().size());
+    statistics.addProperty("waiting", waitingCount.get());
+    statistics.addProperty("submitted", submitted.sum());
+    statistics.addProperty("completed", completed.sum());
+    statistics.addProperty("waited", waited.sum());
+    statistics.addProperty("deferred", deferred.sum());
+    statistics.addProperty("timedOut", timedOut.sum());
+    return statistics;
+  }
+}
@@ -37,6 +37,8 @@ import java.security.Signature;
 import java.security.spec.InvalidKeySpecException;
 import java.security.spec.X509EncodedKeySpec;
 import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
 import javax.crypto.Cipher;
 
 /**
@@ -64,6 +66,25 @@ public enum EncryptionUtils {
   private static final Base64.Encoder MIME_SPECIAL_ENCODER
       = Base64.getMimeEncoder(76, "\n".getBytes(StandardCharsets.UTF_8));
 
+  // Looking up a Cipher, Signature or MessageDigest goes through the security providers every
+  // time, so the instances are kept per thread and initialized again for every use.
+  private static final ThreadLocal<Cipher> RSA_CIPHER = ThreadLocal.withInitial(() -> {
+    try {
+      return Cipher.getInstance("RSA");
+    } catch (GeneralSecurityException e) {
+      throw new AssertionError(e);
+    }
+  });
+  private static final ThreadLocal<Map<String, Signature>> SIGNATURES =
+      ThreadLocal.withInitial(HashMap::new);
+  private static final ThreadLocal<MessageDigest> SHA1_DIGEST = ThreadLocal.withInitial(() -> {
+    try {
+      return MessageDigest.getInstance("SHA-1");
+    } catch (NoSuchAlgorithmException e) {
+      throw new AssertionError(e);
+    }
+  });
+
   static {
     try {
       RSA_KEY_FACTORY = KeyFactory.getInstance("RSA");
@@ -98,7 +119,12 @@ public enum EncryptionUtils {
       byte[]... toVerify) {
     Preconditions.checkArgument(toVerify.length > 0);
     try {
-      Signature construct = Signature.getInstance(algorithm);
+      Map<String, Signature> signatures = SIGNATURES.get();
+      Signature construct = signatures.get(algorithm);
+      if (construct == null) {
+        construct = Signature.getInstance(algorithm);
+        signatures.put(algorithm, construct);
+      }
       construct.initVerify(base);
       for (byte[] bytes : toVerify) {
         construct.update(bytes);
@@ -188,7 +214,7 @@ public enum EncryptionUtils {
    * @throws GeneralSecurityException if the message couldn't be decoded
    */
   public static byte[] decryptRsa(KeyPair keyPair, byte[] bytes) throws GeneralSecurityException {
-    Cipher cipher = Cipher.getInstance("RSA");
+    Cipher cipher = RSA_CIPHER.get();
     cipher.init(Cipher.DECRYPT_MODE, keyPair.getPrivate());
     return cipher.doFinal(bytes);
   }
@@ -201,13 +227,9 @@ public enum EncryptionUtils {
    * @return the server ID
    */
   public static String generateServerId(byte[] sharedSecret, PublicKey key) {
-    try {
-      MessageDigest digest = MessageDigest.getInstance("SHA-1");
-      digest.update(sharedSecret);
-      digest.update(key.getEncoded());
-      return twosComplementHexdigest(digest.digest());
-    } catch (NoSuchAlgorithmException e) {
-      throw new AssertionError(e);
-    }
+    MessageDigest digest = SHA1_DIGEST.get();
+    digest.update(sharedSecret);
+    digest.update(key.getEncoded());
+    return twosComplementHexdigest(digest.digest());
   }
 }
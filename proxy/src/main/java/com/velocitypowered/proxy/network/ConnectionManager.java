@@ -18,6 +18,7 @@
 package com.velocitypowered.proxy.network;
 
 import com.google.common.base.Preconditions;
+import com.google.gson.JsonObject;
 import com.velocitypowered.api.event.proxy.ListenerBoundEvent;
 import com.velocitypowered.api.event.proxy.ListenerCloseEvent;
 import com.velocitypowered.api.network.ListenerType;
@@ -34,15 +35,18 @@ import io.netty.channel.EventLoopGroup;
 import io.netty.channel.WriteBufferWaterMark;
 import io.netty.util.concurrent.GlobalEventExecutor;
 import java.io.IOException;
+import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.net.Proxy;
 import java.net.ProxySelector;
 import java.net.SocketAddress;
 import java.net.URI;
 import java.net.http.HttpClient;
+import java.time.Duration;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.checkerframework.checker.nullness.qual.Nullable;
@@ -52,7 +56,11 @@ import org.checkerframework.checker.nullness.qual.Nullable;
  */
 public final class ConnectionManager {
 
-  private static final WriteBufferWaterMark SERVER_WRITE_MARK = new WriteBufferWaterMark(1 << 20,
+  /**
+   * The write buffer water marks of player connections. Reads from the server of a player are
+   * paused while their connection is over the high water mark.
+   */
+  public static final WriteBufferWaterMark SERVER_WRITE_MARK = new WriteBufferWaterMark(1 << 20,
       1 << 21);
   private static final Logger LOGGER = LogManager.getLogger(ConnectionManager.class);
   private final Map<InetSocketAddress, Endpoint> endpoints = new HashMap<>();
@@ -69,6 +77,14 @@ public final class ConnectionManager {
 
   private final SeparatePoolInetNameResolver resolver;
 
+  // The HTTP clients are shared by the whole proxy, and only replaced when their settings change
+  private @Nullable HttpClient httpClient;
+  private int httpClientConnectTimeout;
+  // [fallen's fork] mojang auth proxy
+  private @Nullable HttpClient proxiedHttpClient;
+  private @Nullable ProxySettings proxiedHttpClientSettings;
+  private int httpClientsCreated;
+
   /**
    * Initializes the {@code ConnectionManager}.
    *
@@ -246,55 +262,135 @@ public final class ConnectionManager {
     return this.serverChannelInitializer;
   }
 
-  @SuppressWarnings("checkstyle:MissingJavadocMethod")
-  public HttpClient createHttpClient() {
-    return HttpClient.newBuilder()
-            .executor(this.workerGroup)
-            .build();
+  /**
+   * Returns the HTTP client shared by the proxy. Connections are kept open and reused between
+   * requests.
+   *
+   * @return the shared HTTP client
+   */
+  public synchronized HttpClient getHttpClient() {
+    int connectTimeout = server.getConfiguration().getConnectTimeout();
+    if (httpClient == null || httpClientConnectTimeout != connectTimeout) {
+      close(httpClient);
+      httpClient = HttpClient.newBuilder()
+          .version(HttpClient.Version.HTTP_2)
+          .connectTimeout(Duration.ofMillis(connectTimeout))
+          .executor(this.workerGroup)
+          .build();
+      httpClientConnectTimeout = connectTimeout;
+      httpClientsCreated++;
+    }
+    return httpClient;
   }
 
   // [fallen's fork] mojang auth proxy
-  @SuppressWarnings("checkstyle:MissingJavadocMethod")
+  /**
+   * Returns the HTTP client shared by the proxy for requests going through the auth proxy. The
+   * client is only replaced when the auth proxy settings change.
+   *
+   * @return the shared HTTP client, or {@code null} if the auth proxy is disabled
+   */
   @Nullable
-  public HttpClient createProxiedHttpClient() {
-    if (server.getConfiguration().isAuthProxyEnabled()) {
-      Proxy.Type proxyType = null;
-      String type = server.getConfiguration().getAuthProxyType();
-      switch (type) {
-        case "socks4":
-        case "socks5":
-          proxyType = Proxy.Type.SOCKS;
-          break;
-        case "http":
-          proxyType = Proxy.Type.HTTP;
-          break;
-        default:
-          LOGGER.error("Bad auth proxy type {}", type);
-      }
-      if (proxyType != null) {
-        var hostname = server.getConfiguration().getAuthProxyHostname();
-        var port = server.getConfiguration().getAuthProxyPort();
-        var finalProxyType = proxyType;
-        return HttpClient.newBuilder()
-                .proxy(new ProxySelector() {
-                  @Override
-                  public List<Proxy> select(URI uri) {
-                    return List.of(new Proxy(finalProxyType, new InetSocketAddress(hostname, port)));
-                  }
-
-                  @Override
-                  public void connectFailed(URI uri, SocketAddress sa, IOException ioe) {
-                    // do nothing as what java.net.ProxySelector.of does
-                  }
-                })
-                .executor(this.workerGroup)
-                .build();
-      }
+  public synchronized HttpClient getProxiedHttpClient() {
+    if (!server.getConfiguration().isAuthProxyEnabled()) {
+      close(proxiedHttpClient);
+      proxiedHttpClient = null;
+      proxiedHttpClientSettings = null;
+      return null;
+    }
+
+    Proxy.Type proxyType = null;
+    String type = server.getConfiguration().getAuthProxyType();
+    switch (type) {
+      case "socks4":
+      case "socks5":
+        proxyType = Proxy.Type.SOCKS;
+        break;
+      case "http":
+        proxyType = Proxy.Type.HTTP;
+        break;
+      default:
+        LOGGER.error("Bad auth proxy type {}", type);
+    }
+    if (proxyType == null) {
+      close(proxiedHttpClient);
+      proxiedHttpClient = null;
+      proxiedHttpClientSettings = null;
+      return null;
+    }
+
+    ProxySettings settings = new ProxySettings(proxyType,
+        server.getConfiguration().getAuthProxyHostname(),
+        server.getConfiguration().getAuthProxyPort(),
+        server.getConfiguration().getConnectTimeout());
+    if (proxiedHttpClient != null && settings.equals(proxiedHttpClientSettings)) {
+      return proxiedHttpClient;
     }
-    return null;
+    close(proxiedHttpClient);
+    proxiedHttpClient = HttpClient.newBuilder()
+            .proxy(new ProxySelector() {
+              @Override
+              public List<Proxy> select(URI uri) {
+                // Don't block on a DNS lookup of the proxy for every request
+                InetAddress address = resolver.getCachedAddress(settings.hostname());
+                InetSocketAddress proxyAddress = address != null
+                    ? new InetSocketAddress(address, settings.port())
+                    : new InetSocketAddress(settings.hostname(), settings.port());
+                return List.of(new Proxy(settings.type(), proxyAddress));
+              }
+
+              @Override
+              public void connectFailed(URI uri, SocketAddress sa, IOException ioe) {
+                // do nothing as what java.net.ProxySelector.of does
+              }
+            })
+            .version(HttpClient.Version.HTTP_2)
+            .connectTimeout(Duration.ofMillis(settings.connectTimeout()))
+            .executor(this.workerGroup)
+            .build();
+    proxiedHttpClientSettings = settings;
+    httpClientsCreated++;
+    return proxiedHttpClient;
+  }
+
+  /**
+   * Closes an HTTP client that has been replaced once the requests it is still sending are done.
+   * Clients can only be closed on Java 21 and above; on older versions their connections are
+   * closed once they have been garbage collected. The executor is shared and is left running.
+   */
+  private static void close(@Nullable HttpClient client) {
+    if (client instanceof AutoCloseable closeable) {
+      // Closing waits for the requests still in flight
+      CompletableFuture.runAsync(() -> {
+        try {
+          closeable.close();
+        } catch (Exception e) {
+          LOGGER.warn("Unable to close a replaced HTTP client", e);
+        }
+      });
+    }
+  }
+
+  /**
+   * Collects the DNS cache and HTTP client counters for {@code /velocity dump}.
+   *
+   * @return the network statistics
+   */
+  public synchronized JsonObject collectStatistics() {
+    JsonObject statistics = new JsonObject();
+    statistics.add("dns", resolver.collectStatistics());
+    JsonObject http = new JsonObject();
+    http.addProperty("clientsCreated", httpClientsCreated);
+    http.addProperty("proxied", proxiedHttpClient != null);
+    statistics.add("http", http);
+    return statistics;
   }
 
   public BackendChannelInitializerHolder getBackendChannelInitializer() {
     return this.backendChannelInitializer;
   }
+
+  // [fallen's fork] mojang auth proxy
+  private record ProxySettings(Proxy.Type type, String hostname, int port, int connectTimeout) {
+  }
 }
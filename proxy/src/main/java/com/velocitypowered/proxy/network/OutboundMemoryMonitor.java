@@ -0,0 +1,197 @@
+/*
+ * Copyright (C) 2024 Velocity Contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.velocitypowered.proxy.network;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.velocitypowered.api.event.player.PlayerOutboundBudgetExceededEvent;
+import com.velocitypowered.api.proxy.Player;
+import com.velocitypowered.api.scheduler.ScheduledTask;
+import com.velocitypowered.proxy.VelocityServer;
+import com.velocitypowered.proxy.config.VelocityConfiguration.OutboundMemory;
+import com.velocitypowered.proxy.connection.MinecraftConnection;
+import com.velocitypowered.proxy.connection.backend.VelocityServerConnection;
+import com.velocitypowered.proxy.connection.client.ConnectedPlayer;
+import com.velocitypowered.proxy.plugin.virtual.VelocityVirtualPlugin;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.ByteBufAllocatorMetricProvider;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import net.kyori.adventure.text.Component;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/**
+ * Periodically measures the bytes waiting to be sent to every player and to their current server,
+ * and disconnects the players who stay over the outbound memory budget. A player whose connection
+ * can't keep up otherwise pins direct memory on both sides of the proxy: in the outbound buffer of
+ * the player, and in the data already read from their server, held back while reads from the
+ * server are paused.
+ *
+ * <p>Plugins are told when a player goes over the soft limit. Players who stay over it for longer
+ * than the grace period, or who go over the hard limit, are disconnected. As the disconnect packet
+ * is queued behind everything else, the connection is closed outright if it is still open a few
+ * seconds later.</p>
+ */
+public final class OutboundMemoryMonitor {
+
+  private static final Logger logger = LogManager.getLogger(OutboundMemoryMonitor.class);
+  private static final long CLOSE_TIMEOUT_SECONDS = 5;
+  private static final int TOP_CONSUMERS = 10;
+
+  private final VelocityServer server;
+  private final Map<UUID, Long> overSince = new ConcurrentHashMap<>();
+  private final Set<UUID> evicting = ConcurrentHashMap.newKeySet();
+  private final LongAdder overBudget = new LongAdder();
+  private final LongAdder evictions = new LongAdder();
+  private @Nullable ScheduledTask task;
+
+  public OutboundMemoryMonitor(VelocityServer server) {
+    this.server = server;
+  }
+
+  /**
+   * Starts or stops checking the players, depending on the configuration. Called on startup and
+   * whenever the configuration is reloaded.
+   */
+  public synchronized void reload() {
+    if (task != null) {
+      task.cancel();
+      task = null;
+    }
+    overSince.clear();
+    evicting.clear();
+    OutboundMemory settings = server.getConfiguration().getOutboundMemory();
+    if (!settings.isEnabled()) {
+      return;
+    }
+    task = server.getScheduler()
+        .buildTask(VelocityVirtualPlugin.INSTANCE, this::checkPlayers)
+        .repeat(settings.getCheckInterval(), TimeUnit.MILLISECONDS)
+        .schedule();
+  }
+
+  private void checkPlayers() {
+    checkPlayers(System.currentTimeMillis());
+  }
+
+  synchronized void checkPlayers(long now) {
+    OutboundMemory settings = server.getConfiguration().getOutboundMemory();
+    // Forget the players who left in the meantime
+    overSince.keySet().removeIf(uuid -> server.getPlayer(uuid).isEmpty());
+    evicting.removeIf(uuid -> server.getPlayer(uuid).isEmpty());
+    for (Player player : server.getAllPlayers()) {
+      ConnectedPlayer connected = (ConnectedPlayer) player;
+      if (connected.getConnection().isClosed() || evicting.contains(player.getUniqueId())) {
+        continue;
+      }
+      long pending = getPendingBytes(connected);
+      if (pending <= settings.getSoftLimit()) {
+        overSince.remove(player.getUniqueId());
+        continue;
+      }
+      Long since = overSince.putIfAbsent(player.getUniqueId(), now);
+      if (since == null) {
+        since = now;
+        overBudget.increment();
+        server.getEventManager().fireAndForget(
+            new PlayerOutboundBudgetExceededEvent(player, pending, settings.getSoftLimit()));
+      }
+      if (pending > settings.getHardLimit() || now - since > settings.getGracePeriod()) {
+        evict(connected, pending);
+      }
+    }
+  }
+
+  private void evict(ConnectedPlayer player, long pending) {
+    evictions.increment();
+    overSince.remove(player.getUniqueId());
+    evicting.add(player.getUniqueId());
+    logger.warn("{} has {} bytes waiting to be sent and is over the outbound memory budget, "
+        + "disconnecting", player, pending);
+    player.disconnect(Component.translatable("disconnect.overflow"));
+    MinecraftConnection connection = player.getConnection();
+    connection.eventLoop().schedule(() -> connection.close(), CLOSE_TIMEOUT_SECONDS,
+        TimeUnit.SECONDS);
+  }
+
+  /**
+   * Returns the number of bytes waiting to be sent to a player, including those read from their
+   * current server and held back until the player catches up.
+   *
+   * @param player the player
+   * @return the number of pending bytes
+   */
+  public static long getPendingBytes(ConnectedPlayer player) {
+    long pending = player.getConnection().getPendingOutboundBytes();
+    VelocityServerConnection backend = player.getConnectedServer();
+    if (backend != null) {
+      MinecraftConnection backendConnection = backend.getConnection();
+      if (backendConnection != null) {
+        pending += backendConnection.getHeldInboundBytes();
+      }
+    }
+    return pending;
+  }
+
+  /**
+   * Collects the players holding on to the most outbound memory and the direct memory in use for
+   * {@code /velocity dump}.
+   *
+   * @return the outbound memory statistics
+   */
+  public JsonObject collectStatistics() {
+    List<Map.Entry<String, Long>> consumers = new ArrayList<>();
+    long total = 0;
+    for (Player player : server.getAllPlayers()) {
+      long pending = getPendingBytes((ConnectedPlayer) player);
+      total += pending;
+      if (pending > 0) {
+        consumers.add(Map.entry(player.getUsername(), pending));
+      }
+    }
+    consumers.sort(Map.Entry.<String, Long>comparingByValue(Comparator.reverseOrder()));
+
+    JsonObject statistics = new JsonObject();
+    statistics.addProperty("pendingBytes", total);
+    statistics.addProperty("overBudgetPlayers", overSince.size());
+    statistics.addProperty("overBudget", overBudget.sum());
+    statistics.addProperty("evictions", evictions.sum());
+    if (ByteBufAllocator.DEFAULT instanceof ByteBufAllocatorMetricProvider provider) {
+      statistics.addProperty("allocatorDirectMemory", provider.metric().usedDirectMemory());
+    }
+    JsonArray top = new JsonArray();
+    for (Map.Entry<String, Long> consumer
+        : consumers.subList(0, Math.min(TOP_CONSUMERS, consumers.size()))) {
+      JsonObject entry = new JsonObject();
+      entry.addProperty("player", consumer.getKey());
+      entry.addProperty("pendingBytes", consumer.getValue());
+      top.add(entry);
+    }
+    statistics.add("topConsumers", top);
+    return statistics;
+  }
+}
@@ -24,6 +24,7 @@ import static com.velocitypowered.proxy.network.Connections.LEGACY_PING_ENCODER;
 import static com.velocitypowered.proxy.network.Connections.MINECRAFT_DECODER;
 import static com.velocitypowered.proxy.network.Connections.MINECRAFT_ENCODER;
 import static com.velocitypowered.proxy.network.Connections.READ_TIMEOUT;
+import static com.velocitypowered.proxy.network.Connections.WRITE_COALESCER;
 
 import com.velocitypowered.proxy.VelocityServer;
 import com.velocitypowered.proxy.connection.MinecraftConnection;
@@ -34,12 +35,17 @@ import com.velocitypowered.proxy.protocol.netty.LegacyPingDecoder;
 import com.velocitypowered.proxy.protocol.netty.LegacyPingEncoder;
 import com.velocitypowered.proxy.protocol.netty.MinecraftDecoder;
 import com.velocitypowered.proxy.protocol.netty.MinecraftEncoder;
+import com.velocitypowered.proxy.protocol.netty.MinecraftFusedInboundDecoder;
+import com.velocitypowered.proxy.protocol.netty.MinecraftFusedOutboundEncoder;
 import com.velocitypowered.proxy.protocol.netty.MinecraftVarintFrameDecoder;
 import com.velocitypowered.proxy.protocol.netty.MinecraftVarintLengthEncoder;
+import com.velocitypowered.proxy.protocol.netty.MinecraftWriteCoalescer;
+import com.velocitypowered.proxy.util.ratelimit.ConnectionRatelimiter.Rule;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelInitializer;
 import io.netty.handler.codec.haproxy.HAProxyMessageDecoder;
 import io.netty.handler.timeout.ReadTimeoutHandler;
+import java.net.InetSocketAddress;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -56,9 +62,22 @@ public class ServerChannelInitializer extends ChannelInitializer<Channel> {
 
   @Override
   protected void initChannel(final Channel ch) {
+    // Reject connection floods before allocating anything for the connection. Behind a proxy
+    // speaking the PROXY protocol, the real address is only known later, during the handshake.
+    if (!this.server.getConfiguration().isProxyProtocol()
+        && ch.remoteAddress() instanceof InetSocketAddress address
+        && !this.server.getConnectionRatelimiter().attempt(Rule.CONNECTION,
+            address.getAddress())) {
+      ch.close();
+      return;
+    }
+
+    // Most connections are status pings, so they only get what the handshake and status states
+    // need. The rest of the player pipeline is added once the player is logging in.
     ch.pipeline()
         .addLast(LEGACY_PING_DECODER, new LegacyPingDecoder())
-        .addLast(FRAME_DECODER, new MinecraftVarintFrameDecoder())
+        .addLast(FRAME_DECODER, MinecraftFusedInboundDecoder.isEnabled()
+            ? new MinecraftFusedInboundDecoder() : new MinecraftVarintFrameDecoder())
         .addLast(READ_TIMEOUT,
             new ReadTimeoutHandler(this.server.getConfiguration().getReadTimeout(),
                 TimeUnit.MILLISECONDS))
@@ -76,4 +95,23 @@ public class ServerChannelInitializer extends ChannelInitializer<Channel> {
       ch.pipeline().addFirst(new HAProxyMessageDecoder());
     }
   }
+
+  /**
+   * Completes the pipeline of a connection that is logging in or being transferred, once the
+   * handshake has been received. Status pings never get these handlers.
+   *
+   * @param ch the channel of the connection
+   */
+  public static void addLoginHandlers(final Channel ch) {
+    if (ch.pipeline().get(LEGACY_PING_ENCODER) != null) {
+      // Legacy clients can't log in through the proxy
+      ch.pipeline().remove(LEGACY_PING_ENCODER);
+    }
+    if (MinecraftFusedOutboundEncoder.isEnabled()) {
+      ch.pipeline().replace(FRAME_ENCODER, FRAME_ENCODER, new MinecraftFusedOutboundEncoder());
+    }
+    if (MinecraftWriteCoalescer.isEnabled()) {
+      ch.pipeline().addBefore(MINECRAFT_ENCODER, WRITE_COALESCER, new MinecraftWriteCoalescer());
+    }
+  }
 }
@@ -0,0 +1,231 @@
+/*
+ * Copyright (C) 2024 Velocity Contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.velocitypowered.proxy.network;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.google.gson.JsonObject;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Sends {@code hasJoined} requests to the Mojang session server through a single long-lived HTTP
+ * client, so that connections and TLS sessions are reused between logins.
+ *
+ * <p>Identical requests that are in flight at the same time are coalesced, and definitive answers
+ * are kept for a few seconds so that retries don't reach the session server again. The number of
+ * concurrent requests is limited: when the session server slows down, further logins wait in a
+ * bounded queue instead of piling up connections. The limits can be changed with the
+ * {@code velocity.session-server-max-requests}, {@code velocity.session-server-max-queued},
+ * {@code velocity.session-server-timeout} and {@code velocity.session-server-cache-ttl} system
+ * properties.</p>
+ */
+public final class SessionServerClient {
+
+  // Upper bounds of the latency histogram buckets, in milliseconds
+  private static final long[] LATENCY_BUCKETS = {10, 25, 50, 100, 250, 500, 1000, 2500, 5000,
+      10000};
+
+  private final HttpClient client;
+  private final String userAgent;
+  private final Duration timeout;
+  private final int maxRequests;
+  private final int maxQueued;
+  private final long cacheTtlMillis;
+  private final AsyncCache<URI, HttpResponse<String>> responses;
+  private final Semaphore permits;
+  private final Queue<Runnable> waiting = new ConcurrentLinkedQueue<>();
+  private final AtomicInteger waitingCount = new AtomicInteger();
+
+  private final LongAdder requests = new LongAdder();
+  private final LongAdder coalesced = new LongAdder();
+  private final LongAdder queued = new LongAdder();
+  private final LongAdder rejected = new LongAdder();
+  private final LongAdder failures = new LongAdder();
+  private final LongAdder[] latencies = new LongAdder[LATENCY_BUCKETS.length + 1];
+
+  /**
+   * Creates a session server client with the limits configured through system properties.
+   *
+   * @param client the HTTP client to send requests with
+   * @param userAgent the user agent to send
+   */
+  public SessionServerClient(HttpClient client, String userAgent) {
+    this(client, userAgent,
+        Integer.getInteger("velocity.session-server-max-requests", 64),
+        Integer.getInteger("velocity.session-server-max-queued", 1024),
+        Integer.getInteger("velocity.session-server-timeout", 10000),
+        Integer.getInteger("velocity.session-server-cache-ttl", 5000));
+  }
+
+  /**
+   * Creates a session server client.
+   *
+   * @param client the HTTP client to send requests with
+   * @param userAgent the user agent to send
+   * @param maxRequests the maximum number of concurrent requests
+   * @param maxQueued the maximum number of requests waiting for another one to complete
+   * @param timeoutMillis how long to wait for a response
+   * @param cacheTtlMillis how long to keep definitive answers, or 0 to not keep them
+   */
+  public SessionServerClient(HttpClient client, String userAgent, int maxRequests, int maxQueued,
+      long timeoutMillis, long cacheTtlMillis) {
+    this.client = client;
+    this.userAgent = userAgent;
+    this.timeout = Duration.ofMillis(Math.max(1, timeoutMillis));
+    this.maxRequests = Math.max(1, maxRequests);
+    this.maxQueued = Math.max(0, maxQueued);
+    this.cacheTtlMillis = Math.max(0, cacheTtlMillis);
+    this.responses = Caffeine.newBuilder()
+        .expireAfterWrite(Math.max(1, this.cacheTtlMillis), TimeUnit.MILLISECONDS)
+        .buildAsync();
+    this.permits = new Semaphore(this.maxRequests);
+    for (int i = 0; i < latencies.length; i++) {
+      latencies[i] = new LongAdder();
+    }
+  }
+
+  public HttpClient getClient() {
+    return client;
+  }
+
+  /**
+   * Asks the session server whether a player has joined. Only responses with a status of 200 or
+   * 204 are reused for later requests.
+   *
+   * @param uri the {@code hasJoined} URI, including its query parameters
+   * @return a future completed with the response of the session server
+   */
+  public CompletableFuture<HttpResponse<String>> hasJoined(URI uri) {
+    boolean[] created = new boolean[1];
+    CompletableFuture<HttpResponse<String>> future = responses.get(uri, (key, executor) -> {
+      created[0] = true;
+      return send(key);
+    });
+    if (!created[0]) {
+      coalesced.increment();
+      return future;
+    }
+
+    // Failed futures are discarded by the cache itself
+    future.thenAccept(response -> {
+      if (cacheTtlMillis == 0 || (response.statusCode() != 200 && response.statusCode() != 204)) {
+        responses.asMap().remove(uri, future);
+      }
+    });
+    return future;
+  }
+
+  private CompletableFuture<HttpResponse<String>> send(URI uri) {
+    CompletableFuture<HttpResponse<String>> future = new CompletableFuture<>();
+    if (permits.tryAcquire()) {
+      dispatch(uri, future);
+      return future;
+    }
+
+    if (waitingCount.incrementAndGet() > maxQueued) {
+      waitingCount.decrementAndGet();
+      rejected.increment();
+      future.completeExceptionally(
+          new RejectedExecutionException("Too many pending session server requests"));
+      return future;
+    }
+    queued.increment();
+    waiting.add(() -> dispatch(uri, future));
+    // A permit may have been released before the request was queued
+    drain();
+    return future;
+  }
+
+  private void drain() {
+    while (!waiting.isEmpty() && permits.tryAcquire()) {
+      Runnable task = waiting.poll();
+      if (task == null) {
+        permits.release();
+        continue;
+      }
+      waitingCount.decrementAndGet();
+      task.run();
+    }
+  }
+
+  private void dispatch(URI uri, CompletableFuture<HttpResponse<String>> future) {
+    HttpRequest request = HttpRequest.newBuilder()
+        .setHeader("User-Agent", userAgent)
+        .uri(uri)
+        .timeout(timeout)
+        .build();
+    long start = System.nanoTime();
+    requests.increment();
+    client.sendAsync(request, HttpResponse.BodyHandlers.ofString())
+        .whenComplete((response, throwable) -> {
+          permits.release();
+          recordLatency(System.nanoTime() - start);
+          if (throwable != null) {
+            failures.increment();
+            future.completeExceptionally(throwable);
+          } else {
+            future.complete(response);
+          }
+          drain();
+        });
+  }
+
+  private void recordLatency(long nanos) {
+    long millis = TimeUnit.NANOSECONDS.toMillis(nanos);
+    int bucket = 0;
+    while (bucket < LATENCY_BUCKETS.length && millis > LATENCY_BUCKETS[bucket]) {
+      bucket++;
+    }
+    latencies[bucket].increment();
+  }
+
+  /**
+   * Collects the counters and the latency histogram of the client for {@code /velocity dump}.
+   *
+   * @return the client statistics
+   */
+  public JsonObject collectStatistics() {
+    JsonObject statistics = new JsonObject();
+    statistics.addProperty("requests", requests.sum());
+    statistics.addProperty("inFlight", maxRequests - permits.availablePermits());
+    statistics.addProperty("waiting", waitingCount.get());
+    statistics.addProperty("coalesced", coalesced.sum());
+    statistics.addProperty("queued", queued.sum());
+    statistics.addProperty("rejected", rejected.sum());
+    statistics.addProperty("failures", failures.sum());
+    JsonObject histogram = new JsonObject();
+    for (int i = 0; i < LATENCY_BUCKETS.length; i++) {
+      histogram.addProperty("le" + LATENCY_BUCKETS[i], latencies[i].sum());
+    }
+    histogram.addProperty("inf", latencies[LATENCY_BUCKETS.length].sum());
+    statistics.add("latencyMillis", histogram);
+    return statistics;
+  }
+}
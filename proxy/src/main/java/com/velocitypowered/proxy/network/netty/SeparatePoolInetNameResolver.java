@@ -17,72 +17,171 @@
 
 package com.velocitypowered.proxy.network.netty;
 
-import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.AsyncLoadingCache;
+import com.github.benmanes.caffeine.cache.CacheLoader;
 import com.github.benmanes.caffeine.cache.Caffeine;
-import com.google.common.collect.ImmutableList;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.gson.JsonObject;
 import io.netty.resolver.AddressResolver;
 import io.netty.resolver.AddressResolverGroup;
-import io.netty.resolver.DefaultNameResolver;
 import io.netty.resolver.InetNameResolver;
+import io.netty.util.NetUtil;
 import io.netty.util.concurrent.EventExecutor;
 import io.netty.util.concurrent.Future;
 import io.netty.util.concurrent.Promise;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
+import java.net.UnknownHostException;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+import org.checkerframework.checker.nullness.qual.Nullable;
 
 /**
  * An implementation of {@code InetNameResolver} that performs blocking DNS name lookups
- * in a separate thread, avoiding blocking the Netty threads for an extended period of time
+ * in a separate thread pool, avoiding blocking the Netty threads for an extended period of time
  * and without the downsides of Netty's native DNS resolver.
+ *
+ * <p>Answers are cached: successful lookups for {@code velocity.dns-ttl} milliseconds, after which
+ * they are refreshed in the background the next time they are used, and failed lookups for
+ * {@code velocity.dns-negative-ttl} milliseconds. If a refresh fails, the last known addresses
+ * are kept until they expire, twice the TTL after they were looked up. The size of the pool can be changed with the
+ * {@code velocity.dns-threads} system property.</p>
  */
 public final class SeparatePoolInetNameResolver extends InetNameResolver {
 
   private final ExecutorService resolveExecutor;
-  private final InetNameResolver delegate;
-  private final Cache<String, List<InetAddress>> cache;
+  private final HostLookup hostLookup;
+  private final AsyncLoadingCache<String, Resolution> cache;
+  private final LongAdder lookups = new LongAdder();
+  private final LongAdder failedLookups = new LongAdder();
   private AddressResolverGroup<InetSocketAddress> resolverGroup;
 
   /**
-   * Creates a new instance of {@code SeparatePoolInetNameResolver}.
+   * Creates a new instance of {@code SeparatePoolInetNameResolver}, configured through system
+   * properties.
    *
    * @param executor the {@link EventExecutor} which is used to notify the listeners of the
    *                 {@link Future} returned by {@link #resolve(String)}
    */
   public SeparatePoolInetNameResolver(EventExecutor executor) {
-    super(executor);
-    this.resolveExecutor = Executors.newSingleThreadExecutor(
+    this(executor, Integer.getInteger("velocity.dns-threads", 4),
+        Long.getLong("velocity.dns-ttl", 30000),
+        Long.getLong("velocity.dns-negative-ttl", 5000));
+  }
+
+  /**
+   * Creates a new instance of {@code SeparatePoolInetNameResolver}.
+   *
+   * @param executor the {@link EventExecutor} which is used to notify the listeners of the
+   *                 {@link Future} returned by {@link #resolve(String)}
+   * @param threads the number of lookups that can run at the same time
+   * @param ttlMillis how long successful lookups are used before being refreshed
+   * @param negativeTtlMillis how long failed lookups are remembered
+   */
+  public SeparatePoolInetNameResolver(EventExecutor executor, int threads, long ttlMillis,
+      long negativeTtlMillis) {
+    this(executor, Executors.newFixedThreadPool(Math.max(1, threads),
         new ThreadFactoryBuilder()
-            .setNameFormat("Velocity DNS Resolver")
+            .setNameFormat("Velocity DNS Resolver #%d")
             .setDaemon(true)
-            .build());
-    this.delegate = new DefaultNameResolver(executor);
+            .build()), ttlMillis, negativeTtlMillis, System::nanoTime, InetAddress::getAllByName);
+  }
+
+  SeparatePoolInetNameResolver(EventExecutor executor, ExecutorService resolveExecutor,
+      long ttlMillis, long negativeTtlMillis, LongSupplier ticker, HostLookup hostLookup) {
+    super(executor);
+    this.resolveExecutor = resolveExecutor;
+    this.hostLookup = hostLookup;
+    long ttlNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, ttlMillis));
+    long negativeTtlNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, negativeTtlMillis));
     this.cache = Caffeine.newBuilder()
-        .expireAfterWrite(30, TimeUnit.SECONDS)
-        .build();
+        .executor(resolveExecutor)
+        .ticker(ticker::getAsLong)
+        // Hosts still in use are refreshed in the background before they expire
+        .refreshAfterWrite(ttlNanos, TimeUnit.NANOSECONDS)
+        .expireAfter(new Expiry<String, Resolution>() {
+          @Override
+          public long expireAfterCreate(String key, Resolution value, long currentTime) {
+            return value.addresses() != null ? ttlNanos * 2 : negativeTtlNanos;
+          }
+
+          @Override
+          public long expireAfterUpdate(String key, Resolution value, long currentTime,
+              long currentDuration) {
+            // Addresses kept after a failed refresh must not live any longer
+            return value.retained() ? currentDuration : expireAfterCreate(key, value, currentTime);
+          }
+
+          @Override
+          public long expireAfterRead(String key, Resolution value, long currentTime,
+              long currentDuration) {
+            return currentDuration;
+          }
+        })
+        .recordStats()
+        .buildAsync(new CacheLoader<String, Resolution>() {
+          @Override
+          public Resolution load(String inetHost) {
+            return lookup(inetHost);
+          }
+
+          @Override
+          public Resolution reload(String inetHost, Resolution oldValue) {
+            Resolution resolution = lookup(inetHost);
+            if (resolution.addresses() == null && oldValue.addresses() != null) {
+              // Only cache a failure if the host was never found, a failed refresh is most
+              // likely a hiccup of the DNS server
+              return new Resolution(oldValue.addresses(), null, true);
+            }
+            return resolution;
+          }
+        });
   }
 
-  @Override
-  protected void doResolve(String inetHost, Promise<InetAddress> promise) throws Exception {
-    List<InetAddress> addresses = cache.getIfPresent(inetHost);
-    if (addresses != null) {
-      promise.trySuccess(addresses.get(0));
-      return;
+  private Resolution lookup(String inetHost) {
+    lookups.increment();
+    Resolution resolution = query(inetHost);
+    if (resolution.addresses() == null) {
+      failedLookups.increment();
     }
+    return resolution;
+  }
 
+  private Resolution query(String inetHost) {
     try {
-      resolveExecutor.execute(() -> {
-        promise.addListener(future -> {
-          if (future.isSuccess()) {
-            cache.put(inetHost, ImmutableList.of((InetAddress) future.getNow()));
-          }
-        });
-        this.delegate.resolve(inetHost, promise);
+      return new Resolution(List.of(hostLookup.lookup(inetHost)), null, false);
+    } catch (UnknownHostException e) {
+      return new Resolution(null, e, false);
+    }
+  }
+
+  private CompletableFuture<Resolution> resolveCached(String inetHost) {
+    if (NetUtil.isValidIpV4Address(inetHost) || NetUtil.isValidIpV6Address(inetHost)) {
+      // Literal addresses are parsed without any lookup, don't fill the cache with them
+      return CompletableFuture.completedFuture(query(inetHost));
+    }
+    return cache.get(inetHost);
+  }
+
+  @Override
+  protected void doResolve(String inetHost, Promise<InetAddress> promise) throws Exception {
+    try {
+      resolveCached(inetHost).whenComplete((resolution, throwable) -> {
+        if (throwable != null) {
+          promise.tryFailure(throwable);
+        } else if (resolution.addresses() == null) {
+          promise.tryFailure(resolution.failure());
+        } else {
+          promise.trySuccess(resolution.addresses().get(0));
+        }
       });
     } catch (RejectedExecutionException e) {
       promise.setFailure(e);
@@ -92,28 +191,64 @@ public final class SeparatePoolInetNameResolver extends InetNameResolver {
   @Override
   protected void doResolveAll(String inetHost, Promise<List<InetAddress>> promise)
       throws Exception {
-    List<InetAddress> addresses = cache.getIfPresent(inetHost);
-    if (addresses != null) {
-      promise.trySuccess(addresses);
-      return;
-    }
-
     try {
-      promise.addListener(future -> {
-        if (future.isSuccess()) {
-          cache.put(inetHost, (List<InetAddress>) future.getNow());
+      resolveCached(inetHost).whenComplete((resolution, throwable) -> {
+        if (throwable != null) {
+          promise.tryFailure(throwable);
+        } else if (resolution.addresses() == null) {
+          promise.tryFailure(resolution.failure());
+        } else {
+          promise.trySuccess(resolution.addresses());
         }
       });
-      resolveExecutor.execute(() -> this.delegate.resolveAll(inetHost, promise));
     } catch (RejectedExecutionException e) {
       promise.setFailure(e);
     }
   }
 
+  /**
+   * Returns the address of a host if it is already known, without waiting for a lookup. If it
+   * isn't known, a lookup is started in the background so that it is known the next time.
+   *
+   * @param inetHost the host name
+   * @return the cached address, or {@code null} if it isn't known
+   */
+  public @Nullable InetAddress getCachedAddress(String inetHost) {
+    CompletableFuture<Resolution> future;
+    try {
+      future = cache.get(inetHost);
+    } catch (RejectedExecutionException e) {
+      return null;
+    }
+    if (!future.isDone() || future.isCompletedExceptionally()) {
+      return null;
+    }
+    List<InetAddress> addresses = future.join().addresses();
+    return addresses == null ? null : addresses.get(0);
+  }
+
   public void shutdown() {
     this.resolveExecutor.shutdown();
   }
 
+  /**
+   * Collects the cache counters of the resolver for {@code /velocity dump}.
+   *
+   * @return the resolver statistics
+   */
+  public JsonObject collectStatistics() {
+    CacheStats stats = cache.synchronous().stats();
+    JsonObject statistics = new JsonObject();
+    statistics.addProperty("cached", cache.synchronous().estimatedSize());
+    statistics.addProperty("hits", stats.hitCount());
+    statistics.addProperty("misses", stats.missCount());
+    statistics.addProperty("lookups", lookups.sum());
+    statistics.addProperty("failedLookups", failedLookups.sum());
+    statistics.addProperty("averageLookupMillis",
+        TimeUnit.NANOSECONDS.toMillis((long) stats.averageLoadPenalty()));
+    return statistics;
+  }
+
   /**
    * Returns a view of this resolver as a AddressResolverGroup.
    *
@@ -130,4 +265,21 @@ public final class SeparatePoolInetNameResolver extends InetNameResolver {
     }
     return this.resolverGroup;
   }
+
+  /**
+   * Looks up the addresses of a host, blocking until they are known.
+   */
+  @FunctionalInterface
+  interface HostLookup {
+
+    InetAddress[] lookup(String inetHost) throws UnknownHostException;
+  }
+
+  /**
+   * The outcome of a lookup: either the addresses of the host, or why it couldn't be found.
+   * {@code retained} is set when the addresses were kept after a failed refresh.
+   */
+  private record Resolution(@Nullable List<InetAddress> addresses,
+                            @Nullable UnknownHostException failure, boolean retained) {
+  }
 }
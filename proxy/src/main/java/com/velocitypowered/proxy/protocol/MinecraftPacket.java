@@ -41,4 +41,17 @@ public interface MinecraftPacket {
       ProtocolVersion version) {
     return 0;
   }
+
+  /**
+   * Returns the number of bytes this packet will take once encoded, without its packet ID, so that
+   * the encoder can allocate its buffer once. The hint does not have to be exact, but should err
+   * on the larger side.
+   *
+   * @param direction the direction the packet is sent to
+   * @param version the protocol version the packet is encoded with
+   * @return the expected size of the encoded packet, or -1 if unknown
+   */
+  default int encodedSizeHint(ProtocolUtils.Direction direction, ProtocolVersion version) {
+    return -1;
+  }
 }
@@ -267,6 +267,18 @@ public enum ProtocolUtils {
     buf.writeCharSequence(str, StandardCharsets.UTF_8);
   }
 
+  /**
+   * Returns the exact byte size of {@code str} if it were written with
+   * {@link #writeString(ByteBuf, CharSequence)}.
+   *
+   * @param str the string to write
+   * @return the byte size of {@code str} if written as a string
+   */
+  public static int stringBytes(CharSequence str) {
+    int size = ByteBufUtil.utf8Bytes(str);
+    return varIntBytes(size) + size;
+  }
+
   /**
    * Reads a standard Mojang Text namespaced:key from the buffer.
    *
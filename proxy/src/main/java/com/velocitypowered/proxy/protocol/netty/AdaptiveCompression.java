@@ -0,0 +1,226 @@
+/*
+ * Copyright (C) 2024 Velocity Contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.velocitypowered.proxy.protocol.netty;
+
+import com.google.gson.JsonObject;
+import com.velocitypowered.natives.compression.SharedCompressorPool;
+import com.velocitypowered.natives.compression.VelocityCompressor;
+import io.netty.util.concurrent.EventExecutor;
+import java.util.concurrent.atomic.LongAdder;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/**
+ * Chooses how each packet above the compression threshold is compressed, based on how well the
+ * previous packets with the same ID compressed on this connection.
+ *
+ * <p>Packets that barely shrink are stored uncompressed (a data length of 0 is valid for packets
+ * of any size), packets that shrink a little are compressed with the fastest level, and the others
+ * with the configured level. When the connection isn't writable, egress bandwidth rather than CPU
+ * is the bottleneck, so packets that compress well are compressed with the highest level instead.
+ * Packets that are no longer compressed are still sampled now and then, so that a packet ID whose
+ * contents change is noticed.</p>
+ *
+ * <p>An instance is confined to the event loop of its connection. The ratios and CPU time of
+ * every packet ID are also tracked globally for {@code /velocity dump}, only while adaptive
+ * compression is enabled, as peeking at the packet ID and timing every packet is not free.</p>
+ */
+public final class AdaptiveCompression {
+
+  /**
+   * The level returned by {@link #select(int, boolean)} when the packet should be sent
+   * uncompressed.
+   */
+  static final int STORE = 0;
+
+  private static final int FAST_LEVEL = 1;
+  private static final int HIGH_LEVEL = 9;
+  private static final int DEFAULT_LEVEL = 6;
+
+  // Packet IDs are small, and the few that aren't are always compressed at the configured level
+  private static final int TRACKED_IDS = 256;
+  private static final int WARMUP_SAMPLES = 4;
+  private static final int RESAMPLE_INTERVAL = 32;
+  private static final float STORE_RATIO = 0.95f;
+  private static final float FAST_RATIO = 0.8f;
+
+  private static final PacketStatistics[] STATISTICS = new PacketStatistics[TRACKED_IDS + 1];
+
+  static {
+    for (int i = 0; i < STATISTICS.length; i++) {
+      STATISTICS[i] = new PacketStatistics();
+    }
+  }
+
+  private final SharedCompressorPool pool;
+  private final EventExecutor executor;
+  private final int baseLevel;
+  private final float[] ratios = new float[TRACKED_IDS];
+  private final int[] packets = new int[TRACKED_IDS];
+  private @Nullable VelocityCompressor fastCompressor;
+  private @Nullable VelocityCompressor highCompressor;
+
+  /**
+   * Creates the compression policy of a connection.
+   *
+   * @param pool the pool to take the compressors of the other levels from
+   * @param executor the event loop of the connection
+   * @param level the configured compression level
+   */
+  public AdaptiveCompression(SharedCompressorPool pool, EventExecutor executor, int level) {
+    this.pool = pool;
+    this.executor = executor;
+    this.baseLevel = level == -1 ? DEFAULT_LEVEL : level;
+  }
+
+  /**
+   * Chooses the level to compress a packet with.
+   *
+   * @param packetId the ID of the packet
+   * @param writable whether the connection is writable
+   * @return the compression level, or {@link #STORE} if the packet should not be compressed
+   */
+  int select(int packetId, boolean writable) {
+    if (packetId < 0 || packetId >= TRACKED_IDS) {
+      return baseLevel;
+    }
+    int seen = packets[packetId]++;
+    if (seen < WARMUP_SAMPLES) {
+      return baseLevel;
+    }
+    float ratio = ratios[packetId];
+    if (ratio >= STORE_RATIO) {
+      // Sample now and then, with the cheapest level
+      return seen % RESAMPLE_INTERVAL == 0 ? Math.min(FAST_LEVEL, baseLevel) : STORE;
+    } else if (ratio >= FAST_RATIO) {
+      return Math.min(FAST_LEVEL, baseLevel);
+    } else if (!writable) {
+      return Math.max(HIGH_LEVEL, baseLevel);
+    }
+    return baseLevel;
+  }
+
+  /**
+   * Records how well a packet compressed.
+   *
+   * @param packetId the ID of the packet
+   * @param uncompressed the size of the packet
+   * @param compressed the size of the compressed packet
+   */
+  void sample(int packetId, int uncompressed, int compressed) {
+    if (packetId < 0 || packetId >= TRACKED_IDS) {
+      return;
+    }
+    float ratio = (float) compressed / uncompressed;
+    ratios[packetId] = packets[packetId] <= 1 ? ratio : ratios[packetId] * 0.75f + ratio * 0.25f;
+  }
+
+  /**
+   * Returns the compressor for the specified level, taking it from the pool the first time it is
+   * needed.
+   *
+   * @param level the compression level returned by {@link #select(int, boolean)}
+   * @param base the compressor of the configured level
+   * @return the compressor to use
+   */
+  VelocityCompressor compressor(int level, VelocityCompressor base) {
+    if (level == baseLevel) {
+      return base;
+    } else if (level < baseLevel) {
+      if (fastCompressor == null) {
+        fastCompressor = pool.acquire(executor, level);
+      }
+      return fastCompressor;
+    }
+    if (highCompressor == null) {
+      highCompressor = pool.acquire(executor, level);
+    }
+    return highCompressor;
+  }
+
+  /**
+   * Returns the compressors of the other levels to the pool.
+   */
+  void release() {
+    if (fastCompressor != null) {
+      fastCompressor.close();
+      fastCompressor = null;
+    }
+    if (highCompressor != null) {
+      highCompressor.close();
+      highCompressor = null;
+    }
+  }
+
+  /**
+   * Records a packet above the compression threshold in the global statistics.
+   *
+   * @param packetId the ID of the packet
+   * @param uncompressed the size of the packet
+   * @param sent the size of the packet once compressed, or as stored if it wasn't
+   * @param nanos the time spent compressing the packet
+   */
+  static void record(int packetId, int uncompressed, int sent, long nanos) {
+    PacketStatistics statistics =
+        STATISTICS[packetId < 0 || packetId >= TRACKED_IDS ? TRACKED_IDS : packetId];
+    statistics.packets.increment();
+    statistics.uncompressedBytes.add(uncompressed);
+    statistics.sentBytes.add(sent);
+    if (nanos < 0) {
+      statistics.stored.increment();
+    } else {
+      statistics.nanos.add(nanos);
+    }
+  }
+
+  /**
+   * Collects the compression ratio and CPU time of every packet ID for {@code /velocity dump}.
+   * The same ID may stand for different packets in different versions and states.
+   *
+   * @return the statistics of every packet ID compressed so far
+   */
+  public static JsonObject collectStatistics() {
+    JsonObject statistics = new JsonObject();
+    for (int i = 0; i < STATISTICS.length; i++) {
+      PacketStatistics packet = STATISTICS[i];
+      long count = packet.packets.sum();
+      if (count == 0) {
+        continue;
+      }
+      long uncompressed = packet.uncompressedBytes.sum();
+      long sent = packet.sentBytes.sum();
+      JsonObject entry = new JsonObject();
+      entry.addProperty("packets", count);
+      entry.addProperty("stored", packet.stored.sum());
+      entry.addProperty("uncompressedBytes", uncompressed);
+      entry.addProperty("sentBytes", sent);
+      entry.addProperty("ratio", uncompressed == 0 ? 0 : (double) sent / uncompressed);
+      entry.addProperty("cpuMicros", packet.nanos.sum() / 1000);
+      statistics.add(i == TRACKED_IDS ? "other" : String.format("0x%02X", i), entry);
+    }
+    return statistics;
+  }
+
+  private static final class PacketStatistics {
+
+    private final LongAdder packets = new LongAdder();
+    private final LongAdder stored = new LongAdder();
+    private final LongAdder uncompressedBytes = new LongAdder();
+    private final LongAdder sentBytes = new LongAdder();
+    private final LongAdder nanos = new LongAdder();
+  }
+}
@@ -17,6 +17,8 @@
 
 package com.velocitypowered.proxy.protocol.netty;
 
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufHolder;
 import io.netty.channel.ChannelDuplexHandler;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.util.ReferenceCountUtil;
@@ -30,6 +32,7 @@ import java.util.Queue;
 public class AutoReadHolderHandler extends ChannelDuplexHandler {
 
   private final Queue<Object> queuedMessages;
+  private volatile long queuedBytes;
 
   public AutoReadHolderHandler() {
     this.queuedMessages = new ArrayDeque<>();
@@ -45,6 +48,7 @@ public class AutoReadHolderHandler extends ChannelDuplexHandler {
     if (!this.queuedMessages.isEmpty()) {
       Object queued;
       while ((queued = this.queuedMessages.poll()) != null) {
+        queuedBytes -= bytes(queued);
         ctx.fireChannelRead(queued);
       }
       ctx.fireChannelReadComplete();
@@ -56,6 +60,7 @@ public class AutoReadHolderHandler extends ChannelDuplexHandler {
     if (ctx.channel().config().isAutoRead()) {
       ctx.fireChannelRead(msg);
     } else {
+      queuedBytes += bytes(msg);
       this.queuedMessages.add(msg);
     }
   }
@@ -77,5 +82,25 @@ public class AutoReadHolderHandler extends ChannelDuplexHandler {
       ReferenceCountUtil.release(message);
     }
     this.queuedMessages.clear();
+    queuedBytes = 0;
+  }
+
+  private static int bytes(Object msg) {
+    if (msg instanceof ByteBuf buf) {
+      return buf.readableBytes();
+    } else if (msg instanceof ByteBufHolder holder) {
+      return holder.content().readableBytes();
+    }
+    return 0;
+  }
+
+  /**
+   * Returns the number of bytes held while reading is paused. Only packets that were not decoded,
+   * which make up most of the data sent by servers, are counted. May be called from any thread.
+   *
+   * @return the number of held bytes
+   */
+  public long getQueuedBytes() {
+    return queuedBytes;
   }
 }
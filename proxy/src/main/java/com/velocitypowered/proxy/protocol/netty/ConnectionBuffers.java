@@ -0,0 +1,194 @@
+/*
+ * Copyright (C) 2024 Velocity Contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.velocitypowered.proxy.protocol.netty;
+
+import static com.velocitypowered.proxy.network.Connections.CIPHER_ENCODER;
+import static com.velocitypowered.proxy.network.Connections.COMPRESSION_ENCODER;
+
+import com.google.gson.JsonObject;
+import com.velocitypowered.natives.Native;
+import com.velocitypowered.natives.util.BufferPreference;
+import com.velocitypowered.natives.util.MoreByteBufUtils;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.util.AttributeKey;
+import java.util.concurrent.atomic.LongAdder;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/**
+ * Decides once per connection whether its outbound buffers are allocated on the heap or in direct
+ * memory, so that the compressor and the cipher of the connection can work on them in place.
+ *
+ * <p>The preference is negotiated again whenever compression or encryption is enabled. Without a
+ * cipher, direct buffers are used as they can be written to the socket as is. Buffers that still
+ * have to be copied because two natives disagree (for instance libdeflate, which requires direct
+ * buffers, and the Java cipher, which requires heap buffers) are counted, and so are the inbound
+ * buffers read from the socket that the natives can't work on.</p>
+ */
+public final class ConnectionBuffers {
+
+  private static final AttributeKey<Preference> PREFERENCE =
+      AttributeKey.valueOf("velocity-buffer-preference");
+  private static final Preference DIRECT = new Preference(false, false);
+
+  private static final LongAdder COPIES = new LongAdder();
+  private static final LongAdder COPIED_BYTES = new LongAdder();
+
+  private ConnectionBuffers() {
+    throw new AssertionError();
+  }
+
+  /**
+   * Negotiates the buffer types of a connection from its current cipher and compressor. Must be
+   * called whenever either of them changes.
+   *
+   * @param channel the channel of the connection
+   */
+  public static void negotiate(Channel channel) {
+    MinecraftFusedOutboundEncoder fused =
+        channel.pipeline().get(MinecraftFusedOutboundEncoder.class);
+    if (fused != null) {
+      channel.attr(PREFERENCE).set(negotiate(fused.getCipher(), fused.getCompressor()));
+      return;
+    }
+    MinecraftCipherEncoder cipherEncoder =
+        (MinecraftCipherEncoder) channel.pipeline().get(CIPHER_ENCODER);
+    MinecraftCompressorAndLengthEncoder compressionEncoder =
+        (MinecraftCompressorAndLengthEncoder) channel.pipeline().get(COMPRESSION_ENCODER);
+    channel.attr(PREFERENCE).set(negotiate(
+        cipherEncoder == null ? null : cipherEncoder.getCipher(),
+        compressionEncoder == null ? null : compressionEncoder.getCompressor()));
+  }
+
+  private static Preference negotiate(@Nullable Native cipher, @Nullable Native compressor) {
+    // The cipher processes every byte written, framed packets are allocated the way it wants
+    boolean frameHeap = cipher != null && isHeap(cipher.preferredBufferType());
+    if (compressor == null) {
+      return new Preference(frameHeap, frameHeap);
+    }
+    // Packets above the threshold go through the compressor first, only give it heap buffers if it
+    // can work on them
+    boolean packetHeap = switch (compressor.preferredBufferType()) {
+      case HEAP_REQUIRED, HEAP_PREFERRED -> true;
+      case DIRECT_REQUIRED -> false;
+      case DIRECT_PREFERRED -> frameHeap;
+    };
+    return new Preference(packetHeap, frameHeap);
+  }
+
+  private static boolean isHeap(BufferPreference preference) {
+    return preference == BufferPreference.HEAP_REQUIRED
+        || preference == BufferPreference.HEAP_PREFERRED;
+  }
+
+  private static Preference preference(ChannelHandlerContext ctx) {
+    Preference preference = ctx.channel().attr(PREFERENCE).get();
+    return preference == null ? DIRECT : preference;
+  }
+
+  /**
+   * Allocates a buffer for an encoded packet, before it is compressed or framed.
+   *
+   * @param ctx the context of the handler
+   * @param initialCapacity the initial capacity of the buffer
+   * @return the buffer
+   */
+  static ByteBuf allocatePacket(ChannelHandlerContext ctx, int initialCapacity) {
+    return preference(ctx).packetHeap()
+        ? ctx.alloc().heapBuffer(initialCapacity)
+        : ctx.alloc().directBuffer(initialCapacity);
+  }
+
+  /**
+   * Allocates a buffer for framed packets, right before they are encrypted.
+   *
+   * @param ctx the context of the handler
+   * @param initialCapacity the initial capacity of the buffer
+   * @return the buffer
+   */
+  static ByteBuf allocateFrame(ChannelHandlerContext ctx, int initialCapacity) {
+    return allocateFrame(ctx, initialCapacity, Integer.MAX_VALUE);
+  }
+
+  /**
+   * Allocates a buffer of bounded size for framed packets, right before they are encrypted.
+   *
+   * @param ctx the context of the handler
+   * @param initialCapacity the initial capacity of the buffer
+   * @param maxCapacity the maximum capacity of the buffer
+   * @return the buffer
+   */
+  static ByteBuf allocateFrame(ChannelHandlerContext ctx, int initialCapacity, int maxCapacity) {
+    return preference(ctx).frameHeap()
+        ? ctx.alloc().heapBuffer(initialCapacity, maxCapacity)
+        : ctx.alloc().directBuffer(initialCapacity, maxCapacity);
+  }
+
+  /**
+   * Allocates a buffer for framed packets that a native writes to, which takes precedence if it
+   * requires a specific type of buffer.
+   *
+   * @param ctx the context of the handler
+   * @param nativeStuff the native that writes to the buffer
+   * @param initialCapacity the initial capacity of the buffer
+   * @return the buffer
+   */
+  static ByteBuf allocateFrame(ChannelHandlerContext ctx, Native nativeStuff,
+      int initialCapacity) {
+    return switch (nativeStuff.preferredBufferType()) {
+      case HEAP_REQUIRED -> ctx.alloc().heapBuffer(initialCapacity);
+      case DIRECT_REQUIRED -> ctx.alloc().directBuffer(initialCapacity);
+      default -> allocateFrame(ctx, initialCapacity);
+    };
+  }
+
+  /**
+   * Ensures that the buffer will work with the specified native, counting the copy if one is
+   * needed. The returned buffer must be released.
+   *
+   * @param alloc the allocator to copy the buffer with
+   * @param nativeStuff the native about to work on the buffer
+   * @param buf the buffer
+   * @return a buffer compatible with the native
+   */
+  static ByteBuf ensureCompatible(ByteBufAllocator alloc, Native nativeStuff, ByteBuf buf) {
+    ByteBuf compatible = MoreByteBufUtils.ensureCompatible(alloc, nativeStuff, buf);
+    if (compatible != buf) {
+      COPIES.increment();
+      COPIED_BYTES.add(compatible.readableBytes());
+    }
+    return compatible;
+  }
+
+  /**
+   * Collects the number of buffers that had to be copied for a native for {@code /velocity dump}.
+   *
+   * @return the copy counters
+   */
+  public static JsonObject collectStatistics() {
+    JsonObject statistics = new JsonObject();
+    statistics.addProperty("copies", COPIES.sum());
+    statistics.addProperty("copiedBytes", COPIED_BYTES.sum());
+    return statistics;
+  }
+
+  private record Preference(boolean packetHeap, boolean frameHeap) {
+  }
+}
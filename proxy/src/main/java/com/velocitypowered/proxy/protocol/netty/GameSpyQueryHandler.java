@@ -30,6 +30,7 @@ import com.velocitypowered.api.plugin.PluginDescription;
 import com.velocitypowered.api.proxy.Player;
 import com.velocitypowered.api.proxy.server.QueryResponse;
 import com.velocitypowered.proxy.VelocityServer;
+import com.velocitypowered.proxy.util.ratelimit.ConnectionRatelimiter.Rule;
 import io.netty.buffer.ByteBuf;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.SimpleChannelInboundHandler;
@@ -107,6 +108,10 @@ public class GameSpyQueryHandler extends SimpleChannelInboundHandler<DatagramPac
   protected void channelRead0(ChannelHandlerContext ctx, DatagramPacket msg) throws Exception {
     ByteBuf queryMessage = msg.content();
     InetAddress senderAddress = msg.sender().getAddress();
+    if (!server.getConnectionRatelimiter().attempt(Rule.QUERY, senderAddress)) {
+      // Answering would only amplify a flood of spoofed queries
+      return;
+    }
 
     // Verify query packet magic
     if (queryMessage.readUnsignedByte() != QUERY_MAGIC_FIRST
@@ -19,7 +19,6 @@ package com.velocitypowered.proxy.protocol.netty;
 
 import com.google.common.base.Preconditions;
 import com.velocitypowered.natives.encryption.VelocityCipher;
-import com.velocitypowered.natives.util.MoreByteBufUtils;
 import io.netty.buffer.ByteBuf;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.handler.codec.MessageToMessageEncoder;
@@ -38,7 +37,7 @@ public class MinecraftCipherEncoder extends MessageToMessageEncoder<ByteBuf> {
 
   @Override
   protected void encode(ChannelHandlerContext ctx, ByteBuf msg, List<Object> out) throws Exception {
-    ByteBuf compatible = MoreByteBufUtils.ensureCompatible(ctx.alloc(), cipher, msg);
+    ByteBuf compatible = ConnectionBuffers.ensureCompatible(ctx.alloc(), cipher, msg);
     try {
       cipher.process(compatible);
       out.add(compatible);
@@ -48,6 +47,10 @@ public class MinecraftCipherEncoder extends MessageToMessageEncoder<ByteBuf> {
     }
   }
 
+  VelocityCipher getCipher() {
+    return cipher;
+  }
+
   @Override
   public void handlerRemoved(ChannelHandlerContext ctx) throws Exception {
     cipher.close();
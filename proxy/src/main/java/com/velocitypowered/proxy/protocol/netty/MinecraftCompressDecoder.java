@@ -17,7 +17,6 @@
 
 package com.velocitypowered.proxy.protocol.netty;
 
-import static com.velocitypowered.natives.util.MoreByteBufUtils.ensureCompatible;
 import static com.velocitypowered.natives.util.MoreByteBufUtils.preferredBuffer;
 import static com.velocitypowered.proxy.protocol.util.NettyPreconditions.checkFrame;
 
@@ -50,11 +49,25 @@ public class MinecraftCompressDecoder extends MessageToMessageDecoder<ByteBuf> {
 
   @Override
   protected void decode(ChannelHandlerContext ctx, ByteBuf in, List<Object> out) throws Exception {
+    out.add(decompress(ctx, compressor, threshold, in));
+  }
+
+  /**
+   * Decompresses a packet, if it is compressed.
+   *
+   * @param ctx the context of the handler
+   * @param compressor the compressor of the connection
+   * @param threshold the compression threshold of the connection
+   * @param in the packet, prefixed by its uncompressed length
+   * @return the uncompressed packet, which must be released
+   * @throws Exception if the packet is invalid
+   */
+  static ByteBuf decompress(ChannelHandlerContext ctx, VelocityCompressor compressor,
+      int threshold, ByteBuf in) throws Exception {
     int claimedUncompressedSize = ProtocolUtils.readVarInt(in);
     if (claimedUncompressedSize == 0) {
       // This message is not compressed.
-      out.add(in.retain());
-      return;
+      return in.retain();
     }
 
     checkFrame(claimedUncompressedSize >= threshold, "Uncompressed size %s is less than"
@@ -63,11 +76,11 @@ public class MinecraftCompressDecoder extends MessageToMessageDecoder<ByteBuf> {
         "Uncompressed size %s exceeds hard threshold of %s", claimedUncompressedSize,
         UNCOMPRESSED_CAP);
 
-    ByteBuf compatibleIn = ensureCompatible(ctx.alloc(), compressor, in);
+    ByteBuf compatibleIn = ConnectionBuffers.ensureCompatible(ctx.alloc(), compressor, in);
     ByteBuf uncompressed = preferredBuffer(ctx.alloc(), compressor, claimedUncompressedSize);
     try {
       compressor.inflate(compatibleIn, uncompressed, claimedUncompressedSize);
-      out.add(uncompressed);
+      return uncompressed;
     } catch (Exception e) {
       uncompressed.release();
       throw e;
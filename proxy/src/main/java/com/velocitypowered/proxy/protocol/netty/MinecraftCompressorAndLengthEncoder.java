@@ -17,27 +17,42 @@
 
 package com.velocitypowered.proxy.protocol.netty;
 
-import static com.velocitypowered.proxy.protocol.netty.MinecraftVarintLengthEncoder.IS_JAVA_CIPHER;
-
 import com.velocitypowered.natives.compression.VelocityCompressor;
-import com.velocitypowered.natives.util.MoreByteBufUtils;
 import com.velocitypowered.proxy.protocol.ProtocolUtils;
 import io.netty.buffer.ByteBuf;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.handler.codec.MessageToByteEncoder;
 import java.util.zip.DataFormatException;
+import org.checkerframework.checker.nullness.qual.Nullable;
 
 /**
  * Handler for compressing Minecraft packets.
  */
 public class MinecraftCompressorAndLengthEncoder extends MessageToByteEncoder<ByteBuf> {
 
+  private static final int MAXIMUM_FRAME_LENGTH = (1 << 21) - 1;
+
   private int threshold;
   private final VelocityCompressor compressor;
+  private final @Nullable AdaptiveCompression adaptive;
 
   public MinecraftCompressorAndLengthEncoder(int threshold, VelocityCompressor compressor) {
+    this(threshold, compressor, null);
+  }
+
+  /**
+   * Creates a new compressor.
+   *
+   * @param threshold the compression threshold
+   * @param compressor the compressor of the configured compression level
+   * @param adaptive the policy choosing the level of each packet, or {@code null} to compress
+   *                 every packet with the configured level
+   */
+  public MinecraftCompressorAndLengthEncoder(int threshold, VelocityCompressor compressor,
+      @Nullable AdaptiveCompression adaptive) {
     this.threshold = threshold;
     this.compressor = compressor;
+    this.adaptive = adaptive;
   }
 
   @Override
@@ -55,11 +70,38 @@ public class MinecraftCompressorAndLengthEncoder extends MessageToByteEncoder<By
 
   private void handleCompressed(ChannelHandlerContext ctx, ByteBuf msg, ByteBuf out)
       throws DataFormatException {
+    if (adaptive == null) {
+      deflate(ctx, msg, out, compressor);
+      return;
+    }
+
+    // The statistics are only kept when adaptive compression is enabled
     int uncompressed = msg.readableBytes();
+    int packetId = peekPacketId(msg);
+    int level = adaptive.select(packetId, ctx.channel().isWritable());
+    VelocityCompressor compressor = this.compressor;
+    if (level != AdaptiveCompression.STORE) {
+      compressor = adaptive.compressor(level, this.compressor);
+    } else if (uncompressed < MAXIMUM_FRAME_LENGTH) {
+      // Not worth compressing, a data length of 0 marks the packet as uncompressed
+      ProtocolUtils.write21BitVarInt(out, uncompressed + 1);
+      ProtocolUtils.writeVarInt(out, 0);
+      out.writeBytes(msg);
+      AdaptiveCompression.record(packetId, uncompressed, uncompressed, -1);
+      return;
+    }
+
+    long start = System.nanoTime();
+    int compressedLength = deflate(ctx, msg, out, compressor);
+    AdaptiveCompression.record(packetId, uncompressed, compressedLength, System.nanoTime() - start);
+    adaptive.sample(packetId, uncompressed, compressedLength);
+  }
 
+  private int deflate(ChannelHandlerContext ctx, ByteBuf msg, ByteBuf out,
+      VelocityCompressor compressor) throws DataFormatException {
     ProtocolUtils.write21BitVarInt(out, 0); // Dummy packet length
-    ProtocolUtils.writeVarInt(out, uncompressed);
-    ByteBuf compatibleIn = MoreByteBufUtils.ensureCompatible(ctx.alloc(), compressor, msg);
+    ProtocolUtils.writeVarInt(out, msg.readableBytes());
+    ByteBuf compatibleIn = ConnectionBuffers.ensureCompatible(ctx.alloc(), compressor, msg);
 
     int startCompressed = out.writerIndex();
     try {
@@ -77,6 +119,7 @@ public class MinecraftCompressorAndLengthEncoder extends MessageToByteEncoder<By
     out.writerIndex(0);
     ProtocolUtils.write21BitVarInt(out, packetLength); // Rewrite packet length
     out.writerIndex(writerIndex);
+    return compressedLength;
   }
 
   @Override
@@ -86,19 +129,43 @@ public class MinecraftCompressorAndLengthEncoder extends MessageToByteEncoder<By
     if (uncompressed < threshold) {
       int finalBufferSize = uncompressed + 1;
       finalBufferSize += ProtocolUtils.varIntBytes(finalBufferSize);
-      return IS_JAVA_CIPHER
-          ? ctx.alloc().heapBuffer(finalBufferSize)
-          : ctx.alloc().directBuffer(finalBufferSize);
+      return ConnectionBuffers.allocateFrame(ctx, finalBufferSize);
     }
 
     // (maximum data length after compression) + packet length varint + uncompressed data varint
     int initialBufferSize = (uncompressed - 1) + 3 + ProtocolUtils.varIntBytes(uncompressed);
-    return MoreByteBufUtils.preferredBuffer(ctx.alloc(), compressor, initialBufferSize);
+    return ConnectionBuffers.allocateFrame(ctx, compressor, initialBufferSize);
+  }
+
+  private static int peekPacketId(ByteBuf msg) {
+    int readerIndex = msg.readerIndex();
+    try {
+      return ProtocolUtils.readVarInt(msg);
+    } catch (RuntimeException e) {
+      return -1;
+    } finally {
+      msg.readerIndex(readerIndex);
+    }
   }
 
   @Override
   public void handlerRemoved(ChannelHandlerContext ctx) throws Exception {
+    release();
+  }
+
+  /**
+   * Releases the compressors of this encoder. Called when it is removed from the pipeline, or
+   * by the fused outbound encoder which uses it without adding it to the pipeline.
+   */
+  void release() {
     compressor.close();
+    if (adaptive != null) {
+      adaptive.release();
+    }
+  }
+
+  VelocityCompressor getCompressor() {
+    return compressor;
   }
 
   public void setThreshold(int threshold) {
@@ -18,6 +18,7 @@
 package com.velocitypowered.proxy.protocol.netty;
 
 import com.google.common.base.Preconditions;
+import com.google.gson.JsonObject;
 import com.velocitypowered.api.network.ProtocolVersion;
 import com.velocitypowered.proxy.protocol.MinecraftPacket;
 import com.velocitypowered.proxy.protocol.ProtocolUtils;
@@ -25,12 +26,29 @@ import com.velocitypowered.proxy.protocol.StateRegistry;
 import io.netty.buffer.ByteBuf;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.handler.codec.MessageToByteEncoder;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * Encodes {@link MinecraftPacket} instances.
+ *
+ * <p>Buffers are sized from {@link MinecraftPacket#encodedSizeHint}, so that large packets are
+ * not grown several times while being encoded. With the {@code velocity.packet-size-hint-debug}
+ * system property, how far the hints were from the encoded size of each packet is reported in
+ * {@code /velocity dump}, along with the packets without a hint that outgrew the default
+ * buffer.</p>
  */
 public class MinecraftEncoder extends MessageToByteEncoder<MinecraftPacket> {
 
+  private static final int DEFAULT_BUFFER_SIZE = 256;
+  private static final int MAX_PACKET_ID_BYTES = 5;
+  private static final boolean DEBUG_SIZE_HINTS =
+      Boolean.getBoolean("velocity.packet-size-hint-debug");
+  private static final ConcurrentMap<Class<?>, HintStatistics> SIZE_HINTS =
+      new ConcurrentHashMap<>();
+
   private final ProtocolUtils.Direction direction;
   private StateRegistry state;
   private StateRegistry.PacketRegistry.ProtocolRegistry registry;
@@ -47,11 +65,68 @@ public class MinecraftEncoder extends MessageToByteEncoder<MinecraftPacket> {
     this.state = StateRegistry.HANDSHAKE;
   }
 
+  @Override
+  protected ByteBuf allocateBuffer(ChannelHandlerContext ctx, MinecraftPacket msg,
+      boolean preferDirect) {
+    int hint = msg.encodedSizeHint(direction, registry.version);
+    return ConnectionBuffers.allocatePacket(ctx,
+        hint < 0 ? DEFAULT_BUFFER_SIZE : hint + MAX_PACKET_ID_BYTES);
+  }
+
   @Override
   protected void encode(ChannelHandlerContext ctx, MinecraftPacket msg, ByteBuf out) {
     int packetId = this.registry.getPacketId(msg);
     ProtocolUtils.writeVarInt(out, packetId);
+    int start = out.writerIndex();
     msg.encode(out, direction, registry.version);
+    if (DEBUG_SIZE_HINTS) {
+      recordSizeHint(msg, out.writerIndex() - start);
+    }
+  }
+
+  private void recordSizeHint(MinecraftPacket msg, int encoded) {
+    int hint = msg.encodedSizeHint(direction, registry.version);
+    if (hint < 0 && encoded <= DEFAULT_BUFFER_SIZE) {
+      return;
+    }
+    HintStatistics statistics =
+        SIZE_HINTS.computeIfAbsent(msg.getClass(), ignored -> new HintStatistics());
+    statistics.packets.increment();
+    statistics.encodedBytes.add(encoded);
+    if (hint < 0) {
+      statistics.unhinted.increment();
+    } else if (hint < encoded) {
+      statistics.underestimated.increment();
+      statistics.missingBytes.add(encoded - hint);
+    } else if (hint > encoded) {
+      statistics.overestimated.increment();
+      statistics.wastedBytes.add(hint - encoded);
+    }
+  }
+
+  /**
+   * Collects how far the size hints of every packet were from their encoded size for
+   * {@code /velocity dump}. Nothing is collected unless {@code velocity.packet-size-hint-debug}
+   * is set.
+   *
+   * @return the size hint mispredictions of every packet encoded so far
+   */
+  public static JsonObject collectStatistics() {
+    JsonObject statistics = new JsonObject();
+    statistics.addProperty("enabled", DEBUG_SIZE_HINTS);
+    for (Map.Entry<Class<?>, HintStatistics> entry : SIZE_HINTS.entrySet()) {
+      HintStatistics packet = entry.getValue();
+      JsonObject json = new JsonObject();
+      json.addProperty("packets", packet.packets.sum());
+      json.addProperty("encodedBytes", packet.encodedBytes.sum());
+      json.addProperty("unhinted", packet.unhinted.sum());
+      json.addProperty("underestimated", packet.underestimated.sum());
+      json.addProperty("missingBytes", packet.missingBytes.sum());
+      json.addProperty("overestimated", packet.overestimated.sum());
+      json.addProperty("wastedBytes", packet.wastedBytes.sum());
+      statistics.add(entry.getKey().getSimpleName(), json);
+    }
+    return statistics;
   }
 
   public void setProtocolVersion(final ProtocolVersion protocolVersion) {
@@ -66,4 +141,15 @@ public class MinecraftEncoder extends MessageToByteEncoder<MinecraftPacket> {
   public ProtocolUtils.Direction getDirection() {
     return direction;
   }
+
+  private static final class HintStatistics {
+
+    private final LongAdder packets = new LongAdder();
+    private final LongAdder encodedBytes = new LongAdder();
+    private final LongAdder unhinted = new LongAdder();
+    private final LongAdder underestimated = new LongAdder();
+    private final LongAdder missingBytes = new LongAdder();
+    private final LongAdder overestimated = new LongAdder();
+    private final LongAdder wastedBytes = new LongAdder();
+  }
 }
@@ -0,0 +1,165 @@
+/*
+ * Copyright (C) 2024 Velocity Contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.velocitypowered.proxy.protocol.netty;
+
+import static io.netty.util.ByteProcessor.FIND_NON_NUL;
+
+import com.google.common.base.Preconditions;
+import com.velocitypowered.natives.compression.VelocityCompressor;
+import com.velocitypowered.natives.encryption.VelocityCipher;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.handler.codec.ByteToMessageDecoder;
+import java.util.List;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/**
+ * Decrypts, frames and decompresses inbound packets in a single handler, replacing the cipher
+ * decoder, the frame decoder and the compression decoder. Received bytes are decrypted in place as
+ * they are read, and each frame is then cut from the cumulation and inflated directly, without
+ * going through two more handlers.
+ *
+ * <p>The handler is installed as the frame decoder. Once encryption and compression are enabled,
+ * the {@link #PLACEHOLDER} is installed under the names of the cipher and compression decoders,
+ * after this handler, so that a handler placed after either of them still only sees decrypted
+ * and decompressed data. The packet decoder is left untouched.</p>
+ *
+ * <p>Handlers placed between the original decoders do see different data: whole decoded packets
+ * after the cipher decoder instead of a decrypted stream of bytes, decompressed packets before
+ * the compression decoder, and encrypted bytes before the frame decoder. Plugins relying on these
+ * must not be used with this handler, which is only enabled with the
+ * {@code velocity.fused-inbound-decoder} system property.</p>
+ */
+public class MinecraftFusedInboundDecoder extends ByteToMessageDecoder {
+
+  /**
+   * Stands in for the handlers replaced by this one, and lets everything through.
+   */
+  public static final ChannelHandler PLACEHOLDER = new Placeholder();
+
+  private static final boolean ENABLED = Boolean.getBoolean("velocity.fused-inbound-decoder");
+
+  private @Nullable VelocityCipher cipher;
+  private @Nullable VelocityCompressor compressor;
+  private int threshold = -1;
+
+  public static boolean isEnabled() {
+    return ENABLED;
+  }
+
+  @Override
+  public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+    if (cipher != null && msg instanceof ByteBuf buf) {
+      ByteBuf compatible;
+      try {
+        compatible = ConnectionBuffers.ensureCompatible(ctx.alloc(), cipher, buf);
+      } finally {
+        buf.release();
+      }
+      try {
+        cipher.process(compatible);
+      } catch (Exception e) {
+        compatible.release();
+        throw e;
+      }
+      msg = compatible;
+    }
+    super.channelRead(ctx, msg);
+  }
+
+  @Override
+  protected void decode(ChannelHandlerContext ctx, ByteBuf in, List<Object> out)
+      throws Exception {
+    if (!ctx.channel().isActive()) {
+      in.clear();
+      return;
+    }
+
+    // skip any runs of 0x00 we might find
+    int packetStart = in.forEachByte(FIND_NON_NUL);
+    if (packetStart == -1) {
+      in.clear();
+      return;
+    }
+    in.readerIndex(packetStart);
+
+    // Only one frame is decoded per call: the packet may change the compression of the next ones
+    int preIndex = in.readerIndex();
+    int length = MinecraftVarintFrameDecoder.readRawVarInt21(in);
+    if (preIndex == in.readerIndex()) {
+      return;
+    }
+    if (length < 0) {
+      throw MinecraftVarintFrameDecoder.BAD_PACKET_LENGTH;
+    }
+
+    // note that zero-length packets are ignored
+    if (length > 0) {
+      if (in.readableBytes() < length) {
+        in.readerIndex(preIndex);
+      } else if (compressor == null) {
+        out.add(in.readRetainedSlice(length));
+      } else {
+        out.add(MinecraftCompressDecoder.decompress(ctx, compressor, threshold,
+            in.readSlice(length)));
+      }
+    }
+  }
+
+  /**
+   * Starts decrypting the bytes received from now on.
+   *
+   * @param cipher the decryption cipher
+   */
+  public void enableEncryption(VelocityCipher cipher) {
+    Preconditions.checkState(this.cipher == null, "Encryption is already enabled");
+    this.cipher = cipher;
+  }
+
+  /**
+   * Sets the compression of the packets decoded from now on.
+   *
+   * @param threshold the compression threshold, or -1 to disable compression
+   * @param compressor the compressor shared with the compression encoder, or {@code null} to
+   *                   disable compression
+   */
+  public void setCompression(int threshold, @Nullable VelocityCompressor compressor) {
+    this.threshold = threshold;
+    this.compressor = compressor;
+  }
+
+  public void setThreshold(int threshold) {
+    this.threshold = threshold;
+  }
+
+  @Override
+  protected void handlerRemoved0(ChannelHandlerContext ctx) throws Exception {
+    if (cipher != null) {
+      cipher.close();
+    }
+    if (compressor != null) {
+      compressor.close();
+    }
+  }
+
+  @ChannelHandler.Sharable
+  private static final class Placeholder extends ChannelInboundHandlerAdapter {
+  }
+}
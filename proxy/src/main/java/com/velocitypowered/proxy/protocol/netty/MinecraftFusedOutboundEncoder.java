@@ -0,0 +1,176 @@
+/*
+ * Copyright (C) 2024 Velocity Contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.velocitypowered.proxy.protocol.netty;
+
+import com.google.common.base.Preconditions;
+import com.velocitypowered.natives.compression.VelocityCompressor;
+import com.velocitypowered.natives.encryption.VelocityCipher;
+import com.velocitypowered.proxy.protocol.ProtocolUtils;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.DefaultByteBufHolder;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelOutboundHandlerAdapter;
+import io.netty.channel.ChannelPromise;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/**
+ * Frames, compresses and encrypts outbound packets in a single handler, replacing the frame
+ * encoder, the compression encoder and the cipher encoder. Each packet is framed (or compressed)
+ * into one buffer sized from the encoded packet, which is then encrypted in place, so a packet
+ * costs a single frame buffer instead of a length buffer, a frame buffer and a hop through each
+ * handler.
+ *
+ * <p>The handler is installed as the frame encoder, and stays there once compression is enabled.
+ * The {@link #PLACEHOLDER} is installed in place of the compression and cipher encoders once they
+ * are enabled, so that plugins placing their own handlers relative to them keep working. Packets
+ * are still encoded by the packet encoder, as plugins rewriting packets expect them to be encoded
+ * but not yet framed there. Packets already framed by the write coalescer are handed over as
+ * {@link Framed} and only encrypted; the coalescer doesn't pack packets while plugins have
+ * outbound handlers between it and this handler, so these never see a {@link Framed}. Enabled
+ * with the {@code velocity.fused-outbound-encoder} system property.</p>
+ */
+public class MinecraftFusedOutboundEncoder extends ChannelOutboundHandlerAdapter {
+
+  /**
+   * Stands in for the handlers replaced by this one, and lets everything through.
+   */
+  public static final ChannelHandler PLACEHOLDER = new Placeholder();
+
+  private static final boolean ENABLED = Boolean.getBoolean("velocity.fused-outbound-encoder");
+
+  private @Nullable VelocityCipher cipher;
+  private @Nullable MinecraftCompressorAndLengthEncoder compression;
+
+  public static boolean isEnabled() {
+    return ENABLED;
+  }
+
+  @Override
+  public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise)
+      throws Exception {
+    if (msg instanceof Framed framed) {
+      ByteBuf buf = framed.content();
+      msg = encrypt(ctx, buf);
+    } else if (msg instanceof ByteBuf buf) {
+      ByteBuf frame;
+      try {
+        frame = frame(ctx, buf);
+      } finally {
+        buf.release();
+      }
+      msg = encrypt(ctx, frame);
+    }
+    ctx.write(msg, promise);
+  }
+
+  private ByteBuf frame(ChannelHandlerContext ctx, ByteBuf buf) throws Exception {
+    ByteBuf frame;
+    if (compression != null) {
+      frame = compression.allocateBuffer(ctx, buf, true);
+      try {
+        compression.encode(ctx, buf, frame);
+      } catch (Exception e) {
+        frame.release();
+        throw e;
+      }
+    } else {
+      int length = buf.readableBytes();
+      frame = ConnectionBuffers.allocateFrame(ctx, ProtocolUtils.varIntBytes(length) + length);
+      ProtocolUtils.writeVarInt(frame, length);
+      frame.writeBytes(buf);
+    }
+    return frame;
+  }
+
+  private ByteBuf encrypt(ChannelHandlerContext ctx, ByteBuf buf) throws Exception {
+    if (cipher == null) {
+      return buf;
+    }
+    ByteBuf compatible;
+    try {
+      compatible = ConnectionBuffers.ensureCompatible(ctx.alloc(), cipher, buf);
+    } finally {
+      buf.release();
+    }
+    try {
+      cipher.process(compatible);
+    } catch (Exception e) {
+      compatible.release();
+      throw e;
+    }
+    return compatible;
+  }
+
+  /**
+   * Starts encrypting the bytes written from now on.
+   *
+   * @param cipher the encryption cipher
+   */
+  public void enableEncryption(VelocityCipher cipher) {
+    Preconditions.checkState(this.cipher == null, "Encryption is already enabled");
+    this.cipher = cipher;
+  }
+
+  /**
+   * Sets the compression of the packets written from now on, releasing the previous compressor.
+   *
+   * @param compression the compression encoder to compress packets with, which is not added to the
+   *                    pipeline, or {@code null} to disable compression
+   */
+  public void setCompression(@Nullable MinecraftCompressorAndLengthEncoder compression) {
+    if (this.compression != null) {
+      this.compression.release();
+    }
+    this.compression = compression;
+  }
+
+  public @Nullable MinecraftCompressorAndLengthEncoder getCompression() {
+    return compression;
+  }
+
+  @Nullable VelocityCipher getCipher() {
+    return cipher;
+  }
+
+  @Nullable VelocityCompressor getCompressor() {
+    return compression == null ? null : compression.getCompressor();
+  }
+
+  @Override
+  public void handlerRemoved(ChannelHandlerContext ctx) throws Exception {
+    if (cipher != null) {
+      cipher.close();
+    }
+    setCompression(null);
+  }
+
+  /**
+   * Packets that have already been framed, and only have to be encrypted.
+   */
+  static final class Framed extends DefaultByteBufHolder {
+
+    Framed(ByteBuf data) {
+      super(data);
+    }
+  }
+
+  @ChannelHandler.Sharable
+  private static final class Placeholder extends ChannelOutboundHandlerAdapter {
+  }
+}
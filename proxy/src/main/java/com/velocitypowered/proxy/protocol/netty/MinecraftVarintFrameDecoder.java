@@ -30,7 +30,7 @@ import java.util.List;
  */
 public class MinecraftVarintFrameDecoder extends ByteToMessageDecoder {
 
-  private static final QuietDecoderException BAD_PACKET_LENGTH =
+  static final QuietDecoderException BAD_PACKET_LENGTH =
       new QuietDecoderException("Bad packet length");
   private static final QuietDecoderException VARINT_TOO_BIG =
       new QuietDecoderException("VarInt too big");
@@ -79,7 +79,7 @@ public class MinecraftVarintFrameDecoder extends ByteToMessageDecoder {
    * @return the VarInt decoded, {@code 0} if no varint could be read
    * @throws QuietDecoderException if the VarInt is too big to be decoded
    */
-  private static int readRawVarInt21(ByteBuf buffer) {
+  static int readRawVarInt21(ByteBuf buffer) {
     if (buffer.readableBytes() < 4) {
       // we don't have enough that we can read a potentially full varint, so fall back to
       // the slow path.
@@ -17,8 +17,6 @@
 
 package com.velocitypowered.proxy.protocol.netty;
 
-import com.velocitypowered.natives.encryption.JavaVelocityCipher;
-import com.velocitypowered.natives.util.Natives;
 import com.velocitypowered.proxy.protocol.ProtocolUtils;
 import io.netty.buffer.ByteBuf;
 import io.netty.channel.ChannelHandler;
@@ -34,8 +32,6 @@ public class MinecraftVarintLengthEncoder extends MessageToMessageEncoder<ByteBu
 
   public static final MinecraftVarintLengthEncoder INSTANCE = new MinecraftVarintLengthEncoder();
 
-  static final boolean IS_JAVA_CIPHER = Natives.cipher.get() == JavaVelocityCipher.FACTORY;
-
   private MinecraftVarintLengthEncoder() {
   }
 
@@ -45,9 +41,7 @@ public class MinecraftVarintLengthEncoder extends MessageToMessageEncoder<ByteBu
     final int length = buf.readableBytes();
     final int varintLength = ProtocolUtils.varIntBytes(length);
 
-    final ByteBuf lenBuf = IS_JAVA_CIPHER
-        ? ctx.alloc().heapBuffer(varintLength)
-        : ctx.alloc().directBuffer(varintLength);
+    final ByteBuf lenBuf = ConnectionBuffers.allocateFrame(ctx, varintLength);
 
     ProtocolUtils.writeVarInt(lenBuf, length);
     list.add(lenBuf);
@@ -0,0 +1,264 @@
+/*
+ * Copyright (C) 2024 Velocity Contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.velocitypowered.proxy.protocol.netty;
+
+import static com.velocitypowered.proxy.network.Connections.CIPHER_ENCODER;
+import static com.velocitypowered.proxy.network.Connections.COMPRESSION_ENCODER;
+import static com.velocitypowered.proxy.network.Connections.FLOW_HANDLER;
+import static com.velocitypowered.proxy.network.Connections.FRAME_ENCODER;
+
+import com.google.gson.JsonObject;
+import com.velocitypowered.proxy.protocol.ProtocolUtils;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelOutboundHandler;
+import io.netty.channel.ChannelOutboundHandlerAdapter;
+import io.netty.channel.ChannelPromise;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/**
+ * Packs consecutive small packets into a single buffer, so that a burst of small packets reaches
+ * the cipher and the socket as one large write instead of thousands of tiny ones.
+ *
+ * <p>This handler sits right before the frame encoder (or the compression encoder) and frames
+ * packets that would not be compressed itself, directly into the shared buffer. The buffer is
+ * then written past the frame encoder, and is written out whenever the connection is flushed, a
+ * packet that can't be packed is written, or it reaches {@code velocity.write-coalescing-max-size}
+ * bytes. Packets of {@code velocity.write-coalescing-max-packet} bytes or more are never packed.
+ * With the {@link MinecraftFusedOutboundEncoder}, the buffer is handed to it to be encrypted.
+ * Setting either property to 0 disables coalescing. Packets are not packed while plugins have
+ * outbound handlers of their own between this handler and the frame encoder, as these would be
+ * skipped.</p>
+ *
+ * <p>Packets are still encoded into a buffer of their own and copied into the shared buffer.
+ * Whether a packet can be packed depends on its encoded size, and its frame starts with that
+ * size as a VarInt of variable length, so encoding it in place would mean moving it once its size
+ * is known anyway. Its own buffer comes from the pool and is released as soon as it has been
+ * copied.</p>
+ */
+public class MinecraftWriteCoalescer extends ChannelOutboundHandlerAdapter {
+
+  private static final int MAX_PACKET_SIZE =
+      Integer.getInteger("velocity.write-coalescing-max-packet", 1024);
+  private static final int MAX_BUFFER_SIZE =
+      Integer.getInteger("velocity.write-coalescing-max-size", 16384);
+  private static final int INITIAL_BUFFER_SIZE = Math.min(MAX_BUFFER_SIZE, 2048);
+  // Outbound handlers of the proxy that may sit in front of this one, none of them look at writes.
+  // With the fused encoder, the compression and cipher encoders are only placeholders.
+  private static final Set<String> OWN_HANDLERS =
+      Set.of(CIPHER_ENCODER, COMPRESSION_ENCODER, FLOW_HANDLER);
+
+  private static final LongAdder PACKETS = new LongAdder();
+  private static final LongAdder BUFFERS = new LongAdder();
+  private static final LongAdder BYTES = new LongAdder();
+  private static final LongAdder FOREIGN_HANDLERS = new LongAdder();
+
+  private @Nullable ChannelHandlerContext framer;
+  private boolean fused;
+  private int threshold = -1;
+  private @Nullable ByteBuf pending;
+  private int pendingPackets;
+  private @Nullable List<ChannelPromise> pendingPromises;
+
+  public static boolean isEnabled() {
+    return MAX_PACKET_SIZE > 0 && MAX_BUFFER_SIZE > 0;
+  }
+
+  @Override
+  public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) {
+    if (msg instanceof ByteBuf buf && append(ctx, buf, promise)) {
+      return;
+    }
+    // Keep the packets in order
+    writePending();
+    ctx.write(msg, promise);
+  }
+
+  private boolean append(ChannelHandlerContext ctx, ByteBuf buf, ChannelPromise promise) {
+    int length = buf.readableBytes();
+    if (length >= MAX_PACKET_SIZE || (threshold != -1 && length >= threshold)) {
+      return false;
+    }
+    if (framer == null) {
+      fused = ctx.pipeline().get(MinecraftFusedOutboundEncoder.class) != null;
+      // The fused encoder also encrypts, so the packed packets still have to go through it
+      framer = fused ? ctx
+          : ctx.pipeline().context(threshold == -1 ? FRAME_ENCODER : COMPRESSION_ENCODER);
+      if (framer == null) {
+        return false;
+      }
+    }
+
+    // With compression enabled, an uncompressed packet is prefixed with a data length of 0
+    int frameLength = threshold == -1 ? length : length + 1;
+    int size = ProtocolUtils.varIntBytes(frameLength) + frameLength;
+    if (pending != null && pending.maxWritableBytes() < size) {
+      writePending();
+    }
+    if (pending == null) {
+      if (size > MAX_BUFFER_SIZE || hasForeignHandlers(ctx)) {
+        return false;
+      }
+      pending = ConnectionBuffers.allocateFrame(ctx, Math.max(INITIAL_BUFFER_SIZE, size),
+          MAX_BUFFER_SIZE);
+    }
+
+    ProtocolUtils.writeVarInt(pending, frameLength);
+    if (threshold != -1) {
+      pending.writeByte(0);
+    }
+    pending.writeBytes(buf);
+    buf.release();
+    pendingPackets++;
+    if (!promise.isVoid()) {
+      if (pendingPromises == null) {
+        pendingPromises = new ArrayList<>();
+      }
+      pendingPromises.add(promise);
+    }
+    return true;
+  }
+
+  /**
+   * Returns whether a plugin added outbound handlers between this handler and the one the packed
+   * packets are handed to. These expect packets one by one, so packing is skipped while they are
+   * present. Only checked before starting a new buffer, as listing the handlers is not free.
+   */
+  private boolean hasForeignHandlers(ChannelHandlerContext ctx) {
+    List<String> names = ctx.pipeline().names();
+    // Packed packets are written past the framer, or handed to the fused encoder
+    String target = fused ? FRAME_ENCODER : framer.name();
+    int end = names.indexOf(ctx.name());
+    for (int i = names.indexOf(target) + 1; i < end; i++) {
+      String name = names.get(i);
+      if (ctx.pipeline().get(name) instanceof ChannelOutboundHandler
+          && !OWN_HANDLERS.contains(name)) {
+        FOREIGN_HANDLERS.increment();
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Writes out the packets packed so far, without flushing the connection. This must be called
+   * before changing the framing or encryption of the connection, as the packed packets have already
+   * been framed.
+   */
+  public void writePending() {
+    ByteBuf buf = pending;
+    if (buf == null) {
+      return;
+    }
+    List<ChannelPromise> promises = pendingPromises;
+    pending = null;
+    pendingPromises = null;
+
+    PACKETS.add(pendingPackets);
+    BUFFERS.increment();
+    BYTES.add(buf.readableBytes());
+    pendingPackets = 0;
+
+    Object msg = fused ? new MinecraftFusedOutboundEncoder.Framed(buf) : buf;
+    if (promises == null) {
+      framer.write(msg, framer.voidPromise());
+      return;
+    }
+    ChannelPromise aggregate = framer.newPromise();
+    aggregate.addListener(future -> {
+      for (ChannelPromise promise : promises) {
+        if (future.isSuccess()) {
+          promise.trySuccess();
+        } else {
+          promise.tryFailure(future.cause());
+        }
+      }
+    });
+    framer.write(msg, aggregate);
+  }
+
+  /**
+   * Returns the number of bytes packed but not yet written out. May be called from any thread, in
+   * which case the result is only an estimate.
+   *
+   * @return the number of packed bytes
+   */
+  public int getPendingBytes() {
+    ByteBuf buf = pending;
+    return buf == null ? 0 : buf.writerIndex();
+  }
+
+  @Override
+  public void flush(ChannelHandlerContext ctx) {
+    writePending();
+    ctx.flush();
+  }
+
+  @Override
+  public void close(ChannelHandlerContext ctx, ChannelPromise promise) throws Exception {
+    writePending();
+    ctx.close(promise);
+  }
+
+  @Override
+  public void handlerRemoved(ChannelHandlerContext ctx) {
+    if (framer != null && !framer.isRemoved()) {
+      writePending();
+    } else if (pending != null) {
+      pending.release();
+      pending = null;
+      if (pendingPromises != null) {
+        Exception cause = new IllegalStateException("Connection pipeline was torn down");
+        for (ChannelPromise promise : pendingPromises) {
+          promise.tryFailure(cause);
+        }
+        pendingPromises = null;
+      }
+    }
+  }
+
+  /**
+   * Sets the compression threshold of the connection, writing out the packets packed so far as
+   * they were framed for the previous threshold.
+   *
+   * @param threshold the compression threshold, or -1 if compression is disabled
+   */
+  public void setThreshold(int threshold) {
+    writePending();
+    this.threshold = threshold;
+    this.framer = null;
+  }
+
+  /**
+   * Collects the number of packets packed together for {@code /velocity dump}.
+   *
+   * @return the coalescing counters
+   */
+  public static JsonObject collectStatistics() {
+    JsonObject statistics = new JsonObject();
+    statistics.addProperty("packets", PACKETS.sum());
+    statistics.addProperty("buffers", BUFFERS.sum());
+    statistics.addProperty("bytes", BYTES.sum());
+    statistics.addProperty("skippedForForeignHandlers", FOREIGN_HANDLERS.sum());
+    return statistics;
+  }
+}
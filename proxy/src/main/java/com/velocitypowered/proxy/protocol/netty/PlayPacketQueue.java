@@ -0,0 +1,311 @@
+/*
+ * Copyright (C) 2024 Velocity Contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.velocitypowered.proxy.protocol.netty;
+
+import com.google.gson.JsonObject;
+import com.velocitypowered.api.network.ProtocolVersion;
+import com.velocitypowered.proxy.protocol.MinecraftPacket;
+import com.velocitypowered.proxy.protocol.ProtocolUtils;
+import com.velocitypowered.proxy.protocol.StateRegistry;
+import com.velocitypowered.proxy.protocol.packet.BossBarPacket;
+import com.velocitypowered.proxy.protocol.packet.DisconnectPacket;
+import com.velocitypowered.proxy.protocol.packet.HeaderAndFooterPacket;
+import com.velocitypowered.proxy.protocol.packet.RemovePlayerInfoPacket;
+import com.velocitypowered.proxy.protocol.packet.UpsertPlayerInfoPacket;
+import com.velocitypowered.proxy.protocol.packet.chat.SystemChatPacket;
+import com.velocitypowered.proxy.protocol.packet.chat.legacy.LegacyChatPacket;
+import com.velocitypowered.proxy.protocol.packet.title.GenericTitlePacket;
+import com.velocitypowered.proxy.protocol.packet.title.TitleActionbarPacket;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufHolder;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPromise;
+import io.netty.util.ReferenceCountUtil;
+import java.util.ArrayDeque;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+import net.kyori.adventure.text.Component;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/**
+ * The PLAY packets held back by {@link PlayPacketQueueOutboundHandler} and
+ * {@link PlayPacketQueueInboundHandler} while a connection is in the CONFIG state, bounded by a
+ * number of packets and an estimate of their size.
+ *
+ * <p>A packet that supersedes a queued one (a boss bar, tab list header and footer, action bar or
+ * player info update) replaces it in place. When the queue is still over its limits, it either
+ * drops its oldest cosmetic packets (chat messages and titles sent to the client), or asks for the
+ * connection to be closed. Every other packet is kept, as losing it would desync or kick the
+ * player. Instances are confined to the event loop of their connection.</p>
+ */
+public final class PlayPacketQueue {
+
+  private static final int DEFAULT_PACKET_SIZE = 256;
+  private static final EnumSet<UpsertPlayerInfoPacket.Action> UPDATE_ACTIONS = EnumSet.of(
+      UpsertPlayerInfoPacket.Action.UPDATE_GAME_MODE, UpsertPlayerInfoPacket.Action.UPDATE_LISTED,
+      UpsertPlayerInfoPacket.Action.UPDATE_LATENCY,
+      UpsertPlayerInfoPacket.Action.UPDATE_DISPLAY_NAME,
+      UpsertPlayerInfoPacket.Action.UPDATE_LIST_ORDER, UpsertPlayerInfoPacket.Action.UPDATE_HAT);
+
+  private static final LongAdder COALESCED = new LongAdder();
+  private static final LongAdder DROPPED = new LongAdder();
+  private static final LongAdder OVERFLOWS = new LongAdder();
+
+  private final ProtocolVersion version;
+  private final ProtocolUtils.Direction direction;
+  private final int maxPackets;
+  private final long maxBytes;
+  private final boolean dropOldest;
+  private final ArrayDeque<Entry> entries = new ArrayDeque<>();
+  private final Map<Key, Entry> latest = new HashMap<>();
+  private long bytes;
+
+  /**
+   * Creates a new queue.
+   *
+   * @param version the protocol version of the connection
+   * @param direction the direction of the queued packets
+   * @param maxPackets the maximum number of queued packets
+   * @param maxBytes the maximum estimated size of the queued packets
+   * @param dropOldest whether to drop the oldest packets once the queue is over its limits,
+   *                   rather than closing the connection
+   */
+  public PlayPacketQueue(ProtocolVersion version, ProtocolUtils.Direction direction,
+      int maxPackets, long maxBytes, boolean dropOldest) {
+    this.version = version;
+    this.direction = direction;
+    this.maxPackets = maxPackets;
+    this.maxBytes = maxBytes;
+    this.dropOldest = dropOldest;
+  }
+
+  /**
+   * Queues a message, coalescing it with the queued message it supersedes.
+   *
+   * @param msg the message
+   * @param promise the promise of the write, if the message is written
+   * @return {@code false} if the queue is over its limits and the connection must be closed
+   */
+  boolean offer(Object msg, @Nullable ChannelPromise promise) {
+    int size = sizeOf(msg);
+    Key key = coalescingKey(msg);
+    Entry existing = key == null ? null : latest.get(key);
+    if (existing != null) {
+      // Keep the place of the superseded packet in the queue
+      complete(existing);
+      bytes += size - existing.size;
+      existing.msg = msg;
+      existing.promise = promise;
+      existing.size = size;
+      COALESCED.increment();
+    } else {
+      if (key == null) {
+        forgetSuperseded(msg);
+      }
+      Entry entry = new Entry(msg, promise, size, key);
+      entries.addLast(entry);
+      bytes += size;
+      if (key != null) {
+        latest.put(key, entry);
+      }
+    }
+    return fits() || makeRoom();
+  }
+
+  private boolean fits() {
+    return entries.size() <= maxPackets && bytes <= maxBytes;
+  }
+
+  private boolean makeRoom() {
+    if (dropOldest) {
+      for (Iterator<Entry> it = entries.iterator(); it.hasNext() && !fits(); ) {
+        Entry entry = it.next();
+        if (!isDroppable(entry.msg)) {
+          continue;
+        }
+        it.remove();
+        forget(entry);
+        ReferenceCountUtil.release(entry.msg);
+        if (entry.promise != null) {
+          entry.promise.tryFailure(new IllegalStateException(
+              "Packet dropped while the connection was in the CONFIG state"));
+        }
+        DROPPED.increment();
+      }
+      if (fits()) {
+        return true;
+      }
+    }
+    OVERFLOWS.increment();
+    return false;
+  }
+
+  /**
+   * Removes every queued message, in order.
+   *
+   * @param consumer receives each message and the promise of its write, if any
+   */
+  void drain(BiConsumer<Object, @Nullable ChannelPromise> consumer) {
+    Entry entry;
+    while ((entry = entries.poll()) != null) {
+      forget(entry);
+      consumer.accept(entry.msg, entry.promise);
+    }
+  }
+
+  /**
+   * Releases every queued message.
+   */
+  void release() {
+    drain((msg, promise) -> {
+      ReferenceCountUtil.release(msg);
+      if (promise != null) {
+        promise.tryFailure(new IllegalStateException("Connection closed in the CONFIG state"));
+      }
+    });
+  }
+
+  private void forget(Entry entry) {
+    bytes -= entry.size;
+    if (entry.key != null) {
+      latest.remove(entry.key, entry);
+    }
+  }
+
+  public int getPackets() {
+    return entries.size();
+  }
+
+  public long getBytes() {
+    return bytes;
+  }
+
+  private int sizeOf(Object msg) {
+    if (msg instanceof MinecraftPacket packet) {
+      int hint = packet.encodedSizeHint(direction, version);
+      if (hint >= 0) {
+        return hint;
+      }
+    }
+    if (msg instanceof ByteBufHolder holder) {
+      return holder.content().readableBytes();
+    } else if (msg instanceof ByteBuf buf) {
+      return buf.readableBytes();
+    }
+    return DEFAULT_PACKET_SIZE;
+  }
+
+  private void forgetSuperseded(Object msg) {
+    // Updates queued before a boss bar or a player is added or removed must stay before it
+    if (msg instanceof BossBarPacket) {
+      latest.keySet().removeIf(key -> key.type() == BossBarPacket.class);
+    } else if (msg instanceof UpsertPlayerInfoPacket || msg instanceof RemovePlayerInfoPacket) {
+      latest.keySet().removeIf(key -> key.type() == UpsertPlayerInfoPacket.class);
+    }
+  }
+
+  private static void complete(Entry entry) {
+    // The superseded packet would have been overwritten by the newer one anyway
+    ReferenceCountUtil.release(entry.msg);
+    if (entry.promise != null) {
+      entry.promise.trySuccess();
+    }
+  }
+
+  private boolean isDroppable(Object msg) {
+    // Only what the client merely displays: losing a join game, respawn, keep alive, commands,
+    // player info or plugin message packet desyncs or kicks the player, and the chat messages and
+    // commands of the player are chained and must all reach the server
+    return direction == ProtocolUtils.Direction.CLIENTBOUND
+        && (msg instanceof SystemChatPacket || msg instanceof LegacyChatPacket
+        || msg instanceof GenericTitlePacket);
+  }
+
+  private static @Nullable Key coalescingKey(Object msg) {
+    if (msg instanceof HeaderAndFooterPacket || msg instanceof TitleActionbarPacket) {
+      return new Key(msg.getClass(), null);
+    } else if (msg instanceof BossBarPacket bossBar) {
+      int action = bossBar.getAction();
+      if (action == BossBarPacket.ADD || action == BossBarPacket.REMOVE) {
+        return null;
+      }
+      return new Key(BossBarPacket.class, bossBar.getUuid() + "/" + action);
+    } else if (msg instanceof UpsertPlayerInfoPacket upsert) {
+      if (upsert.getEntries().size() != 1 || !UPDATE_ACTIONS.containsAll(upsert.getActions())) {
+        return null;
+      }
+      return new Key(UpsertPlayerInfoPacket.class,
+          upsert.getEntries().get(0).getProfileId() + "/" + upsert.getActions());
+    }
+    return null;
+  }
+
+  /**
+   * Closes a connection whose queue is over its limits. Players are told why they were
+   * disconnected.
+   *
+   * @param ctx the context of the queue handler
+   */
+  void closeOverflowing(ChannelHandlerContext ctx) {
+    MinecraftEncoder encoder = ctx.pipeline().get(MinecraftEncoder.class);
+    if (encoder == null || encoder.getDirection() != ProtocolUtils.Direction.CLIENTBOUND) {
+      ctx.channel().close();
+      return;
+    }
+    // Written from the tail of the pipeline, so that the packet is encoded
+    ctx.channel().writeAndFlush(DisconnectPacket.create(
+            Component.translatable("disconnect.overflow"), version, StateRegistry.CONFIG))
+        .addListener(ChannelFutureListener.CLOSE);
+  }
+
+  /**
+   * Collects the number of packets coalesced and dropped for {@code /velocity dump}.
+   *
+   * @return the queue counters
+   */
+  public static JsonObject collectStatistics() {
+    JsonObject statistics = new JsonObject();
+    statistics.addProperty("coalesced", COALESCED.sum());
+    statistics.addProperty("dropped", DROPPED.sum());
+    statistics.addProperty("overflows", OVERFLOWS.sum());
+    return statistics;
+  }
+
+  private record Key(Class<?> type, @Nullable String id) {
+  }
+
+  private static final class Entry {
+
+    private Object msg;
+    private @Nullable ChannelPromise promise;
+    private int size;
+    private final @Nullable Key key;
+
+    private Entry(Object msg, @Nullable ChannelPromise promise, int size, @Nullable Key key) {
+      this.msg = msg;
+      this.promise = promise;
+      this.size = size;
+      this.key = key;
+    }
+  }
+}
@@ -24,8 +24,6 @@ import com.velocitypowered.proxy.protocol.StateRegistry;
 import io.netty.channel.ChannelDuplexHandler;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.util.ReferenceCountUtil;
-import java.util.ArrayDeque;
-import java.util.Queue;
 import org.jetbrains.annotations.NotNull;
 
 /**
@@ -38,11 +36,15 @@ import org.jetbrains.annotations.NotNull;
  *
  * <p>This handler will queue up any packets that are sent to the client during this time, and send
  * them once the client has (re)entered the PLAY state.
+ *
+ * <p>The queue is bounded, and coalesces updates that supersede each other; see
+ * {@link PlayPacketQueue}.
  */
 public class PlayPacketQueueInboundHandler extends ChannelDuplexHandler {
 
   private final StateRegistry.PacketRegistry.ProtocolRegistry registry;
-  private final Queue<Object> queue = new ArrayDeque<>();
+  private final PlayPacketQueue queue;
+  private boolean overflowed;
 
   /**
    * Provides registries for client &amp; server bound packets.
@@ -50,7 +52,23 @@ public class PlayPacketQueueInboundHandler extends ChannelDuplexHandler {
    * @param version the protocol version
    */
   public PlayPacketQueueInboundHandler(ProtocolVersion version, ProtocolUtils.Direction direction) {
+    this(version, direction, Integer.MAX_VALUE, Long.MAX_VALUE, true);
+  }
+
+  /**
+   * Creates a bounded queue.
+   *
+   * @param version the protocol version
+   * @param direction the direction of the queued packets
+   * @param maxPackets the maximum number of queued packets
+   * @param maxBytes the maximum estimated size of the queued packets
+   * @param dropOldest whether to drop the oldest packets once the queue is full, rather than
+   *                   disconnecting
+   */
+  public PlayPacketQueueInboundHandler(ProtocolVersion version, ProtocolUtils.Direction direction,
+      int maxPackets, long maxBytes, boolean dropOldest) {
     this.registry = StateRegistry.CONFIG.getProtocolRegistry(direction, version);
+    this.queue = new PlayPacketQueue(version, direction, maxPackets, maxBytes, dropOldest);
   }
 
   @Override
@@ -65,7 +83,13 @@ public class PlayPacketQueueInboundHandler extends ChannelDuplexHandler {
     }
 
     // Otherwise, queue the packet
-    this.queue.offer(msg);
+    if (this.overflowed) {
+      ReferenceCountUtil.release(msg);
+    } else if (!this.queue.offer(msg, null)) {
+      this.overflowed = true;
+      this.queue.release();
+      this.queue.closeOverflowing(ctx);
+    }
   }
 
   @Override
@@ -82,13 +106,14 @@ public class PlayPacketQueueInboundHandler extends ChannelDuplexHandler {
 
   private void releaseQueue(ChannelHandlerContext ctx, boolean active) {
     // Handle all the queued packets
-    Object msg;
-    while ((msg = this.queue.poll()) != null) {
-      if (active) {
-        ctx.fireChannelRead(msg);
-      } else {
-        ReferenceCountUtil.release(msg);
-      }
+    if (active) {
+      this.queue.drain((msg, ignored) -> ctx.fireChannelRead(msg));
+    } else {
+      this.queue.release();
     }
   }
+
+  public PlayPacketQueue getQueue() {
+    return this.queue;
+  }
 }
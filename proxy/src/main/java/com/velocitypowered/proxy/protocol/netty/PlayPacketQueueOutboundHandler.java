@@ -25,8 +25,6 @@ import io.netty.channel.ChannelDuplexHandler;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelPromise;
 import io.netty.util.ReferenceCountUtil;
-import java.util.ArrayDeque;
-import java.util.Queue;
 import org.jetbrains.annotations.NotNull;
 
 /**
@@ -39,11 +37,15 @@ import org.jetbrains.annotations.NotNull;
  *
  * <p>This handler will queue up any packets that are sent to the client during this time, and send
  * them once the client has (re)entered the PLAY state.
+ *
+ * <p>The queue is bounded, and coalesces updates that supersede each other; see
+ * {@link PlayPacketQueue}.
  */
 public class PlayPacketQueueOutboundHandler extends ChannelDuplexHandler {
 
   private final StateRegistry.PacketRegistry.ProtocolRegistry registry;
-  private final Queue<MinecraftPacket> queue = new ArrayDeque<>();
+  private final PlayPacketQueue queue;
+  private boolean overflowed;
 
   /**
    * Provides registries for client &amp; server bound packets.
@@ -51,7 +53,23 @@ public class PlayPacketQueueOutboundHandler extends ChannelDuplexHandler {
    * @param version the protocol version
    */
   public PlayPacketQueueOutboundHandler(ProtocolVersion version, ProtocolUtils.Direction direction) {
+    this(version, direction, Integer.MAX_VALUE, Long.MAX_VALUE, true);
+  }
+
+  /**
+   * Creates a bounded queue.
+   *
+   * @param version the protocol version
+   * @param direction the direction of the queued packets
+   * @param maxPackets the maximum number of queued packets
+   * @param maxBytes the maximum estimated size of the queued packets
+   * @param dropOldest whether to drop the oldest packets once the queue is full, rather than
+   *                   disconnecting
+   */
+  public PlayPacketQueueOutboundHandler(ProtocolVersion version, ProtocolUtils.Direction direction,
+      int maxPackets, long maxBytes, boolean dropOldest) {
     this.registry = StateRegistry.CONFIG.getProtocolRegistry(direction, version);
+    this.queue = new PlayPacketQueue(version, direction, maxPackets, maxBytes, dropOldest);
   }
 
   @Override
@@ -69,7 +87,14 @@ public class PlayPacketQueueOutboundHandler extends ChannelDuplexHandler {
     }
 
     // Otherwise, queue the packet
-    this.queue.offer(packet);
+    if (this.overflowed) {
+      ReferenceCountUtil.release(packet);
+      promise.tryFailure(new IllegalStateException("Play packet queue overflowed"));
+    } else if (!this.queue.offer(packet, promise.isVoid() ? null : promise)) {
+      this.overflowed = true;
+      this.queue.release();
+      this.queue.closeOverflowing(ctx);
+    }
   }
 
   @Override
@@ -86,17 +111,16 @@ public class PlayPacketQueueOutboundHandler extends ChannelDuplexHandler {
 
   private void releaseQueue(ChannelHandlerContext ctx, boolean active) {
     // Send out all the queued packets
-    MinecraftPacket packet;
-    while ((packet = this.queue.poll()) != null) {
-      if (active) {
-        ctx.write(packet, ctx.voidPromise());
-      } else {
-        ReferenceCountUtil.release(packet);
-      }
-    }
-
     if (active) {
+      this.queue.drain((msg, promise) ->
+          ctx.write(msg, promise == null ? ctx.voidPromise() : promise));
       ctx.flush();
+    } else {
+      this.queue.release();
     }
   }
+
+  public PlayPacketQueue getQueue() {
+    return this.queue;
+  }
 }
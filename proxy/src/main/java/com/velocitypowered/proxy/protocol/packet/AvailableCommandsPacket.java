@@ -66,7 +66,11 @@ public class AvailableCommandsPacket implements MinecraftPacket {
   private static final byte FLAG_IS_REDIRECT = 0x08;
   private static final byte FLAG_HAS_SUGGESTIONS = 0x10;
 
+  // Proxy and plugin commands are injected into the tree of the backend server before it is sent
+  private static final int INJECTED_COMMANDS_ALLOWANCE = 4096;
+
   private @MonotonicNonNull RootCommandNode<CommandSource> rootNode;
+  private int decodedLength = -1;
 
   /**
    * Returns the root node.
@@ -82,6 +86,7 @@ public class AvailableCommandsPacket implements MinecraftPacket {
 
   @Override
   public void decode(ByteBuf buf, Direction direction, ProtocolVersion protocolVersion) {
+    decodedLength = buf.readableBytes();
     int commands = ProtocolUtils.readVarInt(buf);
     WireNode[] wireNodes = new WireNode[commands];
     for (int i = 0; i < commands; i++) {
@@ -137,6 +142,11 @@ public class AvailableCommandsPacket implements MinecraftPacket {
     ProtocolUtils.writeVarInt(buf, idMappings.getInt(rootNode));
   }
 
+  @Override
+  public int encodedSizeHint(Direction direction, ProtocolVersion version) {
+    return decodedLength < 0 ? -1 : decodedLength + INJECTED_COMMANDS_ALLOWANCE;
+  }
+
   private static void serializeNode(CommandNode<CommandSource> node, ByteBuf buf,
       Object2IntMap<CommandNode<CommandSource>> idMappings, ProtocolVersion protocolVersion) {
     byte flags = 0;
@@ -31,6 +31,7 @@ import org.checkerframework.checker.nullness.qual.Nullable;
 public class JoinGamePacket implements MinecraftPacket {
 
   private static final BinaryTagIO.Reader JOINGAME_READER = BinaryTagIO.reader(4 * 1024 * 1024);
+  private static final int REWRITE_ALLOWANCE = 64;
   private int entityId;
   private short gamemode;
   private int dimension;
@@ -53,6 +54,7 @@ public class JoinGamePacket implements MinecraftPacket {
   private int portalCooldown; // 1.20+
   private int seaLevel; // 1.21.2+
   private boolean enforcesSecureChat; // 1.20.5+
+  private int decodedLength = -1;
 
   public int getEntityId() {
     return entityId;
@@ -219,6 +221,7 @@ public class JoinGamePacket implements MinecraftPacket {
 
   @Override
   public void decode(ByteBuf buf, ProtocolUtils.Direction direction, ProtocolVersion version) {
+    this.decodedLength = buf.readableBytes();
     if (version.noLessThan(ProtocolVersion.MINECRAFT_1_20_2)) {
       // haha funny, they made 1.20.2 more complicated
       this.decode1202Up(buf, version);
@@ -377,6 +380,13 @@ public class JoinGamePacket implements MinecraftPacket {
     }
   }
 
+  @Override
+  public int encodedSizeHint(ProtocolUtils.Direction direction, ProtocolVersion version) {
+    // The packet is relayed from the backend server with the same protocol version, only a few
+    // small fields are rewritten, while the registry (1.16 to 1.20.1) makes up most of its size
+    return decodedLength < 0 ? -1 : decodedLength + REWRITE_ALLOWANCE;
+  }
+
   private void encodeLegacy(ByteBuf buf, ProtocolVersion version) {
     buf.writeInt(entityId);
     if (version.noLessThan(ProtocolVersion.MINECRAFT_1_16_2)) {
@@ -128,6 +128,19 @@ public class UpsertPlayerInfoPacket implements MinecraftPacket {
     }
   }
 
+  @Override
+  public int encodedSizeHint(ProtocolUtils.Direction direction, ProtocolVersion version) {
+    int size = -Math.floorDiv(-Action.class.getEnumConstants().length, 8)
+        + ProtocolUtils.varIntBytes(this.entries.size());
+    for (Entry entry : this.entries) {
+      size += 16; // profile ID
+      for (Action action : this.actions) {
+        size += action.sizeHint(entry);
+      }
+    }
+    return size;
+  }
+
   @Override
   public boolean handle(MinecraftSessionHandler handler) {
     return handler.handle(this);
@@ -200,6 +213,11 @@ public class UpsertPlayerInfoPacket implements MinecraftPacket {
       buf.writeBoolean(info.showHat);
     });
 
+    // Session ID, key expiry, then an RSA public key and its signature by Mojang
+    private static final int CHAT_SESSION_SIZE_HINT = 16 + 8 + 2 + 294 + 2 + 512;
+    // Display names vary, but are usually short
+    private static final int DISPLAY_NAME_SIZE_HINT = 64;
+
     private final Read read;
     private final Write write;
 
@@ -208,6 +226,30 @@ public class UpsertPlayerInfoPacket implements MinecraftPacket {
       this.write = write;
     }
 
+    private int sizeHint(Entry info) {
+      return switch (this) {
+        case ADD_PLAYER -> {
+          int size = ProtocolUtils.stringBytes(info.profile.getName())
+              + ProtocolUtils.varIntBytes(info.profile.getProperties().size());
+          for (GameProfile.Property property : info.profile.getProperties()) {
+            size += ProtocolUtils.stringBytes(property.getName())
+                + ProtocolUtils.stringBytes(property.getValue()) + 1;
+            String signature = property.getSignature();
+            if (signature != null && !signature.isEmpty()) {
+              size += ProtocolUtils.stringBytes(signature);
+            }
+          }
+          yield size;
+        }
+        case INITIALIZE_CHAT -> info.chatSession == null ? 1 : 1 + CHAT_SESSION_SIZE_HINT;
+        case UPDATE_GAME_MODE -> ProtocolUtils.varIntBytes(info.gameMode);
+        case UPDATE_LISTED, UPDATE_HAT -> 1;
+        case UPDATE_LATENCY -> ProtocolUtils.varIntBytes(info.latency);
+        case UPDATE_DISPLAY_NAME -> info.displayName == null ? 1 : 1 + DISPLAY_NAME_SIZE_HINT;
+        case UPDATE_LIST_ORDER -> ProtocolUtils.varIntBytes(info.listOrder);
+      };
+    }
+
     private interface Read {
 
       void read(ProtocolVersion version, ByteBuf buf, Entry info);
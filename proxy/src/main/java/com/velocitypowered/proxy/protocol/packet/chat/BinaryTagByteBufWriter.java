@@ -0,0 +1,435 @@
+/*
+ * Copyright (C) 2024 Velocity Contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.velocitypowered.proxy.protocol.packet.chat;
+
+import com.google.gson.internal.LazilyParsedNumber;
+import com.google.gson.stream.JsonWriter;
+import io.netty.buffer.ByteBuf;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/**
+ * A {@link JsonWriter} that writes a nameless network NBT tag straight into a {@link ByteBuf},
+ * without building either a JSON tree or a {@link net.kyori.adventure.nbt.BinaryTag} first. The
+ * output is identical to that of {@link BinaryTagJsonWriter}.
+ *
+ * <p>The type of a list is only known once its elements have been written, so the list header
+ * is patched in place: a list of bytes, ints or longs is turned into an array tag, and a list
+ * that turns out to mix several types is rewritten as a list of compounds.</p>
+ *
+ * <p>A few shapes that never occur in components, such as {@code null} values and lists nested
+ * directly inside lists, are not supported. Writing them throws an
+ * {@link UnsupportedShapeException}, after which the caller is expected to discard the output
+ * and fall back to {@link BinaryTagJsonWriter}.</p>
+ */
+final class BinaryTagByteBufWriter extends JsonWriter {
+
+  private static final byte TAG_END = 0;
+  private static final byte TAG_BYTE = 1;
+  private static final byte TAG_SHORT = 2;
+  private static final byte TAG_INT = 3;
+  private static final byte TAG_LONG = 4;
+  private static final byte TAG_FLOAT = 5;
+  private static final byte TAG_DOUBLE = 6;
+  private static final byte TAG_BYTE_ARRAY = 7;
+  private static final byte TAG_STRING = 8;
+  private static final byte TAG_LIST = 9;
+  private static final byte TAG_COMPOUND = 10;
+  private static final byte TAG_INT_ARRAY = 11;
+  private static final byte TAG_LONG_ARRAY = 12;
+
+  private static final Writer UNWRITABLE_WRITER = new Writer() {
+    @Override
+    public void write(char[] buffer, int offset, int counter) {
+      throw new AssertionError();
+    }
+
+    @Override
+    public void flush() {
+      throw new AssertionError();
+    }
+
+    @Override
+    public void close() {
+      throw new AssertionError();
+    }
+  };
+
+  private final ByteBuf buf;
+  private Frame[] stack = new Frame[8];
+  private int depth;
+  private @Nullable String pendingName;
+  private boolean written;
+  private int lastTypeIndex;
+
+  BinaryTagByteBufWriter(ByteBuf buf) {
+    super(UNWRITABLE_WRITER);
+    this.buf = buf;
+  }
+
+  @Override
+  public JsonWriter beginArray() {
+    if (depth > 0 && !stack[depth - 1].compound) {
+      throw new UnsupportedShapeException();
+    }
+    beforeValue(TAG_LIST);
+    Frame frame = push(false);
+    frame.typeIndex = lastTypeIndex;
+    frame.headerIndex = buf.writerIndex();
+    return this;
+  }
+
+  @Override
+  public JsonWriter endArray() {
+    Frame frame = pop(false);
+    if (frame.size == 0) {
+      buf.writeByte(TAG_END);
+      buf.writeInt(0);
+    } else {
+      buf.setInt(frame.array ? frame.headerIndex : frame.headerIndex + 1, frame.size);
+    }
+    afterValue();
+    return this;
+  }
+
+  @Override
+  public JsonWriter beginObject() {
+    beforeValue(TAG_COMPOUND);
+    push(true);
+    return this;
+  }
+
+  @Override
+  public JsonWriter endObject() {
+    pop(true);
+    if (pendingName != null) {
+      throw new IllegalStateException("Dangling name: " + pendingName);
+    }
+    buf.writeByte(TAG_END);
+    afterValue();
+    return this;
+  }
+
+  @Override
+  public JsonWriter name(String name) {
+    if (depth == 0 || pendingName != null || !stack[depth - 1].compound) {
+      throw new IllegalStateException("Did not expect a name");
+    }
+    pendingName = name;
+    return this;
+  }
+
+  @Override
+  public JsonWriter value(@Nullable String value) {
+    if (value == null) {
+      return nullValue();
+    }
+    beforeValue(TAG_STRING);
+    writeUtf(value);
+    afterValue();
+    return this;
+  }
+
+  @Override
+  public JsonWriter jsonValue(String value) {
+    throw new UnsupportedShapeException();
+  }
+
+  @Override
+  public JsonWriter nullValue() {
+    throw new UnsupportedShapeException();
+  }
+
+  @Override
+  public JsonWriter value(boolean value) {
+    beforeValue(TAG_BYTE);
+    buf.writeByte(value ? 1 : 0);
+    afterValue();
+    return this;
+  }
+
+  @Override
+  public JsonWriter value(@Nullable Boolean value) {
+    if (value == null) {
+      return nullValue();
+    }
+    return value((boolean) value);
+  }
+
+  @Override
+  public JsonWriter value(float value) {
+    beforeValue(TAG_FLOAT);
+    buf.writeFloat(value);
+    afterValue();
+    return this;
+  }
+
+  @Override
+  public JsonWriter value(double value) {
+    beforeValue(TAG_DOUBLE);
+    buf.writeDouble(value);
+    afterValue();
+    return this;
+  }
+
+  @Override
+  public JsonWriter value(long value) {
+    beforeValue(TAG_LONG);
+    buf.writeLong(value);
+    afterValue();
+    return this;
+  }
+
+  @Override
+  public JsonWriter value(@Nullable Number value) {
+    if (value == null) {
+      return nullValue();
+    }
+    if (value instanceof Byte number) {
+      beforeValue(TAG_BYTE);
+      buf.writeByte(number);
+    } else if (value instanceof Short number) {
+      beforeValue(TAG_SHORT);
+      buf.writeShort(number);
+    } else if (value instanceof Integer || value instanceof LazilyParsedNumber) {
+      beforeValue(TAG_INT);
+      buf.writeInt(value.intValue());
+    } else if (value instanceof Long number) {
+      beforeValue(TAG_LONG);
+      buf.writeLong(number);
+    } else if (value instanceof Float number) {
+      beforeValue(TAG_FLOAT);
+      buf.writeFloat(number);
+    } else if (value instanceof Double number) {
+      beforeValue(TAG_DOUBLE);
+      buf.writeDouble(number);
+    } else {
+      throw new UnsupportedShapeException();
+    }
+    afterValue();
+    return this;
+  }
+
+  @Override
+  public void flush() {
+  }
+
+  @Override
+  public void close() {
+    if (depth != 0 || !written) {
+      throw new IllegalStateException("Incomplete document");
+    }
+  }
+
+  private void beforeValue(byte type) {
+    if (depth == 0) {
+      if (written) {
+        throw new IllegalStateException("JSON must have only one top-level value.");
+      }
+      written = true;
+      lastTypeIndex = buf.writerIndex();
+      buf.writeByte(type);
+      return;
+    }
+
+    Frame frame = stack[depth - 1];
+    if (frame.compound) {
+      if (pendingName == null) {
+        throw new IllegalStateException("Expected a name");
+      }
+      lastTypeIndex = buf.writerIndex();
+      buf.writeByte(type);
+      writeUtf(pendingName);
+      pendingName = null;
+      return;
+    }
+
+    if (frame.size == 0) {
+      byte arrayType = arrayType(type);
+      if (arrayType != TAG_END) {
+        frame.array = true;
+        buf.setByte(frame.typeIndex, arrayType);
+      } else {
+        buf.writeByte(type);
+      }
+      buf.writeInt(0); // length, patched by endArray()
+      frame.elementType = type;
+    } else if (frame.elementType != type && frame.elementType != TAG_COMPOUND) {
+      convertToCompoundList(frame);
+    }
+
+    if (frame.elementType == TAG_COMPOUND) {
+      if (type != TAG_COMPOUND) {
+        // Wrap the value in a compound under an empty name, closed by afterValue()
+        buf.writeByte(type);
+        buf.writeShort(0);
+        frame.wrapping = true;
+      }
+    } else {
+      frame.markStart(buf.writerIndex());
+    }
+    frame.size++;
+  }
+
+  private void afterValue() {
+    if (depth > 0) {
+      Frame frame = stack[depth - 1];
+      if (frame.wrapping) {
+        buf.writeByte(TAG_END);
+        frame.wrapping = false;
+      }
+    }
+  }
+
+  /**
+   * Rewrites the elements written to a list so far as compounds, each holding the original
+   * element under an empty name.
+   */
+  private void convertToCompoundList(Frame frame) {
+    int payloadStart = frame.headerIndex + (frame.array ? 4 : 5);
+    int end = buf.writerIndex();
+    ByteBuf elements = buf.copy(payloadStart, end - payloadStart);
+    try {
+      buf.writerIndex(frame.headerIndex);
+      if (frame.array) {
+        buf.setByte(frame.typeIndex, TAG_LIST);
+      }
+      buf.writeByte(TAG_COMPOUND);
+      buf.writeInt(0); // length, patched by endArray()
+      for (int i = 0; i < frame.size; i++) {
+        int from = frame.starts[i] - payloadStart;
+        int to = (i + 1 < frame.size ? frame.starts[i + 1] : end) - payloadStart;
+        buf.writeByte(frame.elementType);
+        buf.writeShort(0);
+        buf.writeBytes(elements, from, to - from);
+        buf.writeByte(TAG_END);
+      }
+    } finally {
+      elements.release();
+    }
+    frame.array = false;
+    frame.elementType = TAG_COMPOUND;
+  }
+
+  private void writeUtf(String value) {
+    // NBT strings are written in modified UTF-8, just like DataOutput#writeUTF
+    int length = value.length();
+    int utfLength = length;
+    for (int i = 0; i < length; i++) {
+      char c = value.charAt(i);
+      if (c >= 0x800) {
+        utfLength += 2;
+      } else if (c >= 0x80 || c == 0) {
+        utfLength++;
+      }
+    }
+    if (utfLength > 65535) {
+      throw new UnsupportedShapeException();
+    }
+
+    buf.writeShort(utfLength);
+    if (utfLength == length) {
+      buf.writeCharSequence(value, StandardCharsets.US_ASCII);
+      return;
+    }
+    buf.ensureWritable(utfLength);
+    for (int i = 0; i < length; i++) {
+      char c = value.charAt(i);
+      if (c != 0 && c < 0x80) {
+        buf.writeByte(c);
+      } else if (c >= 0x800) {
+        buf.writeByte(0xE0 | ((c >> 12) & 0x0F));
+        buf.writeByte(0x80 | ((c >> 6) & 0x3F));
+        buf.writeByte(0x80 | (c & 0x3F));
+      } else {
+        buf.writeByte(0xC0 | ((c >> 6) & 0x1F));
+        buf.writeByte(0x80 | (c & 0x3F));
+      }
+    }
+  }
+
+  private Frame push(boolean compound) {
+    if (depth == stack.length) {
+      stack = Arrays.copyOf(stack, depth * 2);
+    }
+    Frame frame = stack[depth];
+    if (frame == null) {
+      frame = stack[depth] = new Frame();
+    }
+    frame.reset(compound);
+    depth++;
+    return frame;
+  }
+
+  private Frame pop(boolean compound) {
+    if (depth == 0 || stack[depth - 1].compound != compound) {
+      throw new IllegalStateException("Nesting problem");
+    }
+    return stack[--depth];
+  }
+
+  private static byte arrayType(byte elementType) {
+    return switch (elementType) {
+      case TAG_BYTE -> TAG_BYTE_ARRAY;
+      case TAG_INT -> TAG_INT_ARRAY;
+      case TAG_LONG -> TAG_LONG_ARRAY;
+      default -> TAG_END;
+    };
+  }
+
+  private static final class Frame {
+
+    private boolean compound;
+    // List state: the index of the byte holding the type of this list, where its header starts,
+    // the type of its elements and where each of them starts, in case they need to be rewritten.
+    private int typeIndex;
+    private int headerIndex;
+    private byte elementType;
+    private boolean array;
+    private boolean wrapping;
+    private int size;
+    private int[] starts = new int[8];
+
+    private void reset(boolean compound) {
+      this.compound = compound;
+      this.elementType = TAG_END;
+      this.array = false;
+      this.wrapping = false;
+      this.size = 0;
+    }
+
+    private void markStart(int index) {
+      if (size == starts.length) {
+        starts = Arrays.copyOf(starts, size * 2);
+      }
+      starts[size] = index;
+    }
+  }
+
+  /**
+   * Thrown when a value can't be written directly.
+   */
+  static final class UnsupportedShapeException extends RuntimeException {
+
+    UnsupportedShapeException() {
+      super(null, null, false, false);
+    }
+  }
+}
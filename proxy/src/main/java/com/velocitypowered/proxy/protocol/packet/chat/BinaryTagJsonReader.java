@@ -0,0 +1,309 @@
+/*
+ * Copyright (C) 2024 Velocity Contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.velocitypowered.proxy.protocol.packet.chat;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Arrays;
+import java.util.Iterator;
+import net.kyori.adventure.nbt.BinaryTag;
+import net.kyori.adventure.nbt.ByteArrayBinaryTag;
+import net.kyori.adventure.nbt.ByteBinaryTag;
+import net.kyori.adventure.nbt.CompoundBinaryTag;
+import net.kyori.adventure.nbt.DoubleBinaryTag;
+import net.kyori.adventure.nbt.FloatBinaryTag;
+import net.kyori.adventure.nbt.IntArrayBinaryTag;
+import net.kyori.adventure.nbt.IntBinaryTag;
+import net.kyori.adventure.nbt.ListBinaryTag;
+import net.kyori.adventure.nbt.LongArrayBinaryTag;
+import net.kyori.adventure.nbt.LongBinaryTag;
+import net.kyori.adventure.nbt.ShortBinaryTag;
+import net.kyori.adventure.nbt.StringBinaryTag;
+
+/**
+ * A {@link JsonReader} that reads directly from a {@link BinaryTag}, so that a component can be
+ * deserialized from NBT without building an intermediate JSON tree or string. Much like Gson's
+ * own tree reader, values are kept on a stack and handed out lazily.
+ *
+ * <p>Byte, int and long arrays are read as JSON arrays of numbers, lists as JSON arrays, and
+ * compound entries with an empty name are read as {@code "text"}, since that is how
+ * heterogeneous lists of components are represented in NBT.</p>
+ */
+final class BinaryTagJsonReader extends JsonReader {
+
+  private static final Reader UNREADABLE_READER = new Reader() {
+    @Override
+    public int read(char[] buffer, int offset, int count) {
+      throw new AssertionError();
+    }
+
+    @Override
+    public void close() {
+      throw new AssertionError();
+    }
+  };
+  private static final Object SENTINEL_CLOSED = new Object();
+
+  private Object[] stack = new Object[32];
+  private int stackSize = 0;
+
+  BinaryTagJsonReader(BinaryTag tag) {
+    super(UNREADABLE_READER);
+    push(tag);
+  }
+
+  @Override
+  public void beginArray() throws IOException {
+    expect(JsonToken.BEGIN_ARRAY);
+    push(new ArrayIterator((BinaryTag) popStack()));
+  }
+
+  @Override
+  public void endArray() throws IOException {
+    expect(JsonToken.END_ARRAY);
+    popStack(); // iterator
+  }
+
+  @Override
+  public void beginObject() throws IOException {
+    expect(JsonToken.BEGIN_OBJECT);
+    push(new CompoundIterator((CompoundBinaryTag) popStack()));
+  }
+
+  @Override
+  public void endObject() throws IOException {
+    expect(JsonToken.END_OBJECT);
+    popStack(); // iterator
+  }
+
+  @Override
+  public boolean hasNext() throws IOException {
+    JsonToken token = peek();
+    return token != JsonToken.END_OBJECT
+        && token != JsonToken.END_ARRAY
+        && token != JsonToken.END_DOCUMENT;
+  }
+
+  @Override
+  public JsonToken peek() throws IOException {
+    if (stackSize == 0) {
+      return JsonToken.END_DOCUMENT;
+    }
+
+    Object o = peekStack();
+    if (o instanceof CompoundIterator iterator) {
+      return iterator.keys.hasNext() ? JsonToken.NAME : JsonToken.END_OBJECT;
+    } else if (o instanceof ArrayIterator iterator) {
+      if (iterator.hasNext()) {
+        push(iterator.next());
+        return peek();
+      }
+      return JsonToken.END_ARRAY;
+    } else if (o instanceof Number) {
+      return JsonToken.NUMBER;
+    } else if (o instanceof BinaryTag tag) {
+      return switch (tag.type().id()) {
+        case 1, 2, 3, 4, 5, 6 -> JsonToken.NUMBER;
+        case 7, 9, 11, 12 -> JsonToken.BEGIN_ARRAY;
+        case 8 -> JsonToken.STRING;
+        case 10 -> JsonToken.BEGIN_OBJECT;
+        default -> throw new IllegalArgumentException("Unknown NBT tag: " + tag);
+      };
+    } else if (o == SENTINEL_CLOSED) {
+      throw new IllegalStateException("JsonReader is closed");
+    } else {
+      throw new AssertionError("Unexpected value on the stack: " + o);
+    }
+  }
+
+  @Override
+  public String nextName() throws IOException {
+    expect(JsonToken.NAME);
+    CompoundIterator iterator = (CompoundIterator) peekStack();
+    String key = iterator.keys.next();
+    push(iterator.compound.get(key));
+    return key.isEmpty() ? "text" : key;
+  }
+
+  @Override
+  public String nextString() throws IOException {
+    JsonToken token = peek();
+    if (token != JsonToken.STRING && token != JsonToken.NUMBER) {
+      throw new IllegalStateException("Expected " + JsonToken.STRING + " but was " + token);
+    }
+    Object value = popStack();
+    if (value instanceof StringBinaryTag string) {
+      return string.value();
+    }
+    return numberValue(value).toString();
+  }
+
+  @Override
+  public boolean nextBoolean() throws IOException {
+    // NBT has no boolean type, booleans are stored as bytes and are read as numbers.
+    expect(JsonToken.BOOLEAN);
+    throw new AssertionError();
+  }
+
+  @Override
+  public void nextNull() throws IOException {
+    // NBT has no null type.
+    expect(JsonToken.NULL);
+    throw new AssertionError();
+  }
+
+  @Override
+  public double nextDouble() throws IOException {
+    return nextNumber().doubleValue();
+  }
+
+  @Override
+  public long nextLong() throws IOException {
+    return nextNumber().longValue();
+  }
+
+  @Override
+  public int nextInt() throws IOException {
+    return nextNumber().intValue();
+  }
+
+  private Number nextNumber() throws IOException {
+    JsonToken token = peek();
+    if (token != JsonToken.NUMBER && token != JsonToken.STRING) {
+      throw new IllegalStateException("Expected " + JsonToken.NUMBER + " but was " + token);
+    }
+    Object value = popStack();
+    if (value instanceof StringBinaryTag string) {
+      return Double.parseDouble(string.value());
+    }
+    return numberValue(value);
+  }
+
+  @Override
+  public void skipValue() throws IOException {
+    JsonToken token = peek();
+    switch (token) {
+      case NAME -> {
+        nextName();
+        popStack();
+      }
+      case END_ARRAY -> endArray();
+      case END_OBJECT -> endObject();
+      case END_DOCUMENT -> {
+        // Nothing left to skip
+      }
+      default -> popStack();
+    }
+  }
+
+  @Override
+  public void close() {
+    stack = new Object[] {SENTINEL_CLOSED};
+    stackSize = 1;
+  }
+
+  @Override
+  public String toString() {
+    return getClass().getSimpleName();
+  }
+
+  private void expect(JsonToken expected) throws IOException {
+    JsonToken token = peek();
+    if (token != expected) {
+      throw new IllegalStateException("Expected " + expected + " but was " + token);
+    }
+  }
+
+  private Object peekStack() {
+    return stack[stackSize - 1];
+  }
+
+  private Object popStack() {
+    Object result = stack[--stackSize];
+    stack[stackSize] = null;
+    return result;
+  }
+
+  private void push(Object newTop) {
+    if (stackSize == stack.length) {
+      stack = Arrays.copyOf(stack, stackSize * 2);
+    }
+    stack[stackSize++] = newTop;
+  }
+
+  private static Number numberValue(Object value) {
+    if (value instanceof Number number) {
+      return number;
+    }
+    BinaryTag tag = (BinaryTag) value;
+    return switch (tag.type().id()) {
+      case 1 -> ((ByteBinaryTag) tag).value();
+      case 2 -> ((ShortBinaryTag) tag).value();
+      case 3 -> ((IntBinaryTag) tag).value();
+      case 4 -> ((LongBinaryTag) tag).value();
+      case 5 -> ((FloatBinaryTag) tag).value();
+      case 6 -> ((DoubleBinaryTag) tag).value();
+      default -> throw new IllegalStateException("Expected a number but was " + tag);
+    };
+  }
+
+  private static final class CompoundIterator {
+
+    private final CompoundBinaryTag compound;
+    private final Iterator<String> keys;
+
+    private CompoundIterator(CompoundBinaryTag compound) {
+      this.compound = compound;
+      this.keys = compound.keySet().iterator();
+    }
+  }
+
+  private static final class ArrayIterator {
+
+    private final BinaryTag array;
+    private final int size;
+    private int index;
+
+    private ArrayIterator(BinaryTag array) {
+      this.array = array;
+      this.size = switch (array.type().id()) {
+        case 7 -> ((ByteArrayBinaryTag) array).size();
+        case 9 -> ((ListBinaryTag) array).size();
+        case 11 -> ((IntArrayBinaryTag) array).size();
+        case 12 -> ((LongArrayBinaryTag) array).size();
+        default -> throw new IllegalStateException("Expected an array but was " + array);
+      };
+    }
+
+    private boolean hasNext() {
+      return index < size;
+    }
+
+    private Object next() {
+      int i = index++;
+      return switch (array.type().id()) {
+        case 7 -> ((ByteArrayBinaryTag) array).get(i);
+        case 9 -> ((ListBinaryTag) array).get(i);
+        case 11 -> ((IntArrayBinaryTag) array).get(i);
+        default -> ((LongArrayBinaryTag) array).get(i);
+      };
+    }
+  }
+}
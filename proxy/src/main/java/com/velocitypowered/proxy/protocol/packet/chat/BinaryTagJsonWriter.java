@@ -0,0 +1,325 @@
+/*
+ * Copyright (C) 2024 Velocity Contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.velocitypowered.proxy.protocol.packet.chat;
+
+import com.google.gson.internal.LazilyParsedNumber;
+import com.google.gson.stream.JsonWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import net.kyori.adventure.nbt.BinaryTag;
+import net.kyori.adventure.nbt.BinaryTagType;
+import net.kyori.adventure.nbt.BinaryTagTypes;
+import net.kyori.adventure.nbt.ByteArrayBinaryTag;
+import net.kyori.adventure.nbt.ByteBinaryTag;
+import net.kyori.adventure.nbt.CompoundBinaryTag;
+import net.kyori.adventure.nbt.DoubleBinaryTag;
+import net.kyori.adventure.nbt.EndBinaryTag;
+import net.kyori.adventure.nbt.FloatBinaryTag;
+import net.kyori.adventure.nbt.IntArrayBinaryTag;
+import net.kyori.adventure.nbt.IntBinaryTag;
+import net.kyori.adventure.nbt.ListBinaryTag;
+import net.kyori.adventure.nbt.LongArrayBinaryTag;
+import net.kyori.adventure.nbt.LongBinaryTag;
+import net.kyori.adventure.nbt.NumberBinaryTag;
+import net.kyori.adventure.nbt.ShortBinaryTag;
+import net.kyori.adventure.nbt.StringBinaryTag;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/**
+ * A {@link JsonWriter} that builds a {@link BinaryTag} directly, so that a component can be
+ * serialized to NBT without building an intermediate JSON tree.
+ *
+ * <p>Arrays containing only bytes, ints or longs become byte, int or long array tags. Arrays
+ * mixing several types become lists of compounds, where every value that is not a compound is
+ * wrapped in a compound under an empty name.</p>
+ */
+final class BinaryTagJsonWriter extends JsonWriter {
+
+  private static final Writer UNWRITABLE_WRITER = new Writer() {
+    @Override
+    public void write(char[] buffer, int offset, int counter) {
+      throw new AssertionError();
+    }
+
+    @Override
+    public void flush() {
+      throw new AssertionError();
+    }
+
+    @Override
+    public void close() {
+      throw new AssertionError();
+    }
+  };
+
+  private final List<Frame> stack = new ArrayList<>();
+  private @Nullable String pendingName;
+  private @Nullable BinaryTag product;
+
+  BinaryTagJsonWriter() {
+    super(UNWRITABLE_WRITER);
+  }
+
+  /**
+   * Returns the tag that was written.
+   *
+   * @return the written tag
+   */
+  BinaryTag get() {
+    if (!stack.isEmpty() || product == null) {
+      throw new IllegalStateException("Expected one JSON element but was " + stack);
+    }
+    return product;
+  }
+
+  @Override
+  public JsonWriter beginArray() {
+    stack.add(new Frame(false, takeName()));
+    return this;
+  }
+
+  @Override
+  public JsonWriter endArray() {
+    Frame frame = pop(false);
+    put(frame.name, toList(frame.items));
+    return this;
+  }
+
+  @Override
+  public JsonWriter beginObject() {
+    stack.add(new Frame(true, takeName()));
+    return this;
+  }
+
+  @Override
+  public JsonWriter endObject() {
+    Frame frame = pop(true);
+    if (pendingName != null) {
+      throw new IllegalStateException("Dangling name: " + pendingName);
+    }
+    put(frame.name, frame.compound.build());
+    return this;
+  }
+
+  @Override
+  public JsonWriter name(String name) {
+    if (stack.isEmpty() || pendingName != null || !stack.get(stack.size() - 1).isCompound()) {
+      throw new IllegalStateException("Did not expect a name");
+    }
+    pendingName = name;
+    return this;
+  }
+
+  @Override
+  public JsonWriter value(@Nullable String value) {
+    if (value == null) {
+      return nullValue();
+    }
+    put(takeName(), StringBinaryTag.stringBinaryTag(value));
+    return this;
+  }
+
+  @Override
+  public JsonWriter jsonValue(String value) {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public JsonWriter nullValue() {
+    if (!stack.isEmpty() && stack.get(stack.size() - 1).isCompound() && !getSerializeNulls()) {
+      // Null properties are dropped, just like when serializing to a JSON tree.
+      pendingName = null;
+      return this;
+    }
+    put(takeName(), EndBinaryTag.endBinaryTag());
+    return this;
+  }
+
+  @Override
+  public JsonWriter value(boolean value) {
+    put(takeName(), ByteBinaryTag.byteBinaryTag((byte) (value ? 1 : 0)));
+    return this;
+  }
+
+  @Override
+  public JsonWriter value(@Nullable Boolean value) {
+    if (value == null) {
+      return nullValue();
+    }
+    return value((boolean) value);
+  }
+
+  @Override
+  public JsonWriter value(float value) {
+    put(takeName(), FloatBinaryTag.floatBinaryTag(value));
+    return this;
+  }
+
+  @Override
+  public JsonWriter value(double value) {
+    put(takeName(), DoubleBinaryTag.doubleBinaryTag(value));
+    return this;
+  }
+
+  @Override
+  public JsonWriter value(long value) {
+    put(takeName(), LongBinaryTag.longBinaryTag(value));
+    return this;
+  }
+
+  @Override
+  public JsonWriter value(@Nullable Number value) {
+    if (value == null) {
+      return nullValue();
+    }
+    put(takeName(), toTag(value));
+    return this;
+  }
+
+  @Override
+  public void flush() {
+  }
+
+  @Override
+  public void close() {
+    if (!stack.isEmpty()) {
+      throw new IllegalStateException("Incomplete document");
+    }
+  }
+
+  static BinaryTag toTag(Number number) {
+    if (number instanceof Byte value) {
+      return ByteBinaryTag.byteBinaryTag(value);
+    } else if (number instanceof Short value) {
+      return ShortBinaryTag.shortBinaryTag(value);
+    } else if (number instanceof Integer value) {
+      return IntBinaryTag.intBinaryTag(value);
+    } else if (number instanceof Long value) {
+      return LongBinaryTag.longBinaryTag(value);
+    } else if (number instanceof Float value) {
+      return FloatBinaryTag.floatBinaryTag(value);
+    } else if (number instanceof Double value) {
+      return DoubleBinaryTag.doubleBinaryTag(value);
+    } else if (number instanceof LazilyParsedNumber) {
+      return IntBinaryTag.intBinaryTag(number.intValue());
+    }
+    return EndBinaryTag.endBinaryTag();
+  }
+
+  static BinaryTag toList(List<BinaryTag> items) {
+    if (items.isEmpty()) {
+      return ListBinaryTag.empty();
+    }
+
+    BinaryTagType<? extends BinaryTag> listType = null;
+    for (BinaryTag item : items) {
+      if (listType == null) {
+        listType = item.type();
+      } else if (listType != item.type()) {
+        listType = BinaryTagTypes.COMPOUND;
+        break;
+      }
+    }
+
+    switch (listType.id()) {
+      case 1: // BinaryTagTypes.BYTE
+        byte[] bytes = new byte[items.size()];
+        for (int i = 0; i < bytes.length; i++) {
+          bytes[i] = ((NumberBinaryTag) items.get(i)).byteValue();
+        }
+        return ByteArrayBinaryTag.byteArrayBinaryTag(bytes);
+      case 3: // BinaryTagTypes.INT
+        int[] ints = new int[items.size()];
+        for (int i = 0; i < ints.length; i++) {
+          ints[i] = ((NumberBinaryTag) items.get(i)).intValue();
+        }
+        return IntArrayBinaryTag.intArrayBinaryTag(ints);
+      case 4: // BinaryTagTypes.LONG
+        long[] longs = new long[items.size()];
+        for (int i = 0; i < longs.length; i++) {
+          longs[i] = ((NumberBinaryTag) items.get(i)).longValue();
+        }
+        return LongArrayBinaryTag.longArrayBinaryTag(longs);
+      case 10: // BinaryTagTypes.COMPOUND
+        // [{"text":"test1"},"test2"] can't be represented as a binary list tag, so every
+        // element that isn't a compound is wrapped in one under an empty key.
+        items.replaceAll(tag -> tag.type() == BinaryTagTypes.COMPOUND
+            ? tag : CompoundBinaryTag.builder().put("", tag).build());
+        break;
+      default:
+        break;
+    }
+    return ListBinaryTag.listBinaryTag(listType, items);
+  }
+
+  private @Nullable String takeName() {
+    String name = pendingName;
+    if (!stack.isEmpty() && stack.get(stack.size() - 1).isCompound() && name == null) {
+      throw new IllegalStateException("Expected a name");
+    }
+    pendingName = null;
+    return name;
+  }
+
+  private Frame pop(boolean compound) {
+    if (stack.isEmpty() || stack.get(stack.size() - 1).isCompound() != compound) {
+      throw new IllegalStateException("Nesting problem");
+    }
+    return stack.remove(stack.size() - 1);
+  }
+
+  private void put(@Nullable String name, BinaryTag tag) {
+    if (stack.isEmpty()) {
+      if (product != null) {
+        throw new IllegalStateException("JSON must have only one top-level value.");
+      }
+      product = tag;
+      return;
+    }
+
+    Frame frame = stack.get(stack.size() - 1);
+    if (frame.isCompound()) {
+      frame.compound.put(name, tag);
+    } else {
+      frame.items.add(tag);
+    }
+  }
+
+  private static final class Frame {
+
+    private final @Nullable String name;
+    private final CompoundBinaryTag.@Nullable Builder compound;
+    private final @Nullable List<BinaryTag> items;
+
+    private Frame(boolean compound, @Nullable String name) {
+      this.name = name;
+      this.compound = compound ? CompoundBinaryTag.builder() : null;
+      this.items = compound ? null : new ArrayList<>();
+    }
+
+    private boolean isCompound() {
+      return compound != null;
+    }
+
+    @Override
+    public String toString() {
+      return isCompound() ? "compound " + name : "list " + name;
+    }
+  }
+}
@@ -43,6 +43,11 @@ public class RegistrySyncPacket extends DeferredByteBufHolder implements Minecra
     buf.writeBytes(content());
   }
 
+  @Override
+  public int encodedSizeHint(ProtocolUtils.Direction direction, ProtocolVersion version) {
+    return content().readableBytes();
+  }
+
   @Override
   public boolean handle(MinecraftSessionHandler handler) {
     return handler.handle(this);
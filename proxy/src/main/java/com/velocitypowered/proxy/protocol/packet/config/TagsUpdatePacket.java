@@ -75,6 +75,24 @@ public class TagsUpdatePacket implements MinecraftPacket {
     }
   }
 
+  @Override
+  public int encodedSizeHint(ProtocolUtils.Direction direction, ProtocolVersion version) {
+    int size = ProtocolUtils.varIntBytes(tags.size());
+    for (Map.Entry<String, Map<String, int[]>> entry : tags.entrySet()) {
+      size += ProtocolUtils.stringBytes(entry.getKey());
+      size += ProtocolUtils.varIntBytes(entry.getValue().size());
+      for (Map.Entry<String, int[]> innerEntry : entry.getValue().entrySet()) {
+        size += ProtocolUtils.stringBytes(innerEntry.getKey());
+        int[] values = innerEntry.getValue();
+        size += ProtocolUtils.varIntBytes(values.length);
+        for (int value : values) {
+          size += ProtocolUtils.varIntBytes(value);
+        }
+      }
+    }
+    return size;
+  }
+
   @Override
   public boolean handle(MinecraftSessionHandler handler) {
     return handler.handle(this);
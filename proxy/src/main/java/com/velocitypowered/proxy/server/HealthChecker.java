@@ -0,0 +1,128 @@
+/*
+ * Copyright (C) 2024 Velocity Contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.velocitypowered.proxy.server;
+
+import com.google.gson.JsonObject;
+import com.velocitypowered.api.proxy.server.PingOptions;
+import com.velocitypowered.api.proxy.server.RegisteredServer;
+import com.velocitypowered.api.scheduler.ScheduledTask;
+import com.velocitypowered.proxy.VelocityServer;
+import com.velocitypowered.proxy.config.VelocityConfiguration.HealthCheck;
+import com.velocitypowered.proxy.plugin.virtual.VelocityVirtualPlugin;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/**
+ * Periodically pings every registered server, through the same path as regular server list
+ * pings, and feeds the results to the {@link VelocityServerHealth circuit breaker} of the server.
+ * Every check is delayed by a random jitter so that the servers are not all checked at once.
+ */
+public final class HealthChecker {
+
+  private final VelocityServer server;
+  private final LongAdder probes = new LongAdder();
+  private final LongAdder failures = new LongAdder();
+  private @Nullable ScheduledTask task;
+
+  public HealthChecker(VelocityServer server) {
+    this.server = server;
+  }
+
+  /**
+   * Starts or stops checking the servers, depending on the configuration. Called on startup and
+   * whenever the configuration is reloaded.
+   */
+  public synchronized void reload() {
+    if (task != null) {
+      task.cancel();
+      task = null;
+    }
+    HealthCheck settings = server.getConfiguration().getHealthCheck();
+    if (!settings.isEnabled()) {
+      for (RegisteredServer registered : server.getAllServers()) {
+        ((VelocityRegisteredServer) registered).getHealth().reset();
+      }
+      return;
+    }
+    task = server.getScheduler()
+        .buildTask(VelocityVirtualPlugin.INSTANCE, this::checkServers)
+        .repeat(settings.getInterval(), TimeUnit.MILLISECONDS)
+        .schedule();
+  }
+
+  private void checkServers() {
+    HealthCheck settings = server.getConfiguration().getHealthCheck();
+    for (RegisteredServer registered : server.getAllServers()) {
+      VelocityRegisteredServer target = (VelocityRegisteredServer) registered;
+      if (settings.getJitter() == 0) {
+        check(target);
+        continue;
+      }
+      server.getScheduler()
+          .buildTask(VelocityVirtualPlugin.INSTANCE, () -> check(target))
+          .delay(ThreadLocalRandom.current().nextInt(settings.getJitter()), TimeUnit.MILLISECONDS)
+          .schedule();
+    }
+  }
+
+  private void check(VelocityRegisteredServer target) {
+    HealthCheck settings = server.getConfiguration().getHealthCheck();
+    PingOptions options = PingOptions.builder()
+        .timeout(settings.getTimeout(), TimeUnit.MILLISECONDS)
+        .build();
+    long start = System.nanoTime();
+    probes.increment();
+    target.ping(null, options).whenComplete((ping, throwable) -> {
+      // Use the current settings, they may have been reloaded in the meantime
+      HealthCheck current = server.getConfiguration().getHealthCheck();
+      if (throwable != null) {
+        failures.increment();
+        target.getHealth().recordFailure(current);
+        target.clearLatency();
+        return;
+      }
+      long latency = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+      target.getHealth().recordProbeSuccess(current, latency);
+      target.recordLatency(latency);
+    });
+  }
+
+  /**
+   * Collects the health of every server for {@code /velocity dump}.
+   *
+   * @return the health check statistics
+   */
+  public JsonObject collectStatistics() {
+    JsonObject statistics = new JsonObject();
+    statistics.addProperty("probes", probes.sum());
+    statistics.addProperty("failures", failures.sum());
+    JsonObject servers = new JsonObject();
+    for (RegisteredServer registered : server.getAllServers()) {
+      VelocityServerHealth health = ((VelocityRegisteredServer) registered).getHealth();
+      JsonObject entry = new JsonObject();
+      entry.addProperty("state", health.getState().name());
+      entry.addProperty("probeLatencyMillis", health.getProbeLatency());
+      entry.addProperty("consecutiveFailures", health.getConsecutiveFailures());
+      servers.add(registered.getServerInfo().getName(), entry);
+    }
+    statistics.add("servers", servers);
+    return statistics;
+  }
+}
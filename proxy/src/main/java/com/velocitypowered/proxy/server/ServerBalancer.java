@@ -0,0 +1,187 @@
+/*
+ * Copyright (C) 2024 Velocity Contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.velocitypowered.proxy.server;
+
+import com.google.gson.JsonObject;
+import com.velocitypowered.api.proxy.server.RegisteredServer;
+import com.velocitypowered.api.scheduler.ScheduledTask;
+import com.velocitypowered.proxy.VelocityServer;
+import com.velocitypowered.proxy.config.BalancingStrategy;
+import com.velocitypowered.proxy.plugin.virtual.VelocityVirtualPlugin;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/**
+ * Chooses which server to send a player to among several candidates, according to the configured
+ * {@link BalancingStrategy}.
+ *
+ * <p>Every strategy only reads counters that {@link VelocityRegisteredServer} keeps up to date
+ * without locking, so choosing a server is cheap even with many servers and many players joining
+ * at once. Players still connecting to a server are counted towards its load, so that a burst of
+ * joins doesn't all pick the same server.</p>
+ */
+public final class ServerBalancer {
+
+  private final VelocityServer server;
+  private @Nullable ScheduledTask pingTask;
+
+  public ServerBalancer(VelocityServer server) {
+    this.server = server;
+  }
+
+  /**
+   * Returns whether the servers should be tried in the configured order, in which case
+   * {@link #select(List)} does not need to be called.
+   *
+   * @return whether balancing is disabled
+   */
+  public boolean isOrdered() {
+    return server.getConfiguration().getBalancingStrategy() == BalancingStrategy.FIRST;
+  }
+
+  /**
+   * Chooses a server among the candidates.
+   *
+   * @param candidates the servers to choose from, in the configured order
+   * @return the chosen server, or {@code null} if there are no candidates
+   */
+  public @Nullable VelocityRegisteredServer select(List<VelocityRegisteredServer> candidates) {
+    if (candidates.isEmpty()) {
+      return null;
+    }
+    if (candidates.size() == 1) {
+      return candidates.get(0);
+    }
+
+    return switch (server.getConfiguration().getBalancingStrategy()) {
+      case FIRST -> candidates.get(0);
+      case LEAST_PLAYERS -> selectLeastLoaded(candidates, false);
+      case WEIGHTED -> selectLeastLoaded(candidates, true);
+      case POWER_OF_TWO -> selectPowerOfTwo(candidates);
+      case LOWEST_LATENCY -> selectLowestLatency(candidates);
+    };
+  }
+
+  private VelocityRegisteredServer selectLeastLoaded(List<VelocityRegisteredServer> candidates,
+      boolean weighted) {
+    VelocityRegisteredServer best = null;
+    double bestLoad = Double.MAX_VALUE;
+    for (VelocityRegisteredServer candidate : candidates) {
+      double load = candidate.getLoad();
+      if (weighted) {
+        load /= server.getConfiguration().getServerWeight(candidate.getServerInfo().getName());
+      }
+      // Ties go to the server configured first
+      if (load < bestLoad) {
+        best = candidate;
+        bestLoad = load;
+      }
+    }
+    return best;
+  }
+
+  private VelocityRegisteredServer selectPowerOfTwo(List<VelocityRegisteredServer> candidates) {
+    VelocityRegisteredServer[] pair = pickTwo(candidates);
+    return pair[1].getLoad() < pair[0].getLoad() ? pair[1] : pair[0];
+  }
+
+  private VelocityRegisteredServer selectLowestLatency(List<VelocityRegisteredServer> candidates) {
+    // Comparing two random servers rather than all of them keeps every join in a burst from
+    // going to the single fastest server before its latency reflects the added players
+    VelocityRegisteredServer[] pair = pickTwo(candidates);
+    return hasLowerCost(pair[1], pair[0]) ? pair[1] : pair[0];
+  }
+
+  private static VelocityRegisteredServer[] pickTwo(List<VelocityRegisteredServer> candidates) {
+    ThreadLocalRandom random = ThreadLocalRandom.current();
+    int first = random.nextInt(candidates.size());
+    int second = random.nextInt(candidates.size() - 1);
+    if (second >= first) {
+      second++;
+    }
+    return new VelocityRegisteredServer[] { candidates.get(first), candidates.get(second) };
+  }
+
+  private static boolean hasLowerCost(VelocityRegisteredServer candidate,
+      VelocityRegisteredServer other) {
+    long latency = candidate.getLatency();
+    long otherLatency = other.getLatency();
+    if (latency == -1 || otherLatency == -1) {
+      // Servers that haven't been measured, or didn't answer the last ping, lose to the others
+      return latency == otherLatency ? candidate.getLoad() < other.getLoad() : otherLatency == -1;
+    }
+    // The latency is scaled by the number of players, as every player adds to it
+    return (latency + 1) * (candidate.getLoad() + 1L) < (otherLatency + 1) * (other.getLoad() + 1L);
+  }
+
+  /**
+   * Starts or stops pinging the servers, depending on the configured strategy. Called on startup
+   * and whenever the configuration is reloaded.
+   */
+  public synchronized void reload() {
+    if (pingTask != null) {
+      pingTask.cancel();
+      pingTask = null;
+    }
+    if (server.getConfiguration().getBalancingStrategy() != BalancingStrategy.LOWEST_LATENCY
+        || server.getConfiguration().getHealthCheck().isEnabled()) {
+      // Health checks measure the latency of the servers as well
+      return;
+    }
+    pingTask = server.getScheduler()
+        .buildTask(VelocityVirtualPlugin.INSTANCE, this::pingServers)
+        .repeat(server.getConfiguration().getBalancerPingInterval(), TimeUnit.SECONDS)
+        .schedule();
+  }
+
+  /**
+   * Collects the load and latency of every server for {@code /velocity dump}.
+   *
+   * @return the balancer statistics
+   */
+  public JsonObject collectStatistics() {
+    JsonObject statistics = new JsonObject();
+    statistics.addProperty("strategy", server.getConfiguration().getBalancingStrategy().name());
+    JsonObject servers = new JsonObject();
+    for (RegisteredServer registered : server.getAllServers()) {
+      VelocityRegisteredServer target = (VelocityRegisteredServer) registered;
+      JsonObject entry = new JsonObject();
+      entry.addProperty("load", target.getLoad());
+      entry.addProperty("latencyMillis", target.getLatency());
+      servers.add(target.getServerInfo().getName(), entry);
+    }
+    statistics.add("servers", servers);
+    return statistics;
+  }
+
+  private void pingServers() {
+    for (RegisteredServer registered : server.getAllServers()) {
+      VelocityRegisteredServer target = (VelocityRegisteredServer) registered;
+      long start = System.nanoTime();
+      target.ping().whenComplete((ping, throwable) -> {
+        if (throwable != null) {
+          target.clearLatency();
+        } else {
+          target.recordLatency(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        }
+      });
+    }
+  }
+}
@@ -58,6 +58,8 @@ import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import net.kyori.adventure.audience.Audience;
 import net.kyori.adventure.audience.ForwardingAudience;
 import org.checkerframework.checker.nullness.qual.NonNull;
@@ -72,10 +74,14 @@ public class VelocityRegisteredServer implements RegisteredServer, ForwardingAud
   private final @Nullable VelocityServer server;
   private final ServerInfo serverInfo;
   private final Map<UUID, ConnectedPlayer> players = new ConcurrentHashMap<>();
+  private final AtomicInteger connecting = new AtomicInteger();
+  private final AtomicLong latency = new AtomicLong(-1);
+  private final VelocityServerHealth health;
 
   public VelocityRegisteredServer(@Nullable VelocityServer server, ServerInfo serverInfo) {
     this.server = server;
     this.serverInfo = Preconditions.checkNotNull(serverInfo, "serverInfo");
+    this.health = new VelocityServerHealth(serverInfo.getName());
   }
 
   @Override
@@ -88,6 +94,21 @@ public class VelocityRegisteredServer implements RegisteredServer, ForwardingAud
     return ImmutableList.copyOf(players.values());
   }
 
+  @Override
+  public void prepareConnection(Player player) {
+    if (server == null) {
+      throw new IllegalStateException("No Velocity proxy instance available");
+    }
+    Preconditions.checkNotNull(player, "player");
+    server.getBackendConnectionPool().prepare(serverInfo,
+        ((ConnectedPlayer) player).getConnection().eventLoop());
+  }
+
+  @Override
+  public VelocityServerHealth getHealth() {
+    return health;
+  }
+
   @Override
   public CompletableFuture<ServerPing> ping(PingOptions pingOptions) {
     return ping(null, pingOptions);
@@ -138,6 +159,56 @@ public class VelocityRegisteredServer implements RegisteredServer, ForwardingAud
     return pingFuture;
   }
 
+  /**
+   * Returns the number of players on this server, including those still connecting to it. This
+   * doesn't copy the player list, unlike {@link #getPlayersConnected()}.
+   *
+   * @return the number of players on or connecting to this server
+   */
+  public int getLoad() {
+    return players.size() + connecting.get();
+  }
+
+  public void connectionStarted() {
+    connecting.incrementAndGet();
+  }
+
+  public void connectionFinished() {
+    connecting.decrementAndGet();
+  }
+
+  /**
+   * Returns the smoothed latency to this server, as measured by the pings of the balancer.
+   *
+   * @return the latency in milliseconds, or -1 if it hasn't been measured or the last ping failed
+   */
+  public long getLatency() {
+    return latency.get();
+  }
+
+  /**
+   * Records the round-trip time of a ping to this server.
+   *
+   * @param millis the round-trip time in milliseconds
+   */
+  public void recordLatency(long millis) {
+    long previous;
+    long next;
+    do {
+      previous = latency.get();
+      // Same gain as the player ping estimator
+      next = previous == -1 ? millis : previous + (millis - previous) / 8;
+    } while (!latency.compareAndSet(previous, next));
+  }
+
+  /**
+   * Forgets the latency to this server after a ping failed, so that it isn't chosen over servers
+   * that answer.
+   */
+  public void clearLatency() {
+    latency.set(-1);
+  }
+
   public void addPlayer(ConnectedPlayer player) {
     players.put(player.getUniqueId(), player);
   }
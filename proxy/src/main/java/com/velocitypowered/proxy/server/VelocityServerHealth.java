@@ -0,0 +1,138 @@
+/*
+ * Copyright (C) 2024 Velocity Contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.velocitypowered.proxy.server;
+
+import com.velocitypowered.api.proxy.server.ServerHealth;
+import com.velocitypowered.proxy.config.VelocityConfiguration.HealthCheck;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * The circuit breaker of a registered server, fed by the {@link HealthChecker} and by the
+ * outcome of backend connections. Reading the state never locks, so it can be checked whenever a
+ * server is chosen.
+ */
+public final class VelocityServerHealth implements ServerHealth {
+
+  private static final Logger logger = LogManager.getLogger(VelocityServerHealth.class);
+
+  private final String serverName;
+  private volatile State state = State.CLOSED;
+  private volatile long probeLatency = -1;
+  private volatile int consecutiveFailures;
+  private int consecutiveSuccesses;
+
+  VelocityServerHealth(String serverName) {
+    this.serverName = serverName;
+  }
+
+  @Override
+  public State getState() {
+    return state;
+  }
+
+  @Override
+  public long getProbeLatency() {
+    return probeLatency;
+  }
+
+  @Override
+  public int getConsecutiveFailures() {
+    return consecutiveFailures;
+  }
+
+  /**
+   * Records a successful health check.
+   *
+   * @param settings the health check settings
+   * @param latencyMillis the round-trip time of the check
+   */
+  public void recordProbeSuccess(HealthCheck settings, long latencyMillis) {
+    probeLatency = latencyMillis;
+    recordSuccess(settings);
+  }
+
+  /**
+   * Records a health check or a connection that succeeded. Does nothing if health checks are
+   * disabled.
+   *
+   * @param settings the health check settings
+   */
+  public synchronized void recordSuccess(HealthCheck settings) {
+    if (!settings.isEnabled()) {
+      return;
+    }
+    consecutiveFailures = 0;
+    switch (state) {
+      case OPEN:
+        state = State.HALF_OPEN;
+        consecutiveSuccesses = 0;
+        // fall through
+      case HALF_OPEN:
+        if (++consecutiveSuccesses >= settings.getSuccessThreshold()) {
+          state = State.CLOSED;
+          logger.info("Server {} is back up, sending players to it again", serverName);
+        }
+        break;
+      default:
+        break;
+    }
+  }
+
+  /**
+   * Records a health check or a connection that failed. Does nothing if health checks are
+   * disabled.
+   *
+   * @param settings the health check settings
+   */
+  public synchronized void recordFailure(HealthCheck settings) {
+    if (!settings.isEnabled()) {
+      return;
+    }
+    consecutiveSuccesses = 0;
+    int failures = ++consecutiveFailures;
+    if (state == State.HALF_OPEN
+        || (state == State.CLOSED && failures >= settings.getFailureThreshold())) {
+      if (state == State.CLOSED) {
+        logger.warn("Server {} failed {} times in a row, no longer sending players to it",
+            serverName, failures);
+      }
+      state = State.OPEN;
+    }
+  }
+
+  /**
+   * Forgets everything known about the server, for instance because health checks have been
+   * disabled.
+   */
+  public synchronized void reset() {
+    state = State.CLOSED;
+    probeLatency = -1;
+    consecutiveFailures = 0;
+    consecutiveSuccesses = 0;
+  }
+
+  @Override
+  public String toString() {
+    return "VelocityServerHealth{"
+        + "state=" + state
+        + ", probeLatency=" + probeLatency
+        + ", consecutiveFailures=" + consecutiveFailures
+        + '}';
+  }
+}
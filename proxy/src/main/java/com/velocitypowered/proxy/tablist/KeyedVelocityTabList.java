@@ -22,6 +22,7 @@ import com.velocitypowered.api.proxy.Player;
 import com.velocitypowered.api.proxy.ProxyServer;
 import com.velocitypowered.api.proxy.crypto.IdentifiedKey;
 import com.velocitypowered.api.proxy.player.ChatSession;
+import com.velocitypowered.api.proxy.player.TabList;
 import com.velocitypowered.api.proxy.player.TabListEntry;
 import com.velocitypowered.api.util.GameProfile;
 import com.velocitypowered.proxy.connection.MinecraftConnection;
@@ -37,6 +38,7 @@ import java.util.Objects;
 import java.util.Optional;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
 import net.kyori.adventure.text.Component;
 import org.checkerframework.checker.nullness.qual.Nullable;
 
@@ -49,6 +51,9 @@ public class KeyedVelocityTabList implements InternalTabList {
   protected final MinecraftConnection connection;
   protected final ProxyServer proxyServer;
   protected final Map<UUID, KeyedVelocityTabListEntry> entries = new ConcurrentHashMap<>();
+  private final Object batchLock = new Object();
+  // Only the changes made on the thread running a batch are collected, batches may run at once
+  private final ThreadLocal<@Nullable PlayerListItemBatch> batch = new ThreadLocal<>();
 
   /**
    * Creates a new VelocityTabList.
@@ -88,9 +93,7 @@ public class KeyedVelocityTabList implements InternalTabList {
         "Not a Velocity tab list entry");
 
     LegacyPlayerListItemPacket.Item packetItem = LegacyPlayerListItemPacket.Item.from(entry);
-    connection.write(
-        new LegacyPlayerListItemPacket(LegacyPlayerListItemPacket.ADD_PLAYER,
-            Collections.singletonList(packetItem)));
+    writeItem(LegacyPlayerListItemPacket.ADD_PLAYER, packetItem);
     entries.put(entry.getProfile().getId(), (KeyedVelocityTabListEntry) entry);
   }
 
@@ -101,9 +104,7 @@ public class KeyedVelocityTabList implements InternalTabList {
     TabListEntry entry = entries.remove(uuid);
     if (entry != null) {
       LegacyPlayerListItemPacket.Item packetItem = LegacyPlayerListItemPacket.Item.from(entry);
-      connection.write(
-          new LegacyPlayerListItemPacket(LegacyPlayerListItemPacket.REMOVE_PLAYER,
-              Collections.singletonList(packetItem)));
+      writeItem(LegacyPlayerListItemPacket.REMOVE_PLAYER, packetItem);
     }
 
     return Optional.ofNullable(entry);
@@ -136,8 +137,68 @@ public class KeyedVelocityTabList implements InternalTabList {
       items.add(LegacyPlayerListItemPacket.Item.from(value));
     }
     clearAllSilent();
-    connection.delayedWrite(new LegacyPlayerListItemPacket(
-            LegacyPlayerListItemPacket.REMOVE_PLAYER, items));
+    PlayerListItemBatch batch = currentBatch();
+    if (batch != null) {
+      for (LegacyPlayerListItemPacket.Item item : items) {
+        batch.add(LegacyPlayerListItemPacket.REMOVE_PLAYER, item);
+      }
+    } else {
+      connection.delayedWrite(new LegacyPlayerListItemPacket(
+          LegacyPlayerListItemPacket.REMOVE_PLAYER, items));
+    }
+  }
+
+  @Override
+  public void batch(Consumer<TabList> changes) {
+    Preconditions.checkNotNull(changes, "changes");
+    if (this.batch.get() != null) {
+      // Nested batch, the outermost batch will write everything out.
+      changes.accept(this);
+      return;
+    }
+
+    // The changes are collected without holding the lock, so that plugins can't block other
+    // threads, or deadlock, while running them.
+    PlayerListItemBatch batch = new PlayerListItemBatch();
+    this.batch.set(batch);
+    try {
+      changes.accept(this);
+    } finally {
+      this.batch.remove();
+      // Keep the packets of every batch together
+      synchronized (batchLock) {
+        batch.writeTo(this);
+      }
+    }
+  }
+
+  @Nullable PlayerListItemBatch currentBatch() {
+    return batch.get();
+  }
+
+  /**
+   * Writes a single item to the player, or adds it to the current batch if there is one.
+   *
+   * @param action the action to perform
+   * @param item the item to write
+   */
+  protected void writeItem(int action, LegacyPlayerListItemPacket.Item item) {
+    PlayerListItemBatch batch = currentBatch();
+    if (batch != null) {
+      batch.add(action, item);
+    } else {
+      connection.write(new LegacyPlayerListItemPacket(action, List.of(item)));
+    }
+  }
+
+  /**
+   * Writes, but does not flush, the items collected for an action during a batch.
+   *
+   * @param action the action to perform
+   * @param items the items to write
+   */
+  void writeBatched(int action, List<LegacyPlayerListItemPacket.Item> items) {
+    connection.delayedWrite(new LegacyPlayerListItemPacket(action, items));
   }
 
   @Override
@@ -252,7 +313,7 @@ public class KeyedVelocityTabList implements InternalTabList {
         packetItem.setPlayerKey(null);
       }
 
-      connection.write(new LegacyPlayerListItemPacket(action, List.of(packetItem)));
+      writeItem(action, packetItem);
     }
   }
 }
@@ -0,0 +1,105 @@
+/*
+ * Copyright (C) 2024 Velocity Contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.velocitypowered.proxy.tablist;
+
+import com.velocitypowered.proxy.connection.MinecraftConnection;
+import com.velocitypowered.proxy.protocol.packet.RemovePlayerInfoPacket;
+import com.velocitypowered.proxy.protocol.packet.UpsertPlayerInfoPacket;
+import com.velocitypowered.proxy.protocol.packet.UpsertPlayerInfoPacket.Action;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Collects the changes made to a {@link VelocityTabList} during
+ * {@link VelocityTabList#batch(java.util.function.Consumer)} and merges them into as few
+ * {@link UpsertPlayerInfoPacket}s as possible.
+ */
+final class PlayerInfoBatch {
+
+  private final Set<UUID> removed = new LinkedHashSet<>();
+  private final Map<UUID, PendingEntry> upserts = new LinkedHashMap<>();
+
+  void upsert(EnumSet<Action> actions, UpsertPlayerInfoPacket.Entry entry) {
+    PendingEntry pending = upserts.computeIfAbsent(entry.getProfileId(), PendingEntry::new);
+    for (Action action : actions) {
+      pending.merge(action, entry);
+    }
+  }
+
+  void remove(UUID uuid) {
+    upserts.remove(uuid);
+    removed.add(uuid);
+  }
+
+  /**
+   * Writes the collected changes to the connection. Removals are written first, followed by one
+   * {@link UpsertPlayerInfoPacket} for each distinct set of actions.
+   *
+   * @param connection the connection to write to
+   */
+  void writeTo(MinecraftConnection connection) {
+    if (removed.isEmpty() && upserts.isEmpty()) {
+      return;
+    }
+
+    if (!removed.isEmpty()) {
+      connection.delayedWrite(new RemovePlayerInfoPacket(new ArrayList<>(removed)));
+    }
+
+    Map<EnumSet<Action>, List<UpsertPlayerInfoPacket.Entry>> grouped = new LinkedHashMap<>();
+    for (PendingEntry pending : upserts.values()) {
+      grouped.computeIfAbsent(pending.actions, actions -> new ArrayList<>()).add(pending.entry);
+    }
+    for (Map.Entry<EnumSet<Action>, List<UpsertPlayerInfoPacket.Entry>> group
+        : grouped.entrySet()) {
+      connection.delayedWrite(new UpsertPlayerInfoPacket(group.getKey(), group.getValue()));
+    }
+    connection.flush();
+  }
+
+  private static final class PendingEntry {
+
+    private final EnumSet<Action> actions = EnumSet.noneOf(Action.class);
+    private final UpsertPlayerInfoPacket.Entry entry;
+
+    private PendingEntry(UUID uuid) {
+      this.entry = new UpsertPlayerInfoPacket.Entry(uuid);
+    }
+
+    private void merge(Action action, UpsertPlayerInfoPacket.Entry from) {
+      actions.add(action);
+      switch (action) {
+        case ADD_PLAYER -> entry.setProfile(from.getProfile());
+        case INITIALIZE_CHAT -> entry.setChatSession(from.getChatSession());
+        case UPDATE_GAME_MODE -> entry.setGameMode(from.getGameMode());
+        case UPDATE_LISTED -> entry.setListed(from.isListed());
+        case UPDATE_LATENCY -> entry.setLatency(from.getLatency());
+        case UPDATE_DISPLAY_NAME -> entry.setDisplayName(from.getDisplayName());
+        case UPDATE_LIST_ORDER -> entry.setListOrder(from.getListOrder());
+        case UPDATE_HAT -> entry.setShowHat(from.isShowHat());
+        default -> throw new IllegalArgumentException("Unknown action " + action);
+      }
+    }
+  }
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright (C) 2024 Velocity Contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.velocitypowered.proxy.tablist;
+
+import com.velocitypowered.proxy.protocol.packet.LegacyPlayerListItemPacket;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Collects the changes made to a {@link KeyedVelocityTabList} during
+ * {@link KeyedVelocityTabList#batch(java.util.function.Consumer)}, keeping only the latest item
+ * for every entry and action, so that a single {@link LegacyPlayerListItemPacket} can be sent per
+ * action.
+ */
+final class PlayerListItemBatch {
+
+  // Removals are written first, so that an entry removed and added again ends up being present.
+  private static final int[] WRITE_ORDER = {
+      LegacyPlayerListItemPacket.REMOVE_PLAYER,
+      LegacyPlayerListItemPacket.ADD_PLAYER,
+      LegacyPlayerListItemPacket.UPDATE_GAMEMODE,
+      LegacyPlayerListItemPacket.UPDATE_LATENCY,
+      LegacyPlayerListItemPacket.UPDATE_DISPLAY_NAME
+  };
+
+  @SuppressWarnings({"unchecked", "rawtypes"})
+  private final Map<UUID, LegacyPlayerListItemPacket.Item>[] items =
+      new Map[LegacyPlayerListItemPacket.REMOVE_PLAYER + 1];
+
+  PlayerListItemBatch() {
+    for (int i = 0; i < items.length; i++) {
+      items[i] = new LinkedHashMap<>();
+    }
+  }
+
+  void add(int action, LegacyPlayerListItemPacket.Item item) {
+    UUID uuid = item.getUuid();
+    if (action == LegacyPlayerListItemPacket.REMOVE_PLAYER) {
+      for (Map<UUID, LegacyPlayerListItemPacket.Item> pending : items) {
+        pending.remove(uuid);
+      }
+    }
+    items[action].put(uuid, item);
+  }
+
+  void writeTo(KeyedVelocityTabList tabList) {
+    boolean written = false;
+    for (int action : WRITE_ORDER) {
+      Map<UUID, LegacyPlayerListItemPacket.Item> pending = items[action];
+      if (!pending.isEmpty()) {
+        tabList.writeBatched(action, new ArrayList<>(pending.values()));
+        written = true;
+      }
+    }
+    if (written) {
+      tabList.connection.flush();
+    }
+  }
+}
@@ -22,6 +22,7 @@ import com.google.common.collect.Maps;
 import com.velocitypowered.api.network.ProtocolVersion;
 import com.velocitypowered.api.proxy.Player;
 import com.velocitypowered.api.proxy.player.ChatSession;
+import com.velocitypowered.api.proxy.player.TabList;
 import com.velocitypowered.api.proxy.player.TabListEntry;
 import com.velocitypowered.api.util.GameProfile;
 import com.velocitypowered.proxy.connection.MinecraftConnection;
@@ -29,7 +30,6 @@ import com.velocitypowered.proxy.connection.client.ConnectedPlayer;
 import com.velocitypowered.proxy.console.VelocityConsole;
 import com.velocitypowered.proxy.protocol.packet.RemovePlayerInfoPacket;
 import com.velocitypowered.proxy.protocol.packet.UpsertPlayerInfoPacket;
-import com.velocitypowered.proxy.protocol.packet.chat.ComponentHolder;
 import com.velocitypowered.proxy.protocol.packet.chat.RemoteChatSession;
 import java.util.ArrayList;
 import java.util.Collection;
@@ -39,6 +39,7 @@ import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.function.Consumer;
 import net.kyori.adventure.text.Component;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -53,6 +54,9 @@ public class VelocityTabList implements InternalTabList {
   private final ConnectedPlayer player;
   private final MinecraftConnection connection;
   private final Map<UUID, VelocityTabListEntry> entries;
+  private final Object batchLock = new Object();
+  // Only the changes made on the thread running a batch are collected, batches may run at once
+  private final ThreadLocal<@Nullable PlayerInfoBatch> batch = new ThreadLocal<>();
 
   /**
    * Constructs the instance.
@@ -107,15 +111,11 @@ public class VelocityTabList implements InternalTabList {
         if (previousEntry.equals(entry)) {
           return previousEntry; // nothing else to do, this entry is perfect
         }
-        if (!Objects.equals(previousEntry.getDisplayNameComponent().orElse(null),
+        if (previousEntry.getDisplayNameHolder() != entry.getDisplayNameHolder()
+            && !Objects.equals(previousEntry.getDisplayNameComponent().orElse(null),
                 entry.getDisplayNameComponent().orElse(null))) {
           actions.add(UpsertPlayerInfoPacket.Action.UPDATE_DISPLAY_NAME);
-          playerInfoEntry.setDisplayName(entry.getDisplayNameComponent().isEmpty()
-                  ?
-                  null :
-                  new ComponentHolder(player.getProtocolVersion(),
-                          entry.getDisplayNameComponent().get())
-          );
+          playerInfoEntry.setDisplayName(entry.getDisplayNameHolder());
         }
         if (!Objects.equals(previousEntry.getLatency(), entry.getLatency())) {
           actions.add(UpsertPlayerInfoPacket.Action.UPDATE_LATENCY);
@@ -147,14 +147,9 @@ public class VelocityTabList implements InternalTabList {
                 UpsertPlayerInfoPacket.Action.UPDATE_LATENCY,
                 UpsertPlayerInfoPacket.Action.UPDATE_LISTED));
         playerInfoEntry.setProfile(entry.getProfile());
-        if (entry.getDisplayNameComponent().isPresent()) {
+        if (entry.getDisplayNameHolder() != null) {
           actions.add(UpsertPlayerInfoPacket.Action.UPDATE_DISPLAY_NAME);
-          playerInfoEntry.setDisplayName(entry.getDisplayNameComponent().isEmpty()
-                  ?
-                  null :
-                  new ComponentHolder(player.getProtocolVersion(),
-                          entry.getDisplayNameComponent().get())
-          );
+          playerInfoEntry.setDisplayName(entry.getDisplayNameHolder());
         }
         if (entry.getChatSession() != null) {
           actions.add(UpsertPlayerInfoPacket.Action.INITIALIZE_CHAT);
@@ -178,13 +173,23 @@ public class VelocityTabList implements InternalTabList {
     });
 
     if (!actions.isEmpty()) {
-      this.connection.write(new UpsertPlayerInfoPacket(actions, List.of(playerInfoEntry)));
+      PlayerInfoBatch batch = currentBatch();
+      if (batch != null) {
+        batch.upsert(actions, playerInfoEntry);
+      } else {
+        this.connection.write(new UpsertPlayerInfoPacket(actions, List.of(playerInfoEntry)));
+      }
     }
   }
 
   @Override
   public Optional<TabListEntry> removeEntry(UUID uuid) {
-    this.connection.write(new RemovePlayerInfoPacket(List.of(uuid)));
+    PlayerInfoBatch batch = currentBatch();
+    if (batch != null) {
+      batch.remove(uuid);
+    } else {
+      this.connection.write(new RemovePlayerInfoPacket(List.of(uuid)));
+    }
     return Optional.ofNullable(this.entries.remove(uuid));
   }
 
@@ -205,11 +210,46 @@ public class VelocityTabList implements InternalTabList {
 
   @Override
   public void clearAll() {
-    this.connection.delayedWrite(new RemovePlayerInfoPacket(
-            new ArrayList<>(this.entries.keySet())));
+    PlayerInfoBatch batch = currentBatch();
+    if (batch != null) {
+      for (UUID uuid : this.entries.keySet()) {
+        batch.remove(uuid);
+      }
+    } else {
+      this.connection.delayedWrite(new RemovePlayerInfoPacket(
+          new ArrayList<>(this.entries.keySet())));
+    }
     clearAllSilent();
   }
 
+  @Override
+  public void batch(Consumer<TabList> changes) {
+    Preconditions.checkNotNull(changes, "changes");
+    if (this.batch.get() != null) {
+      // Nested batch, the outermost batch will write everything out.
+      changes.accept(this);
+      return;
+    }
+
+    // The changes are collected without holding the lock, so that plugins can't block other
+    // threads, or deadlock, while running them.
+    PlayerInfoBatch batch = new PlayerInfoBatch();
+    this.batch.set(batch);
+    try {
+      changes.accept(this);
+    } finally {
+      this.batch.remove();
+      // Keep the packets of every batch together
+      synchronized (batchLock) {
+        batch.writeTo(this.connection);
+      }
+    }
+  }
+
+  private @Nullable PlayerInfoBatch currentBatch() {
+    return batch.get();
+  }
+
   @Override
   public void clearAllSilent() {
     this.entries.clear();
@@ -239,6 +279,11 @@ public class VelocityTabList implements InternalTabList {
 
   protected void emitActionRaw(UpsertPlayerInfoPacket.Action action,
                                UpsertPlayerInfoPacket.Entry entry) {
+    PlayerInfoBatch batch = currentBatch();
+    if (batch != null) {
+      batch.upsert(EnumSet.of(action), entry);
+      return;
+    }
     this.connection.write(new UpsertPlayerInfoPacket(EnumSet.of(action), List.of(entry)));
   }
 
@@ -277,8 +322,9 @@ public class VelocityTabList implements InternalTabList {
       currentEntry.setLatencyWithoutUpdate(entry.getLatency());
     }
     if (actions.contains(UpsertPlayerInfoPacket.Action.UPDATE_DISPLAY_NAME)) {
-      currentEntry.setDisplayNameWithoutUpdate(entry.getDisplayName() != null
-          ? entry.getDisplayName().getComponent() : null);
+      // Keep the display name in its serialized form; it is only deserialized if a plugin asks
+      // for it through the API.
+      currentEntry.setDisplayNameWithoutUpdate(entry.getDisplayName());
     }
     if (actions.contains(UpsertPlayerInfoPacket.Action.INITIALIZE_CHAT)) {
       currentEntry.setChatSession(entry.getChatSession());
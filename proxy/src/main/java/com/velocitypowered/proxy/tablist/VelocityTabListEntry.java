@@ -35,7 +35,7 @@ public class VelocityTabListEntry implements TabListEntry {
 
   private final VelocityTabList tabList;
   private final GameProfile profile;
-  private Component displayName;
+  private @Nullable ComponentHolder displayName;
   private int latency;
   private int gameMode;
   private boolean listed;
@@ -50,7 +50,8 @@ public class VelocityTabListEntry implements TabListEntry {
                               int gameMode, @Nullable ChatSession session, boolean listed, int listOrder) {
     this.tabList = tabList;
     this.profile = profile;
-    this.displayName = displayName;
+    this.displayName = displayName == null
+        ? null : new ComponentHolder(tabList.getPlayer().getProtocolVersion(), displayName);
     this.latency = latency;
     this.gameMode = gameMode;
     this.session = session;
@@ -73,26 +74,32 @@ public class VelocityTabListEntry implements TabListEntry {
     return this.profile;
   }
 
+  /**
+   * {@inheritDoc}
+   *
+   * <p>Display names received from the backend server are kept in their serialized form and are
+   * only deserialized once this method is called.</p>
+   */
   @Override
   public Optional<Component> getDisplayNameComponent() {
-    return Optional.ofNullable(displayName);
+    return Optional.ofNullable(displayName).map(ComponentHolder::getComponent);
+  }
+
+  @Nullable ComponentHolder getDisplayNameHolder() {
+    return displayName;
   }
 
   @Override
   public TabListEntry setDisplayName(@Nullable Component displayName) {
-    this.displayName = displayName;
+    this.displayName = displayName == null
+        ? null : new ComponentHolder(this.tabList.getPlayer().getProtocolVersion(), displayName);
     UpsertPlayerInfoPacket.Entry upsertEntry = this.tabList.createRawEntry(this);
-    upsertEntry.setDisplayName(
-            displayName == null
-                    ?
-                    null :
-                    new ComponentHolder(this.tabList.getPlayer().getProtocolVersion(), displayName)
-    );
+    upsertEntry.setDisplayName(this.displayName);
     this.tabList.emitActionRaw(UpsertPlayerInfoPacket.Action.UPDATE_DISPLAY_NAME, upsertEntry);
     return this;
   }
 
-  void setDisplayNameWithoutUpdate(@Nullable Component displayName) {
+  void setDisplayNameWithoutUpdate(@Nullable ComponentHolder displayName) {
     this.displayName = displayName;
   }
 
@@ -25,6 +25,7 @@ import com.velocitypowered.proxy.connection.client.ConnectedPlayer;
 import com.velocitypowered.proxy.protocol.packet.LegacyPlayerListItemPacket;
 import com.velocitypowered.proxy.protocol.packet.LegacyPlayerListItemPacket.Item;
 import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
@@ -67,10 +68,15 @@ public class VelocityTabListLegacy extends KeyedVelocityTabList {
 
   @Override
   public void clearAll() {
+    PlayerListItemBatch batch = currentBatch();
     for (TabListEntry value : entries.values()) {
-      connection.delayedWrite(new LegacyPlayerListItemPacket(
-          LegacyPlayerListItemPacket.REMOVE_PLAYER,
-          Collections.singletonList(LegacyPlayerListItemPacket.Item.from(value))));
+      if (batch != null) {
+        batch.add(LegacyPlayerListItemPacket.REMOVE_PLAYER, Item.from(value));
+      } else {
+        connection.delayedWrite(new LegacyPlayerListItemPacket(
+            LegacyPlayerListItemPacket.REMOVE_PLAYER,
+            Collections.singletonList(LegacyPlayerListItemPacket.Item.from(value))));
+      }
     }
     clearAllSilent();
   }
@@ -121,10 +127,9 @@ public class VelocityTabListLegacy extends KeyedVelocityTabList {
         case LegacyPlayerListItemPacket.UPDATE_LATENCY:
         // Add here because we removed beforehand
         case LegacyPlayerListItemPacket.UPDATE_DISPLAY_NAME:
-          connection
-              .write(new LegacyPlayerListItemPacket(LegacyPlayerListItemPacket.ADD_PLAYER,
-                  // ADD_PLAYER also updates ping
-                  Collections.singletonList(LegacyPlayerListItemPacket.Item.from(entry))));
+          // ADD_PLAYER also updates ping
+          writeItem(LegacyPlayerListItemPacket.ADD_PLAYER,
+              LegacyPlayerListItemPacket.Item.from(entry));
           break;
         default:
           // Can't do anything else
@@ -133,6 +138,15 @@ public class VelocityTabListLegacy extends KeyedVelocityTabList {
     }
   }
 
+  @Override
+  void writeBatched(int action, List<Item> items) {
+    // The 1.7 protocol only supports a single item per packet
+    for (Item item : items) {
+      connection.delayedWrite(new LegacyPlayerListItemPacket(action,
+          Collections.singletonList(item)));
+    }
+  }
+
   @Override
   public TabListEntry buildEntry(GameProfile profile, @Nullable Component displayName, int latency,
       int gameMode) {
@@ -28,12 +28,24 @@ import com.google.gson.JsonParser;
 import com.velocitypowered.api.plugin.PluginContainer;
 import com.velocitypowered.api.plugin.PluginDescription;
 import com.velocitypowered.api.plugin.meta.PluginDependency;
+import com.velocitypowered.api.proxy.Player;
 import com.velocitypowered.api.proxy.ProxyServer;
 import com.velocitypowered.api.proxy.config.ProxyConfig;
 import com.velocitypowered.api.proxy.server.RegisteredServer;
 import com.velocitypowered.api.util.ProxyVersion;
+import com.velocitypowered.natives.compression.LibdeflateVelocityCompressor;
+import com.velocitypowered.natives.compression.SharedCompressorPool;
 import com.velocitypowered.natives.util.Natives;
+import com.velocitypowered.proxy.VelocityServer;
+import com.velocitypowered.proxy.connection.backend.AdaptiveFlushPolicy;
+import com.velocitypowered.proxy.connection.backend.PendingKeepAlives;
+import com.velocitypowered.proxy.connection.client.ConnectedPlayer;
 import com.velocitypowered.proxy.network.TransportType;
+import com.velocitypowered.proxy.protocol.netty.AdaptiveCompression;
+import com.velocitypowered.proxy.protocol.netty.ConnectionBuffers;
+import com.velocitypowered.proxy.protocol.netty.MinecraftEncoder;
+import com.velocitypowered.proxy.protocol.netty.MinecraftWriteCoalescer;
+import com.velocitypowered.proxy.protocol.netty.PlayPacketQueue;
 import java.net.Inet4Address;
 import java.net.Inet6Address;
 import java.net.InetAddress;
@@ -112,6 +124,8 @@ public enum InformationUtils {
     listenerInfo.addProperty("listenerType", TransportType.bestType().toString());
     listenerInfo.addProperty("compression", Natives.compress.getLoadedVariant());
     listenerInfo.addProperty("encryption", Natives.cipher.getLoadedVariant());
+    listenerInfo.add("compressionThroughput", toJson(Natives.compress.getMeasuredThroughput()));
+    listenerInfo.add("encryptionThroughput", toJson(Natives.cipher.getMeasuredThroughput()));
 
     envInfo.add("listener", listenerInfo);
 
@@ -229,6 +243,70 @@ public enum InformationUtils {
     return (JsonObject) serializeObject(config, true);
   }
 
+  /**
+   * Creates a {@link JsonObject} containing the proxy's internal network counters, which are
+   * useful when tuning the proxy.
+   *
+   * @param server the proxy instance
+   * @return {@link JsonObject} containing network statistics
+   */
+  public static JsonObject collectStatistics(VelocityServer server) {
+    JsonObject statistics = new JsonObject();
+    statistics.add("flush", AdaptiveFlushPolicy.collectStatistics());
+    statistics.add("writeCoalescing", MinecraftWriteCoalescer.collectStatistics());
+    statistics.add("keepAlive", PendingKeepAlives.collectStatistics());
+    statistics.add("crypto", server.getCryptoWorkers().collectStatistics());
+    statistics.add("rateLimit", server.getConnectionRatelimiter().collectStatistics());
+    statistics.add("backendPool", server.getBackendConnectionPool().collectStatistics());
+    statistics.add("balancer", server.getServerBalancer().collectStatistics());
+    statistics.add("healthCheck", server.getHealthChecker().collectStatistics());
+    statistics.add("network", server.getConnectionManager().collectStatistics());
+    statistics.add("compression", collectCompressionStatistics(server.getCompressorPool()));
+    statistics.add("compressionByPacket", AdaptiveCompression.collectStatistics());
+    statistics.add("bufferCopies", ConnectionBuffers.collectStatistics());
+    statistics.add("packetSizeHints", MinecraftEncoder.collectStatistics());
+    statistics.add("configQueue", collectConfigQueueStatistics(server));
+    statistics.add("outboundMemory", server.getOutboundMemoryMonitor().collectStatistics());
+    statistics.add("sessionServer", server.getSessionServer().collectStatistics());
+    if (server.getProxiedSessionServer() != null) {
+      statistics.add("proxiedSessionServer", server.getProxiedSessionServer().collectStatistics());
+    }
+    return statistics;
+  }
+
+  private static JsonObject collectConfigQueueStatistics(VelocityServer server) {
+    JsonObject statistics = PlayPacketQueue.collectStatistics();
+    JsonObject players = new JsonObject();
+    for (Player player : server.getAllPlayers()) {
+      PlayPacketQueue queue =
+          ((ConnectedPlayer) player).getConnection().getOutboundPlayPacketQueue();
+      if (queue != null && queue.getPackets() > 0) {
+        JsonObject entry = new JsonObject();
+        entry.addProperty("packets", queue.getPackets());
+        entry.addProperty("bytes", queue.getBytes());
+        players.add(player.getUsername(), entry);
+      }
+    }
+    statistics.add("players", players);
+    return statistics;
+  }
+
+  private static JsonObject toJson(Map<String, Double> throughput) {
+    JsonObject object = new JsonObject();
+    throughput.forEach((variant, mibPerSecond) ->
+        object.addProperty(variant, Math.round(mibPerSecond * 10) / 10.0));
+    return object;
+  }
+
+  private static JsonObject collectCompressionStatistics(SharedCompressorPool pool) {
+    JsonObject statistics = new JsonObject();
+    statistics.addProperty("sharedCompressors", pool.getSharedCompressors());
+    statistics.addProperty("openCompressors", pool.getOpenCompressors());
+    statistics.addProperty("createdCompressors", pool.getCreatedCompressors());
+    statistics.addProperty("liveNativeContexts", LibdeflateVelocityCompressor.getLiveContexts());
+    return statistics;
+  }
+
   /**
    * Creates a human-readable String from a {@link JsonElement}.
    *
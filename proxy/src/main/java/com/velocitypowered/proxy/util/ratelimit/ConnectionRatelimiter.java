@@ -0,0 +1,127 @@
+/*
+ * Copyright (C) 2024 Velocity Contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.velocitypowered.proxy.util.ratelimit;
+
+import com.google.gson.JsonObject;
+import com.velocitypowered.proxy.config.VelocityConfiguration.RateLimitSettings;
+import com.velocitypowered.proxy.config.VelocityConfiguration.RateLimits;
+import java.net.InetAddress;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Rate limits incoming traffic, with a separate budget for every kind of traffic. Every budget
+ * limits both single addresses and the networks they belong to.
+ */
+public final class ConnectionRatelimiter {
+
+  /**
+   * The kinds of traffic that are rate limited.
+   */
+  public enum Rule {
+    /**
+     * Every TCP connection, checked as soon as it has been accepted.
+     */
+    CONNECTION,
+    /**
+     * Server list pings, including legacy pings.
+     */
+    STATUS,
+    /**
+     * Login attempts.
+     */
+    LOGIN,
+    /**
+     * GameSpy 4 queries.
+     */
+    QUERY
+  }
+
+  private final Map<Rule, Budget> budgets = new EnumMap<>(Rule.class);
+
+  /**
+   * Creates a rate limiter from the configured budgets.
+   *
+   * @param config the configured budgets
+   */
+  public ConnectionRatelimiter(RateLimits config) {
+    budgets.put(Rule.CONNECTION, new Budget(config.getConnection(), config));
+    budgets.put(Rule.STATUS, new Budget(config.getStatus(), config));
+    budgets.put(Rule.LOGIN, new Budget(config.getLogin(), config));
+    budgets.put(Rule.QUERY, new Budget(config.getQuery(), config));
+  }
+
+  /**
+   * Determines whether to allow traffic from an address.
+   *
+   * @param rule the kind of traffic
+   * @param address the address to rate limit
+   * @return true if allowed, false if not
+   */
+  public boolean attempt(Rule rule, InetAddress address) {
+    return budgets.get(rule).attempt(address);
+  }
+
+  /**
+   * Collects the number of rejected attempts per rule for {@code /velocity dump}.
+   *
+   * @return the rejection counters
+   */
+  public JsonObject collectStatistics() {
+    JsonObject statistics = new JsonObject();
+    for (Map.Entry<Rule, Budget> entry : budgets.entrySet()) {
+      Budget budget = entry.getValue();
+      JsonObject rule = new JsonObject();
+      rule.addProperty("allowed", budget.allowed.sum());
+      rule.addProperty("rejectedByAddress", budget.rejectedByAddress.sum());
+      rule.addProperty("rejectedByPrefix", budget.rejectedByPrefix.sum());
+      statistics.add(entry.getKey().name().toLowerCase(Locale.ROOT), rule);
+    }
+    return statistics;
+  }
+
+  private static final class Budget {
+
+    private final Ratelimiter address;
+    private final Ratelimiter prefix;
+    private final LongAdder allowed = new LongAdder();
+    private final LongAdder rejectedByAddress = new LongAdder();
+    private final LongAdder rejectedByPrefix = new LongAdder();
+
+    private Budget(RateLimitSettings settings, RateLimits config) {
+      this.address = Ratelimiters.create(settings.getRate(), settings.getBurst(), 32, 128);
+      this.prefix = Ratelimiters.create(settings.getPrefixRate(), settings.getPrefixBurst(),
+          config.getIpv4Prefix(), config.getIpv6Prefix());
+    }
+
+    private boolean attempt(InetAddress address) {
+      if (!this.address.attempt(address)) {
+        rejectedByAddress.increment();
+        return false;
+      }
+      if (!this.prefix.attempt(address)) {
+        rejectedByPrefix.increment();
+        return false;
+      }
+      allowed.increment();
+      return true;
+    }
+  }
+}
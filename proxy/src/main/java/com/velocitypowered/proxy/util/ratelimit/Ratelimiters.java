@@ -17,8 +17,6 @@
 
 package com.velocitypowered.proxy.util.ratelimit;
 
-import java.util.concurrent.TimeUnit;
-
 /**
  * Factory to create rate limiters.
  */
@@ -28,8 +26,17 @@ public final class Ratelimiters {
     throw new AssertionError();
   }
 
-  public static Ratelimiter createWithMilliseconds(long ms) {
-    return ms <= 0 ? NoopCacheRatelimiter.INSTANCE : new CaffeineCacheRatelimiter(ms,
-        TimeUnit.MILLISECONDS);
+  /**
+   * Creates a token bucket rate limiter.
+   *
+   * @param rate the number of attempts allowed per second, or 0 to allow every attempt
+   * @param burst the number of attempts that may be made at once
+   * @param ipv4Prefix the prefix length IPv4 addresses are grouped by
+   * @param ipv6Prefix the prefix length IPv6 addresses are grouped by
+   * @return the rate limiter
+   */
+  public static Ratelimiter create(double rate, int burst, int ipv4Prefix, int ipv6Prefix) {
+    return rate <= 0 ? NoopCacheRatelimiter.INSTANCE
+        : new TokenBucketRatelimiter(rate, burst, ipv4Prefix, ipv6Prefix);
   }
 }
@@ -0,0 +1,156 @@
+/*
+ * Copyright (C) 2024 Velocity Contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.velocitypowered.proxy.util.ratelimit;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Preconditions;
+import java.net.Inet4Address;
+import java.net.InetAddress;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * A token bucket rate limiter keyed by address, or by the network prefix of the address.
+ *
+ * <p>Every bucket is stored as a single theoretical arrival time, as in the generic cell rate
+ * algorithm: an attempt is allowed if it would not move that time more than {@code burst}
+ * intervals into the future. A bucket that has been refilled completely is indistinguishable from
+ * one that doesn't exist, so the buckets are kept in fixed-size, striped hash tables, and when a
+ * table is full the fullest bucket is evicted. No memory is allocated once the limiter has been
+ * created.</p>
+ */
+public final class TokenBucketRatelimiter implements Ratelimiter {
+
+  private static final int STRIPES = 64;
+  private static final int SLOTS_PER_STRIPE = 256;
+  private static final int MAX_PROBES = 8;
+
+  private final long intervalNanos;
+  private final long toleranceNanos;
+  private final int ipv4Prefix;
+  private final int ipv6Prefix;
+  private final LongSupplier ticker;
+  private final Stripe[] stripes = new Stripe[STRIPES];
+
+  TokenBucketRatelimiter(double rate, int burst, int ipv4Prefix, int ipv6Prefix) {
+    this(rate, burst, ipv4Prefix, ipv6Prefix, System::nanoTime);
+  }
+
+  @VisibleForTesting
+  TokenBucketRatelimiter(double rate, int burst, int ipv4Prefix, int ipv6Prefix,
+      LongSupplier ticker) {
+    Preconditions.checkArgument(rate > 0, "rate must be positive");
+    Preconditions.checkArgument(burst > 0, "burst must be positive");
+    Preconditions.checkArgument(ipv4Prefix >= 0 && ipv4Prefix <= 32, "invalid IPv4 prefix");
+    Preconditions.checkArgument(ipv6Prefix >= 0 && ipv6Prefix <= 128, "invalid IPv6 prefix");
+    this.intervalNanos = Math.max(1, (long) (TimeUnit.SECONDS.toNanos(1) / rate));
+    this.toleranceNanos = intervalNanos * burst;
+    this.ipv4Prefix = ipv4Prefix;
+    this.ipv6Prefix = ipv6Prefix;
+    this.ticker = Preconditions.checkNotNull(ticker, "ticker");
+    for (int i = 0; i < STRIPES; i++) {
+      stripes[i] = new Stripe();
+    }
+  }
+
+  @Override
+  public boolean attempt(InetAddress address) {
+    Preconditions.checkNotNull(address, "address");
+    byte[] bytes = address.getAddress();
+    long high;
+    long low;
+    if (address instanceof Inet4Address) {
+      // IPv4 keys don't collide with IPv6 ones, as the upper half of those is never 0 in practice
+      high = 0;
+      low = mask(toLong(bytes, 0, 4), 32, ipv4Prefix);
+    } else {
+      high = mask(toLong(bytes, 0, 8), 64, ipv6Prefix);
+      low = mask(toLong(bytes, 8, 8), 64, Math.max(0, ipv6Prefix - 64));
+    }
+
+    long hash = high * 0x9E3779B97F4A7C15L ^ low * 0xC2B2AE3D27D4EB4FL;
+    hash ^= hash >>> 31;
+    Stripe stripe = stripes[(int) (hash & (STRIPES - 1))];
+    return stripe.attempt(high, low, (int) (hash >>> 6), ticker.getAsLong());
+  }
+
+  private static long toLong(byte[] bytes, int offset, int length) {
+    long value = 0;
+    for (int i = 0; i < length; i++) {
+      value = (value << 8) | (bytes[offset + i] & 0xFF);
+    }
+    return value;
+  }
+
+  private static long mask(long value, int bits, int prefix) {
+    if (prefix >= bits) {
+      return value;
+    }
+    if (prefix == 0) {
+      return 0;
+    }
+    return value & (-1L << (bits - prefix));
+  }
+
+  private final class Stripe {
+
+    private final long[] highs = new long[SLOTS_PER_STRIPE];
+    private final long[] lows = new long[SLOTS_PER_STRIPE];
+    // The theoretical arrival time of every bucket, 0 if the slot is free
+    private final long[] arrivals = new long[SLOTS_PER_STRIPE];
+
+    private synchronized boolean attempt(long high, long low, int hash, long now) {
+      int slot = -1;
+      int victim = -1;
+      for (int i = 0; i < MAX_PROBES; i++) {
+        int index = (hash + i) & (SLOTS_PER_STRIPE - 1);
+        if (arrivals[index] == 0) {
+          // Slots are never freed, so the key can't be stored any further
+          victim = index;
+          break;
+        }
+        if (highs[index] == high && lows[index] == low) {
+          slot = index;
+          break;
+        }
+        if (victim == -1 || arrivals[index] - arrivals[victim] < 0) {
+          victim = index;
+        }
+      }
+
+      long arrival;
+      if (slot != -1) {
+        arrival = arrivals[slot] - now > 0 ? arrivals[slot] : now;
+      } else {
+        // The oldest bucket in the probe window is either free or the closest to being full.
+        slot = victim;
+        highs[slot] = high;
+        lows[slot] = low;
+        arrival = now;
+      }
+
+      long next = arrival + intervalNanos;
+      if (next - now > toleranceNanos) {
+        return false;
+      }
+      // Never store 0, which marks a free slot
+      arrivals[slot] = next == 0 ? 1 : next;
+      return true;
+    }
+  }
+}
@@ -17,9 +17,17 @@
 
 package com.velocitypowered.proxy.component;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
 import com.velocitypowered.api.network.ProtocolVersion;
+import com.velocitypowered.proxy.protocol.ProtocolUtils;
 import com.velocitypowered.proxy.protocol.packet.chat.ComponentHolder;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import net.kyori.adventure.nbt.BinaryTag;
+import net.kyori.adventure.nbt.BinaryTagIO;
 import net.kyori.adventure.text.Component;
+import net.kyori.adventure.text.format.NamedTextColor;
 import net.kyori.adventure.text.minimessage.MiniMessage;
 import org.junit.jupiter.api.Test;
 
@@ -36,4 +44,23 @@ public class ComponentHolderTest {
     holder.getJson();
     holder.getBinaryTag();
   }
+
+  @Test
+  void testStreamedBinaryMatchesTree() {
+    // Mixes plain and styled children, so the list of extras is rewritten as a list of compounds
+    Component component = Component.text()
+        .append(Component.text("plain"))
+        .append(Component.text("red", NamedTextColor.RED))
+        .append(MiniMessage.miniMessage().deserialize(
+            "<bold>A</bold> <hover:show_text:'<green>hi'>Velocity</hover> Server"))
+        .build();
+    ProtocolVersion version = ProtocolVersion.MINECRAFT_1_20_3;
+
+    ByteBuf streamed = Unpooled.buffer();
+    new ComponentHolder(version, component).write(streamed);
+    BinaryTag tag = ProtocolUtils.readBinaryTag(streamed, version, BinaryTagIO.reader());
+
+    assertEquals(new ComponentHolder(version, component).getBinaryTag(), tag);
+    assertEquals(component, new ComponentHolder(version, tag).getComponent());
+  }
 }
@@ -0,0 +1,163 @@
+/*
+ * Copyright (C) 2024 Velocity Contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.velocitypowered.proxy.connection.backend;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.velocitypowered.api.network.ProtocolVersion;
+import com.velocitypowered.proxy.config.VelocityConfiguration.FlushSettings;
+import com.velocitypowered.proxy.connection.MinecraftConnection;
+import com.velocitypowered.proxy.protocol.ProtocolUtils;
+import com.velocitypowered.proxy.protocol.packet.KeepAlivePacket;
+import com.velocitypowered.proxy.protocol.packet.chat.SystemChatPacket;
+import com.velocitypowered.proxy.protocol.packet.title.TitleActionbarPacket;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.EventLoop;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests when {@link AdaptiveFlushPolicy} flushes the player's connection.
+ */
+class AdaptiveFlushPolicyTest {
+
+  private final MinecraftConnection connection = mock(MinecraftConnection.class);
+  private final EventLoop eventLoop = mock(EventLoop.class);
+  private final ScheduledFuture<?> deferredFlush = mock(ScheduledFuture.class);
+
+  AdaptiveFlushPolicyTest() {
+    when(connection.getChannel()).thenReturn(new EmbeddedChannel());
+    when(connection.eventLoop()).thenReturn(eventLoop);
+    when(connection.getProtocolVersion()).thenReturn(ProtocolVersion.MINECRAFT_1_20_5);
+    doReturn(deferredFlush).when(eventLoop)
+        .schedule(any(Runnable.class), anyLong(), any(TimeUnit.class));
+  }
+
+  private AdaptiveFlushPolicy policy(int maxPackets, long maxDelayNanos) {
+    FlushSettings settings = mock(FlushSettings.class);
+    when(settings.getMaxPackets()).thenReturn(maxPackets);
+    when(settings.getMaxPendingBytes()).thenReturn(Integer.MAX_VALUE);
+    when(settings.getMaxDelayNanos()).thenReturn(maxDelayNanos);
+    when(settings.isFlushLatencySensitive()).thenReturn(true);
+    return new AdaptiveFlushPolicy(connection, settings);
+  }
+
+  @Test
+  void flushesLatencySensitivePacketsImmediately() {
+    AdaptiveFlushPolicy policy = policy(100, 0);
+    policy.written(new TitleActionbarPacket());
+    verify(connection, never()).flush();
+
+    policy.written(new KeepAlivePacket());
+    policy.written(new SystemChatPacket());
+    verify(connection, times(2)).flush();
+  }
+
+  @Test
+  void flushesPlayerChatForwardedAsRawBytes() {
+    AdaptiveFlushPolicy policy = policy(100, 0);
+    ByteBuf playerChat = Unpooled.buffer();
+    ProtocolUtils.writeVarInt(playerChat, 0x39);
+    playerChat.writeLong(0);
+
+    int packetId = AdaptiveFlushPolicy.packetId(playerChat);
+    assertEquals(0x39, packetId);
+    // Reading the ID doesn't consume it
+    assertEquals(0, playerChat.readerIndex());
+    policy.written(packetId);
+    verify(connection).flush();
+
+    policy.written(0x20);
+    verify(connection).flush();
+    playerChat.release();
+  }
+
+  @Test
+  void flushesWhenTooManyPacketsArePending() {
+    AdaptiveFlushPolicy policy = policy(3, 0);
+    policy.written(new TitleActionbarPacket());
+    policy.written(new TitleActionbarPacket());
+    verify(connection, never()).flush();
+
+    policy.written(new TitleActionbarPacket());
+    verify(connection).flush();
+  }
+
+  @Test
+  void flushesWhenReadCompletesWithoutDelay() {
+    AdaptiveFlushPolicy policy = policy(100, 0);
+    policy.written(new TitleActionbarPacket());
+    policy.readCompleted();
+    verify(connection).flush();
+  }
+
+  @Test
+  void defersFlushUntilDelayHasElapsed() {
+    AdaptiveFlushPolicy policy = policy(100, TimeUnit.HOURS.toNanos(1));
+    policy.written(new TitleActionbarPacket());
+    policy.readCompleted();
+    // A second read doesn't schedule another flush
+    policy.written(new TitleActionbarPacket());
+    policy.readCompleted();
+
+    verify(connection, never()).flush();
+    verify(eventLoop).schedule(any(Runnable.class), anyLong(), any(TimeUnit.class));
+  }
+
+  @Test
+  void thresholdFlushCancelsDeferredFlush() {
+    AdaptiveFlushPolicy policy = policy(2, TimeUnit.HOURS.toNanos(1));
+    policy.written(new TitleActionbarPacket());
+    policy.readCompleted();
+
+    policy.written(new TitleActionbarPacket());
+    verify(connection).flush();
+    verify(deferredFlush).cancel(false);
+
+    // The next read schedules a new deferred flush
+    policy.written(new TitleActionbarPacket());
+    policy.readCompleted();
+    verify(eventLoop, times(2)).schedule(any(Runnable.class), anyLong(), any(TimeUnit.class));
+  }
+
+  @Test
+  void releaseFlushesDeferredPackets() {
+    AdaptiveFlushPolicy policy = policy(100, TimeUnit.HOURS.toNanos(1));
+    policy.written(new TitleActionbarPacket());
+    policy.readCompleted();
+
+    policy.release();
+    verify(deferredFlush).cancel(false);
+    verify(connection).flush();
+
+    // Nothing is pending anymore
+    policy.release();
+    verify(connection).flush();
+  }
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright (C) 2024 Velocity Contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.velocitypowered.proxy.connection.backend;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests {@link PendingKeepAlives}.
+ */
+class PendingKeepAlivesTest {
+
+  private final PendingKeepAlives pending = new PendingKeepAlives();
+
+  @Test
+  void removesAnsweredKeepAlives() {
+    pending.add(1, 100);
+    pending.add(2, 200);
+
+    assertEquals(200, pending.remove(2));
+    assertEquals(PendingKeepAlives.NOT_FOUND, pending.remove(2));
+    assertEquals(100, pending.remove(1));
+    assertEquals(0, pending.size());
+  }
+
+  @Test
+  void unknownKeepAlivesAreNotFound() {
+    pending.add(1, 100);
+    assertEquals(PendingKeepAlives.NOT_FOUND, pending.remove(3));
+    assertEquals(1, pending.size());
+  }
+
+  @Test
+  void keepsEveryKeepAliveOfALaggingClient() {
+    // Wrap around the initial buffer first, so that growing has to unroll it
+    for (int i = 0; i < 5; i++) {
+      pending.add(i, i * 10L);
+    }
+    for (int i = 0; i < 5; i++) {
+      assertEquals(i * 10L, pending.remove(i));
+    }
+    for (int i = 0; i < 100; i++) {
+      pending.add(i, i * 10L);
+    }
+
+    assertEquals(100, pending.size());
+    // The oldest keep alive is still answered, it used to be evicted past 8
+    assertEquals(0, pending.remove(0));
+    for (int i = 99; i > 0; i--) {
+      assertEquals(i * 10L, pending.remove(i));
+    }
+    assertEquals(0, pending.size());
+  }
+
+  @Test
+  void evictsTheOldestPastTheLimit() {
+    for (int i = 0; i < 1025; i++) {
+      pending.add(i, i);
+    }
+
+    assertEquals(1024, pending.size());
+    assertEquals(PendingKeepAlives.NOT_FOUND, pending.remove(0));
+    assertEquals(1, pending.remove(1));
+    assertEquals(1024, pending.remove(1024));
+  }
+}
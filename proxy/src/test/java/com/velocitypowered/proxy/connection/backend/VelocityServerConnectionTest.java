@@ -0,0 +1,72 @@
+/*
+ * Copyright (C) 2024 Velocity Contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.velocitypowered.proxy.connection.backend;
+
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.velocitypowered.api.proxy.server.ServerInfo;
+import com.velocitypowered.proxy.VelocityServer;
+import com.velocitypowered.proxy.config.VelocityConfiguration.HealthCheck;
+import com.velocitypowered.proxy.connection.MinecraftConnection;
+import com.velocitypowered.proxy.connection.client.ConnectedPlayer;
+import com.velocitypowered.proxy.server.VelocityRegisteredServer;
+import io.netty.channel.EventLoop;
+import java.net.ConnectException;
+import java.net.InetSocketAddress;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests how {@link VelocityServerConnection} treats servers that are known to be down.
+ */
+class VelocityServerConnectionTest {
+
+  @Test
+  void failsFastWhenServerIsDown() {
+    VelocityRegisteredServer target = new VelocityRegisteredServer(null,
+        new ServerInfo("down", InetSocketAddress.createUnresolved("localhost", 25565)));
+    HealthCheck settings = mock(HealthCheck.class);
+    when(settings.isEnabled()).thenReturn(true);
+    when(settings.getFailureThreshold()).thenReturn(1);
+    target.getHealth().recordFailure(settings);
+
+    VelocityServer server = mock(VelocityServer.class);
+    ConnectedPlayer player = mock(ConnectedPlayer.class);
+    MinecraftConnection connection = mock(MinecraftConnection.class);
+    when(player.getConnection()).thenReturn(connection);
+    when(connection.eventLoop()).thenReturn(mock(EventLoop.class));
+
+    CompletableFuture<?> result =
+        new VelocityServerConnection(target, null, player, server).connect();
+
+    assertTrue(result.isCompletedExceptionally());
+    ExecutionException thrown = assertThrows(ExecutionException.class, result::get);
+    assertInstanceOf(ConnectException.class, thrown.getCause());
+    // Neither a pooled nor a new connection was used
+    verify(server, never()).getBackendConnectionPool();
+    verify(server, never()).createBootstrap(any());
+  }
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright (C) 2024 Velocity Contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.velocitypowered.proxy.crypto;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import io.netty.util.concurrent.EventExecutor;
+import io.netty.util.concurrent.GlobalEventExecutor;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests {@link CryptoWorkerPool}.
+ */
+class CryptoWorkerPoolTest {
+
+  private static final EventExecutor EXECUTOR = GlobalEventExecutor.INSTANCE;
+
+  private static CompletableFuture<Boolean> block(CryptoWorkerPool pool, CountDownLatch release)
+      throws InterruptedException {
+    CountDownLatch started = new CountDownLatch(1);
+    CompletableFuture<Boolean> running = pool.submit(() -> {
+      started.countDown();
+      return release.await(5, TimeUnit.SECONDS);
+    }, EXECUTOR);
+    assertTrue(started.await(5, TimeUnit.SECONDS));
+    return running;
+  }
+
+  @Test
+  void runsTasks() throws Exception {
+    CryptoWorkerPool pool = new CryptoWorkerPool(1, 1, 1, 5000);
+    assertEquals(42, pool.submit(() -> 42, EXECUTOR).get(5, TimeUnit.SECONDS));
+  }
+
+  @Test
+  void delaysTasksWhenSaturated() throws Exception {
+    CryptoWorkerPool pool = new CryptoWorkerPool(1, 1, 1, 5000);
+    CountDownLatch release = new CountDownLatch(1);
+    CompletableFuture<Boolean> running = block(pool, release);
+    CompletableFuture<Integer> queued = pool.submit(() -> 1, EXECUTOR);
+    CompletableFuture<Integer> waiting = pool.submit(() -> 2, EXECUTOR);
+    CompletableFuture<Integer> deferred = pool.submit(() -> 3, EXECUTOR);
+
+    // Neither failed nor run while the pool is busy
+    assertFalse(waiting.isDone());
+    assertFalse(deferred.isDone());
+
+    release.countDown();
+    assertTrue(running.get(5, TimeUnit.SECONDS));
+    assertEquals(1, queued.get(5, TimeUnit.SECONDS));
+    assertEquals(2, waiting.get(5, TimeUnit.SECONDS));
+    assertEquals(3, deferred.get(5, TimeUnit.SECONDS));
+    assertTrue(pool.collectStatistics().get("waited").getAsInt() > 0);
+    assertTrue(pool.collectStatistics().get("deferred").getAsInt() > 0);
+  }
+
+  @Test
+  void timesOutTasksWaitingTooLong() throws Exception {
+    CryptoWorkerPool pool = new CryptoWorkerPool(1, 1, 1, 100);
+    CountDownLatch release = new CountDownLatch(1);
+    block(pool, release);
+    pool.submit(() -> 1, EXECUTOR);
+    CompletableFuture<Integer> waiting = pool.submit(() -> 2, EXECUTOR);
+
+    ExecutionException thrown =
+        assertThrows(ExecutionException.class, () -> waiting.get(5, TimeUnit.SECONDS));
+    assertInstanceOf(TimeoutException.class, thrown.getCause());
+    assertTrue(pool.collectStatistics().get("timedOut").getAsInt() > 0);
+    release.countDown();
+  }
+}
@@ -0,0 +1,173 @@
+/*
+ * Copyright (C) 2024 Velocity Contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.velocitypowered.proxy.network;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.velocitypowered.api.event.player.PlayerOutboundBudgetExceededEvent;
+import com.velocitypowered.api.proxy.Player;
+import com.velocitypowered.proxy.VelocityServer;
+import com.velocitypowered.proxy.config.VelocityConfiguration;
+import com.velocitypowered.proxy.config.VelocityConfiguration.OutboundMemory;
+import com.velocitypowered.proxy.connection.MinecraftConnection;
+import com.velocitypowered.proxy.connection.backend.VelocityServerConnection;
+import com.velocitypowered.proxy.connection.client.ConnectedPlayer;
+import com.velocitypowered.proxy.event.VelocityEventManager;
+import io.netty.channel.EventLoop;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import net.kyori.adventure.text.Component;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+/**
+ * Tests when {@link OutboundMemoryMonitor} warns about and disconnects players.
+ */
+class OutboundMemoryMonitorTest {
+
+  private static final int SOFT_LIMIT = 1000;
+  private static final int HARD_LIMIT = 4000;
+  private static final int GRACE_PERIOD = 10000;
+
+  private final VelocityEventManager eventManager = mock(VelocityEventManager.class);
+  private final ConnectedPlayer player = mock(ConnectedPlayer.class);
+  private final MinecraftConnection connection = mock(MinecraftConnection.class);
+  private final EventLoop eventLoop = mock(EventLoop.class);
+  private final OutboundMemoryMonitor monitor;
+
+  OutboundMemoryMonitorTest() {
+    OutboundMemory settings = mock(OutboundMemory.class);
+    when(settings.getSoftLimit()).thenReturn(SOFT_LIMIT);
+    when(settings.getHardLimit()).thenReturn(HARD_LIMIT);
+    when(settings.getGracePeriod()).thenReturn(GRACE_PERIOD);
+    VelocityConfiguration configuration = mock(VelocityConfiguration.class);
+    when(configuration.getOutboundMemory()).thenReturn(settings);
+
+    UUID uuid = UUID.randomUUID();
+    when(player.getUniqueId()).thenReturn(uuid);
+    when(player.getConnection()).thenReturn(connection);
+    when(connection.eventLoop()).thenReturn(eventLoop);
+
+    VelocityServer server = mock(VelocityServer.class);
+    when(server.getConfiguration()).thenReturn(configuration);
+    when(server.getEventManager()).thenReturn(eventManager);
+    when(server.getAllPlayers()).thenReturn(List.of(player));
+    when(server.getPlayer(uuid)).thenReturn(Optional.of((Player) player));
+    monitor = new OutboundMemoryMonitor(server);
+  }
+
+  private void pending(long bytes) {
+    when(connection.getPendingOutboundBytes()).thenReturn(bytes);
+  }
+
+  @Test
+  void ignoresPlayersUnderSoftLimit() {
+    pending(SOFT_LIMIT);
+    monitor.checkPlayers(0);
+    monitor.checkPlayers(GRACE_PERIOD * 2);
+
+    verify(eventManager, never()).fireAndForget(any());
+    verify(player, never()).disconnect(any(Component.class));
+  }
+
+  @Test
+  void firesEventOnceOverSoftLimit() {
+    pending(SOFT_LIMIT + 1);
+    monitor.checkPlayers(0);
+    monitor.checkPlayers(GRACE_PERIOD);
+
+    ArgumentCaptor<Object> event = ArgumentCaptor.forClass(Object.class);
+    verify(eventManager, times(1)).fireAndForget(event.capture());
+    PlayerOutboundBudgetExceededEvent exceeded =
+        (PlayerOutboundBudgetExceededEvent) event.getValue();
+    assertEquals(SOFT_LIMIT + 1, exceeded.getPendingBytes());
+    assertEquals(SOFT_LIMIT, exceeded.getSoftLimit());
+    verify(player, never()).disconnect(any(Component.class));
+  }
+
+  @Test
+  void disconnectsAfterGracePeriod() {
+    pending(SOFT_LIMIT + 1);
+    monitor.checkPlayers(0);
+    monitor.checkPlayers(GRACE_PERIOD);
+    verify(player, never()).disconnect(any(Component.class));
+
+    monitor.checkPlayers(GRACE_PERIOD + 1);
+    verify(player).disconnect(any(Component.class));
+  }
+
+  @Test
+  void gracePeriodRestartsOnceUnderSoftLimit() {
+    pending(SOFT_LIMIT + 1);
+    monitor.checkPlayers(0);
+    pending(0);
+    monitor.checkPlayers(GRACE_PERIOD / 2);
+    pending(SOFT_LIMIT + 1);
+    monitor.checkPlayers(GRACE_PERIOD);
+    monitor.checkPlayers(GRACE_PERIOD + 1);
+
+    verify(eventManager, times(2)).fireAndForget(any());
+    verify(player, never()).disconnect(any(Component.class));
+  }
+
+  @Test
+  void disconnectsOverHardLimitImmediately() {
+    pending(HARD_LIMIT + 1);
+    monitor.checkPlayers(0);
+
+    verify(player).disconnect(any(Component.class));
+    // Not disconnected again while the disconnect packet is on its way
+    monitor.checkPlayers(1);
+    verify(player, times(1)).disconnect(any(Component.class));
+  }
+
+  @Test
+  void closesConnectionFiveSecondsAfterDisconnecting() {
+    pending(HARD_LIMIT + 1);
+    monitor.checkPlayers(0);
+
+    ArgumentCaptor<Runnable> close = ArgumentCaptor.forClass(Runnable.class);
+    verify(eventLoop).schedule(close.capture(), eq(5L), eq(TimeUnit.SECONDS));
+    verify(connection, never()).close();
+    close.getValue().run();
+    verify(connection).close();
+  }
+
+  @Test
+  void countsDataHeldBackFromServer() {
+    VelocityServerConnection backend = mock(VelocityServerConnection.class);
+    MinecraftConnection backendConnection = mock(MinecraftConnection.class);
+    when(player.getConnectedServer()).thenReturn(backend);
+    when(backend.getConnection()).thenReturn(backendConnection);
+    when(backendConnection.getHeldInboundBytes()).thenReturn(300L);
+    // Data sent to the server doesn't depend on the player keeping up
+    when(backendConnection.getPendingOutboundBytes()).thenReturn(100_000L);
+    pending(SOFT_LIMIT - 200);
+
+    assertEquals(SOFT_LIMIT + 100, OutboundMemoryMonitor.getPendingBytes(player));
+  }
+}
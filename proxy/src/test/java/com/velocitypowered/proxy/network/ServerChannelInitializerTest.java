@@ -0,0 +1,120 @@
+/*
+ * Copyright (C) 2024 Velocity Contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.velocitypowered.proxy.network;
+
+import static com.velocitypowered.proxy.network.Connections.FRAME_ENCODER;
+import static com.velocitypowered.proxy.network.Connections.LEGACY_PING_ENCODER;
+import static com.velocitypowered.proxy.network.Connections.MINECRAFT_ENCODER;
+import static com.velocitypowered.proxy.network.Connections.WRITE_COALESCER;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.velocitypowered.api.network.ProtocolVersion;
+import com.velocitypowered.proxy.VelocityServer;
+import com.velocitypowered.proxy.config.VelocityConfiguration;
+import com.velocitypowered.proxy.connection.MinecraftConnection;
+import com.velocitypowered.proxy.event.VelocityEventManager;
+import com.velocitypowered.proxy.protocol.ProtocolUtils;
+import com.velocitypowered.proxy.protocol.StateRegistry;
+import com.velocitypowered.proxy.protocol.netty.MinecraftFusedOutboundEncoder;
+import com.velocitypowered.proxy.protocol.netty.MinecraftVarintLengthEncoder;
+import com.velocitypowered.proxy.protocol.netty.MinecraftWriteCoalescer;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests that {@link ServerChannelInitializer} only completes the player pipeline for connections
+ * that are logging in.
+ */
+class ServerChannelInitializerTest {
+
+  private static EmbeddedChannel channel() {
+    VelocityConfiguration configuration = mock(VelocityConfiguration.class);
+    when(configuration.isAcceptTransfers()).thenReturn(true);
+    VelocityServer server = mock(VelocityServer.class);
+    when(server.getConfiguration()).thenReturn(configuration);
+    when(server.getEventManager()).thenReturn(mock(VelocityEventManager.class));
+
+    EmbeddedChannel channel = new EmbeddedChannel();
+    new ServerChannelInitializer(server).initChannel(channel);
+    return channel;
+  }
+
+  private static ByteBuf handshake(int nextState) {
+    ByteBuf packet = Unpooled.buffer();
+    ProtocolUtils.writeVarInt(packet, 0x00);
+    ProtocolUtils.writeVarInt(packet, ProtocolVersion.MAXIMUM_VERSION.getProtocol());
+    ProtocolUtils.writeString(packet, "localhost");
+    packet.writeShort(25565);
+    ProtocolUtils.writeVarInt(packet, nextState);
+
+    ByteBuf frame = Unpooled.buffer();
+    ProtocolUtils.writeVarInt(frame, packet.readableBytes());
+    frame.writeBytes(packet);
+    packet.release();
+    return frame;
+  }
+
+  private static StateRegistry state(EmbeddedChannel channel) {
+    return channel.pipeline().get(MinecraftConnection.class).getState();
+  }
+
+  private static void assertHandshakePipeline(EmbeddedChannel channel) {
+    assertNotNull(channel.pipeline().get(LEGACY_PING_ENCODER));
+    assertInstanceOf(MinecraftVarintLengthEncoder.class, channel.pipeline().get(FRAME_ENCODER));
+    assertNull(channel.pipeline().get(WRITE_COALESCER));
+  }
+
+  @Test
+  void statusPingsKeepTheHandshakePipeline() {
+    EmbeddedChannel channel = channel();
+    assertHandshakePipeline(channel);
+
+    channel.writeInbound(handshake(StateRegistry.STATUS_ID));
+    assertEquals(StateRegistry.STATUS, state(channel));
+    assertHandshakePipeline(channel);
+    channel.finishAndReleaseAll();
+  }
+
+  @Test
+  void loginsGetThePlayerPipeline() {
+    for (int nextState : new int[] { StateRegistry.LOGIN_ID, StateRegistry.TRANSFER_ID }) {
+      EmbeddedChannel channel = channel();
+      channel.writeInbound(handshake(nextState));
+      assertEquals(StateRegistry.LOGIN, state(channel));
+
+      assertNull(channel.pipeline().get(LEGACY_PING_ENCODER));
+      if (MinecraftFusedOutboundEncoder.isEnabled()) {
+        assertInstanceOf(MinecraftFusedOutboundEncoder.class,
+            channel.pipeline().get(FRAME_ENCODER));
+      }
+      if (MinecraftWriteCoalescer.isEnabled()) {
+        List<String> names = channel.pipeline().names();
+        assertEquals(names.indexOf(MINECRAFT_ENCODER) - 1, names.indexOf(WRITE_COALESCER));
+      }
+      channel.finishAndReleaseAll();
+    }
+  }
+}
@@ -0,0 +1,150 @@
+/*
+ * Copyright (C) 2024 Velocity Contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.velocitypowered.proxy.network;
+
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpResponse;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests how {@link SessionServerClient} coalesces and limits requests.
+ */
+class SessionServerClientTest {
+
+  private static final URI URI_A = URI.create("https://sessionserver.example/hasJoined?a");
+  private static final URI URI_B = URI.create("https://sessionserver.example/hasJoined?b");
+
+  private final HttpClient http = mock(HttpClient.class);
+
+  private SessionServerClient client(int maxRequests, int maxQueued) {
+    return new SessionServerClient(http, "test", maxRequests, maxQueued, 1000, 60000);
+  }
+
+  @SuppressWarnings("unchecked")
+  private static HttpResponse<String> response(int status) {
+    HttpResponse<String> response = mock(HttpResponse.class);
+    when(response.statusCode()).thenReturn(status);
+    return response;
+  }
+
+  @SafeVarargs
+  private void sendReturns(CompletableFuture<HttpResponse<String>>... futures) {
+    Object[] rest = new Object[futures.length - 1];
+    System.arraycopy(futures, 1, rest, 0, rest.length);
+    doReturn(futures[0], rest).when(http).sendAsync(any(), any());
+  }
+
+  @Test
+  void coalescesConcurrentIdenticalLookups() {
+    CompletableFuture<HttpResponse<String>> sent = new CompletableFuture<>();
+    sendReturns(sent);
+    SessionServerClient client = client(64, 64);
+
+    CompletableFuture<HttpResponse<String>> first = client.hasJoined(URI_A);
+    CompletableFuture<HttpResponse<String>> second = client.hasJoined(URI_A);
+    HttpResponse<String> response = response(200);
+    sent.complete(response);
+
+    verify(http, times(1)).sendAsync(any(), any());
+    assertSame(response, first.join());
+    assertSame(response, second.join());
+  }
+
+  @Test
+  void keepsDefinitiveAnswers() {
+    sendReturns(CompletableFuture.completedFuture(response(204)));
+    SessionServerClient client = client(64, 64);
+
+    client.hasJoined(URI_A).join();
+    client.hasJoined(URI_A).join();
+
+    verify(http, times(1)).sendAsync(any(), any());
+  }
+
+  @Test
+  void failureDoesNotPoisonLaterLookups() {
+    CompletableFuture<HttpResponse<String>> failing = new CompletableFuture<>();
+    HttpResponse<String> response = response(200);
+    sendReturns(failing, CompletableFuture.completedFuture(response));
+    SessionServerClient client = client(64, 64);
+
+    CompletableFuture<HttpResponse<String>> first = client.hasJoined(URI_A);
+    CompletableFuture<HttpResponse<String>> waiter = client.hasJoined(URI_A);
+    failing.completeExceptionally(new IOException("timed out"));
+
+    // The waiters of the failed request fail with it, but the next lookup asks again
+    assertTrue(first.isCompletedExceptionally());
+    assertTrue(waiter.isCompletedExceptionally());
+    assertSame(response, client.hasJoined(URI_A).join());
+    verify(http, times(2)).sendAsync(any(), any());
+  }
+
+  @Test
+  void doesNotKeepErrorResponses() {
+    HttpResponse<String> error = response(500);
+    HttpResponse<String> response = response(200);
+    sendReturns(CompletableFuture.completedFuture(error),
+        CompletableFuture.completedFuture(response));
+    SessionServerClient client = client(64, 64);
+
+    assertSame(error, client.hasJoined(URI_A).join());
+    assertSame(response, client.hasJoined(URI_A).join());
+  }
+
+  @Test
+  void queuesRequestsOverLimit() {
+    CompletableFuture<HttpResponse<String>> slow = new CompletableFuture<>();
+    sendReturns(slow, CompletableFuture.completedFuture(response(200)));
+    SessionServerClient client = client(1, 1);
+
+    client.hasJoined(URI_A);
+    CompletableFuture<HttpResponse<String>> queued = client.hasJoined(URI_B);
+    verify(http, times(1)).sendAsync(any(), any());
+
+    slow.complete(response(200));
+    queued.join();
+    verify(http, times(2)).sendAsync(any(), any());
+  }
+
+  @Test
+  void rejectsRequestsOverQueueLimit() {
+    sendReturns(new CompletableFuture<>());
+    SessionServerClient client = client(1, 0);
+
+    client.hasJoined(URI_A);
+    CompletionException thrown =
+        assertThrows(CompletionException.class, () -> client.hasJoined(URI_B).join());
+    assertInstanceOf(RejectedExecutionException.class, thrown.getCause());
+  }
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright (C) 2024 Velocity Contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.velocitypowered.proxy.network.netty;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+
+import com.google.common.util.concurrent.MoreExecutors;
+import io.netty.util.concurrent.Future;
+import io.netty.util.concurrent.ImmediateEventExecutor;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests the cache of {@link SeparatePoolInetNameResolver}.
+ */
+class SeparatePoolInetNameResolverTest {
+
+  private static final String HOST = "backend.example.com";
+  private static final long TTL = 1000;
+  private static final long NEGATIVE_TTL = 100;
+
+  private final AtomicLong time = new AtomicLong();
+  private final AtomicInteger lookups = new AtomicInteger();
+  private volatile InetAddress address = address(1);
+
+  // Lookups run on the calling thread, so that refreshes are done by the time get returns
+  private final SeparatePoolInetNameResolver resolver = new SeparatePoolInetNameResolver(
+      ImmediateEventExecutor.INSTANCE, MoreExecutors.newDirectExecutorService(), TTL,
+      NEGATIVE_TTL, time::get, host -> {
+        lookups.incrementAndGet();
+        InetAddress current = address;
+        if (current == null) {
+          throw new UnknownHostException(host);
+        }
+        return new InetAddress[] { current };
+      });
+
+  private static InetAddress address(int last) {
+    try {
+      return InetAddress.getByAddress(HOST, new byte[] { 10, 0, 0, (byte) last });
+    } catch (UnknownHostException e) {
+      throw new AssertionError(e);
+    }
+  }
+
+  private void advance(long millis) {
+    time.addAndGet(TimeUnit.MILLISECONDS.toNanos(millis));
+  }
+
+  private Future<InetAddress> resolve() {
+    return resolver.resolve(HOST).awaitUninterruptibly();
+  }
+
+  @Test
+  void cachesAddressesForTheTtl() {
+    assertEquals(address(1), resolve().getNow());
+    advance(TTL - 1);
+    assertEquals(address(1), resolve().getNow());
+    assertEquals(1, lookups.get());
+  }
+
+  @Test
+  void refreshesAddressesAfterTheTtl() {
+    resolve();
+    address = address(2);
+    advance(TTL + 1);
+
+    // The cached address is used while it is being refreshed
+    assertEquals(address(1), resolve().getNow());
+    assertEquals(2, lookups.get());
+    assertEquals(address(2), resolve().getNow());
+  }
+
+  @Test
+  void keepsAddressesWhenRefreshFails() {
+    resolve();
+    address = null;
+    advance(TTL + 1);
+
+    assertEquals(address(1), resolve().getNow());
+    assertEquals(address(1), resolve().getNow());
+    assertEquals(2, lookups.get());
+
+    // Until they expire, twice the TTL after they were looked up
+    advance(TTL);
+    assertInstanceOf(UnknownHostException.class, resolve().cause());
+  }
+
+  @Test
+  void cachesFailuresForTheNegativeTtl() {
+    address = null;
+    assertInstanceOf(UnknownHostException.class, resolve().cause());
+    address = address(1);
+    assertInstanceOf(UnknownHostException.class, resolve().cause());
+    assertEquals(1, lookups.get());
+
+    advance(NEGATIVE_TTL + 1);
+    assertEquals(address(1), resolve().getNow());
+    assertEquals(2, lookups.get());
+  }
+}
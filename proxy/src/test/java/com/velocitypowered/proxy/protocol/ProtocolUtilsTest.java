@@ -129,6 +129,17 @@ public class ProtocolUtilsTest {
     assertEquals(bytesNew, bytesOld, "byte sizes differ");
   }
 
+  @Test
+  void testStringBytes() {
+    ByteBuf buf = Unpooled.buffer();
+    for (String str : new String[] {"", "minecraft:block", "\u00e9\u4e16\ud83d\ude00",
+        "a".repeat(200)}) {
+      ProtocolUtils.writeString(buf, str);
+      assertEquals(buf.readableBytes(), ProtocolUtils.stringBytes(str), str);
+      buf.clear();
+    }
+  }
+
   private static int oldReadVarIntSafely(ByteBuf buf) {
     int i = 0;
     int maxRead = Math.min(5, buf.readableBytes());
@@ -0,0 +1,146 @@
+/*
+ * Copyright (C) 2024 Velocity Contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.velocitypowered.proxy.protocol.netty;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.velocitypowered.natives.compression.JavaVelocityCompressor;
+import com.velocitypowered.natives.compression.SharedCompressorPool;
+import com.velocitypowered.proxy.protocol.ProtocolUtils;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.util.concurrent.ImmediateEventExecutor;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests how {@link AdaptiveCompression} chooses the compression level of every packet ID.
+ */
+class AdaptiveCompressionTest {
+
+  private static final int BASE = 6;
+  private static final int FAST = 1;
+  private static final int HIGH = 9;
+  private static final int ID = 0x20;
+
+  private final AdaptiveCompression adaptive = new AdaptiveCompression(
+      new SharedCompressorPool(JavaVelocityCompressor.FACTORY), ImmediateEventExecutor.INSTANCE,
+      -1);
+
+  /**
+   * Sends packets of the tested ID that compress to the specified ratio, as the encoder does.
+   */
+  private void send(int count, float ratio, boolean writable) {
+    for (int i = 0; i < count; i++) {
+      if (adaptive.select(ID, writable) != AdaptiveCompression.STORE) {
+        adaptive.sample(ID, 1000, (int) (1000 * ratio));
+      }
+    }
+  }
+
+  @Test
+  void usesBaseLevelDuringWarmup() {
+    // Even incompressible packets are compressed until enough of them have been seen
+    for (int i = 0; i < 4; i++) {
+      assertEquals(BASE, adaptive.select(ID, true));
+      adaptive.sample(ID, 1000, 1000);
+    }
+    assertEquals(AdaptiveCompression.STORE, adaptive.select(ID, true));
+  }
+
+  @Test
+  void storesIncompressiblePacketsAndResamples() {
+    send(4, 0.99f, true);
+    // The next packets are stored, except for every 32nd one, which is compressed quickly
+    for (int seen = 4; seen < 32; seen++) {
+      assertEquals(AdaptiveCompression.STORE, adaptive.select(ID, true));
+    }
+    assertEquals(FAST, adaptive.select(ID, true));
+  }
+
+  @Test
+  void resamplingNoticesCompressibleContents() {
+    send(32, 0.99f, true);
+    assertEquals(FAST, adaptive.select(ID, true));
+    // The resampled packet now compresses well
+    adaptive.sample(ID, 1000, 100);
+    assertEquals(BASE, adaptive.select(ID, true));
+  }
+
+  @Test
+  void compressesPoorlyCompressiblePacketsQuickly() {
+    send(4, 0.85f, true);
+    assertEquals(FAST, adaptive.select(ID, true));
+    // Not worth the CPU time even when the connection is backed up
+    assertEquals(FAST, adaptive.select(ID, false));
+  }
+
+  @Test
+  void compressesHarderWhileUnwritable() {
+    send(4, 0.3f, true);
+    assertEquals(BASE, adaptive.select(ID, true));
+    assertEquals(HIGH, adaptive.select(ID, false));
+    assertEquals(BASE, adaptive.select(ID, true));
+  }
+
+  @Test
+  void ratioThresholdsAreInclusive() {
+    AdaptiveCompression store = new AdaptiveCompression(null, null, -1);
+    AdaptiveCompression fast = new AdaptiveCompression(null, null, -1);
+    store.select(ID, true);
+    store.sample(ID, 100, 95);
+    fast.select(ID, true);
+    fast.sample(ID, 100, 80);
+    for (int i = 1; i < 4; i++) {
+      store.select(ID, true);
+      fast.select(ID, true);
+    }
+    assertEquals(AdaptiveCompression.STORE, store.select(ID, true));
+    assertEquals(FAST, fast.select(ID, true));
+  }
+
+  @Test
+  void alwaysUsesBaseLevelForUntrackedIds() {
+    for (int i = 0; i < 8; i++) {
+      assertEquals(BASE, adaptive.select(-1, false));
+      assertEquals(BASE, adaptive.select(0x1000, false));
+    }
+  }
+
+  private static void encode(MinecraftCompressorAndLengthEncoder encoder, int packetId) {
+    ByteBuf packet = Unpooled.buffer();
+    ProtocolUtils.writeVarInt(packet, packetId);
+    packet.writeZero(256);
+    EmbeddedChannel channel = new EmbeddedChannel(encoder);
+    channel.writeOutbound(packet);
+    channel.finishAndReleaseAll();
+  }
+
+  @Test
+  void onlyRecordsStatisticsWhenEnabled() {
+    encode(new MinecraftCompressorAndLengthEncoder(64,
+        JavaVelocityCompressor.FACTORY.create(-1)), 0xFE);
+    assertFalse(AdaptiveCompression.collectStatistics().has("0xFE"));
+
+    encode(new MinecraftCompressorAndLengthEncoder(64, JavaVelocityCompressor.FACTORY.create(-1),
+        adaptive), 0xFD);
+    assertTrue(AdaptiveCompression.collectStatistics().has("0xFD"));
+  }
+}
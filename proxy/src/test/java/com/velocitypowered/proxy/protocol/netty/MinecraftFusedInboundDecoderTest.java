@@ -0,0 +1,159 @@
+/*
+ * Copyright (C) 2024 Velocity Contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.velocitypowered.proxy.protocol.netty;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import com.velocitypowered.natives.compression.JavaVelocityCompressor;
+import com.velocitypowered.natives.encryption.JavaVelocityCipher;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import java.security.GeneralSecurityException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests that {@link MinecraftFusedInboundDecoder} decodes exactly what the cipher, frame and
+ * compression decoders decode.
+ */
+class MinecraftFusedInboundDecoderTest {
+
+  private static final int THRESHOLD = 64;
+  private static final SecretKey KEY = new SecretKeySpec(new byte[16], "AES");
+
+  private static List<byte[]> packets() {
+    Random random = new Random(42);
+    List<byte[]> packets = new ArrayList<>();
+    for (int size : new int[] { 1, 10, 63, 64, 100, 1000, 5, 30000, 2 }) {
+      byte[] packet = new byte[size];
+      // Compressible, but not trivially
+      for (int i = 0; i < size; i++) {
+        packet[i] = (byte) random.nextInt(8);
+      }
+      packets.add(packet);
+    }
+    return packets;
+  }
+
+  private static byte[] encode(List<byte[]> packets, boolean encrypt, int threshold)
+      throws GeneralSecurityException {
+    EmbeddedChannel channel = new EmbeddedChannel();
+    if (encrypt) {
+      channel.pipeline().addLast(
+          new MinecraftCipherEncoder(JavaVelocityCipher.FACTORY.forEncryption(KEY)));
+    }
+    channel.pipeline().addLast(threshold == -1 ? MinecraftVarintLengthEncoder.INSTANCE
+        : new MinecraftCompressorAndLengthEncoder(threshold,
+            JavaVelocityCompressor.FACTORY.create(-1)));
+    for (byte[] packet : packets) {
+      channel.writeOutbound(Unpooled.wrappedBuffer(packet));
+    }
+    ByteBuf all = Unpooled.buffer();
+    for (ByteBuf buf = channel.readOutbound(); buf != null; buf = channel.readOutbound()) {
+      all.writeBytes(buf);
+      buf.release();
+    }
+    channel.finishAndReleaseAll();
+    return ByteBufUtil.getBytes(all);
+  }
+
+  private static List<byte[]> decode(EmbeddedChannel channel, byte[] stream, int chunk) {
+    // Frames are split across reads, and reads hold several frames
+    for (int i = 0; i < stream.length; i += chunk) {
+      channel.writeInbound(
+          Unpooled.copiedBuffer(stream, i, Math.min(chunk, stream.length - i)));
+    }
+    List<byte[]> decoded = new ArrayList<>();
+    for (ByteBuf buf = channel.readInbound(); buf != null; buf = channel.readInbound()) {
+      decoded.add(ByteBufUtil.getBytes(buf));
+      buf.release();
+    }
+    channel.finishAndReleaseAll();
+    return decoded;
+  }
+
+  private static EmbeddedChannel classic(boolean decrypt, int threshold)
+      throws GeneralSecurityException {
+    EmbeddedChannel channel = new EmbeddedChannel();
+    if (decrypt) {
+      channel.pipeline().addLast(
+          new MinecraftCipherDecoder(JavaVelocityCipher.FACTORY.forDecryption(KEY)));
+    }
+    channel.pipeline().addLast(new MinecraftVarintFrameDecoder());
+    if (threshold != -1) {
+      channel.pipeline().addLast(new MinecraftCompressDecoder(threshold,
+          JavaVelocityCompressor.FACTORY.create(-1)));
+    }
+    return channel;
+  }
+
+  private static EmbeddedChannel fused(boolean decrypt, int threshold)
+      throws GeneralSecurityException {
+    MinecraftFusedInboundDecoder decoder = new MinecraftFusedInboundDecoder();
+    if (decrypt) {
+      decoder.enableEncryption(JavaVelocityCipher.FACTORY.forDecryption(KEY));
+    }
+    if (threshold != -1) {
+      decoder.setCompression(threshold, JavaVelocityCompressor.FACTORY.create(-1));
+    }
+    return new EmbeddedChannel(decoder);
+  }
+
+  private static void assertEquivalent(boolean encrypt, int threshold)
+      throws GeneralSecurityException {
+    List<byte[]> packets = packets();
+    byte[] stream = encode(packets, encrypt, threshold);
+    for (int chunk : new int[] { 1, 7, 4096, stream.length }) {
+      List<byte[]> classic = decode(classic(encrypt, threshold), stream, chunk);
+      List<byte[]> fused = decode(fused(encrypt, threshold), stream, chunk);
+      assertEquals(packets.size(), classic.size());
+      assertEquals(packets.size(), fused.size());
+      for (int i = 0; i < packets.size(); i++) {
+        assertArrayEquals(packets.get(i), classic.get(i));
+        assertArrayEquals(classic.get(i), fused.get(i));
+      }
+    }
+  }
+
+  @Test
+  void decodesPlainFrames() throws GeneralSecurityException {
+    assertEquivalent(false, -1);
+  }
+
+  @Test
+  void decodesCompressedFrames() throws GeneralSecurityException {
+    assertEquivalent(false, THRESHOLD);
+  }
+
+  @Test
+  void decodesEncryptedFrames() throws GeneralSecurityException {
+    assertEquivalent(true, -1);
+  }
+
+  @Test
+  void decodesEncryptedCompressedFrames() throws GeneralSecurityException {
+    assertEquivalent(true, THRESHOLD);
+  }
+}
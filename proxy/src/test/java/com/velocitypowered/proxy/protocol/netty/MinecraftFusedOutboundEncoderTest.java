@@ -0,0 +1,184 @@
+/*
+ * Copyright (C) 2024 Velocity Contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.velocitypowered.proxy.protocol.netty;
+
+import static com.velocitypowered.proxy.network.Connections.COMPRESSION_ENCODER;
+import static com.velocitypowered.proxy.network.Connections.FRAME_ENCODER;
+import static com.velocitypowered.proxy.network.Connections.WRITE_COALESCER;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.google.gson.JsonObject;
+import com.velocitypowered.natives.compression.JavaVelocityCompressor;
+import com.velocitypowered.natives.encryption.JavaVelocityCipher;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelOutboundHandlerAdapter;
+import io.netty.channel.ChannelPromise;
+import io.netty.channel.embedded.EmbeddedChannel;
+import java.security.GeneralSecurityException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests that {@link MinecraftFusedOutboundEncoder} writes exactly what the cipher, frame and
+ * compression encoders write, with and without the write coalescer in front of it.
+ */
+class MinecraftFusedOutboundEncoderTest {
+
+  private static final int THRESHOLD = 64;
+  private static final SecretKey KEY = new SecretKeySpec(new byte[16], "AES");
+
+  private static List<byte[]> packets() {
+    Random random = new Random(42);
+    List<byte[]> packets = new ArrayList<>();
+    for (int size : new int[] { 1, 10, 63, 64, 100, 1000, 5, 30000, 2, 3 }) {
+      byte[] packet = new byte[size];
+      // Compressible, but not trivially
+      for (int i = 0; i < size; i++) {
+        packet[i] = (byte) random.nextInt(8);
+      }
+      packets.add(packet);
+    }
+    return packets;
+  }
+
+  private static byte[] write(EmbeddedChannel channel, List<byte[]> packets) {
+    for (byte[] packet : packets) {
+      channel.write(Unpooled.wrappedBuffer(packet));
+    }
+    channel.flush();
+    ByteBuf all = Unpooled.buffer();
+    for (ByteBuf buf = channel.readOutbound(); buf != null; buf = channel.readOutbound()) {
+      all.writeBytes(buf);
+      buf.release();
+    }
+    channel.finishAndReleaseAll();
+    return ByteBufUtil.getBytes(all);
+  }
+
+  private static EmbeddedChannel classic(boolean encrypt, int threshold)
+      throws GeneralSecurityException {
+    EmbeddedChannel channel = new EmbeddedChannel();
+    if (encrypt) {
+      channel.pipeline().addLast(
+          new MinecraftCipherEncoder(JavaVelocityCipher.FACTORY.forEncryption(KEY)));
+    }
+    channel.pipeline().addLast(threshold == -1 ? MinecraftVarintLengthEncoder.INSTANCE
+        : new MinecraftCompressorAndLengthEncoder(threshold,
+            JavaVelocityCompressor.FACTORY.create(-1)));
+    return channel;
+  }
+
+  private static EmbeddedChannel fused(boolean encrypt, int threshold)
+      throws GeneralSecurityException {
+    MinecraftFusedOutboundEncoder encoder = new MinecraftFusedOutboundEncoder();
+    if (encrypt) {
+      encoder.enableEncryption(JavaVelocityCipher.FACTORY.forEncryption(KEY));
+    }
+    if (threshold != -1) {
+      encoder.setCompression(new MinecraftCompressorAndLengthEncoder(threshold,
+          JavaVelocityCompressor.FACTORY.create(-1)));
+    }
+    EmbeddedChannel channel = new EmbeddedChannel();
+    channel.pipeline().addLast(FRAME_ENCODER, encoder);
+    return channel;
+  }
+
+  private static EmbeddedChannel coalesced(boolean encrypt, int threshold)
+      throws GeneralSecurityException {
+    EmbeddedChannel channel = fused(encrypt, threshold);
+    MinecraftWriteCoalescer coalescer = new MinecraftWriteCoalescer();
+    coalescer.setThreshold(threshold);
+    channel.pipeline().addLast(WRITE_COALESCER, coalescer);
+    // Laid out the way MinecraftConnection#setCompressionThreshold does it
+    if (threshold != -1) {
+      channel.pipeline().addBefore(WRITE_COALESCER, COMPRESSION_ENCODER,
+          MinecraftFusedOutboundEncoder.PLACEHOLDER);
+    }
+    return channel;
+  }
+
+  private static long counter(JsonObject statistics, String name) {
+    return statistics.get(name).getAsLong();
+  }
+
+  private static void assertEquivalent(boolean encrypt, int threshold)
+      throws GeneralSecurityException {
+    List<byte[]> packets = packets();
+    byte[] classic = write(classic(encrypt, threshold), packets);
+    assertArrayEquals(classic, write(fused(encrypt, threshold), packets));
+
+    JsonObject before = MinecraftWriteCoalescer.collectStatistics();
+    assertArrayEquals(classic, write(coalesced(encrypt, threshold), packets));
+    JsonObject after = MinecraftWriteCoalescer.collectStatistics();
+    // The small packets in a row were actually packed together
+    long buffers = counter(after, "buffers") - counter(before, "buffers");
+    long packed = counter(after, "packets") - counter(before, "packets");
+    assertTrue(buffers > 0);
+    assertTrue(packed > buffers);
+  }
+
+  @Test
+  void matchesFrameEncoder() throws GeneralSecurityException {
+    assertEquivalent(false, -1);
+  }
+
+  @Test
+  void matchesCompressionEncoder() throws GeneralSecurityException {
+    assertEquivalent(false, THRESHOLD);
+  }
+
+  @Test
+  void matchesCipherEncoder() throws GeneralSecurityException {
+    assertEquivalent(true, -1);
+  }
+
+  @Test
+  void matchesCipherAndCompressionEncoders() throws GeneralSecurityException {
+    assertEquivalent(true, THRESHOLD);
+  }
+
+  @Test
+  void foreignHandlersSeePacketsOneByOne() throws GeneralSecurityException {
+    List<byte[]> packets = packets();
+    List<Object> seen = new ArrayList<>();
+    EmbeddedChannel channel = coalesced(true, THRESHOLD);
+    channel.pipeline().addBefore(WRITE_COALESCER, "plugin", new ChannelOutboundHandlerAdapter() {
+      @Override
+      public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) {
+        seen.add(msg);
+        ctx.write(msg, promise);
+      }
+    });
+
+    assertArrayEquals(write(classic(true, THRESHOLD), packets), write(channel, packets));
+    assertEquals(packets.size(), seen.size());
+    for (Object msg : seen) {
+      assertInstanceOf(ByteBuf.class, msg);
+    }
+  }
+}
@@ -0,0 +1,168 @@
+/*
+ * Copyright (C) 2024 Velocity Contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.velocitypowered.proxy.protocol.netty;
+
+import static com.velocitypowered.proxy.network.Connections.CIPHER_ENCODER;
+import static com.velocitypowered.proxy.network.Connections.COMPRESSION_ENCODER;
+import static com.velocitypowered.proxy.network.Connections.FRAME_ENCODER;
+import static com.velocitypowered.proxy.network.Connections.WRITE_COALESCER;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelOutboundHandlerAdapter;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.MessageToByteEncoder;
+import java.util.Arrays;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests that {@link MinecraftWriteCoalescer} packs packets without reordering them.
+ */
+class MinecraftWriteCoalescerTest {
+
+  private final MinecraftWriteCoalescer coalescer = new MinecraftWriteCoalescer();
+  private final EmbeddedChannel channel = new EmbeddedChannel();
+
+  MinecraftWriteCoalescerTest() {
+    channel.pipeline()
+        .addLast(FRAME_ENCODER, MinecraftVarintLengthEncoder.INSTANCE)
+        .addLast(WRITE_COALESCER, coalescer);
+  }
+
+  private static ByteBuf packet(int length, int fill) {
+    byte[] contents = new byte[length];
+    Arrays.fill(contents, (byte) fill);
+    return Unpooled.wrappedBuffer(contents);
+  }
+
+  private static byte[] frame(int length, int fill) {
+    byte[] frame = new byte[length + 1];
+    Arrays.fill(frame, (byte) fill);
+    frame[0] = (byte) length;
+    return frame;
+  }
+
+  private static byte[] concat(byte[]... parts) {
+    ByteBuf all = Unpooled.buffer();
+    for (byte[] part : parts) {
+      all.writeBytes(part);
+    }
+    return ByteBufUtil.getBytes(all);
+  }
+
+  private byte[] readAll() {
+    ByteBuf all = Unpooled.buffer();
+    for (ByteBuf buf = channel.readOutbound(); buf != null; buf = channel.readOutbound()) {
+      all.writeBytes(buf);
+      buf.release();
+    }
+    return ByteBufUtil.getBytes(all);
+  }
+
+  @Test
+  void packsSmallPacketsUntilFlushed() {
+    ChannelFuture first = channel.write(packet(3, 'a'));
+    ChannelFuture second = channel.write(packet(2, 'b'));
+    assertFalse(first.isDone());
+    assertEquals(7, coalescer.getPendingBytes());
+
+    channel.flush();
+
+    assertTrue(first.isSuccess());
+    assertTrue(second.isSuccess());
+    assertEquals(0, coalescer.getPendingBytes());
+    // A single buffer holds both frames
+    ByteBuf packed = channel.readOutbound();
+    assertArrayEquals(concat(frame(3, 'a'), frame(2, 'b')), ByteBufUtil.getBytes(packed));
+    packed.release();
+    assertNull(channel.readOutbound());
+  }
+
+  @Test
+  void keepsLargePacketsInOrder() {
+    channel.write(packet(3, 'a'));
+    ByteBuf large = packet(2000, 'b');
+    byte[] largeFrame = concat(new byte[] { (byte) 0xD0, 0x0F }, ByteBufUtil.getBytes(large));
+    channel.write(large);
+    channel.write(packet(3, 'c'));
+    channel.flush();
+
+    assertArrayEquals(concat(frame(3, 'a'), largeFrame, frame(3, 'c')), readAll());
+  }
+
+  @Test
+  void writesPendingPacketsOnClose() {
+    ChannelFuture pending = channel.write(packet(3, 'a'));
+    channel.close();
+
+    // Unflushed writes fail on close, but they are not left hanging
+    assertTrue(pending.isDone());
+    assertEquals(0, coalescer.getPendingBytes());
+  }
+
+  @Test
+  void writesPendingPacketsBeforeCompressionIsEnabled() {
+    channel.write(packet(3, 'a'));
+    // As done by MinecraftConnection#setCompressionThreshold
+    coalescer.setThreshold(256);
+    channel.pipeline().replace(FRAME_ENCODER, COMPRESSION_ENCODER,
+        new ChannelOutboundHandlerAdapter());
+    channel.write(packet(3, 'b'));
+    channel.flush();
+
+    // Only packets packed once compression is enabled carry the uncompressed data length
+    assertArrayEquals(concat(frame(3, 'a'), new byte[] { 4, 0, 'b', 'b', 'b' }), readAll());
+  }
+
+  @Test
+  void writesPendingPacketsBeforeEncryptionIsEnabled() {
+    channel.write(packet(3, 'a'));
+    // As done by MinecraftConnection#enableEncryption
+    coalescer.writePending();
+    channel.pipeline().addBefore(FRAME_ENCODER, CIPHER_ENCODER, new InvertingEncoder());
+    channel.write(packet(3, 'b'));
+    channel.flush();
+
+    byte[] encrypted = frame(3, 'b');
+    for (int i = 0; i < encrypted.length; i++) {
+      encrypted[i] = (byte) ~encrypted[i];
+    }
+    assertArrayEquals(concat(frame(3, 'a'), encrypted), readAll());
+  }
+
+  /**
+   * Stands in for the cipher encoder.
+   */
+  private static final class InvertingEncoder extends MessageToByteEncoder<ByteBuf> {
+
+    @Override
+    protected void encode(ChannelHandlerContext ctx, ByteBuf msg, ByteBuf out) {
+      while (msg.isReadable()) {
+        out.writeByte(~msg.readByte());
+      }
+    }
+  }
+}
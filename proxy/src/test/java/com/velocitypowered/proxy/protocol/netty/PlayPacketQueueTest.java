@@ -0,0 +1,187 @@
+/*
+ * Copyright (C) 2024 Velocity Contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.velocitypowered.proxy.protocol.netty;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.velocitypowered.api.network.ProtocolVersion;
+import com.velocitypowered.proxy.protocol.ProtocolUtils;
+import com.velocitypowered.proxy.protocol.StateRegistry;
+import com.velocitypowered.proxy.protocol.packet.JoinGamePacket;
+import com.velocitypowered.proxy.protocol.packet.KeepAlivePacket;
+import com.velocitypowered.proxy.protocol.packet.PluginMessagePacket;
+import com.velocitypowered.proxy.protocol.packet.chat.SystemChatPacket;
+import com.velocitypowered.proxy.protocol.packet.chat.legacy.LegacyChatPacket;
+import com.velocitypowered.proxy.protocol.packet.title.TitleActionbarPacket;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelPromise;
+import io.netty.channel.embedded.EmbeddedChannel;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests the bounds and coalescing of {@link PlayPacketQueue}.
+ */
+class PlayPacketQueueTest {
+
+  private static final ProtocolVersion VERSION = ProtocolVersion.MINECRAFT_1_20_2;
+
+  private final EmbeddedChannel channel = new EmbeddedChannel();
+
+  private static PlayPacketQueue queue(ProtocolUtils.Direction direction, int maxPackets,
+      boolean dropOldest) {
+    return new PlayPacketQueue(VERSION, direction, maxPackets, Long.MAX_VALUE, dropOldest);
+  }
+
+  private static List<Object> drain(PlayPacketQueue queue) {
+    List<Object> drained = new ArrayList<>();
+    queue.drain((msg, promise) -> drained.add(msg));
+    return drained;
+  }
+
+  @Test
+  void coalescesSupersededUpdatesInPlace() {
+    PlayPacketQueue queue = queue(ProtocolUtils.Direction.CLIENTBOUND, 16, true);
+    JoinGamePacket joinGame = new JoinGamePacket();
+    TitleActionbarPacket first = new TitleActionbarPacket();
+    KeepAlivePacket keepAlive = new KeepAlivePacket();
+    TitleActionbarPacket second = new TitleActionbarPacket();
+    ChannelPromise firstPromise = channel.newPromise();
+
+    assertTrue(queue.offer(joinGame, null));
+    assertTrue(queue.offer(first, firstPromise));
+    assertTrue(queue.offer(keepAlive, null));
+    assertTrue(queue.offer(second, null));
+
+    assertEquals(3, queue.getPackets());
+    // The superseded action bar would have been overwritten anyway, so its write succeeded
+    assertTrue(firstPromise.isSuccess());
+    assertEquals(List.of(joinGame, second, keepAlive), drain(queue));
+    assertEquals(0, queue.getBytes());
+  }
+
+  @Test
+  void dropsOldestCosmeticPacketsOnly() {
+    PlayPacketQueue queue = queue(ProtocolUtils.Direction.CLIENTBOUND, 3, true);
+    JoinGamePacket joinGame = new JoinGamePacket();
+    SystemChatPacket oldest = new SystemChatPacket();
+    PluginMessagePacket pluginMessage =
+        new PluginMessagePacket("velocity:test", Unpooled.wrappedBuffer(new byte[4]));
+    SystemChatPacket newest = new SystemChatPacket();
+    ChannelPromise oldestPromise = channel.newPromise();
+
+    assertTrue(queue.offer(joinGame, null));
+    assertTrue(queue.offer(oldest, oldestPromise));
+    assertTrue(queue.offer(pluginMessage, null));
+    assertTrue(queue.offer(newest, null));
+
+    assertFalse(oldestPromise.isSuccess());
+    assertNotNull(oldestPromise.cause());
+    assertEquals(List.of(joinGame, pluginMessage, newest), drain(queue));
+    pluginMessage.release();
+  }
+
+  @Test
+  void overflowsWhenOnlyCriticalPacketsAreQueued() {
+    PlayPacketQueue queue = queue(ProtocolUtils.Direction.CLIENTBOUND, 2, true);
+    assertTrue(queue.offer(new JoinGamePacket(), null));
+    assertTrue(queue.offer(new KeepAlivePacket(), null));
+    assertFalse(queue.offer(new KeepAlivePacket(), null));
+  }
+
+  @Test
+  void neverDropsServerboundChat() {
+    // The chat messages of the player are chained, losing one breaks the chain
+    PlayPacketQueue queue = queue(ProtocolUtils.Direction.SERVERBOUND, 1, true);
+    assertTrue(queue.offer(new LegacyChatPacket(), null));
+    assertFalse(queue.offer(new LegacyChatPacket(), null));
+  }
+
+  @Test
+  void overflowsImmediatelyWhenNotDroppingPackets() {
+    PlayPacketQueue queue = queue(ProtocolUtils.Direction.CLIENTBOUND, 1, false);
+    assertTrue(queue.offer(new SystemChatPacket(), null));
+    assertFalse(queue.offer(new SystemChatPacket(), null));
+  }
+
+  @Test
+  void releaseFailsPendingWrites() {
+    PlayPacketQueue queue = queue(ProtocolUtils.Direction.CLIENTBOUND, 16, true);
+    ChannelPromise promise = channel.newPromise();
+    assertTrue(queue.offer(new SystemChatPacket(), promise));
+
+    queue.release();
+
+    assertEquals(0, queue.getPackets());
+    assertFalse(promise.isSuccess());
+    assertNotNull(promise.cause());
+  }
+
+  @Test
+  void drainKeepsPromises() {
+    PlayPacketQueue queue = queue(ProtocolUtils.Direction.CLIENTBOUND, 16, true);
+    ChannelPromise promise = channel.newPromise();
+    assertTrue(queue.offer(new SystemChatPacket(), promise));
+
+    List<ChannelPromise> promises = new ArrayList<>();
+    queue.drain((msg, drained) -> promises.add(drained));
+
+    assertEquals(1, promises.size());
+    assertSame(promise, promises.get(0));
+    assertFalse(promise.isDone());
+  }
+
+  @Test
+  void overflowDisconnectsThePlayer() {
+    MinecraftEncoder encoder = new MinecraftEncoder(ProtocolUtils.Direction.CLIENTBOUND);
+    encoder.setProtocolVersion(VERSION);
+    encoder.setState(StateRegistry.CONFIG);
+    EmbeddedChannel client = new EmbeddedChannel(encoder, new PlayPacketQueueOutboundHandler(
+        VERSION, ProtocolUtils.Direction.CLIENTBOUND, 1, Long.MAX_VALUE, false));
+
+    ChannelFuture queued = client.write(new SystemChatPacket());
+    ChannelFuture overflowing = client.write(new SystemChatPacket());
+
+    assertFalse(queued.isSuccess());
+    assertFalse(overflowing.isSuccess());
+    // The disconnect packet went through the encoder, then the connection was closed
+    ByteBuf disconnect = client.readOutbound();
+    assertInstanceOf(ByteBuf.class, disconnect);
+    disconnect.release();
+    assertFalse(client.isOpen());
+  }
+
+  @Test
+  void overflowClosesServerConnections() {
+    EmbeddedChannel server = new EmbeddedChannel(new PlayPacketQueueOutboundHandler(
+        VERSION, ProtocolUtils.Direction.SERVERBOUND, 1, Long.MAX_VALUE, false));
+
+    server.write(new LegacyChatPacket());
+    server.write(new LegacyChatPacket());
+
+    assertFalse(server.isOpen());
+  }
+}
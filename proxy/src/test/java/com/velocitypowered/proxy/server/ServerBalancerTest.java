@@ -0,0 +1,142 @@
+/*
+ * Copyright (C) 2024 Velocity Contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.velocitypowered.proxy.server;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.velocitypowered.api.proxy.server.ServerInfo;
+import com.velocitypowered.proxy.VelocityServer;
+import com.velocitypowered.proxy.config.BalancingStrategy;
+import com.velocitypowered.proxy.config.VelocityConfiguration;
+import java.net.InetSocketAddress;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests the strategies of {@link ServerBalancer}.
+ */
+class ServerBalancerTest {
+
+  private final VelocityConfiguration configuration = mock(VelocityConfiguration.class);
+  private final ServerBalancer balancer;
+
+  ServerBalancerTest() {
+    VelocityServer server = mock(VelocityServer.class);
+    when(server.getConfiguration()).thenReturn(configuration);
+    when(configuration.getServerWeight("big")).thenReturn(4);
+    when(configuration.getServerWeight("small")).thenReturn(1);
+    balancer = new ServerBalancer(server);
+  }
+
+  private static VelocityRegisteredServer server(String name, int load) {
+    VelocityRegisteredServer server = new VelocityRegisteredServer(null,
+        new ServerInfo(name, InetSocketAddress.createUnresolved("localhost", 25565)));
+    for (int i = 0; i < load; i++) {
+      server.connectionStarted();
+    }
+    return server;
+  }
+
+  private VelocityRegisteredServer select(BalancingStrategy strategy,
+      VelocityRegisteredServer... candidates) {
+    when(configuration.getBalancingStrategy()).thenReturn(strategy);
+    return balancer.select(List.of(candidates));
+  }
+
+  @Test
+  void selectsNothingWithoutCandidates() {
+    when(configuration.getBalancingStrategy()).thenReturn(BalancingStrategy.LEAST_PLAYERS);
+    assertNull(balancer.select(List.of()));
+  }
+
+  @Test
+  void firstKeepsTheConfiguredOrder() {
+    VelocityRegisteredServer first = server("first", 10);
+    assertSame(first, select(BalancingStrategy.FIRST, first, server("second", 0)));
+  }
+
+  @Test
+  void leastPlayersCountsConnectingPlayers() {
+    VelocityRegisteredServer busy = server("busy", 3);
+    VelocityRegisteredServer quiet = server("quiet", 1);
+    assertSame(quiet, select(BalancingStrategy.LEAST_PLAYERS, busy, quiet, server("other", 2)));
+  }
+
+  @Test
+  void weightedScalesTheLoad() {
+    VelocityRegisteredServer big = server("big", 6);
+    VelocityRegisteredServer small = server("small", 2);
+    assertSame(big, select(BalancingStrategy.WEIGHTED, small, big));
+  }
+
+  @Test
+  void powerOfTwoChoosesTheLeastLoadedOfThePair() {
+    // With two candidates both are always picked
+    VelocityRegisteredServer busy = server("busy", 5);
+    VelocityRegisteredServer quiet = server("quiet", 1);
+    for (int i = 0; i < 20; i++) {
+      assertSame(quiet, select(BalancingStrategy.POWER_OF_TWO, busy, quiet));
+    }
+  }
+
+  @Test
+  void lowestLatencyWeighsLatencyByLoad() {
+    VelocityRegisteredServer fast = server("fast", 9);
+    fast.recordLatency(10);
+    VelocityRegisteredServer slow = server("slow", 0);
+    slow.recordLatency(40);
+    // 11 * 10 players is costlier than 41 * 1
+    assertSame(slow, select(BalancingStrategy.LOWEST_LATENCY, fast, slow));
+
+    VelocityRegisteredServer idle = server("idle", 0);
+    idle.recordLatency(10);
+    assertSame(idle, select(BalancingStrategy.LOWEST_LATENCY, slow, idle));
+  }
+
+  @Test
+  void lowestLatencyAvoidsUnmeasuredServers() {
+    VelocityRegisteredServer measured = server("measured", 50);
+    measured.recordLatency(200);
+    VelocityRegisteredServer unmeasured = server("unmeasured", 0);
+    assertSame(measured, select(BalancingStrategy.LOWEST_LATENCY, unmeasured, measured));
+
+    // Without any measurement the load decides
+    assertSame(unmeasured, select(BalancingStrategy.LOWEST_LATENCY, server("busy", 2), unmeasured));
+  }
+
+  @Test
+  void failedPingClearsTheLatency() {
+    VelocityRegisteredServer target = server("target", 0);
+    target.recordLatency(30);
+    target.clearLatency();
+    assertEquals(-1, target.getLatency());
+  }
+
+  @Test
+  void latencyIsSmoothed() {
+    VelocityRegisteredServer target = server("target", 0);
+    target.recordLatency(100);
+    assertEquals(100, target.getLatency());
+    target.recordLatency(180);
+    assertEquals(110, target.getLatency());
+  }
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright (C) 2024 Velocity Contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.velocitypowered.proxy.server;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.velocitypowered.api.proxy.server.ServerHealth.State;
+import com.velocitypowered.proxy.config.VelocityConfiguration.HealthCheck;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests the circuit breaker of {@link VelocityServerHealth}.
+ */
+class VelocityServerHealthTest {
+
+  private final VelocityServerHealth health = new VelocityServerHealth("test");
+
+  static HealthCheck settings(boolean enabled, int failureThreshold, int successThreshold) {
+    HealthCheck settings = mock(HealthCheck.class);
+    when(settings.isEnabled()).thenReturn(enabled);
+    when(settings.getFailureThreshold()).thenReturn(failureThreshold);
+    when(settings.getSuccessThreshold()).thenReturn(successThreshold);
+    return settings;
+  }
+
+  @Test
+  void opensAfterFailureThreshold() {
+    HealthCheck settings = settings(true, 3, 2);
+    health.recordFailure(settings);
+    health.recordFailure(settings);
+    assertEquals(State.CLOSED, health.getState());
+    assertTrue(health.isAvailable());
+
+    health.recordFailure(settings);
+    assertEquals(State.OPEN, health.getState());
+    assertFalse(health.isAvailable());
+    assertEquals(3, health.getConsecutiveFailures());
+  }
+
+  @Test
+  void successResetsFailureCount() {
+    HealthCheck settings = settings(true, 3, 2);
+    health.recordFailure(settings);
+    health.recordFailure(settings);
+    health.recordSuccess(settings);
+    health.recordFailure(settings);
+    health.recordFailure(settings);
+    assertEquals(State.CLOSED, health.getState());
+  }
+
+  @Test
+  void halfOpensOnProbeSuccess() {
+    HealthCheck settings = settings(true, 1, 2);
+    health.recordFailure(settings);
+    assertEquals(State.OPEN, health.getState());
+
+    health.recordProbeSuccess(settings, 12);
+    assertEquals(State.HALF_OPEN, health.getState());
+    assertTrue(health.isAvailable());
+    assertEquals(12, health.getProbeLatency());
+    assertEquals(0, health.getConsecutiveFailures());
+  }
+
+  @Test
+  void reopensOnFailureWhileHalfOpen() {
+    HealthCheck settings = settings(true, 3, 2);
+    health.recordFailure(settings);
+    health.recordFailure(settings);
+    health.recordFailure(settings);
+    health.recordSuccess(settings);
+    assertEquals(State.HALF_OPEN, health.getState());
+
+    // A single failure is enough, the server has yet to prove it is healthy again
+    health.recordFailure(settings);
+    assertEquals(State.OPEN, health.getState());
+  }
+
+  @Test
+  void closesAfterSuccessThreshold() {
+    HealthCheck settings = settings(true, 1, 3);
+    health.recordFailure(settings);
+    health.recordSuccess(settings);
+    health.recordSuccess(settings);
+    assertEquals(State.HALF_OPEN, health.getState());
+
+    health.recordSuccess(settings);
+    assertEquals(State.CLOSED, health.getState());
+  }
+
+  @Test
+  void ignoresResultsWhenDisabled() {
+    HealthCheck settings = settings(false, 1, 1);
+    health.recordFailure(settings);
+    assertEquals(State.CLOSED, health.getState());
+    assertEquals(0, health.getConsecutiveFailures());
+  }
+
+  @Test
+  void resetForgetsEverything() {
+    HealthCheck settings = settings(true, 1, 1);
+    health.recordProbeSuccess(settings, 5);
+    health.recordFailure(settings);
+    health.reset();
+    assertEquals(State.CLOSED, health.getState());
+    assertEquals(-1, health.getProbeLatency());
+    assertEquals(0, health.getConsecutiveFailures());
+  }
+}
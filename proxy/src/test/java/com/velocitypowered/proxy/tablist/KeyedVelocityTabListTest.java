@@ -0,0 +1,124 @@
+/*
+ * Copyright (C) 2024 Velocity Contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.velocitypowered.proxy.tablist;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.velocitypowered.api.network.ProtocolVersion;
+import com.velocitypowered.api.proxy.ProxyServer;
+import com.velocitypowered.api.proxy.player.TabListEntry;
+import com.velocitypowered.api.util.GameProfile;
+import com.velocitypowered.proxy.connection.MinecraftConnection;
+import com.velocitypowered.proxy.connection.client.ConnectedPlayer;
+import com.velocitypowered.proxy.protocol.packet.LegacyPlayerListItemPacket;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+/**
+ * Tests that {@link KeyedVelocityTabList#batch(java.util.function.Consumer)} merges changes.
+ */
+class KeyedVelocityTabListTest {
+
+  private final MinecraftConnection connection = mock(MinecraftConnection.class);
+  private final KeyedVelocityTabList tabList;
+
+  KeyedVelocityTabListTest() {
+    ConnectedPlayer player = mock(ConnectedPlayer.class);
+    when(player.getConnection()).thenReturn(connection);
+    when(connection.getProtocolVersion()).thenReturn(ProtocolVersion.MINECRAFT_1_19_1);
+    ProxyServer server = mock(ProxyServer.class);
+    when(server.getPlayer(any(UUID.class))).thenReturn(Optional.empty());
+    tabList = new KeyedVelocityTabList(player, server);
+  }
+
+  private TabListEntry entry(String name) {
+    return tabList.buildEntry(new GameProfile(UUID.randomUUID(), name, List.of()), null, 0, 0,
+        null, true);
+  }
+
+  private List<LegacyPlayerListItemPacket> delayedWrites(int count) {
+    ArgumentCaptor<LegacyPlayerListItemPacket> written =
+        ArgumentCaptor.forClass(LegacyPlayerListItemPacket.class);
+    verify(connection, times(count)).delayedWrite(written.capture());
+    return written.getAllValues();
+  }
+
+  @Test
+  void writesOnePacketPerAction() {
+    TabListEntry first = entry("first");
+    TabListEntry second = entry("second");
+    tabList.batch(changes -> {
+      changes.addEntry(first);
+      changes.addEntry(second);
+      first.setLatency(10);
+      first.setLatency(20);
+    });
+
+    verify(connection, never()).write(any());
+    List<LegacyPlayerListItemPacket> written = delayedWrites(2);
+    assertEquals(LegacyPlayerListItemPacket.ADD_PLAYER, written.get(0).getAction());
+    assertEquals(2, written.get(0).getItems().size());
+    // Only the latest latency of an entry is kept
+    assertEquals(LegacyPlayerListItemPacket.UPDATE_LATENCY, written.get(1).getAction());
+    assertEquals(1, written.get(1).getItems().size());
+    assertEquals(20, written.get(1).getItems().get(0).getLatency());
+    verify(connection, times(1)).flush();
+  }
+
+  @Test
+  void removalDiscardsEarlierChanges() {
+    TabListEntry removed = entry("removed");
+    tabList.addEntry(removed);
+    tabList.batch(changes -> {
+      removed.setLatency(10);
+      changes.removeEntry(removed.getProfile().getId());
+    });
+
+    List<LegacyPlayerListItemPacket> written = delayedWrites(1);
+    assertEquals(LegacyPlayerListItemPacket.REMOVE_PLAYER, written.get(0).getAction());
+  }
+
+  @Test
+  void runsChangesWithoutHoldingLock() {
+    Thread other = new Thread(() -> tabList.batch(changes -> changes.addEntry(entry("other"))));
+    tabList.batch(changes -> {
+      changes.addEntry(entry("waiting"));
+      other.start();
+      try {
+        // The other batch doesn't wait for this one to end
+        other.join(5000);
+      } catch (InterruptedException e) {
+        throw new AssertionError(e);
+      }
+      assertEquals(Thread.State.TERMINATED, other.getState());
+    });
+
+    List<LegacyPlayerListItemPacket> written = delayedWrites(2);
+    assertEquals(1, written.get(0).getItems().size());
+    assertEquals(1, written.get(1).getItems().size());
+  }
+}
@@ -0,0 +1,157 @@
+/*
+ * Copyright (C) 2024 Velocity Contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.velocitypowered.proxy.tablist;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.velocitypowered.api.network.ProtocolVersion;
+import com.velocitypowered.api.proxy.player.TabListEntry;
+import com.velocitypowered.api.util.GameProfile;
+import com.velocitypowered.proxy.connection.MinecraftConnection;
+import com.velocitypowered.proxy.connection.client.ConnectedPlayer;
+import com.velocitypowered.proxy.protocol.packet.RemovePlayerInfoPacket;
+import com.velocitypowered.proxy.protocol.packet.UpsertPlayerInfoPacket;
+import com.velocitypowered.proxy.protocol.packet.UpsertPlayerInfoPacket.Action;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+/**
+ * Tests that {@link VelocityTabList#batch(java.util.function.Consumer)} merges changes.
+ */
+class VelocityTabListTest {
+
+  private final MinecraftConnection connection = mock(MinecraftConnection.class);
+  private final VelocityTabList tabList;
+
+  VelocityTabListTest() {
+    ConnectedPlayer player = mock(ConnectedPlayer.class);
+    when(player.getConnection()).thenReturn(connection);
+    when(player.getProtocolVersion()).thenReturn(ProtocolVersion.MINECRAFT_1_20_3);
+    tabList = new VelocityTabList(player);
+  }
+
+  private TabListEntry entry(String name) {
+    return tabList.buildEntry(new GameProfile(UUID.randomUUID(), name, List.of()), null, 0, 0,
+        null, true, 0);
+  }
+
+  private List<Object> delayedWrites(int count) {
+    ArgumentCaptor<Object> written = ArgumentCaptor.forClass(Object.class);
+    verify(connection, times(count)).delayedWrite(written.capture());
+    return written.getAllValues();
+  }
+
+  @Test
+  void mergesChangesIntoSinglePacket() {
+    TabListEntry first = entry("first");
+    TabListEntry second = entry("second");
+    tabList.batch(changes -> {
+      changes.addEntry(first);
+      changes.addEntry(second);
+      first.setLatency(50);
+    });
+
+    verify(connection, never()).write(any());
+    UpsertPlayerInfoPacket upsert = assertInstanceOf(UpsertPlayerInfoPacket.class,
+        delayedWrites(1).get(0));
+    assertEquals(EnumSet.of(Action.ADD_PLAYER, Action.UPDATE_LATENCY, Action.UPDATE_LISTED,
+        Action.UPDATE_GAME_MODE), upsert.getActions());
+    assertEquals(2, upsert.getEntries().size());
+    assertEquals(50, upsert.getEntries().get(0).getLatency());
+    verify(connection, times(1)).flush();
+  }
+
+  @Test
+  void writesRemovalsFirst() {
+    TabListEntry kept = entry("kept");
+    TabListEntry removed = entry("removed");
+    tabList.addEntry(removed);
+    tabList.batch(changes -> {
+      changes.addEntry(kept);
+      changes.removeEntry(removed.getProfile().getId());
+    });
+
+    List<Object> written = delayedWrites(2);
+    RemovePlayerInfoPacket remove = assertInstanceOf(RemovePlayerInfoPacket.class,
+        written.get(0));
+    assertEquals(List.of(removed.getProfile().getId()), List.copyOf(remove.getProfilesToRemove()));
+    assertInstanceOf(UpsertPlayerInfoPacket.class, written.get(1));
+  }
+
+  @Test
+  void foldsNestedBatches() {
+    tabList.batch(outer -> {
+      outer.addEntry(entry("outer"));
+      outer.batch(inner -> inner.addEntry(entry("inner")));
+      // Nothing is written until the outermost batch ends
+      verify(connection, never()).delayedWrite(any());
+    });
+
+    UpsertPlayerInfoPacket upsert = assertInstanceOf(UpsertPlayerInfoPacket.class,
+        delayedWrites(1).get(0));
+    assertEquals(2, upsert.getEntries().size());
+  }
+
+  @Test
+  void writesChangesOutsideBatchRightAway() {
+    tabList.addEntry(entry("single"));
+
+    verify(connection).write(any(UpsertPlayerInfoPacket.class));
+    verify(connection, never()).delayedWrite(any());
+  }
+
+  @Test
+  void runsChangesWithoutHoldingLock() {
+    CountDownLatch otherDone = new CountDownLatch(1);
+    TabListEntry other = entry("other");
+    tabList.batch(changes -> {
+      changes.addEntry(entry("waiting"));
+      // A batch started on another thread in the meantime neither waits nor sees our changes
+      new Thread(() -> {
+        tabList.batch(otherChanges -> otherChanges.addEntry(other));
+        otherDone.countDown();
+      }).start();
+      try {
+        assertTrue(otherDone.await(5, TimeUnit.SECONDS));
+      } catch (InterruptedException e) {
+        throw new AssertionError(e);
+      }
+    });
+
+    List<Object> written = delayedWrites(2);
+    UpsertPlayerInfoPacket first = assertInstanceOf(UpsertPlayerInfoPacket.class, written.get(0));
+    assertEquals(1, first.getEntries().size());
+    assertEquals(other.getProfile().getId(), first.getEntries().get(0).getProfileId());
+    UpsertPlayerInfoPacket second = assertInstanceOf(UpsertPlayerInfoPacket.class,
+        written.get(1));
+    assertEquals(1, second.getEntries().size());
+  }
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright (C) 2024 Velocity Contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.velocitypowered.proxy.util.ratelimit;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.Test;
+
+class TokenBucketRatelimiterTest {
+
+  @Test
+  void attemptZero() {
+    Ratelimiter noRatelimiter = Ratelimiters.create(0, 1, 32, 128);
+    assertTrue(noRatelimiter.attempt(InetAddress.getLoopbackAddress()));
+    assertTrue(noRatelimiter.attempt(InetAddress.getLoopbackAddress()));
+  }
+
+  @Test
+  void attemptOne() {
+    long base = System.nanoTime();
+    AtomicLong extra = new AtomicLong();
+    Ratelimiter ratelimiter = new TokenBucketRatelimiter(1, 1, 32, 128,
+        () -> base + extra.get());
+    assertTrue(ratelimiter.attempt(InetAddress.getLoopbackAddress()));
+    assertFalse(ratelimiter.attempt(InetAddress.getLoopbackAddress()));
+    extra.addAndGet(TimeUnit.SECONDS.toNanos(2));
+    assertTrue(ratelimiter.attempt(InetAddress.getLoopbackAddress()));
+  }
+
+  @Test
+  void attemptBurst() {
+    long base = System.nanoTime();
+    AtomicLong extra = new AtomicLong();
+    Ratelimiter ratelimiter = new TokenBucketRatelimiter(2, 3, 32, 128,
+        () -> base + extra.get());
+    for (int i = 0; i < 3; i++) {
+      assertTrue(ratelimiter.attempt(InetAddress.getLoopbackAddress()));
+    }
+    assertFalse(ratelimiter.attempt(InetAddress.getLoopbackAddress()));
+    // Half a second refills a single token
+    extra.addAndGet(TimeUnit.MILLISECONDS.toNanos(500));
+    assertTrue(ratelimiter.attempt(InetAddress.getLoopbackAddress()));
+    assertFalse(ratelimiter.attempt(InetAddress.getLoopbackAddress()));
+  }
+
+  @Test
+  void attemptPrefix() throws UnknownHostException {
+    long base = System.nanoTime();
+    Ratelimiter ratelimiter = new TokenBucketRatelimiter(1, 1, 24, 64, () -> base);
+    assertTrue(ratelimiter.attempt(InetAddress.getByName("192.0.2.1")));
+    assertFalse(ratelimiter.attempt(InetAddress.getByName("192.0.2.2")));
+    assertTrue(ratelimiter.attempt(InetAddress.getByName("198.51.100.1")));
+
+    assertTrue(ratelimiter.attempt(InetAddress.getByName("2001:db8:0:1::1")));
+    assertFalse(ratelimiter.attempt(InetAddress.getByName("2001:db8:0:1::2")));
+    assertTrue(ratelimiter.attempt(InetAddress.getByName("2001:db8:0:2::1")));
+  }
+}